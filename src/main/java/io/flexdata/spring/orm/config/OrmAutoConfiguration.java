@@ -1,10 +1,13 @@
 package io.flexdata.spring.orm.config;
 
+import io.flexdata.spring.orm.core.cache.CacheInvalidationBus;
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
 import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
 import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
 import io.flexdata.spring.orm.core.sql.SqlGenerator;
 import io.flexdata.spring.orm.template.OrmTemplate;
 import io.flexdata.spring.orm.template.TypeSafeOrmTemplate;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -42,8 +45,13 @@ public class OrmAutoConfiguration {
     public OrmTemplate ormTemplate(EntityMetadataRegistry metadataRegistry,
                                    SqlGenerator sqlGenerator,
                                    NamedParameterJdbcTemplate jdbcTemplate,
-                                   RowMapperFactory rowMapperFactory) {
-        return new OrmTemplate(metadataRegistry, sqlGenerator, jdbcTemplate, rowMapperFactory);
+                                   RowMapperFactory rowMapperFactory,
+                                   ObjectProvider<QueryResultCache> queryResultCache,
+                                   ObjectProvider<CacheInvalidationBus> invalidationBus) {
+        OrmTemplate ormTemplate = new OrmTemplate(metadataRegistry, sqlGenerator, jdbcTemplate, rowMapperFactory);
+        queryResultCache.ifAvailable(ormTemplate::setQueryResultCache);
+        invalidationBus.ifAvailable(ormTemplate::setInvalidationBus);
+        return ormTemplate;
     }
 
     @Bean
@@ -52,7 +60,12 @@ public class OrmAutoConfiguration {
     public TypeSafeOrmTemplate typeSafeOrmTemplate(EntityMetadataRegistry metadataRegistry,
                                                    SqlGenerator sqlGenerator,
                                                    NamedParameterJdbcTemplate jdbcTemplate,
-                                                   RowMapperFactory rowMapperFactory) {
-        return new TypeSafeOrmTemplate(metadataRegistry, sqlGenerator, jdbcTemplate, rowMapperFactory);
+                                                   RowMapperFactory rowMapperFactory,
+                                                   ObjectProvider<QueryResultCache> queryResultCache,
+                                                   ObjectProvider<CacheInvalidationBus> invalidationBus) {
+        TypeSafeOrmTemplate ormTemplate = new TypeSafeOrmTemplate(metadataRegistry, sqlGenerator, jdbcTemplate, rowMapperFactory);
+        queryResultCache.ifAvailable(ormTemplate::setQueryResultCache);
+        invalidationBus.ifAvailable(ormTemplate::setInvalidationBus);
+        return ormTemplate;
     }
 }
@@ -19,8 +19,12 @@ public class RowMapperAutoConfiguration {
      */
     @Bean
     @ConditionalOnMissingBean
-    public RowMapperFactory rowMapperFactory(EntityMetadataRegistry metadataRegistry) {
-        return new RowMapperFactory(metadataRegistry);
+    public RowMapperFactory rowMapperFactory(EntityMetadataRegistry metadataRegistry,
+                                             RowMapperConfig rowMapperConfig) {
+        RowMapperFactory factory = new RowMapperFactory(metadataRegistry);
+        factory.setEnableUniversalMapper(rowMapperConfig.isEnableUniversal());
+        factory.setEnableCompiledMapper(rowMapperConfig.isEnableCompiled());
+        return factory;
     }
 
     /**
@@ -17,6 +17,13 @@ public class RowMapperConfig {
      */
     private boolean enableUniversal = true;
     
+    /**
+     * 是否启用预编译RowMapper
+     * 按实体和结果集列布局预先生成映射计划，逐行映射时不再查找列名和反射赋值
+     * 默认关闭
+     */
+    private boolean enableCompiled = false;
+    
     /**
      * 是否启用严格模式
      * 严格模式下，类型转换失败会抛出异常
@@ -57,6 +64,14 @@ public class RowMapperConfig {
         this.enableUniversal = enableUniversal;
     }
     
+    public boolean isEnableCompiled() {
+        return enableCompiled;
+    }
+    
+    public void setEnableCompiled(boolean enableCompiled) {
+        this.enableCompiled = enableCompiled;
+    }
+    
     public boolean isStrictMode() {
         return strictMode;
     }
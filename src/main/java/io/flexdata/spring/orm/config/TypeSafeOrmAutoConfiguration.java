@@ -1,5 +1,9 @@
 package io.flexdata.spring.orm.config;
 
+import io.flexdata.spring.orm.core.cache.CacheInvalidationBus;
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
+import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.datasource.ScatterGatherExecutor;
 import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
 import io.flexdata.spring.orm.plugin.OrmPluginManager;
 import io.flexdata.spring.orm.template.TypeSafeOrmTemplate;
@@ -7,6 +11,7 @@ import io.flexdata.spring.orm.template.impl.AuditableOrmTemplate;
 import io.flexdata.spring.orm.template.impl.BatchOrmOperations;
 import io.flexdata.spring.orm.template.impl.CachedOrmTemplate;
 import io.flexdata.spring.orm.template.impl.TransactionalOrmTemplate;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -40,14 +45,32 @@ public class TypeSafeOrmAutoConfiguration {
     @Bean
     @ConditionalOnProperty(name = "orm.features.batch", havingValue = "true", matchIfMissing = true)
     public BatchOrmOperations batchOrmOperations(NamedParameterJdbcTemplate jdbcTemplate,
-                                                 EntityMetadataRegistry metadataRegistry) {
-        return new BatchOrmOperations(jdbcTemplate, metadataRegistry);
+                                                 EntityMetadataRegistry metadataRegistry,
+                                                 TypeSafeOrmProperties properties,
+                                                 ObjectProvider<QueryResultCache> queryResultCache,
+                                                 ObjectProvider<CacheInvalidationBus> invalidationBus) {
+        BatchOrmOperations batchOrmOperations = new BatchOrmOperations(jdbcTemplate, metadataRegistry);
+        batchOrmOperations.setMultiRowInsert(properties.getPerformance().isMultiRowInsert());
+        batchOrmOperations.setBatchSize(properties.getPerformance().getBatchSize());
+        queryResultCache.ifAvailable(batchOrmOperations::setQueryResultCache);
+        invalidationBus.ifAvailable(batchOrmOperations::setInvalidationBus);
+        return batchOrmOperations;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "orm.features.cache", havingValue = "true")
+    public QueryResultCache queryResultCache(ObjectProvider<CacheInvalidationBus> invalidationBus) {
+        QueryResultCache queryResultCache = new QueryResultCache();
+        // 应用自行定义CacheInvalidationBus（选择传输层并start）后，其他节点的写入也会使本地缓存失效
+        invalidationBus.ifAvailable(bus -> bus.bindQueryResultCache(queryResultCache));
+        return queryResultCache;
     }
 
     @Bean
     @ConditionalOnProperty(name = "orm.features.cache", havingValue = "true")
-    public CachedOrmTemplate cachedOrmTemplate(TypeSafeOrmTemplate ormTemplate) {
-        return new CachedOrmTemplate(ormTemplate);
+    public CachedOrmTemplate cachedOrmTemplate(TypeSafeOrmTemplate ormTemplate, QueryResultCache queryResultCache) {
+        return new CachedOrmTemplate(ormTemplate, queryResultCache);
     }
 
     @Bean
@@ -56,6 +79,16 @@ public class TypeSafeOrmAutoConfiguration {
         return new AuditableOrmTemplate(ormTemplate);
     }
 
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    public ScatterGatherExecutor scatterGatherExecutor(TypeSafeOrmProperties properties) {
+        TypeSafeOrmProperties.Performance performance = properties.getPerformance();
+        ScatterGatherExecutor executor = new ScatterGatherExecutor(performance.getScatterGatherThreads(),
+                performance.getScatterGatherQueueCapacity(), performance.getScatterGatherTimeout());
+        DataSourceContext.setScatterGatherExecutor(executor);
+        return executor;
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public CacheManager cacheManager() {
@@ -149,11 +149,31 @@ public class TypeSafeOrmProperties {
          */
         private int batchSize = 1000;
 
+        /**
+         * 批量插入是否使用多行VALUES语句
+         */
+        private boolean multiRowInsert = false;
+
         /**
          * 连接池最大大小
          */
         private int maxPoolSize = 20;
 
+        /**
+         * 多数据源并行查询的最大线程数
+         */
+        private int scatterGatherThreads = 16;
+
+        /**
+         * 多数据源并行查询的等待队列容量，队列满时由调用线程执行
+         */
+        private int scatterGatherQueueCapacity = 256;
+
+        /**
+         * 多数据源并行查询的默认超时时间（毫秒），0表示不限制
+         */
+        private long scatterGatherTimeout = 0;
+
         // Getters and Setters
         public long getSlowQueryThreshold() {
             return slowQueryThreshold;
@@ -171,6 +191,14 @@ public class TypeSafeOrmProperties {
             this.batchSize = batchSize;
         }
 
+        public boolean isMultiRowInsert() {
+            return multiRowInsert;
+        }
+
+        public void setMultiRowInsert(boolean multiRowInsert) {
+            this.multiRowInsert = multiRowInsert;
+        }
+
         public int getMaxPoolSize() {
             return maxPoolSize;
         }
@@ -178,6 +206,30 @@ public class TypeSafeOrmProperties {
         public void setMaxPoolSize(int maxPoolSize) {
             this.maxPoolSize = maxPoolSize;
         }
+
+        public int getScatterGatherThreads() {
+            return scatterGatherThreads;
+        }
+
+        public void setScatterGatherThreads(int scatterGatherThreads) {
+            this.scatterGatherThreads = scatterGatherThreads;
+        }
+
+        public int getScatterGatherQueueCapacity() {
+            return scatterGatherQueueCapacity;
+        }
+
+        public void setScatterGatherQueueCapacity(int scatterGatherQueueCapacity) {
+            this.scatterGatherQueueCapacity = scatterGatherQueueCapacity;
+        }
+
+        public long getScatterGatherTimeout() {
+            return scatterGatherTimeout;
+        }
+
+        public void setScatterGatherTimeout(long scatterGatherTimeout) {
+            this.scatterGatherTimeout = scatterGatherTimeout;
+        }
     }
 
     // Getters and Setters
@@ -0,0 +1,250 @@
+package io.flexdata.spring.orm.core.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 跨节点缓存失效总线
+ * 仓储和批量操作在写入后调用publish，事件先在本地按表合并（同一张表的多次写入合并为一个事件，
+ * 主键数超过上限时退化为整表失效），再按固定间隔成批交给传输层发送；
+ * 收到其他节点的事件后通知本地监听器，如QueryResultCache和各仓储的实体缓存
+ *
+ * 本节点的缓存由写入路径直接失效，不依赖总线回送
+ */
+public class CacheInvalidationBus implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 20;
+    public static final int DEFAULT_MAX_IDS_PER_TABLE = 256;
+
+    private final String nodeId;
+    private final CacheInvalidationTransport transport;
+    private final long flushIntervalMillis;
+    private final int maxIdsPerTable;
+    private final List<CacheInvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, AtomicLong> tableSequences = new ConcurrentHashMap<>();
+
+    /** 待发送的事件：表名 -> 主键集合，null表示整表 */
+    private Map<String, Set<Object>> pending = new LinkedHashMap<>();
+    private final Object pendingLock = new Object();
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder sentEventCount = new LongAdder();
+    private final LongAdder sentBatchCount = new LongAdder();
+    private final LongAdder receivedEventCount = new LongAdder();
+    private final LongAdder sendFailureCount = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    public CacheInvalidationBus(CacheInvalidationTransport transport) {
+        this(UUID.randomUUID().toString(), transport, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_IDS_PER_TABLE);
+    }
+
+    /**
+     * @param nodeId              本节点标识，用于过滤自己发出的事件
+     * @param flushIntervalMillis 合并窗口，窗口内的写入合并成一批发送
+     * @param maxIdsPerTable      单个事件最多携带的主键数，超过后整表失效
+     */
+    public CacheInvalidationBus(String nodeId, CacheInvalidationTransport transport,
+                                long flushIntervalMillis, int maxIdsPerTable) {
+        if (flushIntervalMillis <= 0 || maxIdsPerTable <= 0) {
+            throw new IllegalArgumentException("flushIntervalMillis and maxIdsPerTable must be positive");
+        }
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxIdsPerTable = maxIdsPerTable;
+    }
+
+    /**
+     * 开始接收事件并定时发送本地合并的事件
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        transport.start(this::receive);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orm-cache-invalidation-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 发布表的写入；ids为空表示整表失效
+     * 在事务中时等事务提交后再发布，回滚的写入不会通知其他节点
+     */
+    public void publish(String table, Collection<?> ids) {
+        String normalized = QueryResultCache.normalizeTable(table);
+        Set<Object> copy = ids == null || ids.isEmpty() ? null : new LinkedHashSet<>(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishedCount.increment();
+                    enqueue(normalized, copy);
+                }
+            });
+        } else {
+            publishedCount.increment();
+            enqueue(normalized, copy);
+        }
+    }
+
+    public void publishTable(String table) {
+        publish(table, null);
+    }
+
+    private void enqueue(String table, Set<Object> ids) {
+        synchronized (pendingLock) {
+            boolean wholeTable = pending.containsKey(table) && pending.get(table) == null;
+            if (wholeTable) {
+                return;
+            }
+            if (ids == null || !ids.stream().allMatch(CacheInvalidationCodec::isSupportedId)) {
+                pending.put(table, null);
+                return;
+            }
+            Set<Object> merged = pending.computeIfAbsent(table, k -> new LinkedHashSet<>());
+            merged.addAll(ids);
+            if (merged.size() > maxIdsPerTable) {
+                pending.put(table, null);
+            }
+        }
+    }
+
+    /**
+     * 立即发送已合并的事件
+     */
+    public void flush() {
+        Map<String, Set<Object>> batch;
+        synchronized (pendingLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        List<CacheInvalidationEvent> events = new ArrayList<>(batch.size());
+        for (Map.Entry<String, Set<Object>> entry : batch.entrySet()) {
+            long version = tableSequences.computeIfAbsent(entry.getKey(), k -> new AtomicLong()).incrementAndGet();
+            events.add(new CacheInvalidationEvent(nodeId, entry.getKey(), entry.getValue(), version));
+        }
+        try {
+            transport.send(events);
+        } catch (RuntimeException e) {
+            // 放回待发送队列，与之后的写入合并后在下个周期重试
+            for (Map.Entry<String, Set<Object>> entry : batch.entrySet()) {
+                enqueue(entry.getKey(), entry.getValue());
+            }
+            throw e;
+        }
+        sentEventCount.add(events.size());
+        sentBatchCount.increment();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            sendFailureCount.increment();
+            logger.warn("Failed to send cache invalidation events", e);
+        }
+    }
+
+    private void receive(CacheInvalidationEvent event) {
+        if (nodeId.equals(event.getSourceNode())) {
+            return;
+        }
+        receivedEventCount.increment();
+        for (CacheInvalidationListener listener : listeners) {
+            try {
+                listener.onInvalidation(event);
+            } catch (RuntimeException e) {
+                logger.warn("Cache invalidation listener failed for {}", event, e);
+            }
+        }
+    }
+
+    public void addListener(CacheInvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CacheInvalidationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 收到其他节点的事件时使查询结果缓存中对应的表失效
+     */
+    public CacheInvalidationListener bindQueryResultCache(QueryResultCache queryResultCache) {
+        CacheInvalidationListener listener = event -> queryResultCache.invalidateTable(event.getTable());
+        addListener(listener);
+        return listener;
+    }
+
+    /**
+     * 停止定时发送，发出剩余事件后关闭传输层
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(flushIntervalMillis * 10, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler = null;
+        }
+        flushQuietly();
+        transport.close();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    public long getSentEventCount() {
+        return sentEventCount.sum();
+    }
+
+    public long getSentBatchCount() {
+        return sentBatchCount.sum();
+    }
+
+    public long getReceivedEventCount() {
+        return receivedEventCount.sum();
+    }
+
+    public long getSendFailureCount() {
+        return sendFailureCount.sum();
+    }
+}
@@ -0,0 +1,100 @@
+package io.flexdata.spring.orm.core.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 失效事件批次的JSON编码
+ * 主键带类型标记，接收端还原出与发送端相同类型的主键，实体缓存按主键淘汰时才能命中
+ */
+final class CacheInvalidationCodec {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private CacheInvalidationCodec() {
+    }
+
+    /**
+     * 是否能跨节点传递该主键；不支持的类型由发送端退化为整表失效
+     */
+    static boolean isSupportedId(Object id) {
+        return id instanceof Long || id instanceof Integer || id instanceof Short
+                || id instanceof String || id instanceof UUID || id instanceof BigInteger;
+    }
+
+    static String encode(List<CacheInvalidationEvent> events) {
+        ArrayNode root = OBJECT_MAPPER.createArrayNode();
+        for (CacheInvalidationEvent event : events) {
+            ObjectNode node = root.addObject();
+            node.put("n", event.getSourceNode());
+            node.put("t", event.getTable());
+            node.put("v", event.getVersion());
+            if (!event.isWholeTable()) {
+                ArrayNode ids = node.putArray("i");
+                for (Object id : event.getIds()) {
+                    ids.addArray().add(typeOf(id)).add(id.toString());
+                }
+            }
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(root);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode cache invalidation events", e);
+        }
+    }
+
+    static List<CacheInvalidationEvent> decode(String payload) {
+        try {
+            JsonNode root = OBJECT_MAPPER.readTree(payload);
+            List<CacheInvalidationEvent> events = new ArrayList<>(root.size());
+            for (JsonNode node : root) {
+                Set<Object> ids = null;
+                JsonNode idNodes = node.get("i");
+                if (idNodes != null) {
+                    ids = new LinkedHashSet<>();
+                    for (JsonNode id : idNodes) {
+                        ids.add(parse(id.get(0).asText(), id.get(1).asText()));
+                    }
+                }
+                events.add(new CacheInvalidationEvent(node.path("n").asText(), node.path("t").asText(),
+                        ids, node.path("v").asLong()));
+            }
+            return events;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cache invalidation payload", e);
+        }
+    }
+
+    private static String typeOf(Object id) {
+        if (id instanceof Long) return "L";
+        if (id instanceof Integer) return "I";
+        if (id instanceof Short) return "H";
+        if (id instanceof String) return "S";
+        if (id instanceof UUID) return "U";
+        if (id instanceof BigInteger) return "G";
+        throw new IllegalArgumentException("Unsupported id type: " + id.getClass().getName());
+    }
+
+    private static Object parse(String type, String text) {
+        switch (type) {
+            case "L": return Long.valueOf(text);
+            case "I": return Integer.valueOf(text);
+            case "H": return Short.valueOf(text);
+            case "S": return text;
+            case "U": return UUID.fromString(text);
+            case "G": return new BigInteger(text);
+            default: throw new IllegalArgumentException("Unknown id type: " + type);
+        }
+    }
+}
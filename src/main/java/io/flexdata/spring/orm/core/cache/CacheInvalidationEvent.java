@@ -0,0 +1,62 @@
+package io.flexdata.spring.orm.core.cache;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * 缓存失效事件
+ * 描述某个节点上一张表发生的写入：ids为空表示整表失效。
+ * 失效是幂等的，重复或乱序到达的事件只会多失效，不会让缓存保留旧数据
+ */
+public final class CacheInvalidationEvent {
+
+    private final String sourceNode;
+    private final String table;
+    private final Set<Object> ids;
+    private final long version;
+
+    public CacheInvalidationEvent(String sourceNode, String table, Set<Object> ids, long version) {
+        this.sourceNode = sourceNode;
+        this.table = table;
+        this.ids = ids != null ? Collections.unmodifiableSet(ids) : Collections.emptySet();
+        this.version = version;
+    }
+
+    /**
+     * 发出事件的节点
+     */
+    public String getSourceNode() {
+        return sourceNode;
+    }
+
+    /**
+     * 规范化后的表名，见QueryResultCache.normalizeTable
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * 发生变化的主键；整表失效时为空集合
+     */
+    public Set<Object> getIds() {
+        return ids;
+    }
+
+    public boolean isWholeTable() {
+        return ids.isEmpty();
+    }
+
+    /**
+     * 发送节点上该表的事件序号，单调递增
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidationEvent{sourceNode='" + sourceNode + "', table='" + table
+                + "', ids=" + ids + ", version=" + version + '}';
+    }
+}
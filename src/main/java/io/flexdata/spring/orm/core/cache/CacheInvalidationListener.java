@@ -0,0 +1,10 @@
+package io.flexdata.spring.orm.core.cache;
+
+/**
+ * 缓存失效事件监听器
+ */
+@FunctionalInterface
+public interface CacheInvalidationListener {
+
+    void onInvalidation(CacheInvalidationEvent event);
+}
@@ -0,0 +1,26 @@
+package io.flexdata.spring.orm.core.cache;
+
+import java.util.List;
+
+/**
+ * 缓存失效事件传输SPI
+ * 负责把本节点合并后的事件批次送达所有节点（包括本节点自己，由CacheInvalidationBus过滤）
+ */
+public interface CacheInvalidationTransport extends AutoCloseable {
+
+    /**
+     * 开始接收事件，收到的每个事件交给listener处理
+     */
+    void start(CacheInvalidationListener listener);
+
+    /**
+     * 发送一批事件；失败时抛出异常，由调用方记录
+     */
+    void send(List<CacheInvalidationEvent> events);
+
+    /**
+     * 停止接收并释放资源
+     */
+    @Override
+    void close();
+}
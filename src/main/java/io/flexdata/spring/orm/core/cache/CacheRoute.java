@@ -0,0 +1,64 @@
+package io.flexdata.spring.orm.core.cache;
+
+import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.table.TableContext;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 缓存条目所属的路由
+ * 由当前线程的数据源查找键、当前物理表和表名映射组成；同一主键或SQL路由到不同租户、分片时读到的是不同的数据，
+ * 必须作为缓存键的一部分。没有设置任何路由上下文时返回共享的{@link #NONE}，不分配对象
+ */
+final class CacheRoute {
+
+    static final CacheRoute NONE = new CacheRoute(null, null, Collections.emptyMap());
+
+    private final String dataSource;
+    private final String table;
+    private final Map<String, String> tableMappings;
+    private final int hash;
+
+    private CacheRoute(String dataSource, String table, Map<String, String> tableMappings) {
+        this.dataSource = dataSource;
+        this.table = table;
+        this.tableMappings = tableMappings;
+        this.hash = 31 * (31 * Objects.hashCode(dataSource) + Objects.hashCode(table)) + tableMappings.hashCode();
+    }
+
+    /**
+     * 当前线程的路由
+     */
+    static CacheRoute current() {
+        String dataSource = DataSourceContext.getDataSource();
+        String table = TableContext.getCurrentTable();
+        Map<String, String> tableMappings = TableContext.getAllTableMappings();
+        if (dataSource == null && table == null && tableMappings.isEmpty()) {
+            return NONE;
+        }
+        return new CacheRoute(dataSource, table, tableMappings);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CacheRoute)) return false;
+        CacheRoute other = (CacheRoute) o;
+        return hash == other.hash
+                && Objects.equals(dataSource, other.dataSource)
+                && Objects.equals(table, other.table)
+                && tableMappings.equals(other.tableMappings);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheRoute{dataSource=" + dataSource + ", table=" + table + ", tableMappings=" + tableMappings + "}";
+    }
+}
@@ -0,0 +1,258 @@
+package io.flexdata.spring.orm.core.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 一级实体缓存
+ * 以(实体类, 主键)为键，按容量和写入后存活时间淘汰；底层为分段加锁的Guava Cache，
+ * 同一个实例可以被多个仓储共享。缓存返回的是同一个实体对象，调用方不应修改后不保存
+ *
+ * 每个主键下再按路由（数据源查找键、物理表和表名映射）区分实体，同一主键路由到不同租户或分片时互不命中；
+ * 淘汰主键时同时淘汰它在所有路由下的实体，跨节点的失效事件不带路由也能正确淘汰
+ *
+ * 主键按哈希分到若干条带，每次淘汰或写入提交后的实体都会递增所在条带的版本。从数据库读到的实体在读取前记下版本，
+ * 放入时版本已变化就放弃，读取期间提交的写入不会被读到的旧行覆盖
+ */
+public class EntityCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+    public static final long DEFAULT_TTL_SECONDS = 300;
+
+    private static final int STAMP_STRIPES = 1024;
+
+    private final Cache<EntityKey, ConcurrentMap<CacheRoute, Object>> cache;
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+
+    public EntityCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param maximumSize 最多缓存的实体数
+     * @param ttl         写入后的存活时间，小于等于0表示不过期
+     */
+    public EntityCache(long maximumSize, long ttl, TimeUnit unit) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .recordStats();
+        if (ttl > 0) {
+            builder.expireAfterWrite(ttl, unit);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * 查找当前路由下缓存的实体，未命中返回null
+     */
+    public <T> T get(Class<T> entityClass, Object id) {
+        if (id == null) {
+            return null;
+        }
+        Map<CacheRoute, Object> routes = cache.getIfPresent(new EntityKey(entityClass, id));
+        return routes != null ? entityClass.cast(routes.get(CacheRoute.current())) : null;
+    }
+
+    /**
+     * 缓存当前路由下的实体
+     */
+    public void put(Class<?> entityClass, Object id, Object entity) {
+        put(entityClass, id, CacheRoute.current(), entity);
+    }
+
+    /**
+     * 缓存事务中写入的实体
+     * 事务中先淘汰旧值，提交后再按当前路由放入：提交前其他线程读不到未提交的实体，回滚时不会放入；没有事务时直接放入。
+     * 放入前递增版本，正在读取旧行的线程不会再覆盖它
+     */
+    public void putAfterCommit(Class<?> entityClass, Object id, Object entity) {
+        if (id == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            replace(entityClass, id, CacheRoute.current(), entity);
+            return;
+        }
+        evict(entityClass, id);
+        // 提交回调执行时路由上下文可能已经恢复，这里先记下
+        CacheRoute route = CacheRoute.current();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                replace(entityClass, id, route, entity);
+            }
+        });
+    }
+
+    /**
+     * 读取数据库前记下的版本，读到实体后交给putLoaded
+     */
+    public long stamp(Class<?> entityClass, Object id) {
+        return id != null ? stamps.get(stripe(new EntityKey(entityClass, id))) : 0L;
+    }
+
+    /**
+     * 缓存从数据库读到的实体
+     * 自stamp取得版本后主键被淘汰或有写入提交时放弃；事务中读到的实体提交后再按同一版本判断是否放入
+     */
+    public void putLoaded(Class<?> entityClass, Object id, Object entity, long stamp) {
+        if (id == null) {
+            return;
+        }
+        CacheRoute route = CacheRoute.current();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            putIfUnchanged(entityClass, id, route, entity, stamp);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                putIfUnchanged(entityClass, id, route, entity, stamp);
+            }
+        });
+    }
+
+    private void put(Class<?> entityClass, Object id, CacheRoute route, Object entity) {
+        if (id != null && entity != null) {
+            cache.asMap().computeIfAbsent(new EntityKey(entityClass, id), key -> new ConcurrentHashMap<>(2))
+                    .put(route, entity);
+        }
+    }
+
+    private void replace(Class<?> entityClass, Object id, CacheRoute route, Object entity) {
+        stamps.incrementAndGet(stripe(new EntityKey(entityClass, id)));
+        put(entityClass, id, route, entity);
+    }
+
+    /**
+     * 放入后再检查一次版本：检查与放入之间发生的淘汰先递增版本再清除，要么被这次检查发现，要么清除发生在放入之后
+     */
+    private void putIfUnchanged(Class<?> entityClass, Object id, CacheRoute route, Object entity, long stamp) {
+        EntityKey entityKey = new EntityKey(entityClass, id);
+        int stripe = stripe(entityKey);
+        if (entity == null || stamps.get(stripe) != stamp) {
+            return;
+        }
+        ConcurrentMap<CacheRoute, Object> routes = cache.asMap().computeIfAbsent(entityKey, key -> new ConcurrentHashMap<>(2));
+        routes.put(route, entity);
+        if (stamps.get(stripe) != stamp) {
+            routes.remove(route, entity);
+        }
+    }
+
+    public void evict(Class<?> entityClass, Object id) {
+        if (id != null) {
+            EntityKey key = new EntityKey(entityClass, id);
+            stamps.incrementAndGet(stripe(key));
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 立即淘汰，事务中提交后再淘汰一次，清除事务进行期间其他线程读到并放入的旧行
+     */
+    public void evictAfterCommit(Class<?> entityClass, Object id) {
+        evict(entityClass, id);
+        if (id != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(entityClass, id);
+                }
+            });
+        }
+    }
+
+    /**
+     * 清除某个实体类的全部缓存，用于无法确定受影响主键的批量更新和删除
+     */
+    public void evictAll(Class<?> entityClass) {
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            stamps.incrementAndGet(i);
+        }
+        cache.asMap().keySet().removeIf(key -> key.entityClass == entityClass);
+    }
+
+    /**
+     * 立即清除某个实体类的全部缓存，事务中提交后再清除一次
+     */
+    public void evictAllAfterCommit(Class<?> entityClass) {
+        evictAll(entityClass);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictAll(entityClass);
+                }
+            });
+        }
+    }
+
+    private static int stripe(EntityKey key) {
+        return (key.hash ^ (key.hash >>> 16)) & (STAMP_STRIPES - 1);
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 缓存的主键数
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * 把命中、未命中、淘汰次数和容量注册为Micrometer指标（cache.gets、cache.evictions、cache.size等）
+     */
+    public EntityCache bindTo(MeterRegistry meterRegistry, String cacheName) {
+        GuavaCacheMetrics.monitor(meterRegistry, cache, cacheName);
+        return this;
+    }
+
+    /**
+     * 缓存键：实体类按引用比较，主键按equals比较
+     */
+    private static final class EntityKey {
+        private final Class<?> entityClass;
+        private final Object id;
+        private final int hash;
+
+        EntityKey(Class<?> entityClass, Object id) {
+            this.entityClass = entityClass;
+            this.id = id;
+            this.hash = 31 * System.identityHashCode(entityClass) + id.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof EntityKey)) return false;
+            EntityKey other = (EntityKey) o;
+            return entityClass == other.entityClass && Objects.equals(id, other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
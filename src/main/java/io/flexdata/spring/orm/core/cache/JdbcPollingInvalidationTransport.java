@@ -0,0 +1,183 @@
+package io.flexdata.spring.orm.core.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于共享数据库表的轮询传输
+ * 每批事件写入一行，各节点定时读取比上次位置新的行；不需要额外的中间件，所有节点连同一个库即可
+ *
+ * 表结构（PostgreSQL用BIGSERIAL，MySQL用BIGINT AUTO_INCREMENT，payload用TEXT）：
+ * <pre>
+ * CREATE TABLE orm_cache_invalidation (
+ *     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *     node_id VARCHAR(64) NOT NULL,
+ *     payload CLOB NOT NULL,
+ *     created_at TIMESTAMP NOT NULL
+ * )
+ * </pre>
+ *
+ * 自增主键的提交顺序与分配顺序不一定相同，先分配后提交的行会在读取位置之后才出现；
+ * 因此读取时记录跳过的主键，在gapTimeout内持续回看，超时（回滚留下的空洞）后放弃
+ */
+public class JdbcPollingInvalidationTransport implements CacheInvalidationTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcPollingInvalidationTransport.class);
+
+    public static final String DEFAULT_TABLE_NAME = "orm_cache_invalidation";
+
+    /** 最多跟踪的空洞数，超出的空洞直接放弃 */
+    private static final int MAX_TRACKED_GAPS = 1024;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String insertSql;
+    private final String selectSql;
+    private final String maxIdSql;
+    private final String purgeSql;
+    private final long pollIntervalMillis;
+    private final long gapTimeoutMillis;
+    private final long retentionMillis;
+
+    /** 已处理的最大主键 */
+    private long lastId;
+    /** 尚未出现的主键 -> 放弃等待的时间 */
+    private final TreeMap<Long, Long> gaps = new TreeMap<>();
+    private long lastPurgeMillis;
+
+    private CacheInvalidationListener listener;
+    private ScheduledExecutorService scheduler;
+
+    public JdbcPollingInvalidationTransport(NamedParameterJdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, DEFAULT_TABLE_NAME, 200, 10_000, TimeUnit.MINUTES.toMillis(10));
+    }
+
+    /**
+     * @param pollIntervalMillis 轮询间隔
+     * @param gapTimeoutMillis   等待未提交行的最长时间
+     * @param retentionMillis    事件行的保留时间，过期的行由各节点顺带清理
+     */
+    public JdbcPollingInvalidationTransport(NamedParameterJdbcTemplate jdbcTemplate, String tableName,
+                                            long pollIntervalMillis, long gapTimeoutMillis, long retentionMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.insertSql = "INSERT INTO " + tableName + " (node_id, payload, created_at) VALUES (:nodeId, :payload, :createdAt)";
+        this.selectSql = "SELECT id, payload FROM " + tableName + " WHERE id > :afterId ORDER BY id";
+        this.maxIdSql = "SELECT MAX(id) FROM " + tableName;
+        this.purgeSql = "DELETE FROM " + tableName + " WHERE created_at < :before";
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * 从当前最大主键之后开始读取，启动前的历史事件与新节点无关
+     */
+    @Override
+    public synchronized void start(CacheInvalidationListener listener) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Transport already started");
+        }
+        this.listener = listener;
+        Long maxId = jdbcTemplate.queryForObject(maxIdSql, Collections.emptyMap(), Long.class);
+        lastId = maxId != null ? maxId : 0L;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orm-cache-invalidation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (RuntimeException e) {
+                logger.warn("Failed to poll cache invalidation events", e);
+            }
+        }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void send(List<CacheInvalidationEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("nodeId", events.get(0).getSourceNode())
+                .addValue("payload", CacheInvalidationCodec.encode(events))
+                .addValue("createdAt", new Timestamp(System.currentTimeMillis()));
+        jdbcTemplate.update(insertSql, params);
+    }
+
+    /**
+     * 读取一次新事件；由轮询线程调用，也可在测试中直接调用
+     */
+    public synchronized void poll() {
+        long now = System.currentTimeMillis();
+        gaps.values().removeIf(deadline -> deadline < now);
+        long afterId = gaps.isEmpty() ? lastId : gaps.firstKey() - 1;
+
+        // payload可能是CLOB，按字符串读取
+        List<Object[]> rows = jdbcTemplate.query(selectSql, Collections.singletonMap("afterId", afterId),
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2)});
+        for (Object[] row : rows) {
+            long id = (Long) row[0];
+            if (id <= lastId) {
+                // 回看范围内只处理之前跳过的行
+                if (gaps.remove(id) == null) {
+                    continue;
+                }
+            } else {
+                for (long missing = lastId + 1; missing < id && gaps.size() < MAX_TRACKED_GAPS; missing++) {
+                    gaps.put(missing, now + gapTimeoutMillis);
+                }
+                lastId = id;
+            }
+            deliver((String) row[1]);
+        }
+
+        if (now - lastPurgeMillis >= retentionMillis) {
+            lastPurgeMillis = now;
+            jdbcTemplate.update(purgeSql, Collections.singletonMap("before", new Timestamp(now - retentionMillis)));
+        }
+    }
+
+    private void deliver(String payload) {
+        CacheInvalidationListener current = listener;
+        if (current == null) {
+            return;
+        }
+        List<CacheInvalidationEvent> events;
+        try {
+            events = CacheInvalidationCodec.decode(payload);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Skipping malformed cache invalidation payload", e);
+            return;
+        }
+        for (CacheInvalidationEvent event : events) {
+            current.onInvalidation(event);
+        }
+    }
+
+    /**
+     * 当前跟踪的空洞数
+     */
+    public synchronized int getPendingGapCount() {
+        return gaps.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        listener = null;
+    }
+}
@@ -0,0 +1,34 @@
+package io.flexdata.spring.orm.core.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 进程内回环传输
+ * 连接到同一个实例的所有总线互相可见，适合单节点部署和测试；
+ * 事件会经过与远程传输相同的编码和解码，接收端看到的主键类型与跨节点时一致
+ */
+public class LoopbackInvalidationTransport implements CacheInvalidationTransport {
+
+    private final List<CacheInvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void start(CacheInvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void send(List<CacheInvalidationEvent> events) {
+        String payload = CacheInvalidationCodec.encode(events);
+        for (CacheInvalidationListener listener : listeners) {
+            for (CacheInvalidationEvent event : CacheInvalidationCodec.decode(payload)) {
+                listener.onInvalidation(event);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        listeners.clear();
+    }
+}
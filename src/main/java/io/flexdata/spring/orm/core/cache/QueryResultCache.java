@@ -0,0 +1,401 @@
+package io.flexdata.spring.orm.core.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.flexdata.spring.orm.core.sql.SqlTableReplacer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 查询结果缓存
+ * 以规范化后的SQL、绑定参数和当前路由为键，每个条目记录它读取的表及读取时各表的版本号；
+ * 写操作只需递增对应表的版本号（O(1)），依赖该表的条目在下次读取时发现版本过期并重新加载；
+ * 事务中写过的表记录在事务资源上，本事务内读取这些表的查询直接访问数据库，既不读也不填充共享缓存
+ *
+ * 缓存返回的是同一个结果对象，调用方不应修改
+ */
+public class QueryResultCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1_000;
+    public static final long DEFAULT_TTL_SECONDS = 60;
+
+    private static final String ALL_TABLES = "*";
+
+    private final Cache<QueryKey, CachedResult> cache;
+    private final Map<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder staleCount = new LongAdder();
+    private final LongAdder bypassCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    public QueryResultCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param maximumSize 最多缓存的查询数
+     * @param ttl         写入后的存活时间，小于等于0表示只依赖表版本失效
+     */
+    public QueryResultCache(long maximumSize, long ttl, TimeUnit unit) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maximumSize);
+        if (ttl > 0) {
+            builder.expireAfterWrite(ttl, unit);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * 从缓存读取查询结果，未命中或已过期时调用loader加载并缓存
+     *
+     * @param tables 查询读取的表；为空时从SQL中提取
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(String sql, Map<String, ?> params, Collection<String> tables, Supplier<R> loader) {
+        // 当前事务写过查询读取的表：共享缓存中没有本事务未提交的修改，读到的结果也不能给其他线程看到
+        Set<String> writtenTables = writtenTables();
+        if (writtenTables != null && readsAny(tables, sql, writtenTables)) {
+            bypassCount.increment();
+            return loader.get();
+        }
+
+        QueryKey key = new QueryKey(normalizeSql(sql), params, CacheRoute.current());
+        CachedResult entry = cache.getIfPresent(key);
+        if (entry != null) {
+            if (entry.isCurrent()) {
+                hitCount.increment();
+                return (R) entry.value;
+            }
+            staleCount.increment();
+            cache.asMap().remove(key, entry);
+        }
+        missCount.increment();
+
+        // 先记录版本再加载：加载期间发生的写入会让这个条目立即过期
+        Collection<String> readTables = tables == null || tables.isEmpty()
+                ? SqlTableReplacer.extractTableNames(sql) : tables;
+        CachedResult loaded = snapshot(readTables);
+        loaded.value = loader.get();
+        if (loaded.tableCount() > 0) {
+            cache.put(key, loaded);
+        }
+        return (R) loaded.value;
+    }
+
+    /**
+     * 表数据发生变化：递增表版本号
+     * 在事务中时提交或回滚后再递增一次，避免事务提交前被其他线程读到并缓存的旧数据继续有效
+     */
+    public void invalidateTable(String table) {
+        String normalized = normalizeTable(table);
+        AtomicLong version = tableVersions.computeIfAbsent(normalized, k -> new AtomicLong());
+        version.incrementAndGet();
+        invalidationCount.increment();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            bindWrittenTables().add(normalized);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    public void invalidateTables(Collection<String> tables) {
+        for (String table : tables) {
+            invalidateTable(table);
+        }
+    }
+
+    /**
+     * 根据写语句中的表名失效；无法识别表名时失效全部缓存
+     */
+    public void invalidateForSql(String writeSql) {
+        Set<String> tables = SqlTableReplacer.extractTableNames(writeSql);
+        if (tables.isEmpty()) {
+            invalidateAll();
+        } else {
+            invalidateTables(tables);
+        }
+    }
+
+    public void invalidateAll() {
+        globalVersion.incrementAndGet();
+        invalidationCount.increment();
+        cache.invalidateAll();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            bindWrittenTables().add(ALL_TABLES);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    globalVersion.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    public long getTableVersion(String table) {
+        AtomicLong version = tableVersions.get(normalizeTable(table));
+        return version != null ? version.get() : 0L;
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 因当前事务写过所读的表而绕过缓存的查询次数
+     */
+    public long getBypassCount() {
+        return bypassCount.sum();
+    }
+
+    /**
+     * 因表版本变化而失效的命中次数
+     */
+    public long getStaleCount() {
+        return staleCount.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    /**
+     * 注册Micrometer指标
+     */
+    public QueryResultCache bindTo(MeterRegistry meterRegistry, String cacheName) {
+        FunctionCounter.builder("orm.query.cache.hits", this, QueryResultCache::getHitCount)
+                .tag("cache", cacheName).register(meterRegistry);
+        FunctionCounter.builder("orm.query.cache.misses", this, QueryResultCache::getMissCount)
+                .tag("cache", cacheName).register(meterRegistry);
+        FunctionCounter.builder("orm.query.cache.stale", this, QueryResultCache::getStaleCount)
+                .tag("cache", cacheName).register(meterRegistry);
+        FunctionCounter.builder("orm.query.cache.bypasses", this, QueryResultCache::getBypassCount)
+                .tag("cache", cacheName).register(meterRegistry);
+        FunctionCounter.builder("orm.query.cache.invalidations", this, QueryResultCache::getInvalidationCount)
+                .tag("cache", cacheName).register(meterRegistry);
+        Gauge.builder("orm.query.cache.size", this, cache -> (double) cache.size())
+                .tag("cache", cacheName).register(meterRegistry);
+        return this;
+    }
+
+    /**
+     * 当前事务中失效过的表，以本缓存实例为键绑定在事务上；不在事务中或没有写入时返回null
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> writtenTables() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        return (Set<String>) TransactionSynchronizationManager.getResource(this);
+    }
+
+    private Set<String> bindWrittenTables() {
+        Set<String> written = writtenTables();
+        if (written == null) {
+            Set<String> created = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(QueryResultCache.this);
+                }
+            });
+            written = created;
+        }
+        return written;
+    }
+
+    private static boolean readsAny(Collection<String> tables, String sql, Set<String> writtenTables) {
+        if (writtenTables.contains(ALL_TABLES)) {
+            return true;
+        }
+        Collection<String> readTables = tables == null || tables.isEmpty()
+                ? SqlTableReplacer.extractTableNames(sql) : tables;
+        // 无法识别读取的表时按读过处理
+        if (readTables.isEmpty()) {
+            return true;
+        }
+        for (String table : readTables) {
+            if (writtenTables.contains(normalizeTable(table))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CachedResult snapshot(Collection<String> tables) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String table : tables) {
+            normalized.add(normalizeTable(table));
+        }
+        AtomicLong[] versions = new AtomicLong[normalized.size()];
+        long[] seen = new long[normalized.size()];
+        int i = 0;
+        for (String table : normalized) {
+            versions[i] = tableVersions.computeIfAbsent(table, k -> new AtomicLong());
+            seen[i] = versions[i].get();
+            i++;
+        }
+        return new CachedResult(versions, seen, globalVersion.get());
+    }
+
+    /**
+     * 表名统一为小写并去掉引号和schema前缀；不同schema的同名表共享版本号，只会多失效不会漏失效
+     */
+    public static String normalizeTable(String table) {
+        String name = table.trim();
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            name = name.substring(dot + 1);
+        }
+        if (name.length() >= 2) {
+            char first = name.charAt(0);
+            if (first == '"' || first == '`' || first == '[') {
+                name = name.substring(1, name.length() - 1);
+            }
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 合并引号外的连续空白，使只有格式差异的SQL共用一个条目
+     */
+    public static String normalizeSql(String sql) {
+        StringBuilder result = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                result.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = result.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    result.append(' ');
+                    pendingSpace = false;
+                }
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private final class CachedResult {
+        private final AtomicLong[] versions;
+        private final long[] seen;
+        private final long global;
+        private Object value;
+
+        CachedResult(AtomicLong[] versions, long[] seen, long global) {
+            this.versions = versions;
+            this.seen = seen;
+            this.global = global;
+        }
+
+        boolean isCurrent() {
+            if (global != globalVersion.get()) {
+                return false;
+            }
+            for (int i = 0; i < versions.length; i++) {
+                if (versions[i].get() != seen[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int tableCount() {
+            return versions.length;
+        }
+    }
+
+    /**
+     * 缓存键：规范化SQL、按名称排序的参数和当前路由
+     * 同一条SQL在不同数据源或表名映射下读到的是不同的数据
+     */
+    private static final class QueryKey {
+        private final String sql;
+        private final Map<String, Object> params;
+        private final CacheRoute route;
+        private final int hash;
+
+        QueryKey(String sql, Map<String, ?> params, CacheRoute route) {
+            this.sql = sql;
+            this.route = route;
+            if (params == null || params.isEmpty()) {
+                this.params = Collections.emptyMap();
+            } else {
+                Map<String, Object> sorted = new TreeMap<>();
+                for (Map.Entry<String, ?> entry : params.entrySet()) {
+                    sorted.put(entry.getKey(), keyValue(entry.getValue()));
+                }
+                this.params = sorted;
+            }
+            this.hash = 31 * (31 * sql.hashCode() + this.params.hashCode()) + route.hashCode();
+        }
+
+        private static Object keyValue(Object value) {
+            if (value instanceof Object[]) {
+                return Arrays.asList((Object[]) value);
+            } else if (value instanceof Collection) {
+                return new ArrayList<>((Collection<?>) value);
+            }
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof QueryKey)) return false;
+            QueryKey other = (QueryKey) o;
+            return hash == other.hash && sql.equals(other.sql) && params.equals(other.params)
+                    && route.equals(other.route);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -15,6 +15,7 @@ public class DataSourceContext {
     private static final ThreadLocal<String> CURRENT_DATASOURCE = new ThreadLocal<>();
     private static final ThreadLocal<Map<String, String>> DATASOURCE_MAPPINGS = new ThreadLocal<>();
     private static final Map<String, DataSourceInfo> REGISTERED_DATASOURCES = new ConcurrentHashMap<>();
+    private static volatile ScatterGatherExecutor scatterGatherExecutor;
     
     /**
      * 数据源信息
@@ -177,6 +178,15 @@ public class DataSourceContext {
         return mappings.get(logicalName);
     }
     
+    /**
+     * 获取当前线程的所有数据源映射
+     * @return 数据源映射的副本，如果没有映射则返回空Map
+     */
+    public static Map<String, String> getAllDataSourceMappings() {
+        Map<String, String> mappings = DATASOURCE_MAPPINGS.get();
+        return mappings == null ? new HashMap<>() : new HashMap<>(mappings);
+    }
+    
     /**
      * 清除数据源映射
      */
@@ -215,19 +225,58 @@ public class DataSourceContext {
     }
     
     /**
-     * 在多个数据源上顺序执行操作
+     * 在多个数据源上并行执行操作
+     * 使用{@link #getScatterGatherExecutor()}的默认超时时间，任一数据源失败即取消其余数据源并抛出该异常；
+     * 处于事务同步中时事务绑定的连接会被所有数据源复用，涉及多个数据源时抛出{@link IllegalStateException}，
+     * 只涉及一个数据源时在当前线程上顺序执行
      * @param dataSourceKeys 数据源标识列表
      * @param action 要执行的操作
      * @param <T> 返回值类型
-     * @return 操作结果列表
+     * @return 操作结果列表，顺序与数据源标识列表一致
      */
     public static <T> List<T> executeOnMultipleDataSources(List<String> dataSourceKeys, DataSourceAction<T> action) {
-        List<T> results = new ArrayList<>();
-        for (String dataSourceKey : dataSourceKeys) {
-            T result = executeWithDataSource(dataSourceKey, action);
-            results.add(result);
+        return getScatterGatherExecutor().execute(dataSourceKeys, action).getResults();
+    }
+    
+    /**
+     * 在多个数据源上并行执行操作，指定超时时间和部分失败的处理策略
+     * @param dataSourceKeys 数据源标识列表
+     * @param action 要执行的操作
+     * @param timeoutMillis 超时时间（毫秒），0表示不限制
+     * @param policy 部分失败的处理策略
+     * @param <T> 返回值类型
+     * @return 执行结果
+     */
+    public static <T> ScatterGatherResult<T> executeOnMultipleDataSources(List<String> dataSourceKeys, DataSourceAction<T> action,
+                                                                          long timeoutMillis, ScatterGatherExecutor.FailurePolicy policy) {
+        return getScatterGatherExecutor().execute(dataSourceKeys, action, timeoutMillis, policy);
+    }
+    
+    /**
+     * 设置多数据源并行执行器
+     * @param executor 执行器
+     */
+    public static void setScatterGatherExecutor(ScatterGatherExecutor executor) {
+        Assert.notNull(executor, "ScatterGatherExecutor cannot be null");
+        scatterGatherExecutor = executor;
+    }
+    
+    /**
+     * 获取多数据源并行执行器，未设置时创建一个默认配置的执行器
+     * @return 执行器
+     */
+    public static ScatterGatherExecutor getScatterGatherExecutor() {
+        ScatterGatherExecutor executor = scatterGatherExecutor;
+        if (executor == null) {
+            synchronized (DataSourceContext.class) {
+                executor = scatterGatherExecutor;
+                if (executor == null) {
+                    executor = new ScatterGatherExecutor();
+                    scatterGatherExecutor = executor;
+                }
+            }
         }
-        return results;
+        return executor;
     }
     
     /**
@@ -0,0 +1,188 @@
+package io.flexdata.spring.orm.core.datasource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据源运行统计
+ * 记录每个数据源上正在执行的请求数，由{@link DynamicDataSource}在获取和关闭连接时维护，
+ * 供负载均衡策略按未完成请求数选择数据源；
+ * 同时记录语句执行耗时和失败率的指数加权移动平均（EWMA），供自适应策略使用
+ */
+public final class DataSourceStats {
+
+    /**
+     * 耗时EWMA的平滑系数，越大越偏向最近的样本
+     */
+    static final double LATENCY_ALPHA = 0.3;
+
+    /**
+     * 失败率EWMA的平滑系数，取得较小使偶发失败不会立刻推高失败率
+     */
+    static final double ERROR_ALPHA = 0.1;
+
+    private static final Map<String, DataSourceStats> STATS = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    private final AtomicLong latencyEwmaBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    private final AtomicLong errorRateEwmaBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile long lastSampleNanos;
+
+    private DataSourceStats(String key) {
+        this.key = key;
+    }
+
+    /**
+     * 获取数据源的统计对象，不存在时创建
+     * 返回的对象在整个进程内唯一，调用方可以持有引用避免重复查找
+     */
+    public static DataSourceStats of(String dataSourceKey) {
+        DataSourceStats stats = STATS.get(dataSourceKey);
+        if (stats == null) {
+            stats = STATS.computeIfAbsent(dataSourceKey, DataSourceStats::new);
+        }
+        return stats;
+    }
+
+    /**
+     * 获取所有数据源的统计对象
+     */
+    public static Map<String, DataSourceStats> getAll() {
+        return new ConcurrentHashMap<>(STATS);
+    }
+
+    /**
+     * 请求开始
+     */
+    public void begin() {
+        inFlight.increment();
+    }
+
+    /**
+     * 请求结束
+     */
+    public void end() {
+        inFlight.decrement();
+        completed.increment();
+    }
+
+    /**
+     * 记录一次成功的语句执行
+     */
+    public void recordSuccess(long durationNanos) {
+        record(durationNanos, 0.0);
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * 记录一次失败的语句执行或获取连接失败
+     */
+    public void recordFailure(long durationNanos) {
+        record(durationNanos, 1.0);
+        consecutiveFailures.incrementAndGet();
+        failures.increment();
+    }
+
+    private void record(long durationNanos, double error) {
+        // 第一个样本直接作为初值
+        boolean first = lastSampleNanos == 0;
+        update(latencyEwmaBits, durationNanos, LATENCY_ALPHA, first);
+        update(errorRateEwmaBits, error, ERROR_ALPHA, first);
+        samples.increment();
+        lastSampleNanos = System.nanoTime();
+    }
+
+    private static void update(AtomicLong bits, double sample, double alpha, boolean first) {
+        long current;
+        long next;
+        do {
+            current = bits.get();
+            double value = Double.longBitsToDouble(current);
+            double updated = first ? sample : value + alpha * (sample - value);
+            next = Double.doubleToRawLongBits(updated);
+        } while (!bits.compareAndSet(current, next));
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 正在执行的请求数
+     */
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    /**
+     * 已完成的请求数
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * 语句执行耗时的EWMA，单位纳秒；没有样本时为0
+     */
+    public double getLatencyEwmaNanos() {
+        return Double.longBitsToDouble(latencyEwmaBits.get());
+    }
+
+    /**
+     * 失败率的EWMA，取值0到1
+     */
+    public double getErrorRate() {
+        return Double.longBitsToDouble(errorRateEwmaBits.get());
+    }
+
+    /**
+     * 连续失败次数，成功一次即清零
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * 累计失败次数
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * 累计样本数
+     */
+    public long getSampleCount() {
+        return samples.sum();
+    }
+
+    /**
+     * 最近一次样本的{@link System#nanoTime()}，没有样本时为0
+     */
+    public long getLastSampleNanos() {
+        return lastSampleNanos;
+    }
+
+    /**
+     * 清零统计，主要用于测试
+     */
+    public void reset() {
+        inFlight.reset();
+        completed.reset();
+        latencyEwmaBits.set(Double.doubleToRawLongBits(0.0));
+        errorRateEwmaBits.set(Double.doubleToRawLongBits(0.0));
+        consecutiveFailures.set(0);
+        samples.reset();
+        failures.reset();
+        lastSampleNanos = 0;
+    }
+}
@@ -3,23 +3,180 @@ package io.flexdata.spring.orm.core.datasource;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 import org.springframework.lang.Nullable;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+
 /**
  * 动态数据源路由器
  * 根据当前线程上下文动态选择数据源
+ * 连接从获取到关闭期间计为目标数据源上的一个未完成请求；
+ * 通过连接创建的语句每次执行都向目标数据源的{@link DataSourceStats}报告耗时和成败，获取连接失败也计为一次失败；
+ * 语句执行只有连接类异常和超时计为失败，其他SQL异常说明数据源仍然可用，按成功计入
  */
 public class DynamicDataSource extends AbstractRoutingDataSource {
-    
+
     public static final String DEFAULT_DATASOURCE = "default";
-    
+
     @Nullable
     @Override
     protected Object determineCurrentLookupKey() {
         String dataSourceKey = DataSourceContext.getDataSource();
         return dataSourceKey != null ? dataSourceKey : DEFAULT_DATASOURCE;
     }
-    
+
     @Override
     protected Object resolveSpecifiedLookupKey(Object lookupKey) {
         return lookupKey;
     }
-}
\ No newline at end of file
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSourceStats stats = currentStats();
+        stats.begin();
+        long start = System.nanoTime();
+        try {
+            return track(super.getConnection(), stats);
+        } catch (SQLException | RuntimeException e) {
+            stats.recordFailure(System.nanoTime() - start);
+            stats.end();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DataSourceStats stats = currentStats();
+        stats.begin();
+        long start = System.nanoTime();
+        try {
+            return track(super.getConnection(username, password), stats);
+        } catch (SQLException | RuntimeException e) {
+            stats.recordFailure(System.nanoTime() - start);
+            stats.end();
+            throw e;
+        }
+    }
+
+    private DataSourceStats currentStats() {
+        return DataSourceStats.of(String.valueOf(determineCurrentLookupKey()));
+    }
+
+    private static Connection track(Connection connection, DataSourceStats stats) {
+        return (Connection) Proxy.newProxyInstance(DynamicDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new TrackingHandler(connection, stats));
+    }
+
+    /**
+     * 连接关闭时结束请求计数，重复关闭只计一次；创建的语句包装为{@link StatementHandler}
+     */
+    private static final class TrackingHandler implements InvocationHandler {
+        private final Connection target;
+        private final DataSourceStats stats;
+        private boolean closed;
+
+        TrackingHandler(Connection target, DataSourceStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && !closed) {
+                closed = true;
+                stats.end();
+            } else if (isWrapperMethod(name, proxy, args)) {
+                return "unwrap".equals(name) ? proxy : Boolean.TRUE;
+            } else if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            Object result = invokeTarget(target, method, args);
+            if (result instanceof Statement && method.getReturnType().isInterface()) {
+                return Proxy.newProxyInstance(DynamicDataSource.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()},
+                        new StatementHandler((Statement) result, (Connection) proxy, stats));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * execute*方法的耗时和成败计入数据源统计
+     */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final Connection connection;
+        private final DataSourceStats stats;
+
+        StatementHandler(Statement target, Connection connection, DataSourceStats stats) {
+            this.target = target;
+            this.connection = connection;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                long start = System.nanoTime();
+                try {
+                    Object result = invokeTarget(target, method, args);
+                    stats.recordSuccess(System.nanoTime() - start);
+                    return result;
+                } catch (SQLException e) {
+                    if (isConnectionFailure(e)) {
+                        stats.recordFailure(System.nanoTime() - start);
+                    } else {
+                        stats.recordSuccess(System.nanoTime() - start);
+                    }
+                    throw e;
+                }
+            } else if ("getConnection".equals(name)) {
+                return connection;
+            } else if (isWrapperMethod(name, proxy, args)) {
+                return "unwrap".equals(name) ? proxy : Boolean.TRUE;
+            } else if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            return invokeTarget(target, method, args);
+        }
+    }
+
+    /**
+     * 是否说明数据源本身不可用：连接类异常（SQLState以08开头）、可恢复异常和超时
+     * 约束冲突、语法错误等由语句本身引起的异常说明数据源仍在正常响应，不计为失败
+     */
+    private static boolean isConnectionFailure(SQLException e) {
+        if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException
+                || e instanceof SQLRecoverableException || e instanceof SQLTimeoutException) {
+            return true;
+        }
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    private static boolean isWrapperMethod(String name, Object proxy, Object[] args) {
+        return ("unwrap".equals(name) || "isWrapperFor".equals(name)) && ((Class<?>) args[0]).isInstance(proxy);
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package io.flexdata.spring.orm.core.datasource;
+
+import io.flexdata.spring.orm.core.table.TableContext;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多数据源并行执行器（scatter-gather）
+ * 在有界线程池中把同一个操作分发到多个数据源并收集结果，总耗时取决于最慢的数据源而不是所有数据源耗时之和。
+ * <p>
+ * 调用线程的数据源映射、表名映射和当前表名会带入工作线程，工作线程上的当前数据源设置为目标数据源，执行结束后恢复原状。
+ * 超时从分发开始计算，到期未完成的数据源计为超时；快速失败策略下任一数据源失败即取消其余任务，
+ * 尽力而为策略下收集所有能拿到的结果。取消通过中断工作线程实现，驱动是否能中断正在执行的SQL取决于驱动本身。
+ * <p>
+ * 以下情况退化为在调用线程上顺序执行：只有一个数据源；当前线程已处于事务同步中（连接绑定在调用线程上）；
+ * 调用发生在工作线程内（嵌套分发可能耗尽线程池导致死锁）；执行器已关闭。
+ * 事务同步中绑定的连接会被所有分片复用，分片跨越多个数据源时直接抛出{@link IllegalStateException}，
+ * 只涉及同一数据源上多张分表时仍可顺序执行。
+ * 队列满时由调用线程直接执行任务，起到背压作用。
+ */
+public class ScatterGatherExecutor {
+
+    /**
+     * 部分失败的处理策略
+     */
+    public enum FailurePolicy {
+        /**
+         * 任一数据源失败或超时即取消其余任务并抛出该异常
+         */
+        FAIL_FAST,
+        /**
+         * 等待所有数据源完成或超时，失败记录在结果中
+         */
+        BEST_EFFORT
+    }
+
+    public static final int DEFAULT_THREADS = 16;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+
+    /**
+     * 标记当前线程正在执行分发出来的任务
+     */
+    private static final ThreadLocal<Boolean> IN_TASK = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor executor;
+    private final long defaultTimeoutMillis;
+
+    public ScatterGatherExecutor() {
+        this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, 0);
+    }
+
+    /**
+     * @param threads 最大线程数，空闲线程60秒后回收
+     * @param queueCapacity 等待队列容量
+     * @param defaultTimeoutMillis 默认超时时间（毫秒），0表示不限制
+     */
+    public ScatterGatherExecutor(int threads, int queueCapacity, long defaultTimeoutMillis) {
+        Assert.isTrue(threads > 0, "Thread count must be positive");
+        Assert.isTrue(queueCapacity > 0, "Queue capacity must be positive");
+        Assert.isTrue(defaultTimeoutMillis >= 0, "Timeout cannot be negative");
+        int pool = POOL_SEQUENCE.incrementAndGet();
+        AtomicInteger threadSequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "scatter-gather-" + pool + "-" + threadSequence.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    /**
+     * 使用默认超时时间和快速失败策略在多个数据源上执行操作
+     */
+    public <T> ScatterGatherResult<T> execute(List<String> dataSourceKeys, DataSourceContext.DataSourceAction<T> action) {
+        return execute(dataSourceKeys, action, defaultTimeoutMillis, FailurePolicy.FAIL_FAST);
+    }
+
+    /**
+     * 在多个数据源上并行执行操作
+     * @param dataSourceKeys 数据源标识列表
+     * @param action 要执行的操作，会在多个线程上同时调用
+     * @param timeoutMillis 超时时间（毫秒），0表示不限制
+     * @param policy 部分失败的处理策略
+     * @param <T> 返回值类型
+     * @return 执行结果
+     */
+    public <T> ScatterGatherResult<T> execute(List<String> dataSourceKeys, DataSourceContext.DataSourceAction<T> action,
+                                              long timeoutMillis, FailurePolicy policy) {
+        Assert.notNull(dataSourceKeys, "DataSource keys cannot be null");
+        Assert.notNull(action, "Action cannot be null");
+        List<ShardTarget> shards = new ArrayList<>(dataSourceKeys.size());
+        for (String dataSourceKey : dataSourceKeys) {
+            shards.add(ShardTarget.of(dataSourceKey));
+        }
+        return executeOnShards(shards, shard -> action.execute(), timeoutMillis, policy);
+    }
+
+    /**
+     * 在多个分片上并行执行操作
+     * 工作线程上的当前数据源设置为分片的数据源，分片的逻辑表到物理表的映射加入{@link TableContext}；
+     * 结果和失败按{@link ShardTarget#getKey()}索引
+     * @param shards 分片列表
+     * @param action 要执行的操作，会在多个线程上同时调用
+     * @param timeoutMillis 超时时间（毫秒），0表示不限制
+     * @param policy 部分失败的处理策略
+     * @param <T> 返回值类型
+     * @return 执行结果
+     */
+    public <T> ScatterGatherResult<T> executeOnShards(List<ShardTarget> shards, ShardAction<T> action,
+                                                      long timeoutMillis, FailurePolicy policy) {
+        Assert.notNull(shards, "Shards cannot be null");
+        Assert.notNull(action, "Action cannot be null");
+        Assert.notNull(policy, "Failure policy cannot be null");
+        Assert.isTrue(timeoutMillis >= 0, "Timeout cannot be negative");
+        boolean synchronizationActive = TransactionSynchronizationManager.isSynchronizationActive();
+        if (synchronizationActive) {
+            Set<String> dataSources = dataSources(shards);
+            if (dataSources.size() > 1) {
+                throw new IllegalStateException("Cannot execute on multiple data sources " + dataSources
+                        + " inside a transaction: the transaction's connection is bound to the calling thread and would "
+                        + "serve every data source. Run cross-shard queries outside the transaction.");
+            }
+        }
+
+        int size = shards.size();
+        List<String> keys = new ArrayList<>(size);
+        for (ShardTarget shard : shards) {
+            keys.add(shard.getKey());
+        }
+        Object[] values = new Object[size];
+        boolean[] completed = new boolean[size];
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        long deadline = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        ContextSnapshot snapshot = ContextSnapshot.capture();
+
+        if (size <= 1 || IN_TASK.get() != null || executor.isShutdown() || synchronizationActive) {
+            for (int i = 0; i < size; i++) {
+                String key = keys.get(i);
+                if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                    failures.put(key, timeout(key, timeoutMillis));
+                    continue;
+                }
+                try {
+                    values[i] = snapshot.run(shards.get(i), action);
+                    completed[i] = true;
+                } catch (RuntimeException | Error e) {
+                    if (policy == FailurePolicy.FAIL_FAST) {
+                        throw e;
+                    }
+                    failures.put(key, e);
+                }
+            }
+            return finish(keys, values, completed, failures, null, policy);
+        }
+
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<Integer>, Integer> indexes = new IdentityHashMap<>(size * 2);
+        Throwable firstFailure = null;
+        boolean failedFast = false;
+        try {
+            for (int i = 0; i < size; i++) {
+                int index = i;
+                ShardTarget shard = shards.get(i);
+                Future<Integer> future = completionService.submit(() -> {
+                    values[index] = snapshot.run(shard, action);
+                    return index;
+                });
+                indexes.put(future, index);
+            }
+
+            for (int remaining = size; remaining > 0; remaining--) {
+                Future<Integer> done;
+                if (deadline == 0) {
+                    done = completionService.take();
+                } else {
+                    long waitNanos = deadline - System.nanoTime();
+                    done = waitNanos > 0 ? completionService.poll(waitNanos, TimeUnit.NANOSECONDS) : completionService.poll();
+                }
+                if (done == null) {
+                    break;
+                }
+                int index = indexes.get(done);
+                try {
+                    done.get();
+                    completed[index] = true;
+                } catch (ExecutionException e) {
+                    failures.put(keys.get(index), e.getCause());
+                    if (firstFailure == null) {
+                        firstFailure = e.getCause();
+                    }
+                    if (policy == FailurePolicy.FAIL_FAST) {
+                        failedFast = true;
+                        break;
+                    }
+                }
+            }
+
+            // 到期仍未完成的数据源计为超时
+            for (int i = 0; i < size && !failedFast; i++) {
+                String key = keys.get(i);
+                if (!completed[i] && !failures.containsKey(key)) {
+                    failures.put(key, timeout(key, timeoutMillis));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for data sources " + keys, e);
+        } finally {
+            for (Future<Integer> future : indexes.keySet()) {
+                future.cancel(true);
+            }
+        }
+        return finish(keys, values, completed, failures, firstFailure, policy);
+    }
+
+    private static <T> ScatterGatherResult<T> finish(List<String> keys, Object[] values, boolean[] completed,
+                                                     Map<String, Throwable> failures, Throwable firstFailure,
+                                                     FailurePolicy policy) {
+        if (policy == FailurePolicy.FAIL_FAST && !failures.isEmpty()) {
+            Throwable failure = firstFailure != null ? firstFailure : failures.values().iterator().next();
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new IllegalStateException("Failed to execute on data sources " + failures.keySet(), failure);
+        }
+        return new ScatterGatherResult<>(keys, values, completed, failures);
+    }
+
+    private static Set<String> dataSources(List<ShardTarget> shards) {
+        Set<String> dataSources = new LinkedHashSet<>();
+        for (ShardTarget shard : shards) {
+            dataSources.add(shard.getDataSource());
+        }
+        return dataSources;
+    }
+
+    private static QueryTimeoutException timeout(String key, long timeoutMillis) {
+        return new QueryTimeoutException("Shard '" + key + "' did not complete within " + timeoutMillis + " ms");
+    }
+
+    public long getDefaultTimeoutMillis() {
+        return defaultTimeoutMillis;
+    }
+
+    /**
+     * 正在执行任务的线程数
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * 等待执行的任务数
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * 关闭线程池，之后的调用在调用线程上顺序执行
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 分片操作接口
+     * @param <T> 返回值类型
+     */
+    @FunctionalInterface
+    public interface ShardAction<T> {
+        T execute(ShardTarget shard);
+    }
+
+    /**
+     * 调用线程上的上下文快照
+     * 任务可能由调用线程直接执行（顺序执行或队列已满），因此执行前后都要保存和恢复所在线程原有的上下文
+     */
+    private static final class ContextSnapshot {
+        private final Map<String, String> dataSourceMappings;
+        private final Map<String, String> tableMappings;
+        private final String currentTable;
+
+        private ContextSnapshot(Map<String, String> dataSourceMappings, Map<String, String> tableMappings, String currentTable) {
+            this.dataSourceMappings = dataSourceMappings;
+            this.tableMappings = tableMappings;
+            this.currentTable = currentTable;
+        }
+
+        static ContextSnapshot capture() {
+            return new ContextSnapshot(DataSourceContext.getAllDataSourceMappings(),
+                    TableContext.getAllTableMappings(), TableContext.getCurrentTable());
+        }
+
+        <T> T run(ShardTarget shard, ShardAction<T> action) {
+            ContextSnapshot previous = capture();
+            String previousDataSource = DataSourceContext.getDataSource();
+            Boolean previousInTask = IN_TASK.get();
+            IN_TASK.set(Boolean.TRUE);
+            try {
+                apply();
+                if (shard.getDataSource() != null) {
+                    DataSourceContext.setDataSource(shard.getDataSource());
+                } else {
+                    DataSourceContext.clearDataSource();
+                }
+                if (shard.isTableMapped()) {
+                    TableContext.setTableMapping(shard.getLogicalTable(), shard.getPhysicalTable());
+                }
+                return action.execute(shard);
+            } finally {
+                previous.apply();
+                if (previousDataSource != null) {
+                    DataSourceContext.setDataSource(previousDataSource);
+                } else {
+                    DataSourceContext.clearDataSource();
+                }
+                if (previousInTask == null) {
+                    IN_TASK.remove();
+                }
+            }
+        }
+
+        private void apply() {
+            DataSourceContext.clearDataSourceMappings();
+            for (Map.Entry<String, String> entry : dataSourceMappings.entrySet()) {
+                DataSourceContext.setDataSourceMapping(entry.getKey(), entry.getValue());
+            }
+            TableContext.clearTableMappings();
+            for (Map.Entry<String, String> entry : tableMappings.entrySet()) {
+                TableContext.setTableMapping(entry.getKey(), entry.getValue());
+            }
+            if (currentTable != null) {
+                TableContext.setTable(currentTable);
+            } else {
+                TableContext.clearTable();
+            }
+        }
+    }
+}
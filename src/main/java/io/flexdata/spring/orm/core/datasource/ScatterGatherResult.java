@@ -0,0 +1,61 @@
+package io.flexdata.spring.orm.core.datasource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多数据源并行执行的结果
+ * 成功的结果按数据源标识列表的顺序保存，失败（包括超时）的数据源与对应的异常单独保存；
+ * 按分片执行时以{@link ShardTarget#getKey()}作为标识
+ *
+ * @param <T> 单个数据源的结果类型
+ */
+public class ScatterGatherResult<T> {
+
+    private final Map<String, T> results;
+    private final Map<String, Throwable> failures;
+
+    ScatterGatherResult(List<String> keys, Object[] values, boolean[] completed, Map<String, Throwable> failures) {
+        Map<String, T> ordered = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (completed[i]) {
+                @SuppressWarnings("unchecked")
+                T value = (T) values[i];
+                ordered.put(keys.get(i), value);
+            }
+        }
+        this.results = Collections.unmodifiableMap(ordered);
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    /**
+     * 成功数据源的结果列表，顺序与传入的数据源标识列表一致
+     */
+    public List<T> getResults() {
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * 按数据源标识索引的成功结果
+     */
+    public Map<String, T> getResultsByDataSource() {
+        return results;
+    }
+
+    /**
+     * 失败或超时的数据源及其异常，超时的异常为{@link org.springframework.dao.QueryTimeoutException}
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * 是否只拿到了部分数据源的结果
+     */
+    public boolean isPartial() {
+        return !failures.isEmpty();
+    }
+}
@@ -0,0 +1,244 @@
+package io.flexdata.spring.orm.core.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 桶迁移期间写操作的同步写入目标
+ * 路由切面在主分片的写操作期间把它绑定到当前线程；仓储写入主分片、确定主键后，把同一行以幂等方式写到同步目标：
+ * 保存为按主键更新、未命中再带主键插入，删除为按主键删除，重复执行结果不变。
+ * 只有分片键值所在的桶正迁往（或迁回）同步目标的行才同步写入，同步目标上其他桶的行不受影响。
+ * <p>
+ * 同步写入使用目标数据源的独立连接，不参与主分片的事务：事务中LOG策略在提交后写入，失败只记录日志和指标；
+ * FAIL策略在提交前写入，失败时主分片的事务随之回滚。没有事务时立即写入，FAIL策略下失败抛给调用方
+ */
+public final class ShadowWrite {
+
+    /**
+     * 同步写入失败的处理策略
+     */
+    public enum FailurePolicy {
+        /**
+         * 记录日志和失败指标，以主分片的结果为准，由迁移的数据校验补齐
+         */
+        LOG,
+        /**
+         * 写操作失败
+         */
+        FAIL
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowWrite.class);
+
+    private static final ThreadLocal<ShadowWrite> CURRENT = new ThreadLocal<>();
+
+    private static final LongAdder WRITES = new LongAdder();
+    private static final LongAdder FAILURES = new LongAdder();
+
+    private final String logicalTable;
+    private final String dataSource;
+    private final String tableName;
+    private final FailurePolicy failurePolicy;
+    private final ShardOwnership ownership;
+
+    /**
+     * @param logicalTable  逻辑表名，只有写这张表的仓储才同步写入
+     * @param dataSource    同步写入的数据源
+     * @param tableName     同步写入的物理表
+     * @param failurePolicy 失败处理策略，为null时按LOG处理
+     */
+    public ShadowWrite(String logicalTable, String dataSource, String tableName, FailurePolicy failurePolicy) {
+        this(logicalTable, dataSource, tableName, failurePolicy, null);
+    }
+
+    /**
+     * @param ownership 表上数据的归属，用于判断哪些行属于迁往同步目标的桶；为null时所有行都同步写入
+     */
+    public ShadowWrite(String logicalTable, String dataSource, String tableName, FailurePolicy failurePolicy,
+                       ShardOwnership ownership) {
+        this.logicalTable = logicalTable;
+        this.dataSource = dataSource;
+        this.tableName = tableName;
+        this.failurePolicy = failurePolicy != null ? failurePolicy : FailurePolicy.LOG;
+        this.ownership = ownership;
+    }
+
+    /**
+     * 当前线程上写入指定逻辑表时需要同步写入的目标，没有时返回null
+     */
+    public static ShadowWrite current(String logicalTable) {
+        ShadowWrite shadow = CURRENT.get();
+        return shadow != null && shadow.logicalTable.equalsIgnoreCase(logicalTable) ? shadow : null;
+    }
+
+    public static ShadowWrite current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 无法同步写入的写操作在桶迁移期间拒绝执行，避免同步目标缺少这次写入
+     *
+     * @throws IllegalStateException 当前线程为该逻辑表绑定了同步写入目标
+     */
+    public static void rejectIfBound(String logicalTable, String operation) {
+        ShadowWrite shadow = current(logicalTable);
+        if (shadow != null) {
+            throw new IllegalStateException(operation + " on table " + logicalTable
+                    + " cannot be replayed to shadow " + shadow.dataSource + "." + shadow.tableName
+                    + " while its buckets are migrating, use EnhancedRepository save/delete/updateByCriteria instead");
+        }
+    }
+
+    public static void set(ShadowWrite shadow) {
+        if (shadow != null) {
+            CURRENT.set(shadow);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 在同步目标上执行写操作
+     *
+     * @param jdbcTemplate 仓储使用的模板，其数据源为路由数据源时直接取同步目标对应的数据源
+     * @param action       写操作，传入的表名为同步目标的物理表
+     */
+    public void execute(NamedParameterJdbcTemplate jdbcTemplate, Action action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(jdbcTemplate, action);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (failurePolicy == FailurePolicy.FAIL) {
+                    write(jdbcTemplate, action);
+                }
+            }
+
+            @Override
+            public void afterCommit() {
+                if (failurePolicy == FailurePolicy.LOG) {
+                    write(jdbcTemplate, action);
+                }
+            }
+        });
+    }
+
+    private void write(NamedParameterJdbcTemplate jdbcTemplate, Action action) {
+        try {
+            DataSource target = targetDataSource(jdbcTemplate);
+            if (target != null) {
+                action.write(new NamedParameterJdbcTemplate(target), tableName);
+            } else {
+                // 不是路由数据源时只能切换查找键，事务中会复用已绑定的连接
+                DataSourceContext.executeWithDataSource(dataSource, () -> action.write(jdbcTemplate, tableName));
+            }
+            WRITES.increment();
+        } catch (RuntimeException e) {
+            FAILURES.increment();
+            logger.warn("Shadow write to {}.{} failed", dataSource, tableName, e);
+            if (failurePolicy == FailurePolicy.FAIL) {
+                throw new IllegalStateException("Shadow write to " + dataSource + "." + tableName + " failed", e);
+            }
+        }
+    }
+
+    private DataSource targetDataSource(NamedParameterJdbcTemplate jdbcTemplate) {
+        DataSource routing = jdbcTemplate.getJdbcTemplate().getDataSource();
+        if (!(routing instanceof AbstractRoutingDataSource)) {
+            return null;
+        }
+        DataSource target = ((AbstractRoutingDataSource) routing).getResolvedDataSources().get(dataSource);
+        if (target == null) {
+            throw new IllegalStateException("Unknown shadow data source: " + dataSource);
+        }
+        return target;
+    }
+
+    public String getLogicalTable() {
+        return logicalTable;
+    }
+
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public FailurePolicy getFailurePolicy() {
+        return failurePolicy;
+    }
+
+    public ShardOwnership getOwnership() {
+        return ownership;
+    }
+
+    /**
+     * 分片键，未设置数据归属时返回null
+     */
+    public String getShardingKey() {
+        return ownership != null ? ownership.getShardingKey() : null;
+    }
+
+    /**
+     * 分片键值所在的行是否需要同步写入：其所在的桶正以本同步目标为另一个分片；未设置数据归属时总是返回true
+     */
+    public boolean covers(Object shardingValue) {
+        if (ownership == null) {
+            return true;
+        }
+        ShardTarget shadow = ownership.shadowOf(shardingValue);
+        return shadow != null && dataSource.equals(shadow.getDataSource()) && tableName.equals(shadow.getPhysicalTable());
+    }
+
+    /**
+     * 成功的同步写入次数
+     */
+    public static long getWriteCount() {
+        return WRITES.sum();
+    }
+
+    /**
+     * 失败的同步写入次数
+     */
+    public static long getFailureCount() {
+        return FAILURES.sum();
+    }
+
+    /**
+     * 注册Micrometer指标
+     */
+    public static void bindTo(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("orm.shadow.writes", WRITES, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("orm.shadow.write.failures", FAILURES, LongAdder::sum).register(meterRegistry);
+    }
+
+    @Override
+    public String toString() {
+        return "ShadowWrite{" + logicalTable + " -> " + dataSource + "." + tableName + ", " + failurePolicy + "}";
+    }
+
+    /**
+     * 同步写入操作
+     */
+    @FunctionalInterface
+    public interface Action {
+        void write(NamedParameterJdbcTemplate jdbcTemplate, String tableName);
+    }
+}
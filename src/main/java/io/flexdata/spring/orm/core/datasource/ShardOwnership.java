@@ -0,0 +1,35 @@
+package io.flexdata.spring.orm.core.datasource;
+
+/**
+ * 分片上数据的归属
+ * 桶迁移期间迁移中的桶在原分片和目标分片上都有数据，跨分片读取时只能以该桶读写所用的分片为准：
+ * 广播查询按行的分片键值丢弃非归属分片上的行，无法按行区分的跨分片计数和聚合在迁移期间拒绝执行。
+ * 实现每次调用都读取当前的路由方案，迁移开始或结束后无需重新设置
+ */
+public interface ShardOwnership {
+
+    /**
+     * 逻辑表名
+     */
+    String getLogicalTable();
+
+    /**
+     * 分片键
+     */
+    String getShardingKey();
+
+    /**
+     * 当前是否有正在迁移的桶
+     */
+    boolean isMigrating();
+
+    /**
+     * 分片键值的数据是否以该分片为准，分片键值为null时返回true
+     */
+    boolean owns(ShardTarget shard, Object shardingValue);
+
+    /**
+     * 分片键值所在的桶正在迁移时写操作需要同时写入的分片，不在迁移中或分片键值为null时返回null
+     */
+    ShardTarget shadowOf(Object shardingValue);
+}
@@ -0,0 +1,80 @@
+package io.flexdata.spring.orm.core.datasource;
+
+import java.util.Objects;
+
+/**
+ * 分片目标
+ * 一个分片由数据源和该数据源上的物理表组成；只按数据源分片时物理表为空，数据源为空表示使用默认数据源
+ */
+public final class ShardTarget {
+
+    private final String dataSource;
+    private final String logicalTable;
+    private final String physicalTable;
+
+    public ShardTarget(String dataSource, String logicalTable, String physicalTable) {
+        this.dataSource = dataSource;
+        this.logicalTable = logicalTable;
+        this.physicalTable = physicalTable;
+    }
+
+    /**
+     * 只指定数据源的分片
+     */
+    public static ShardTarget of(String dataSource) {
+        return new ShardTarget(dataSource, null, null);
+    }
+
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public String getLogicalTable() {
+        return logicalTable;
+    }
+
+    public String getPhysicalTable() {
+        return physicalTable;
+    }
+
+    /**
+     * 物理表是否与逻辑表不同，执行时需要替换表名
+     */
+    public boolean isTableMapped() {
+        return logicalTable != null && physicalTable != null && !logicalTable.equals(physicalTable);
+    }
+
+    /**
+     * 分片的唯一标识，形如"数据源.物理表"；没有物理表时为数据源标识
+     */
+    public String getKey() {
+        if (physicalTable == null) {
+            return String.valueOf(dataSource);
+        }
+        return dataSource != null ? dataSource + "." + physicalTable : physicalTable;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShardTarget)) {
+            return false;
+        }
+        ShardTarget that = (ShardTarget) o;
+        return Objects.equals(dataSource, that.dataSource)
+                && Objects.equals(logicalTable, that.logicalTable)
+                && Objects.equals(physicalTable, that.physicalTable);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dataSource, logicalTable, physicalTable);
+    }
+
+    @Override
+    public String toString() {
+        return getKey();
+    }
+}
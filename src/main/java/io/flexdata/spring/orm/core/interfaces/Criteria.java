@@ -10,4 +10,11 @@ public interface Criteria {
     Map<String, Object> getParameters();
     Criteria and(Criteria other);
     Criteria or(Criteria other);
+
+    /**
+     * 按条件结构接受访问，默认作为无法识别结构的条件处理
+     */
+    default <R> R accept(CriteriaVisitor<R> visitor) {
+        return visitor.visitOther(this);
+    }
 }
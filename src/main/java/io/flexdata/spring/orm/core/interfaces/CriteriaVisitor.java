@@ -0,0 +1,48 @@
+package io.flexdata.spring.orm.core.interfaces;
+
+import java.util.Collection;
+
+/**
+ * 查询条件访问者
+ * 按条件的结构而不是SQL文本处理条件树，例如在应用内对合并后的行求值或根据分片键裁剪分片；
+ * 无法识别结构的条件（原生SQL、子查询、EXISTS等）交给{@link #visitOther(Criteria)}
+ *
+ * @param <R> 访问结果类型
+ */
+public interface CriteriaVisitor<R> {
+
+    /**
+     * 字段与值的比较，operator为=、<>、>、>=、<、<=、LIKE、NOT LIKE等
+     */
+    R visitComparison(String field, String operator, Object value);
+
+    /**
+     * IN / NOT IN
+     */
+    R visitIn(String field, Collection<?> values, boolean negated);
+
+    /**
+     * BETWEEN，两端都包含
+     */
+    R visitBetween(String field, Object start, Object end);
+
+    /**
+     * IS NULL / IS NOT NULL
+     */
+    R visitNull(String field, boolean isNull);
+
+    /**
+     * AND / OR组合
+     */
+    R visitComposite(Criteria left, String operator, Criteria right);
+
+    /**
+     * NOT
+     */
+    R visitNot(Criteria criteria);
+
+    /**
+     * 其他无法按结构访问的条件
+     */
+    R visitOther(Criteria criteria);
+}
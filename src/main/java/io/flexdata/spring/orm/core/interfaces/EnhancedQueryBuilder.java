@@ -1,5 +1,6 @@
 package io.flexdata.spring.orm.core.interfaces;
 
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
 import io.flexdata.spring.orm.core.sql.SortDirection;
 import io.flexdata.spring.orm.core.sql.complex.SubQuery;
 import org.springframework.data.domain.Page;
@@ -7,6 +8,8 @@ import org.springframework.data.domain.Pageable;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * 增强的查询构建器接口
@@ -73,8 +76,14 @@ public interface EnhancedQueryBuilder<T> {
     // 分页
     EnhancedQueryBuilder<T> limit(int limit);
     EnhancedQueryBuilder<T> offset(int offset);
+    EnhancedQueryBuilder<T> fetchSize(int fetchSize);
     EnhancedQueryBuilder<T> page(int page, int size);
     
+    // 分片广播查询：在所有分片上并行执行，ORDER BY和LIMIT offset+n下推到每个分片，再按ORDER BY归并
+    EnhancedQueryBuilder<T> broadcast(List<ShardTarget> shards);
+    // 只在给定分片上广播，每个分片额外附加各自的条件（与where条件AND），通常来自分片裁剪；空Map表示没有分片需要查询
+    EnhancedQueryBuilder<T> broadcast(Map<ShardTarget, Criteria> shardCriteria);
+    
     // 窗口函数
     EnhancedQueryBuilder<T> selectWindowFunction(String function, String field, String alias);
     EnhancedQueryBuilder<T> selectRowNumber(String alias);
@@ -97,6 +106,10 @@ public interface EnhancedQueryBuilder<T> {
     long count();
     T executeFirst();
     T executeUnique();
+
+    // 流式执行：逐行读取结果，Stream需要在try-with-resources中关闭
+    Stream<T> stream();
+    void forEach(Consumer<? super T> action);
     
     // 获取生成的SQL和参数
     String toSql();
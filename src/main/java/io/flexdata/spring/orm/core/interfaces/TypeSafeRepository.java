@@ -1,11 +1,15 @@
 package io.flexdata.spring.orm.core.interfaces;
 
+import io.flexdata.spring.orm.core.sql.KeysetPageRequest;
+import io.flexdata.spring.orm.core.sql.KeysetSlice;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * 类型安全的仓储接口
@@ -42,6 +46,22 @@ public interface TypeSafeRepository<T, ID> {
      */
     Page<T> findByCriteria(TypeSafeCriteria<T> criteria, Pageable pageable);
 
+    /**
+     * 键集分页查询：按排序字段和主键定位到上一页之后，不执行COUNT，深分页代价与页号无关
+     */
+    KeysetSlice<T> findByCriteria(TypeSafeCriteria<T> criteria, KeysetPageRequest request);
+
+    /**
+     * 流式查询，结果逐行读取而不整体加载到内存
+     * 返回的Stream持有数据库连接，必须在try-with-resources中使用
+     */
+    Stream<T> stream(TypeSafeCriteria<T> criteria);
+
+    /**
+     * 逐行处理查询结果，处理完毕后立即释放连接
+     */
+    void forEach(TypeSafeCriteria<T> criteria, Consumer<? super T> action);
+
     /**
      * 统计总数
      */
@@ -0,0 +1,20 @@
+package io.flexdata.spring.orm.core.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 列值提取器
+ * 在映射计划构建时按字段类型选定，逐行提取时直接按列索引读取，不再做类型分派
+ */
+@FunctionalInterface
+public interface ColumnExtractor {
+
+    /**
+     * 读取指定列的值，SQL NULL返回null
+     *
+     * @param rs 结果集
+     * @param columnIndex 列索引（从1开始）
+     */
+    Object extract(ResultSet rs, int columnIndex) throws SQLException;
+}
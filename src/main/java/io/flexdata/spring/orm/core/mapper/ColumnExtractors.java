@@ -0,0 +1,141 @@
+package io.flexdata.spring.orm.core.mapper;
+
+import java.math.BigDecimal;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 列值提取器工厂
+ * 为常见字段类型提供按列索引读取的类型化提取器，
+ * 其余类型交给UniversalRowMapper的转换逻辑处理
+ */
+final class ColumnExtractors {
+
+    private ColumnExtractors() {
+    }
+
+    /**
+     * 为字段类型选择提取器
+     *
+     * @param fieldType 字段类型
+     * @param layout 列布局
+     * @param columnIndex 列索引（从1开始）
+     * @param fallback 通用转换器，用于没有快速路径的类型
+     */
+    static ColumnExtractor forType(Class<?> fieldType, ColumnLayout layout, int columnIndex,
+                                   UniversalRowMapper<?> fallback) {
+        if (fieldType == String.class) {
+            int jdbcType = layout.getColumnType(columnIndex);
+            if (jdbcType == Types.CLOB || jdbcType == Types.NCLOB) {
+                return ColumnExtractors::extractClob;
+            }
+            return (rs, i) -> rs.getString(i);
+        } else if (fieldType == Integer.class || fieldType == int.class) {
+            return (rs, i) -> {
+                int value = rs.getInt(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (fieldType == Long.class || fieldType == long.class) {
+            return (rs, i) -> {
+                long value = rs.getLong(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (fieldType == Double.class || fieldType == double.class) {
+            return (rs, i) -> {
+                double value = rs.getDouble(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (fieldType == Float.class || fieldType == float.class) {
+            return (rs, i) -> {
+                float value = rs.getFloat(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (fieldType == Boolean.class || fieldType == boolean.class) {
+            return (rs, i) -> {
+                boolean value = rs.getBoolean(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (fieldType == BigDecimal.class) {
+            return (rs, i) -> rs.getBigDecimal(i);
+        } else if (fieldType == java.sql.Date.class) {
+            return (rs, i) -> rs.getDate(i);
+        } else if (fieldType == Time.class) {
+            return (rs, i) -> rs.getTime(i);
+        } else if (fieldType == Timestamp.class) {
+            return (rs, i) -> rs.getTimestamp(i);
+        } else if (fieldType == LocalDate.class) {
+            return (rs, i) -> {
+                java.sql.Date date = rs.getDate(i);
+                return date != null ? date.toLocalDate() : null;
+            };
+        } else if (fieldType == LocalTime.class) {
+            return (rs, i) -> {
+                Time time = rs.getTime(i);
+                return time != null ? time.toLocalTime() : null;
+            };
+        } else if (fieldType == LocalDateTime.class) {
+            return (rs, i) -> {
+                Timestamp timestamp = rs.getTimestamp(i);
+                return timestamp != null ? timestamp.toLocalDateTime() : null;
+            };
+        } else if (fieldType == Instant.class) {
+            return (rs, i) -> {
+                Timestamp timestamp = rs.getTimestamp(i);
+                return timestamp != null ? timestamp.toInstant() : null;
+            };
+        } else if (fieldType == byte[].class) {
+            return (rs, i) -> rs.getBytes(i);
+        } else if (fieldType.isEnum()) {
+            return enumExtractor(fieldType);
+        }
+
+        // 其他类型（UUID、JSON、数组、数据库特有类型等）沿用通用转换逻辑
+        String columnLabel = layout.getColumnLabel(columnIndex);
+        return (rs, i) -> fallback.convertValue(rs, layout, columnLabel, fieldType);
+    }
+
+    private static Object extractClob(ResultSet rs, int columnIndex) throws SQLException {
+        Clob clob = rs.getClob(columnIndex);
+        return clob != null ? clob.getSubString(1, (int) clob.length()) : null;
+    }
+
+    /**
+     * 枚举提取器：预先建立名称到常量的映射，名称不匹配时按序号解析
+     */
+    private static ColumnExtractor enumExtractor(Class<?> enumType) {
+        Object[] constants = enumType.getEnumConstants();
+        Map<String, Object> byName = new HashMap<>(constants.length * 2);
+        for (Object constant : constants) {
+            byName.put(((Enum<?>) constant).name(), constant);
+        }
+
+        return (rs, i) -> {
+            String value = rs.getString(i);
+            if (value == null) {
+                return null;
+            }
+            Object constant = byName.get(value);
+            if (constant != null) {
+                return constant;
+            }
+            try {
+                int ordinal = Integer.parseInt(value);
+                if (ordinal >= 0 && ordinal < constants.length) {
+                    return constants[ordinal];
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            return null;
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package io.flexdata.spring.orm.core.mapper;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 结果集列布局
+ * 一次性读取ResultSetMetaData，保存列标签、列名、JDBC类型和厂商类型名，
+ * 之后按列名查找列索引时不再访问元数据
+ */
+public final class ColumnLayout {
+
+    private final String[] columnLabels;
+    private final String[] columnNames;
+    private final int[] columnTypes;
+    private final String[] columnTypeNames;
+    private final Map<String, Integer> indexByName;
+    private final int hash;
+
+    private ColumnLayout(String[] columnLabels, String[] columnNames,
+                         int[] columnTypes, String[] columnTypeNames) {
+        this.columnLabels = columnLabels;
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        this.columnTypeNames = columnTypeNames;
+        this.indexByName = new HashMap<>(columnLabels.length * 4);
+
+        // 标签优先于列名，与原hasColumn的匹配规则保持一致（大小写不敏感）
+        for (int i = columnLabels.length - 1; i >= 0; i--) {
+            if (columnNames[i] != null) {
+                indexByName.put(columnNames[i].toLowerCase(Locale.ROOT), i + 1);
+            }
+        }
+        for (int i = columnLabels.length - 1; i >= 0; i--) {
+            if (columnLabels[i] != null) {
+                indexByName.put(columnLabels[i].toLowerCase(Locale.ROOT), i + 1);
+            }
+        }
+
+        this.hash = 31 * Arrays.hashCode(columnLabels) + Arrays.hashCode(columnTypeNames);
+    }
+
+    /**
+     * 从结果集元数据构建列布局
+     */
+    public static ColumnLayout from(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        String[] names = new String[columnCount];
+        int[] types = new int[columnCount];
+        String[] typeNames = new String[columnCount];
+
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+            names[i] = metaData.getColumnName(i + 1);
+            types[i] = metaData.getColumnType(i + 1);
+            typeNames[i] = metaData.getColumnTypeName(i + 1);
+        }
+
+        return new ColumnLayout(labels, names, types, typeNames);
+    }
+
+    /**
+     * 结果集的列数、列标签和JDBC类型是否与本布局一致
+     * 只比较按顺序读取的标签和类型，不重建名称索引，供缓存命中时校验
+     */
+    public boolean matches(ResultSetMetaData metaData) throws SQLException {
+        if (metaData.getColumnCount() != columnLabels.length) {
+            return false;
+        }
+        for (int i = 0; i < columnLabels.length; i++) {
+            if (!Objects.equals(columnLabels[i], metaData.getColumnLabel(i + 1))
+                    || columnTypes[i] != metaData.getColumnType(i + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按列名或列标签查找列索引（从1开始），不存在时返回-1
+     */
+    public int indexOf(String columnName) {
+        if (columnName == null) {
+            return -1;
+        }
+        Integer index = indexByName.get(columnName.toLowerCase(Locale.ROOT));
+        return index != null ? index : -1;
+    }
+
+    public boolean hasColumn(String columnName) {
+        return indexOf(columnName) > 0;
+    }
+
+    public int getColumnCount() {
+        return columnLabels.length;
+    }
+
+    public String getColumnLabel(int index) {
+        return columnLabels[index - 1];
+    }
+
+    public int getColumnType(int index) {
+        return columnTypes[index - 1];
+    }
+
+    public String getColumnTypeName(int index) {
+        return columnTypeNames[index - 1];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ColumnLayout)) return false;
+        ColumnLayout that = (ColumnLayout) o;
+        return hash == that.hash
+                && Arrays.equals(columnLabels, that.columnLabels)
+                && Arrays.equals(columnTypes, that.columnTypes)
+                && Arrays.equals(columnTypeNames, that.columnTypeNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnLayout" + Arrays.toString(columnLabels);
+    }
+}
@@ -0,0 +1,103 @@
+package io.flexdata.spring.orm.core.mapper;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 结果集列布局缓存
+ * 以生成的SQL字符串为键缓存列布局，同一SQL的后续执行不再逐列读取ResultSetMetaData；
+ * 超过容量时淘汰最近最少使用的SQL
+ */
+public class ColumnLayoutCache {
+
+    /** 默认最多缓存的SQL数量 */
+    public static final int DEFAULT_MAX_ENTRIES = 2048;
+
+    private final Cache<String, ColumnLayout> layouts;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder metadataReadCount = new LongAdder();
+
+    public ColumnLayoutCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public ColumnLayoutCache(int maxEntries) {
+        this.layouts = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .build();
+    }
+
+    /**
+     * 获取结果集的列布局
+     * 命中时按顺序校验列标签和类型，表结构变化（如SELECT *在DDL后增删列）或同一SQL在列顺序不同的数据源上执行时
+     * 重新读取元数据并替换缓存的布局，不会把属性绑定到错误的列
+     *
+     * @param sql 生成结果集的SQL，为null时不缓存
+     * @param rs 结果集
+     */
+    public ColumnLayout resolve(String sql, ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        if (sql != null) {
+            ColumnLayout cached = layouts.getIfPresent(sql);
+            if (cached != null && cached.matches(metaData)) {
+                hitCount.increment();
+                return cached;
+            }
+        }
+
+        missCount.increment();
+        metadataReadCount.increment();
+        ColumnLayout layout = ColumnLayout.from(metaData);
+        if (sql != null) {
+            layouts.put(sql, layout);
+        }
+        return layout;
+    }
+
+    /** 命中次数 */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /** 未命中次数 */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /** 读取元数据构建布局的次数 */
+    public long getMetadataReadCount() {
+        return metadataReadCount.sum();
+    }
+
+    /** 命中率 */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /** 清空缓存 */
+    public void clear() {
+        layouts.invalidateAll();
+    }
+
+    /** 重置统计计数 */
+    public void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+        metadataReadCount.reset();
+    }
+
+    /** 获取缓存大小 */
+    public int size() {
+        return (int) layouts.size();
+    }
+}
@@ -0,0 +1,176 @@
+package io.flexdata.spring.orm.core.mapper;
+
+import io.flexdata.spring.orm.core.metadata.EntityMetadata;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.metadata.FieldMetadata;
+import io.flexdata.spring.orm.core.metadata.PropertyAccessor;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 预编译行映射器
+ * 按（实体类, 结果集列布局）构建一次映射计划：预先解析列索引、选定类型化提取器，并复用元数据中的属性访问器，
+ * 逐行映射时不再做列名查找、类型分派和反射调用
+ */
+public class CompiledRowMapper<T> implements RowMapper<T> {
+
+    private final Class<T> entityClass;
+    private final EntityMetadataRegistry metadataRegistry;
+    private final UniversalRowMapper<T> fallbackMapper;
+    private final MethodHandle constructor;
+    private final ConcurrentMap<ColumnLayout, MappingPlan> planCache;
+    private final ColumnLayoutCache layoutCache;
+    private final String sql;
+
+    /**
+     * 当前线程正在映射的结果集及其计划，同一结果集的后续行直接复用
+     */
+    private final ThreadLocal<ResultSetBinding<MappingPlan>> boundPlan;
+
+    public CompiledRowMapper(Class<T> entityClass, EntityMetadataRegistry metadataRegistry) {
+        this.entityClass = entityClass;
+        this.metadataRegistry = metadataRegistry;
+        this.fallbackMapper = new UniversalRowMapper<>(entityClass, metadataRegistry);
+        this.constructor = resolveConstructor(entityClass);
+        this.planCache = new ConcurrentHashMap<>();
+        this.layoutCache = null;
+        this.sql = null;
+        this.boundPlan = new ThreadLocal<>();
+    }
+
+    private CompiledRowMapper(CompiledRowMapper<T> source, ColumnLayoutCache layoutCache, String sql) {
+        this.entityClass = source.entityClass;
+        this.metadataRegistry = source.metadataRegistry;
+        this.fallbackMapper = source.fallbackMapper;
+        this.constructor = source.constructor;
+        this.planCache = source.planCache;
+        this.layoutCache = layoutCache;
+        this.sql = sql;
+        this.boundPlan = source.boundPlan;
+    }
+
+    /**
+     * 创建绑定到指定SQL的映射器视图
+     * 同一SQL的多次执行复用缓存中的列布局，映射计划与当前映射器共享
+     */
+    public CompiledRowMapper<T> forSql(String sql, ColumnLayoutCache layoutCache) {
+        return new CompiledRowMapper<>(this, layoutCache, sql);
+    }
+
+    @Override
+    public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        MappingPlan plan = resolvePlan(rs);
+        try {
+            return plan.map(rs);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SQLException("Failed to map row to entity: " + entityClass.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * 获取结果集对应的映射计划，每个结果集只读取一次元数据
+     */
+    private MappingPlan resolvePlan(ResultSet rs) throws SQLException {
+        ResultSetBinding<MappingPlan> binding = boundPlan.get();
+        MappingPlan plan = binding != null ? binding.get(rs) : null;
+        if (plan != null) {
+            return plan;
+        }
+
+        ColumnLayout layout = layoutCache != null ? layoutCache.resolve(sql, rs) : ColumnLayout.from(rs.getMetaData());
+        plan = planCache.computeIfAbsent(layout, this::buildPlan);
+        boundPlan.set(new ResultSetBinding<>(rs, plan));
+        return plan;
+    }
+
+    private MappingPlan buildPlan(ColumnLayout layout) {
+        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+        List<Integer> indexes = new ArrayList<>();
+        List<ColumnExtractor> extractors = new ArrayList<>();
+        List<PropertyAccessor> accessors = new ArrayList<>();
+
+        for (FieldMetadata fieldMeta : metadata.getFields().values()) {
+            int columnIndex = layout.indexOf(fieldMeta.getColumnName());
+            if (columnIndex < 0) {
+                continue;
+            }
+
+            indexes.add(columnIndex);
+            extractors.add(ColumnExtractors.forType(fieldMeta.getFieldType(), layout, columnIndex, fallbackMapper));
+            accessors.add(fieldMeta.getAccessor());
+        }
+
+        int[] indexArray = new int[indexes.size()];
+        for (int i = 0; i < indexArray.length; i++) {
+            indexArray[i] = indexes.get(i);
+        }
+        return new MappingPlan(indexArray,
+                extractors.toArray(new ColumnExtractor[0]),
+                accessors.toArray(new PropertyAccessor[0]));
+    }
+
+    private static MethodHandle resolveConstructor(Class<?> entityClass) {
+        try {
+            Constructor<?> ctor = entityClass.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            return MethodHandles.lookup().unreflectConstructor(ctor)
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Entity class requires a no-arg constructor: " + entityClass.getName(), e);
+        }
+    }
+
+    /**
+     * 已编译计划数量（每种列布局一个）
+     */
+    public int getPlanCount() {
+        return planCache.size();
+    }
+
+    /**
+     * 清空已编译的映射计划
+     */
+    public void clearPlans() {
+        planCache.clear();
+        boundPlan.remove();
+    }
+
+    /**
+     * 映射计划：列索引、提取器和属性访问器一一对应
+     */
+    private final class MappingPlan {
+        private final int[] columnIndexes;
+        private final ColumnExtractor[] extractors;
+        private final PropertyAccessor[] accessors;
+
+        MappingPlan(int[] columnIndexes, ColumnExtractor[] extractors, PropertyAccessor[] accessors) {
+            this.columnIndexes = columnIndexes;
+            this.extractors = extractors;
+            this.accessors = accessors;
+        }
+
+        @SuppressWarnings("unchecked")
+        T map(ResultSet rs) throws Throwable {
+            T instance = (T) (Object) constructor.invokeExact();
+            for (int i = 0; i < columnIndexes.length; i++) {
+                Object value = extractors[i].extract(rs, columnIndexes[i]);
+                if (value != null) {
+                    accessors[i].set(instance, value);
+                }
+            }
+            return instance;
+        }
+    }
+}
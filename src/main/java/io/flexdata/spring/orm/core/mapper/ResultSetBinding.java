@@ -0,0 +1,27 @@
+package io.flexdata.spring.orm.core.mapper;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+
+/**
+ * 结果集绑定
+ * 记录当前线程正在映射的结果集及其派生数据（列布局、映射计划），同一结果集的后续行直接复用；
+ * 弱引用避免线程长期持有已关闭的结果集
+ */
+final class ResultSetBinding<V> {
+
+    private final WeakReference<ResultSet> resultSet;
+    private final V value;
+
+    ResultSetBinding(ResultSet resultSet, V value) {
+        this.resultSet = new WeakReference<>(resultSet);
+        this.value = value;
+    }
+
+    /**
+     * 结果集相同时返回绑定的数据，否则返回null
+     */
+    V get(ResultSet rs) {
+        return resultSet.get() == rs ? value : null;
+    }
+}
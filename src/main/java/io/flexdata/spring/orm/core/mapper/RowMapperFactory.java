@@ -10,17 +10,21 @@ import java.util.concurrent.ConcurrentMap;
 
 /**
  * RowMapper工厂类
- * 根据配置选择使用通用RowMapper或Spring默认的BeanPropertyRowMapper
+ * 根据配置选择使用通用RowMapper、预编译RowMapper或Spring默认的BeanPropertyRowMapper
  */
 @Component
 public class RowMapperFactory {
     
     private final EntityMetadataRegistry metadataRegistry;
     private final ConcurrentMap<Class<?>, RowMapper<?>> mapperCache = new ConcurrentHashMap<>();
+    private final ColumnLayoutCache layoutCache = new ColumnLayoutCache();
     
     // 配置项：是否启用通用RowMapper
     private boolean enableUniversalMapper = true;
     
+    // 配置项：是否启用预编译RowMapper（需同时启用通用RowMapper）
+    private boolean enableCompiledMapper = false;
+    
     public RowMapperFactory(EntityMetadataRegistry metadataRegistry) {
         this.metadataRegistry = metadataRegistry;
     }
@@ -33,11 +37,28 @@ public class RowMapperFactory {
         return (RowMapper<T>) mapperCache.computeIfAbsent(entityClass, this::createRowMapper);
     }
     
+    /**
+     * 获取绑定到指定SQL的RowMapper
+     * 同一SQL的多次执行复用结果集列布局，不再重复读取ResultSetMetaData
+     */
+    @SuppressWarnings("unchecked")
+    public <T> RowMapper<T> getRowMapper(Class<T> entityClass, String sql) {
+        RowMapper<T> mapper = getRowMapper(entityClass);
+        if (mapper instanceof CompiledRowMapper) {
+            return ((CompiledRowMapper<T>) mapper).forSql(sql, layoutCache);
+        } else if (mapper instanceof UniversalRowMapper) {
+            return ((UniversalRowMapper<T>) mapper).forSql(sql, layoutCache);
+        }
+        return mapper;
+    }
+    
     /**
      * 创建RowMapper实例
      */
     private <T> RowMapper<T> createRowMapper(Class<T> entityClass) {
-        if (enableUniversalMapper) {
+        if (enableUniversalMapper && enableCompiledMapper) {
+            return new CompiledRowMapper<>(entityClass, metadataRegistry);
+        } else if (enableUniversalMapper) {
             return new UniversalRowMapper<>(entityClass, metadataRegistry);
         } else {
             return new BeanPropertyRowMapper<>(entityClass);
@@ -51,6 +72,13 @@ public class RowMapperFactory {
         return new UniversalRowMapper<>(entityClass, metadataRegistry);
     }
     
+    /**
+     * 强制使用预编译RowMapper
+     */
+    public <T> RowMapper<T> getCompiledRowMapper(Class<T> entityClass) {
+        return new CompiledRowMapper<>(entityClass, metadataRegistry);
+    }
+    
     /**
      * 强制使用Spring默认RowMapper
      */
@@ -74,11 +102,28 @@ public class RowMapperFactory {
         return enableUniversalMapper;
     }
     
+    /**
+     * 设置是否启用预编译RowMapper
+     */
+    public void setEnableCompiledMapper(boolean enableCompiledMapper) {
+        this.enableCompiledMapper = enableCompiledMapper;
+        // 清空缓存，强制重新创建
+        mapperCache.clear();
+    }
+    
+    /**
+     * 检查是否启用了预编译RowMapper
+     */
+    public boolean isCompiledMapperEnabled() {
+        return enableCompiledMapper;
+    }
+    
     /**
      * 清空RowMapper缓存
      */
     public void clearCache() {
         mapperCache.clear();
+        layoutCache.clear();
     }
     
     /**
@@ -87,4 +132,11 @@ public class RowMapperFactory {
     public int getCacheSize() {
         return mapperCache.size();
     }
+    
+    /**
+     * 获取结果集列布局缓存（含命中统计）
+     */
+    public ColumnLayoutCache getLayoutCache() {
+        return layoutCache;
+    }
 }
\ No newline at end of file
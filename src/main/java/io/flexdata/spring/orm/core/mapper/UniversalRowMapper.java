@@ -23,11 +23,35 @@ public class UniversalRowMapper<T> implements RowMapper<T> {
     private final Class<T> entityClass;
     private final EntityMetadataRegistry metadataRegistry;
     private final ObjectMapper objectMapper;
+    private final ColumnLayoutCache layoutCache;
+    private final String sql;
+    
+    /**
+     * 当前线程正在映射的结果集的列布局，每个结果集只读取一次元数据
+     */
+    private final ThreadLocal<ResultSetBinding<ColumnLayout>> boundLayout;
     
     public UniversalRowMapper(Class<T> entityClass, EntityMetadataRegistry metadataRegistry) {
+        this(entityClass, metadataRegistry, new ObjectMapper(), null, null, new ThreadLocal<>());
+    }
+    
+    private UniversalRowMapper(Class<T> entityClass, EntityMetadataRegistry metadataRegistry,
+                               ObjectMapper objectMapper, ColumnLayoutCache layoutCache, String sql,
+                               ThreadLocal<ResultSetBinding<ColumnLayout>> boundLayout) {
         this.entityClass = entityClass;
         this.metadataRegistry = metadataRegistry;
-        this.objectMapper = new ObjectMapper();
+        this.objectMapper = objectMapper;
+        this.layoutCache = layoutCache;
+        this.sql = sql;
+        this.boundLayout = boundLayout;
+    }
+    
+    /**
+     * 创建绑定到指定SQL的映射器视图
+     * 同一SQL的多次执行复用缓存中的列布局，其余状态与当前映射器共享
+     */
+    public UniversalRowMapper<T> forSql(String sql, ColumnLayoutCache layoutCache) {
+        return new UniversalRowMapper<>(entityClass, metadataRegistry, objectMapper, layoutCache, sql, boundLayout);
     }
     
     @Override
@@ -35,11 +59,12 @@ public class UniversalRowMapper<T> implements RowMapper<T> {
         try {
             T instance = entityClass.getDeclaredConstructor().newInstance();
             EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+            ColumnLayout layout = resolveLayout(rs);
             
             for (FieldMetadata field : metadata.getFields().values()) {
-                Object value = extractValue(rs, field.getColumnName(), field.getFieldType());
+                Object value = extractValue(rs, layout, field.getColumnName(), field.getFieldType());
                 if (value != null) {
-                    setFieldValue(instance, field.getFieldName(), value);
+                    field.setValue(instance, value);
                 }
             }
             
@@ -49,15 +74,36 @@ public class UniversalRowMapper<T> implements RowMapper<T> {
         }
     }
     
+    /**
+     * 获取结果集的列布局，同一结果集的后续行直接复用
+     */
+    private ColumnLayout resolveLayout(ResultSet rs) throws SQLException {
+        ResultSetBinding<ColumnLayout> binding = boundLayout.get();
+        ColumnLayout layout = binding != null ? binding.get(rs) : null;
+        if (layout == null) {
+            layout = layoutCache != null ? layoutCache.resolve(sql, rs) : ColumnLayout.from(rs.getMetaData());
+            boundLayout.set(new ResultSetBinding<>(rs, layout));
+        }
+        return layout;
+    }
+    
     /**
      * 根据字段类型从ResultSet中提取值
      */
-    private Object extractValue(ResultSet rs, String columnName, Class<?> fieldType) throws SQLException {
+    private Object extractValue(ResultSet rs, ColumnLayout layout, String columnName, Class<?> fieldType) throws SQLException {
         // 检查列是否存在
-        if (!hasColumn(rs, columnName)) {
+        if (!layout.hasColumn(columnName)) {
             return null;
         }
         
+        return convertValue(rs, layout, columnName, fieldType);
+    }
+    
+    /**
+     * 读取已确认存在的列并转换为字段类型
+     * CompiledRowMapper对没有快速路径的类型也复用此转换逻辑
+     */
+    Object convertValue(ResultSet rs, ColumnLayout layout, String columnName, Class<?> fieldType) throws SQLException {
         Object value = rs.getObject(columnName);
         if (value == null) {
             return null;
@@ -127,16 +173,16 @@ public class UniversalRowMapper<T> implements RowMapper<T> {
         }
         
         // MySQL特有类型处理
-        else if (fieldType == Set.class && isMySQLSetColumn(rs, columnName)) {
+        else if (fieldType == Set.class && isMySQLSetColumn(layout, columnName)) {
             return handleMySQLSetType(rs, columnName);
-        } else if (fieldType == String.class && isMySQLBitColumn(rs, columnName)) {
+        } else if (fieldType == String.class && isMySQLBitColumn(layout, columnName)) {
             return handleMySQLBitType(rs, columnName);
         }
         
         // PostgreSQL特有类型处理
         else if (fieldType == InetAddress.class) {
             return handleInetType(rs, columnName);
-        } else if (fieldType == Map.class && isHstoreColumn(rs, columnName)) {
+        } else if (fieldType == Map.class && isHstoreColumn(layout, columnName)) {
             return handleHstoreType(rs, columnName);
         }
         
@@ -278,34 +324,6 @@ public class UniversalRowMapper<T> implements RowMapper<T> {
         return null;
     }
     
-    /**
-     * 检查ResultSet是否包含指定列
-     */
-    private boolean hasColumn(ResultSet rs, String columnName) {
-        try {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-            for (int i = 1; i <= columnCount; i++) {
-                if (columnName.equalsIgnoreCase(metaData.getColumnName(i)) ||
-                    columnName.equalsIgnoreCase(metaData.getColumnLabel(i))) {
-                    return true;
-                }
-            }
-            return false;
-        } catch (SQLException e) {
-            return false;
-        }
-    }
-    
-    /**
-     * 设置字段值
-     */
-    private void setFieldValue(Object instance, String fieldName, Object value) throws Exception {
-        java.lang.reflect.Field field = instance.getClass().getDeclaredField(fieldName);
-        field.setAccessible(true);
-        field.set(instance, value);
-    }
-    
     /**
      * 处理PostgreSQL INET类型
      */
@@ -422,18 +440,15 @@ public class UniversalRowMapper<T> implements RowMapper<T> {
      */
     private boolean isHstoreColumn(ResultSet rs, String columnName) {
         try {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-            for (int i = 1; i <= columnCount; i++) {
-                if (columnName.equalsIgnoreCase(metaData.getColumnName(i))) {
-                    String typeName = metaData.getColumnTypeName(i);
-                    return "hstore".equalsIgnoreCase(typeName);
-                }
-            }
+            return isHstoreColumn(resolveLayout(rs), columnName);
         } catch (SQLException e) {
-            // 忽略异常
+            return false;
         }
-        return false;
+    }
+
+    private boolean isHstoreColumn(ColumnLayout layout, String columnName) {
+        int index = layout.indexOf(columnName);
+        return index > 0 && "hstore".equalsIgnoreCase(layout.getColumnTypeName(index));
     }
     
     /**
@@ -478,9 +493,6 @@ public class UniversalRowMapper<T> implements RowMapper<T> {
         return fieldType == String.class;
     }
     
-    /**
-     * 创建RowMapper实例的工厂方法
-     */
     /**
      * 处理MySQL SET类型
      */
@@ -517,43 +529,24 @@ public class UniversalRowMapper<T> implements RowMapper<T> {
     /**
      * 检查是否为MySQL SET列
      */
-    private boolean isMySQLSetColumn(ResultSet rs, String columnName) {
-        try {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-            
-            for (int i = 1; i <= columnCount; i++) {
-                if (metaData.getColumnName(i).equalsIgnoreCase(columnName)) {
-                    String typeName = metaData.getColumnTypeName(i);
-                    return typeName != null && typeName.toUpperCase().startsWith("SET");
-                }
-            }
-        } catch (SQLException e) {
-            // 忽略异常，返回false
-        }
-        return false;
+    private boolean isMySQLSetColumn(ColumnLayout layout, String columnName) {
+        int index = layout.indexOf(columnName);
+        String typeName = index > 0 ? layout.getColumnTypeName(index) : null;
+        return typeName != null && typeName.toUpperCase().startsWith("SET");
     }
     
     /**
      * 检查是否为MySQL BIT列
      */
-    private boolean isMySQLBitColumn(ResultSet rs, String columnName) {
-        try {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-            
-            for (int i = 1; i <= columnCount; i++) {
-                if (metaData.getColumnName(i).equalsIgnoreCase(columnName)) {
-                    String typeName = metaData.getColumnTypeName(i);
-                    return typeName != null && typeName.toUpperCase().equals("BIT");
-                }
-            }
-        } catch (SQLException e) {
-            // 忽略异常，返回false
-        }
-        return false;
+    private boolean isMySQLBitColumn(ColumnLayout layout, String columnName) {
+        int index = layout.indexOf(columnName);
+        String typeName = index > 0 ? layout.getColumnTypeName(index) : null;
+        return typeName != null && typeName.toUpperCase().equals("BIT");
     }
     
+    /**
+     * 创建RowMapper实例的工厂方法
+     */
     public static <T> UniversalRowMapper<T> of(Class<T> entityClass, EntityMetadataRegistry metadataRegistry) {
         return new UniversalRowMapper<>(entityClass, metadataRegistry);
     }
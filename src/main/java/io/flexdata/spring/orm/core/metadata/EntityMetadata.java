@@ -12,6 +12,7 @@ public class EntityMetadata {
     private final String tableName;
     private final Map<String, FieldMetadata> fields;
     private final Field idField;
+    private final FieldMetadata idFieldMetadata;
 
     public EntityMetadata(Class<?> entityClass, String tableName,
                           Map<String, FieldMetadata> fields, Field idField) {
@@ -19,6 +20,10 @@ public class EntityMetadata {
         this.tableName = tableName;
         this.fields = fields;
         this.idField = idField;
+        this.idFieldMetadata = fields.values().stream()
+                .filter(FieldMetadata::isPrimaryKey)
+                .findFirst()
+                .orElse(null);
     }
 
     public String getTableName() {
@@ -33,6 +38,13 @@ public class EntityMetadata {
         return idField;
     }
 
+    /**
+     * 主键字段元数据，没有@Id字段时返回null
+     */
+    public FieldMetadata getIdFieldMetadata() {
+        return idFieldMetadata;
+    }
+
     public Class<?> getEntityClass() {
         return entityClass;
     }
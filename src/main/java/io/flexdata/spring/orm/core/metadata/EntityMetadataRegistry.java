@@ -47,7 +47,8 @@ public class EntityMetadataRegistry {
                     columnName,
                     field.getType(),
                     field.isAnnotationPresent(Id.class),
-                    columnAnnotation != null
+                    columnAnnotation != null,
+                    PropertyAccessor.of(entityClass, field)
             );
 
             fields.put(field.getName(), fieldMeta);
@@ -1,5 +1,8 @@
 package io.flexdata.spring.orm.core.metadata;
 
+import org.springframework.util.ClassUtils;
+import org.springframework.util.NumberUtils;
+
 /**
  * 字段元数据
  * 文件位置: src/main/java/com/example/orm/core/metadata/FieldMetadata.java
@@ -10,14 +13,21 @@ public class FieldMetadata {
     private final Class<?> fieldType;
     private final boolean isPrimaryKey;
     private final boolean hasColumnAnnotation;
+    private final PropertyAccessor accessor;
 
     public FieldMetadata(String fieldName, String columnName, Class<?> fieldType,
                          boolean isPrimaryKey, boolean hasColumnAnnotation) {
+        this(fieldName, columnName, fieldType, isPrimaryKey, hasColumnAnnotation, null);
+    }
+
+    public FieldMetadata(String fieldName, String columnName, Class<?> fieldType,
+                         boolean isPrimaryKey, boolean hasColumnAnnotation, PropertyAccessor accessor) {
         this.fieldName = fieldName;
         this.columnName = columnName;
         this.fieldType = fieldType;
         this.isPrimaryKey = isPrimaryKey;
         this.hasColumnAnnotation = hasColumnAnnotation;
+        this.accessor = accessor;
     }
 
     public String getFieldName() {
@@ -39,4 +49,44 @@ public class FieldMetadata {
     public boolean hasColumnAnnotation() {
         return hasColumnAnnotation;
     }
+
+    /**
+     * 预编译的属性访问器，构建元数据时生成
+     */
+    public PropertyAccessor getAccessor() {
+        return accessor;
+    }
+
+    /**
+     * 读取实体上该字段的值
+     */
+    public Object getValue(Object entity) {
+        return accessor.get(entity);
+    }
+
+    /**
+     * 设置实体上该字段的值
+     */
+    public void setValue(Object entity, Object value) {
+        accessor.set(entity, value);
+    }
+
+    /**
+     * 设置数据库生成的主键值
+     * 驱动返回的主键类型由列类型决定（如自增列通常返回Long），写入前转换为字段类型，
+     * 超出字段类型范围时抛出{@link IllegalArgumentException}
+     */
+    @SuppressWarnings("unchecked")
+    public void setGeneratedValue(Object entity, Object key) {
+        Object value = key;
+        if (key instanceof Number) {
+            Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(fieldType);
+            if (type == String.class) {
+                value = key.toString();
+            } else if (Number.class.isAssignableFrom(type) && !type.isInstance(key)) {
+                value = NumberUtils.convertNumberToTargetClass((Number) key, (Class<? extends Number>) type);
+            }
+        }
+        accessor.set(entity, value);
+    }
 }
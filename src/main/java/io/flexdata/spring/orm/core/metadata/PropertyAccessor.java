@@ -0,0 +1,216 @@
+package io.flexdata.spring.orm.core.metadata;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 属性访问器
+ * 在构建实体元数据时生成一次：优先通过LambdaMetafactory把公开的getter/setter绑定为生成类，
+ * 无法绑定时退回到字段MethodHandle，最后退回到反射；之后每次读写都不再查找字段
+ */
+public final class PropertyAccessor {
+
+    private final String fieldName;
+    private final Getter getter;
+    private final Setter setter;
+
+    private PropertyAccessor(String fieldName, Getter getter, Setter setter) {
+        this.fieldName = fieldName;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * 读取属性值
+     */
+    public Object get(Object target) {
+        try {
+            return getter.get(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to read field: " + fieldName, e);
+        }
+    }
+
+    /**
+     * 写入属性值
+     */
+    public void set(Object target, Object value) {
+        try {
+            setter.set(target, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to write field: " + fieldName, e);
+        }
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * 为字段创建访问器
+     */
+    public static PropertyAccessor of(Class<?> entityClass, Field field) {
+        field.setAccessible(true);
+        return new PropertyAccessor(field.getName(), createGetter(entityClass, field), createSetter(entityClass, field));
+    }
+
+    private static Getter createGetter(Class<?> entityClass, Field field) {
+        if (Modifier.isStatic(field.getModifiers())) {
+            return field::get;
+        }
+
+        Method getter = findPublicGetter(entityClass, field);
+        if (getter != null) {
+            try {
+                Function<Object, Object> function = lambdaGetter(getter);
+                return function::apply;
+            } catch (Throwable ignored) {
+                // 退回到MethodHandle
+            }
+        }
+
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflectGetter(field)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            return target -> handle.invokeExact(target);
+        } catch (IllegalAccessException e) {
+            return field::get;
+        }
+    }
+
+    private static Setter createSetter(Class<?> entityClass, Field field) {
+        if (Modifier.isStatic(field.getModifiers())) {
+            return field::set;
+        }
+
+        Method setter = findPublicSetter(entityClass, field);
+        if (setter != null) {
+            try {
+                BiConsumer<Object, Object> consumer = lambdaSetter(setter);
+                return consumer::accept;
+            } catch (Throwable ignored) {
+                // 退回到MethodHandle
+            }
+        }
+
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (target, value) -> {
+                handle.invokeExact(target, value);
+            };
+        } catch (IllegalAccessException e) {
+            // final字段等无法生成MethodHandle的情况，使用反射写入
+            return field::set;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> lambdaGetter(Method getter) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle target = lookup.unreflect(getter);
+        Class<?> returnType = MethodType.methodType(getter.getReturnType()).wrap().returnType();
+
+        CallSite site = LambdaMetafactory.metafactory(
+                lookup,
+                "apply",
+                MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class),
+                target,
+                MethodType.methodType(returnType, getter.getDeclaringClass()));
+
+        return (Function<Object, Object>) site.getTarget().invokeExact();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> lambdaSetter(Method setter) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle target = lookup.unreflect(setter);
+        Class<?> parameterType = MethodType.methodType(setter.getParameterTypes()[0]).wrap().returnType();
+
+        CallSite site = LambdaMetafactory.metafactory(
+                lookup,
+                "accept",
+                MethodType.methodType(BiConsumer.class),
+                MethodType.methodType(void.class, Object.class, Object.class),
+                target,
+                MethodType.methodType(void.class, setter.getDeclaringClass(), parameterType));
+
+        return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+    }
+
+    private static Method findPublicGetter(Class<?> entityClass, Field field) {
+        if (!isLinkable(entityClass)) {
+            return null;
+        }
+        String suffix = capitalize(field.getName());
+        Method method = findPublicMethod(entityClass, "get" + suffix);
+        if (method == null && (field.getType() == boolean.class || field.getType() == Boolean.class)) {
+            method = findPublicMethod(entityClass, "is" + suffix);
+        }
+        return method != null && method.getReturnType() == field.getType() ? method : null;
+    }
+
+    private static Method findPublicSetter(Class<?> entityClass, Field field) {
+        if (!isLinkable(entityClass)) {
+            return null;
+        }
+        Method method = findPublicMethod(entityClass, "set" + capitalize(field.getName()), field.getType());
+        return method != null && method.getReturnType() == void.class ? method : null;
+    }
+
+    private static Method findPublicMethod(Class<?> entityClass, String name, Class<?>... parameterTypes) {
+        try {
+            Method method = entityClass.getMethod(name, parameterTypes);
+            if (Modifier.isPublic(method.getDeclaringClass().getModifiers())
+                    && !Modifier.isStatic(method.getModifiers())) {
+                return method;
+            }
+        } catch (NoSuchMethodException ignored) {
+        }
+        return null;
+    }
+
+    /**
+     * 生成类能否直接链接实体类：实体类及其外部类必须是public，且对本类的类加载器可见
+     * （如DevTools重启类加载器中的实体对框架类不可见，此时只能使用MethodHandle）
+     */
+    private static boolean isLinkable(Class<?> entityClass) {
+        for (Class<?> c = entityClass; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        try {
+            return Class.forName(entityClass.getName(), false, PropertyAccessor.class.getClassLoader()) == entityClass;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    @FunctionalInterface
+    private interface Getter {
+        Object get(Object target) throws Throwable;
+    }
+
+    @FunctionalInterface
+    private interface Setter {
+        void set(Object target, Object value) throws Throwable;
+    }
+}
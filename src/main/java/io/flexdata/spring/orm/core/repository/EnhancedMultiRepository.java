@@ -1,6 +1,8 @@
 package io.flexdata.spring.orm.core.repository;
 
 import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.datasource.ScatterGatherExecutor;
+import io.flexdata.spring.orm.core.datasource.ScatterGatherResult;
 import io.flexdata.spring.orm.core.table.TableContext;
 import io.flexdata.spring.orm.core.interfaces.GenericRepository;
 import org.springframework.data.domain.Pageable;
@@ -201,7 +203,7 @@ public interface EnhancedMultiRepository<T, ID> extends GenericRepository<T, ID>
     // ==================== 批量操作方法 ====================
     
     /**
-     * 在多个数据源上执行查询操作
+     * 在多个数据源上并行执行查询操作
      * @param dataSourceKeys 数据源标识列表
      * @return 每个数据源的查询结果
      */
@@ -209,6 +211,18 @@ public interface EnhancedMultiRepository<T, ID> extends GenericRepository<T, ID>
         return DataSourceContext.executeOnMultipleDataSources(dataSourceKeys, () -> findAll());
     }
     
+    /**
+     * 在多个数据源上并行执行查询操作，指定超时时间和部分失败的处理策略
+     * @param dataSourceKeys 数据源标识列表
+     * @param timeoutMillis 超时时间（毫秒），0表示不限制
+     * @param policy 部分失败的处理策略
+     * @return 每个数据源的查询结果以及失败的数据源
+     */
+    default ScatterGatherResult<List<T>> findAllOnMultipleDataSources(List<String> dataSourceKeys, long timeoutMillis,
+                                                                      ScatterGatherExecutor.FailurePolicy policy) {
+        return DataSourceContext.executeOnMultipleDataSources(dataSourceKeys, () -> findAll(), timeoutMillis, policy);
+    }
+    
     /**
      * 在多个表上执行查询操作
      * @param tableMappings 表名映射
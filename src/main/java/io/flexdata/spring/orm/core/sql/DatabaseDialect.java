@@ -0,0 +1,89 @@
+package io.flexdata.spring.orm.core.sql;
+
+import java.util.Locale;
+
+/**
+ * 数据库方言
+ * 记录与SQL生成和执行相关的数据库限制，按JDBC驱动报告的产品名识别
+ */
+public enum DatabaseDialect {
+
+    /** PostgreSQL：协议层单条语句最多65535个绑定参数 */
+    POSTGRESQL(65535, Integer.MAX_VALUE, true, true),
+
+    /** MySQL：预编译语句最多65535个占位符，语句总长度还受max_allowed_packet限制 */
+    MYSQL(65535, Integer.MAX_VALUE, true, true),
+
+    /** H2 */
+    H2(65535, Integer.MAX_VALUE, true, true),
+
+    /** SQL Server：最多2100个参数，单个VALUES列表最多1000行；多行VALUES的getGeneratedKeys只返回一个主键 */
+    SQLSERVER(2100, 1000, true, false),
+
+    /** Oracle：不支持多行VALUES */
+    ORACLE(65535, 1, false, false),
+
+    /** 其他数据库：按SQLite等最保守的限制处理，SQLite多行插入后也只能取到最后一个主键 */
+    GENERIC(999, Integer.MAX_VALUE, true, false);
+
+    private final int maxBindParameters;
+    private final int maxRowsPerInsert;
+    private final boolean supportsMultiRowInsert;
+    private final boolean returnsMultiRowGeneratedKeys;
+
+    DatabaseDialect(int maxBindParameters, int maxRowsPerInsert, boolean supportsMultiRowInsert,
+                    boolean returnsMultiRowGeneratedKeys) {
+        this.maxBindParameters = maxBindParameters;
+        this.maxRowsPerInsert = maxRowsPerInsert;
+        this.supportsMultiRowInsert = supportsMultiRowInsert;
+        this.returnsMultiRowGeneratedKeys = returnsMultiRowGeneratedKeys;
+    }
+
+    /**
+     * 根据DatabaseMetaData.getDatabaseProductName()识别方言
+     */
+    public static DatabaseDialect fromProductName(String productName) {
+        if (productName == null) {
+            return GENERIC;
+        }
+        String name = productName.toLowerCase(Locale.ROOT);
+        if (name.contains("postgres")) {
+            return POSTGRESQL;
+        } else if (name.contains("mysql") || name.contains("mariadb")) {
+            return MYSQL;
+        } else if (name.contains("h2")) {
+            return H2;
+        } else if (name.contains("microsoft") || name.contains("sql server")) {
+            return SQLSERVER;
+        } else if (name.contains("oracle")) {
+            return ORACLE;
+        }
+        return GENERIC;
+    }
+
+    public int getMaxBindParameters() {
+        return maxBindParameters;
+    }
+
+    public int getMaxRowsPerInsert() {
+        return maxRowsPerInsert;
+    }
+
+    public boolean supportsMultiRowInsert() {
+        return supportsMultiRowInsert;
+    }
+
+    /**
+     * ORDER BY是否支持NULLS FIRST/LAST；不支持的MySQL和SQL Server默认把NULL当作最小值排序
+     */
+    public boolean supportsNullsOrdering() {
+        return this != MYSQL && this != SQLSERVER;
+    }
+
+    /**
+     * 多行VALUES插入后getGeneratedKeys是否按顺序返回每一行的主键
+     */
+    public boolean returnsMultiRowGeneratedKeys() {
+        return returnsMultiRowGeneratedKeys;
+    }
+}
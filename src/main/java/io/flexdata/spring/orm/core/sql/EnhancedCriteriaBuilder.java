@@ -1,6 +1,7 @@
 package io.flexdata.spring.orm.core.sql;
 
 import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.interfaces.CriteriaVisitor;
 import io.flexdata.spring.orm.core.sql.complex.CaseWhenExpression;
 import io.flexdata.spring.orm.core.sql.complex.ExistsQuery;
 import io.flexdata.spring.orm.core.sql.complex.SubQuery;
@@ -311,6 +312,11 @@ public class EnhancedCriteriaBuilder {
             return params;
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return visitor.visitComparison(field, operator, value);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
@@ -345,6 +351,11 @@ public class EnhancedCriteriaBuilder {
             return params;
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return visitor.visitIn(field, values, false);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
@@ -379,6 +390,11 @@ public class EnhancedCriteriaBuilder {
             return params;
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return visitor.visitIn(field, values, true);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
@@ -419,6 +435,11 @@ public class EnhancedCriteriaBuilder {
             return params;
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return visitor.visitBetween(field, start, end);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
@@ -449,6 +470,11 @@ public class EnhancedCriteriaBuilder {
             return new HashMap<>();
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return visitor.visitNull(field, isNull);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
@@ -635,6 +661,11 @@ public class EnhancedCriteriaBuilder {
             return criteria.getParameters();
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return visitor.visitNot(criteria);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
@@ -670,6 +701,11 @@ public class EnhancedCriteriaBuilder {
             return params;
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return visitor.visitComposite(left, operator, right);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
@@ -97,7 +97,7 @@ public class EnhancedSqlGeneratorImpl implements EnhancedSqlGenerator {
         if (!query.getOrderByFields().isEmpty()) {
             sql.append(" ORDER BY ");
             sql.append(query.getOrderByFields().stream()
-                .map(order -> order.getField() + " " + order.getDirection())
+                .map(OrderBy::toString)
                 .collect(Collectors.joining(", ")));
         }
         
@@ -0,0 +1,129 @@
+package io.flexdata.spring.orm.core.sql;
+
+import io.flexdata.spring.orm.core.metadata.EntityMetadata;
+import io.flexdata.spring.orm.core.metadata.FieldMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 实体SQL语句模板
+ * 只依赖实体元数据的CRUD语句在构建时一次性生成，之后每次调用直接复用
+ * 参数名与实体字段名一致
+ */
+public final class EntityStatements {
+
+    private final EntityMetadata metadata;
+    private final String insertWithId;
+    private final String insertWithoutId;
+    private final String updateById;
+    private final String deleteById;
+    private final String selectById;
+    private final String selectAll;
+    private final String deleteAll;
+    private final String count;
+    private final FieldNameRewriter fieldNameRewriter;
+
+    private EntityStatements(EntityMetadata metadata) {
+        this.metadata = metadata;
+        String tableName = metadata.getTableName();
+        FieldMetadata idField = metadata.getIdFieldMetadata();
+
+        List<String> allColumns = new ArrayList<>();
+        List<String> allValues = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<String> setClause = new ArrayList<>();
+
+        for (FieldMetadata field : metadata.getFields().values()) {
+            allColumns.add(field.getColumnName());
+            allValues.add(":" + field.getFieldName());
+            if (!field.isPrimaryKey()) {
+                columns.add(field.getColumnName());
+                values.add(":" + field.getFieldName());
+                setClause.add(field.getColumnName() + " = :" + field.getFieldName());
+            }
+        }
+
+        this.insertWithId = "INSERT INTO " + tableName + " (" + String.join(", ", allColumns)
+                + ") VALUES (" + String.join(", ", allValues) + ")";
+        this.insertWithoutId = "INSERT INTO " + tableName + " (" + String.join(", ", columns)
+                + ") VALUES (" + String.join(", ", values) + ")";
+        this.selectAll = "SELECT * FROM " + tableName;
+        this.deleteAll = "DELETE FROM " + tableName;
+        this.count = "SELECT COUNT(*) FROM " + tableName;
+        this.fieldNameRewriter = FieldNameRewriter.of(metadata);
+
+        if (idField != null) {
+            String idCondition = " WHERE " + idField.getColumnName() + " = :" + idField.getFieldName();
+            this.updateById = "UPDATE " + tableName + " SET " + String.join(", ", setClause) + idCondition;
+            this.deleteById = deleteAll + idCondition;
+            this.selectById = selectAll + idCondition;
+        } else {
+            // 没有主键时与原有行为一致：UPDATE不带WHERE条件，按ID操作不可用
+            this.updateById = "UPDATE " + tableName + " SET " + String.join(", ", setClause);
+            this.deleteById = null;
+            this.selectById = null;
+        }
+    }
+
+    /**
+     * 根据实体元数据构建语句模板
+     */
+    public static EntityStatements of(EntityMetadata metadata) {
+        return new EntityStatements(metadata);
+    }
+
+    /**
+     * 构建时使用的元数据，元数据缓存被清空重建后据此判断模板是否过期
+     */
+    public EntityMetadata getMetadata() {
+        return metadata;
+    }
+
+    public String getInsertWithId() {
+        return insertWithId;
+    }
+
+    public String getInsertWithoutId() {
+        return insertWithoutId;
+    }
+
+    public String getUpdateById() {
+        return updateById;
+    }
+
+    public String getDeleteById() {
+        return requireId(deleteById);
+    }
+
+    public String getSelectById() {
+        return requireId(selectById);
+    }
+
+    public String getSelectAll() {
+        return selectAll;
+    }
+
+    public String getDeleteAll() {
+        return deleteAll;
+    }
+
+    public String getCount() {
+        return count;
+    }
+
+    /**
+     * 条件片段中字段名到列名的改写器
+     */
+    public FieldNameRewriter getFieldNameRewriter() {
+        return fieldNameRewriter;
+    }
+
+    private String requireId(String sql) {
+        if (sql == null) {
+            throw new IllegalStateException("No ID field found for entity: " + metadata.getEntityClass().getName());
+        }
+        return sql;
+    }
+}
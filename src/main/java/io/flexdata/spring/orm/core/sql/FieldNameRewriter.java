@@ -0,0 +1,127 @@
+package io.flexdata.spring.orm.core.sql;
+
+import io.flexdata.spring.orm.core.metadata.EntityMetadata;
+import io.flexdata.spring.orm.core.metadata.FieldMetadata;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 字段名到列名的SQL改写器
+ * 单次扫描SQL片段，只替换作为独立标识符出现的字段名；
+ * 字符串字面量、引号标识符、注释、命名参数（:name）和类型转换（::type）保持原样
+ */
+public final class FieldNameRewriter {
+
+    private static final FieldNameRewriter IDENTITY = new FieldNameRewriter(new HashMap<>());
+
+    private final Map<String, String> columnByField;
+
+    private FieldNameRewriter(Map<String, String> columnByField) {
+        this.columnByField = columnByField;
+    }
+
+    /**
+     * 根据实体元数据构建改写器，只记录字段名与列名不同的映射
+     */
+    public static FieldNameRewriter of(EntityMetadata metadata) {
+        Map<String, String> columnByField = new HashMap<>();
+        for (FieldMetadata field : metadata.getFields().values()) {
+            if (!field.getFieldName().equals(field.getColumnName())) {
+                columnByField.put(field.getFieldName(), field.getColumnName());
+            }
+        }
+        return columnByField.isEmpty() ? IDENTITY : new FieldNameRewriter(columnByField);
+    }
+
+    /**
+     * 把SQL片段中的字段名改写为列名
+     */
+    public String rewrite(String sql) {
+        if (sql == null || columnByField.isEmpty()) {
+            return sql;
+        }
+
+        int length = sql.length();
+        StringBuilder result = null;
+        int copied = 0;
+        int i = 0;
+
+        while (i < length) {
+            char c = sql.charAt(i);
+
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i, c);
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (c == ':') {
+                // 命名参数与类型转换后面的标识符都不是字段引用
+                i++;
+                if (i < length && sql.charAt(i) == ':') {
+                    i++;
+                }
+                i = skipIdentifier(sql, i);
+            } else if (isIdentifierStart(c)) {
+                int end = skipIdentifier(sql, i);
+                String column = columnByField.get(sql.substring(i, end));
+                if (column != null) {
+                    if (result == null) {
+                        result = new StringBuilder(length + 16);
+                    }
+                    result.append(sql, copied, i).append(column);
+                    copied = end;
+                }
+                i = end;
+            } else if (Character.isDigit(c)) {
+                // 数字字面量（含1e10等形式）整体跳过
+                i = skipIdentifier(sql, i);
+            } else {
+                i++;
+            }
+        }
+
+        if (result == null) {
+            return sql;
+        }
+        return result.append(sql, copied, length).toString();
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == quote) {
+                // 连续两个引号表示转义
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    private static int skipIdentifier(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && isIdentifierPart(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,57 @@
+package io.flexdata.spring.orm.core.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 键集（seek）分页请求
+ * 由每页大小、排序字段和上一页返回的续页令牌组成；第一页令牌为null
+ * 排序字段会自动补上主键作为唯一的决胜列，排序字段的值不应为null
+ */
+public final class KeysetPageRequest {
+
+    private final int size;
+    private final List<OrderBy> orderBy;
+    private final String token;
+
+    private KeysetPageRequest(int size, List<OrderBy> orderBy, String token) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+        this.size = size;
+        this.orderBy = Collections.unmodifiableList(new ArrayList<>(orderBy));
+        this.token = token;
+    }
+
+    /**
+     * 第一页请求
+     */
+    public static KeysetPageRequest of(int size, OrderBy... orderBy) {
+        return new KeysetPageRequest(size, Arrays.asList(orderBy), null);
+    }
+
+    public static KeysetPageRequest of(int size, List<OrderBy> orderBy) {
+        return new KeysetPageRequest(size, orderBy, null);
+    }
+
+    /**
+     * 使用上一页返回的续页令牌请求下一页
+     */
+    public KeysetPageRequest next(String token) {
+        return new KeysetPageRequest(size, orderBy, token);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public List<OrderBy> getOrderBy() {
+        return orderBy;
+    }
+
+    public String getToken() {
+        return token;
+    }
+}
@@ -0,0 +1,27 @@
+package io.flexdata.spring.orm.core.sql;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+
+/**
+ * 键集分页结果
+ * 不执行COUNT查询，只通过多取一行判断是否还有下一页
+ */
+public class KeysetSlice<T> extends SliceImpl<T> {
+
+    private final String nextToken;
+
+    public KeysetSlice(List<T> content, int size, boolean hasNext, String nextToken) {
+        super(content, PageRequest.of(0, size), hasNext);
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * 下一页的续页令牌，没有下一页时为null
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+}
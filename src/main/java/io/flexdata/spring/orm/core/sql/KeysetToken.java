@@ -0,0 +1,158 @@
+package io.flexdata.spring.orm.core.sql;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.flexdata.spring.orm.core.metadata.EntityMetadata;
+import io.flexdata.spring.orm.core.metadata.FieldMetadata;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 键集分页的续页令牌
+ * 记录上一页最后一行在各排序字段上的值及其类型，编码为URL安全的Base64字符串；
+ * 令牌同时携带排序规则，换了排序的请求不能复用旧令牌
+ */
+public final class KeysetToken {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private KeysetToken() {
+    }
+
+    /**
+     * 第i个排序值对应的命名参数名
+     */
+    public static String parameterName(int index) {
+        return "_keyset" + index;
+    }
+
+    /**
+     * 根据一页的最后一个实体生成令牌
+     */
+    public static String fromEntity(EntityMetadata metadata, List<OrderBy> orderBy, Object entity) {
+        List<Object> values = new ArrayList<>(orderBy.size());
+        for (OrderBy order : orderBy) {
+            FieldMetadata field = metadata.getFields().get(order.getField());
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown sort field: " + order.getField());
+            }
+            values.add(field.getValue(entity));
+        }
+        return encode(orderBy, values);
+    }
+
+    public static String encode(List<OrderBy> orderBy, List<Object> values) {
+        ObjectNode root = OBJECT_MAPPER.createObjectNode();
+        root.put("s", sortSignature(orderBy));
+        ArrayNode array = root.putArray("v");
+        for (Object value : values) {
+            ArrayNode entry = array.addArray();
+            entry.add(typeOf(value));
+            entry.add(value == null ? null : format(value));
+        }
+        try {
+            byte[] json = OBJECT_MAPPER.writeValueAsBytes(root);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode keyset token", e);
+        }
+    }
+
+    /**
+     * 解码令牌，返回各排序字段上的值
+     */
+    public static List<Object> decode(String token, List<OrderBy> orderBy) {
+        JsonNode root;
+        try {
+            root = OBJECT_MAPPER.readTree(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Malformed keyset token", e);
+        }
+
+        JsonNode values = root.get("v");
+        if (!sortSignature(orderBy).equals(root.path("s").asText()) || values == null || values.size() != orderBy.size()) {
+            throw new IllegalArgumentException("Keyset token does not match the requested sort: " + orderBy);
+        }
+
+        List<Object> result = new ArrayList<>(values.size());
+        try {
+            for (JsonNode entry : values) {
+                JsonNode value = entry.get(1);
+                result.add(value == null || value.isNull() ? null : parse(entry.get(0).asText(), value.asText()));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed keyset token", e);
+        }
+        return result;
+    }
+
+    private static String sortSignature(List<OrderBy> orderBy) {
+        StringBuilder signature = new StringBuilder();
+        for (OrderBy order : orderBy) {
+            signature.append(order.getField()).append(' ').append(order.getDirection()).append(',');
+        }
+        return signature.toString();
+    }
+
+    private static String typeOf(Object value) {
+        if (value == null) return "N";
+        if (value instanceof String) return "S";
+        if (value instanceof Long) return "L";
+        if (value instanceof Integer) return "I";
+        if (value instanceof Short) return "H";
+        if (value instanceof Double) return "D";
+        if (value instanceof Float) return "F";
+        if (value instanceof BigDecimal) return "B";
+        if (value instanceof Boolean) return "Z";
+        if (value instanceof Timestamp) return "T";
+        if (value instanceof LocalDateTime) return "LDT";
+        if (value instanceof LocalDate) return "LD";
+        if (value instanceof Instant) return "INS";
+        if (value instanceof Date) return "DT";
+        if (value instanceof UUID) return "U";
+        throw new IllegalArgumentException("Unsupported keyset value type: " + value.getClass().getName());
+    }
+
+    private static String format(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toInstant().toString();
+        } else if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        }
+        return value.toString();
+    }
+
+    private static Object parse(String type, String text) {
+        switch (type) {
+            case "S": return text;
+            case "L": return Long.valueOf(text);
+            case "I": return Integer.valueOf(text);
+            case "H": return Short.valueOf(text);
+            case "D": return Double.valueOf(text);
+            case "F": return Float.valueOf(text);
+            case "B": return new BigDecimal(text);
+            case "Z": return Boolean.valueOf(text);
+            case "T": return Timestamp.from(Instant.parse(text));
+            case "LDT": return LocalDateTime.parse(text);
+            case "LD": return LocalDate.parse(text);
+            case "INS": return Instant.parse(text);
+            case "DT": return new Date(Long.parseLong(text));
+            case "U": return UUID.fromString(text);
+            default: throw new IllegalArgumentException("Unsupported keyset value type in token: " + type);
+        }
+    }
+}
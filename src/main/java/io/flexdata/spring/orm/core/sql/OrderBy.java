@@ -7,10 +7,19 @@ package io.flexdata.spring.orm.core.sql;
 public class OrderBy {
     private final String field;
     private final SortDirection direction;
+    private final Boolean nullsFirst;
 
     public OrderBy(String field, SortDirection direction) {
+        this(field, direction, null);
+    }
+
+    /**
+     * @param nullsFirst NULL是否排在最前，为null时按数据库默认顺序
+     */
+    public OrderBy(String field, SortDirection direction, Boolean nullsFirst) {
         this.field = field;
         this.direction = direction;
+        this.nullsFirst = nullsFirst;
     }
 
     public static OrderBy asc(String field) {
@@ -29,8 +38,18 @@ public class OrderBy {
         return direction;
     }
 
+    /**
+     * NULL是否排在最前，为null时按数据库默认顺序
+     */
+    public Boolean getNullsFirst() {
+        return nullsFirst;
+    }
+
     @Override
     public String toString() {
-        return field + " " + direction;
+        if (nullsFirst == null) {
+            return field + " " + direction;
+        }
+        return field + " " + direction + (nullsFirst ? " NULLS FIRST" : " NULLS LAST");
     }
 }
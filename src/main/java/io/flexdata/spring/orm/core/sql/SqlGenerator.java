@@ -6,9 +6,11 @@ import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
 import io.flexdata.spring.orm.core.metadata.FieldMetadata;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -18,14 +20,34 @@ import java.util.stream.Collectors;
 @Component
 public class SqlGenerator {
     private final EntityMetadataRegistry metadataRegistry;
+    private final Map<Class<?>, EntityStatements> statementCache = new ConcurrentHashMap<>();
 
     public SqlGenerator(EntityMetadataRegistry metadataRegistry) {
         this.metadataRegistry = metadataRegistry;
     }
 
+    /**
+     * 获取实体的预生成CRUD语句
+     * 模板与构建它的元数据实例绑定，EntityMetadataRegistry.clearCache()后元数据重建，模板随之重建
+     */
+    public EntityStatements getStatements(Class<?> entityClass) {
+        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+        EntityStatements statements = statementCache.get(entityClass);
+        if (statements == null || statements.getMetadata() != metadata) {
+            statements = EntityStatements.of(metadata);
+            statementCache.put(entityClass, statements);
+        }
+        return statements;
+    }
+
     public String generateSelect(Class<?> entityClass, Criteria criteria,
                                  List<String> selectedFields, List<OrderBy> orderBy,
                                  Integer limit, Integer offset) {
+        if (criteria == null && (selectedFields == null || selectedFields.isEmpty())
+                && (orderBy == null || orderBy.isEmpty()) && limit == null && offset == null) {
+            return getStatements(entityClass).getSelectAll();
+        }
+
         EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
         StringBuilder sql = new StringBuilder("SELECT ");
 
@@ -42,7 +64,7 @@ public class SqlGenerator {
 
         // WHERE条件
         if (criteria != null) {
-            sql.append(" WHERE ").append(convertFieldNames(criteria.toSql(), metadata));
+            sql.append(" WHERE ").append(convertFieldNames(criteria.toSql(), entityClass));
         }
 
         // ORDER BY
@@ -64,93 +86,154 @@ public class SqlGenerator {
         return sql.toString();
     }
 
-    public String generateInsert(Class<?> entityClass, Object entity) {
-        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
-        StringBuilder sql = new StringBuilder("INSERT INTO ");
-        sql.append(metadata.getTableName()).append(" (");
+    /**
+     * 键集分页的完整排序：在给定排序后补上主键，保证排序唯一
+     */
+    public List<OrderBy> resolveKeysetOrder(Class<?> entityClass, List<OrderBy> orderBy) {
+        FieldMetadata idField = metadataRegistry.getMetadata(entityClass).getIdFieldMetadata();
+        List<OrderBy> resolved = new ArrayList<>(orderBy != null ? orderBy : Collections.<OrderBy>emptyList());
+        if (idField == null) {
+            if (resolved.isEmpty()) {
+                throw new IllegalStateException("Keyset pagination requires an ID field or explicit sort: "
+                        + entityClass.getName());
+            }
+            return resolved;
+        }
+        for (OrderBy order : resolved) {
+            if (order.getField().equals(idField.getFieldName())) {
+                return resolved;
+            }
+        }
+        resolved.add(OrderBy.asc(idField.getFieldName()));
+        return resolved;
+    }
 
-        List<String> columns = new ArrayList<>();
-        List<String> values = new ArrayList<>();
+    /**
+     * 键集分页查询
+     * 有续页位置时追加"排在上一页最后一行之后"的条件，参数名由KeysetToken.parameterName生成；
+     * 排序方向一致时使用行值比较 (a, b) > (:k0, :k1)，方向混合时展开为等价的OR条件
+     */
+    public String generateKeysetSelect(Class<?> entityClass, Criteria criteria, List<OrderBy> keysetOrder,
+                                       boolean afterCursor, int limit) {
+        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(metadata.getTableName());
 
-        for (FieldMetadata field : metadata.getFields().values()) {
-            if (!field.isPrimaryKey() || getFieldValue(entity, field.getFieldName()) != null) {
-                columns.add(field.getColumnName());
-                values.add(":" + field.getFieldName());
-            }
+        List<String> conditions = new ArrayList<>(2);
+        if (criteria != null) {
+            conditions.add("(" + convertFieldNames(criteria.toSql(), entityClass) + ")");
+        }
+        if (afterCursor) {
+            conditions.add(keysetCondition(metadata, keysetOrder));
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
         }
 
-        sql.append(String.join(", ", columns));
-        sql.append(") VALUES (");
-        sql.append(String.join(", ", values));
-        sql.append(")");
+        sql.append(" ORDER BY ");
+        sql.append(keysetOrder.stream()
+                .map(order -> metadata.getColumnName(order.getField()) + " " + order.getDirection())
+                .collect(Collectors.joining(", ")));
+        sql.append(" LIMIT ").append(limit);
 
         return sql.toString();
     }
 
-    public String generateUpdate(Class<?> entityClass, Object entity) {
-        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
-        StringBuilder sql = new StringBuilder("UPDATE ");
-        sql.append(metadata.getTableName()).append(" SET ");
-
-        List<String> setClause = new ArrayList<>();
-        FieldMetadata idField = null;
+    private String keysetCondition(EntityMetadata metadata, List<OrderBy> keysetOrder) {
+        SortDirection direction = keysetOrder.get(0).getDirection();
+        boolean uniform = keysetOrder.stream().allMatch(order -> order.getDirection() == direction);
+
+        if (uniform) {
+            StringBuilder columns = new StringBuilder("(");
+            StringBuilder values = new StringBuilder("(");
+            for (int i = 0; i < keysetOrder.size(); i++) {
+                if (i > 0) {
+                    columns.append(", ");
+                    values.append(", ");
+                }
+                columns.append(metadata.getColumnName(keysetOrder.get(i).getField()));
+                values.append(':').append(KeysetToken.parameterName(i));
+            }
+            String operator = direction == SortDirection.ASC ? " > " : " < ";
+            return columns.append(')').append(operator).append(values).append(')').toString();
+        }
 
-        for (FieldMetadata field : metadata.getFields().values()) {
-            if (field.isPrimaryKey()) {
-                idField = field;
-            } else {
-                setClause.add(field.getColumnName() + " = :" + field.getFieldName());
+        // (a > :k0) OR (a = :k0 AND b < :k1) OR ...
+        List<String> alternatives = new ArrayList<>(keysetOrder.size());
+        for (int i = 0; i < keysetOrder.size(); i++) {
+            StringBuilder alternative = new StringBuilder("(");
+            for (int j = 0; j < i; j++) {
+                alternative.append(metadata.getColumnName(keysetOrder.get(j).getField()))
+                        .append(" = :").append(KeysetToken.parameterName(j)).append(" AND ");
             }
+            OrderBy order = keysetOrder.get(i);
+            alternative.append(metadata.getColumnName(order.getField()))
+                    .append(order.getDirection() == SortDirection.ASC ? " > :" : " < :")
+                    .append(KeysetToken.parameterName(i)).append(')');
+            alternatives.add(alternative.toString());
         }
+        return "(" + String.join(" OR ", alternatives) + ")";
+    }
 
-        sql.append(String.join(", ", setClause));
+    public String generateInsert(Class<?> entityClass, Object entity) {
+        EntityStatements statements = getStatements(entityClass);
+        FieldMetadata idField = statements.getMetadata().getIdFieldMetadata();
 
-        if (idField != null) {
-            sql.append(" WHERE ").append(idField.getColumnName()).append(" = :").append(idField.getFieldName());
+        // 主键有值时插入主键列，否则交给数据库生成
+        if (idField != null && idField.getValue(entity) != null) {
+            return statements.getInsertWithId();
         }
+        return statements.getInsertWithoutId();
+    }
 
-        return sql.toString();
+    public String generateUpdate(Class<?> entityClass, Object entity) {
+        return getStatements(entityClass).getUpdateById();
+    }
+
+    public String generateSelectById(Class<?> entityClass) {
+        return getStatements(entityClass).getSelectById();
+    }
+
+    public String generateDeleteById(Class<?> entityClass) {
+        return getStatements(entityClass).getDeleteById();
     }
 
     public String generateDelete(Class<?> entityClass, Criteria criteria) {
+        if (criteria == null) {
+            return getStatements(entityClass).getDeleteAll();
+        }
+
         EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
         StringBuilder sql = new StringBuilder("DELETE FROM ");
         sql.append(metadata.getTableName());
-
-        if (criteria != null) {
-            sql.append(" WHERE ").append(convertFieldNames(criteria.toSql(), metadata));
-        }
+        sql.append(" WHERE ").append(convertFieldNames(criteria.toSql(), entityClass));
 
         return sql.toString();
     }
 
     public String generateCount(Class<?> entityClass, Criteria criteria) {
+        if (criteria == null) {
+            return getStatements(entityClass).getCount();
+        }
+
         EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
         StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM ");
         sql.append(metadata.getTableName());
-
-        if (criteria != null) {
-            sql.append(" WHERE ").append(convertFieldNames(criteria.toSql(), metadata));
-        }
+        sql.append(" WHERE ").append(convertFieldNames(criteria.toSql(), entityClass));
 
         return sql.toString();
     }
 
-    private String convertFieldNames(String sql, EntityMetadata metadata) {
-        String result = sql;
-        for (FieldMetadata field : metadata.getFields().values()) {
-            result = result.replaceAll("\\b" + field.getFieldName() + "\\b", field.getColumnName());
-        }
-        return result;
+    private String convertFieldNames(String sql, Class<?> entityClass) {
+        return getStatements(entityClass).getFieldNameRewriter().rewrite(sql);
     }
 
-    private Object getFieldValue(Object entity, String fieldName) {
-        try {
-            Field field = entity.getClass().getDeclaredField(fieldName);
-            field.setAccessible(true);
-            return field.get(entity);
-        } catch (Exception e) {
-            return null;
-        }
+    /** 清空语句模板缓存 */
+    public void clearCache() {
+        statementCache.clear();
+    }
+
+    /** 获取缓存大小 */
+    public int getCacheSize() {
+        return statementCache.size();
     }
 }
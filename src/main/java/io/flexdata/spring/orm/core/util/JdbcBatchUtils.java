@@ -0,0 +1,125 @@
+package io.flexdata.spring.orm.core.util;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC批处理工具类
+ * 补充NamedParameterJdbcTemplate缺少的"批量执行并取回生成主键"能力
+ */
+public class JdbcBatchUtils {
+
+    /**
+     * 单次executeBatch的最大行数
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private JdbcBatchUtils() {
+    }
+
+    /**
+     * 以JDBC批处理执行同一条命名参数INSERT，并按行返回生成的主键
+     * 返回列表与参数列表一一对应；驱动返回的主键个数与执行的行数不一致时无法确定对应关系，
+     * 此时抛出{@link IllegalStateException}，而不是回填错位或缺失的主键
+     *
+     * @param keyColumn 主键列名，为null时由驱动决定返回哪些生成列
+     */
+    public static List<Object> batchInsertReturningKeys(NamedParameterJdbcTemplate jdbcTemplate, String sql,
+                                                        List<? extends SqlParameterSource> batchArgs,
+                                                        String keyColumn) {
+        if (batchArgs.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 批内各行的参数名相同，SQL只需解析和展开一次
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+        String jdbcSql = NamedParameterUtils.substituteNamedParameters(parsedSql, batchArgs.get(0));
+        List<SqlParameter> declaredParameters = NamedParameterUtils.buildSqlParameterList(parsedSql, batchArgs.get(0));
+
+        PreparedStatementCreator creator = con -> keyColumn != null
+                ? con.prepareStatement(jdbcSql, new String[]{keyColumn})
+                : con.prepareStatement(jdbcSql, Statement.RETURN_GENERATED_KEYS);
+
+        PreparedStatementCallback<List<Object>> callback = ps -> {
+            List<Object> keys = new ArrayList<>(batchArgs.size());
+            boolean batchSupported = JdbcUtils.supportsBatchUpdates(ps.getConnection());
+            int pending = 0;
+
+            for (SqlParameterSource args : batchArgs) {
+                Object[] values = NamedParameterUtils.buildValueArray(parsedSql, args, declaredParameters);
+                new ArgumentPreparedStatementSetter(values).setValues(ps);
+
+                if (!batchSupported) {
+                    ps.executeUpdate();
+                    readKeys(ps, jdbcSql, keyColumn, keys, 1);
+                    continue;
+                }
+
+                ps.addBatch();
+                if (++pending == DEFAULT_BATCH_SIZE) {
+                    ps.executeBatch();
+                    readKeys(ps, jdbcSql, keyColumn, keys, pending);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                ps.executeBatch();
+                readKeys(ps, jdbcSql, keyColumn, keys, pending);
+            }
+            return keys;
+        };
+
+        return jdbcTemplate.getJdbcOperations().execute(creator, callback);
+    }
+
+    /**
+     * 读取最近一次执行生成的主键，个数必须与执行的行数一致
+     */
+    private static void readKeys(PreparedStatement ps, String sql, String keyColumn, List<Object> keys, int expected)
+            throws SQLException {
+        ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+        int read = 0;
+        ResultSet rs = ps.getGeneratedKeys();
+        if (rs != null) {
+            try {
+                while (rs.next()) {
+                    if (read < expected) {
+                        keys.add(extractKey(rowMapper.mapRow(rs, read), keyColumn));
+                    }
+                    read++;
+                }
+            } finally {
+                JdbcUtils.closeResultSet(rs);
+            }
+        }
+        if (read != expected) {
+            throw new IllegalStateException("Driver returned " + read + " generated keys for "
+                    + expected + " batched rows: " + sql);
+        }
+    }
+
+    private static Object extractKey(Map<String, Object> keyRow, String keyColumn) {
+        if (keyRow.size() == 1) {
+            return keyRow.values().iterator().next();
+        }
+        // 部分驱动（如PostgreSQL）返回整行，ColumnMapRowMapper的结果按列名忽略大小写查找
+        return keyColumn != null ? keyRow.get(keyColumn) : null;
+    }
+}
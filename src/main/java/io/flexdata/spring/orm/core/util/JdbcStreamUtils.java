@@ -0,0 +1,182 @@
+package io.flexdata.spring.orm.core.util;
+
+import io.flexdata.spring.orm.core.sql.DatabaseDialect;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * JDBC流式查询工具类
+ * 结果集按行读取并映射，内存占用与结果行数无关
+ *
+ * 不同数据库开启服务端流式读取的方式不同：
+ * MySQL需要只进只读结果集并把fetchSize设为Integer.MIN_VALUE；
+ * PostgreSQL只在关闭自动提交时按fetchSize使用游标，不在事务中时临时关闭自动提交，关闭流时恢复
+ */
+public class JdbcStreamUtils {
+
+    /**
+     * 默认每次从服务端拉取的行数
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private JdbcStreamUtils() {
+    }
+
+    /**
+     * 流式查询
+     * 返回的Stream持有数据库连接，必须在try-with-resources中使用或显式close
+     */
+    public static <T> Stream<T> stream(NamedParameterJdbcTemplate jdbcTemplate, String sql,
+                                       Map<String, ?> params, RowMapper<T> rowMapper, int fetchSize) {
+        return stream(jdbcTemplate, dialect -> sql, params, rowMapper, fetchSize);
+    }
+
+    /**
+     * 流式查询，SQL在取得连接、识别出数据库方言后生成，用于与方言相关的语句
+     */
+    public static <T> Stream<T> stream(NamedParameterJdbcTemplate jdbcTemplate, Function<DatabaseDialect, String> sqlForDialect,
+                                       Map<String, ?> params, RowMapper<T> rowMapper, int fetchSize) {
+        DataSource dataSource = jdbcTemplate.getJdbcTemplate().getDataSource();
+        if (dataSource == null) {
+            throw new IllegalStateException("No DataSource configured for streaming query");
+        }
+
+        StreamingCursor<T> cursor = new StreamingCursor<>(dataSource, rowMapper);
+        try {
+            cursor.open(sqlForDialect, params != null ? new MapSqlParameterSource(params) : new MapSqlParameterSource(), fetchSize);
+        } catch (SQLException e) {
+            cursor.close();
+            throw translate(jdbcTemplate, cursor.sql, e);
+        } catch (RuntimeException | Error e) {
+            cursor.close();
+            throw e;
+        }
+
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    return cursor.next(action);
+                } catch (SQLException e) {
+                    cursor.close();
+                    throw translate(jdbcTemplate, cursor.sql, e);
+                }
+            }
+        }, false).onClose(cursor::close);
+    }
+
+    /**
+     * 逐行处理查询结果，处理结束或抛出异常时立即释放连接
+     */
+    public static <T> void forEach(NamedParameterJdbcTemplate jdbcTemplate, String sql, Map<String, ?> params,
+                                   RowMapper<T> rowMapper, int fetchSize, Consumer<? super T> action) {
+        try (Stream<T> stream = stream(jdbcTemplate, sql, params, rowMapper, fetchSize)) {
+            stream.forEach(action);
+        }
+    }
+
+    private static DataAccessException translate(NamedParameterJdbcTemplate jdbcTemplate, String sql, SQLException e) {
+        return jdbcTemplate.getJdbcTemplate().getExceptionTranslator().translate("StreamingQuery", sql, e);
+    }
+
+    /**
+     * 流式游标：持有连接、语句和结果集，close可重复调用
+     */
+    private static final class StreamingCursor<T> {
+
+        private final DataSource dataSource;
+        private final RowMapper<T> rowMapper;
+        private String sql;
+        private Connection connection;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private boolean restoreAutoCommit;
+        private int rowNum;
+        private boolean closed;
+
+        StreamingCursor(DataSource dataSource, RowMapper<T> rowMapper) {
+            this.dataSource = dataSource;
+            this.rowMapper = rowMapper;
+        }
+
+        void open(Function<DatabaseDialect, String> sqlForDialect, SqlParameterSource params, int fetchSize) throws SQLException {
+            connection = DataSourceUtils.getConnection(dataSource);
+            DatabaseDialect dialect = DatabaseDialect.fromProductName(connection.getMetaData().getDatabaseProductName());
+            sql = sqlForDialect.apply(dialect);
+
+            ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+            String jdbcSql = NamedParameterUtils.substituteNamedParameters(parsedSql, params);
+            List<SqlParameter> declaredParameters = NamedParameterUtils.buildSqlParameterList(parsedSql, params);
+            Object[] values = NamedParameterUtils.buildValueArray(parsedSql, params, declaredParameters);
+
+            statement = connection.prepareStatement(jdbcSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (dialect == DatabaseDialect.MYSQL) {
+                statement.setFetchSize(Integer.MIN_VALUE);
+            } else {
+                if (dialect == DatabaseDialect.POSTGRESQL && connection.getAutoCommit()) {
+                    connection.setAutoCommit(false);
+                    restoreAutoCommit = true;
+                }
+                statement.setFetchSize(fetchSize);
+            }
+            new ArgumentPreparedStatementSetter(values).setValues(statement);
+            resultSet = statement.executeQuery();
+        }
+
+        boolean next(Consumer<? super T> action) throws SQLException {
+            if (closed) {
+                return false;
+            }
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            action.accept(rowMapper.mapRow(resultSet, rowNum++));
+            return true;
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeStatement(statement);
+            if (connection != null) {
+                if (restoreAutoCommit) {
+                    try {
+                        // 只读游标没有需要提交的修改，恢复自动提交即结束临时事务
+                        connection.setAutoCommit(true);
+                    } catch (SQLException e) {
+                        // 忽略恢复失败，连接仍会归还
+                    }
+                }
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package io.flexdata.spring.orm.criteria.impl;
 
+import io.flexdata.spring.orm.core.interfaces.CriteriaVisitor;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,4 +28,9 @@ public class BetweenCriteria extends AbstractCriteria {
         params.put(field.replace(".", "_") + "_end", end);
         return params;
     }
+
+    @Override
+    public <R> R accept(CriteriaVisitor<R> visitor) {
+        return visitor.visitBetween(field, start, end);
+    }
 }
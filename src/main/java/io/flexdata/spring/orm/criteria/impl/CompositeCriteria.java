@@ -1,6 +1,7 @@
 package io.flexdata.spring.orm.criteria.impl;
 
 import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.interfaces.CriteriaVisitor;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -33,6 +34,11 @@ public class CompositeCriteria implements Criteria {
         return params;
     }
 
+    @Override
+    public <R> R accept(CriteriaVisitor<R> visitor) {
+        return visitor.visitComposite(left, operator, right);
+    }
+
     @Override
     public Criteria and(Criteria other) {
         return new CompositeCriteria(this, "AND", other);
@@ -1,5 +1,7 @@
 package io.flexdata.spring.orm.criteria.impl;
 
+import io.flexdata.spring.orm.core.interfaces.CriteriaVisitor;
+
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -34,4 +36,9 @@ public class InCriteria extends AbstractCriteria {
         }
         return params;
     }
+
+    @Override
+    public <R> R accept(CriteriaVisitor<R> visitor) {
+        return visitor.visitIn(field, values, false);
+    }
 }
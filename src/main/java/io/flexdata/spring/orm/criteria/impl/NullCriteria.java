@@ -1,5 +1,7 @@
 package io.flexdata.spring.orm.criteria.impl;
 
+import io.flexdata.spring.orm.core.interfaces.CriteriaVisitor;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,4 +22,9 @@ public class NullCriteria extends AbstractCriteria {
     public Map<String, Object> getParameters() {
         return new HashMap<>();
     }
+
+    @Override
+    public <R> R accept(CriteriaVisitor<R> visitor) {
+        return visitor.visitNull(field, isNull);
+    }
 }
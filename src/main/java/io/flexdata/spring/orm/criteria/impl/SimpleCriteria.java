@@ -1,5 +1,7 @@
 package io.flexdata.spring.orm.criteria.impl;
 
+import io.flexdata.spring.orm.core.interfaces.CriteriaVisitor;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -24,4 +26,9 @@ public class SimpleCriteria extends AbstractCriteria {
         params.put(field.replace(".", "_"), value);
         return params;
     }
+
+    @Override
+    public <R> R accept(CriteriaVisitor<R> visitor) {
+        return visitor.visitComparison(field, operator, value);
+    }
 }
@@ -1,21 +1,41 @@
 package io.flexdata.spring.orm.repository;
 
+import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.datasource.ScatterGatherExecutor;
+import io.flexdata.spring.orm.core.datasource.ScatterGatherResult;
+import io.flexdata.spring.orm.core.datasource.ShardOwnership;
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
 import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
 import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.interfaces.CriteriaVisitor;
 import io.flexdata.spring.orm.core.interfaces.EnhancedQueryBuilder;
 import io.flexdata.spring.orm.core.sql.EnhancedSqlGenerator;
+import io.flexdata.spring.orm.core.sql.OrderBy;
 import io.flexdata.spring.orm.core.sql.SortDirection;
 import io.flexdata.spring.orm.core.sql.complex.*;
+import io.flexdata.spring.orm.core.util.JdbcStreamUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 增强查询构建器实现
  * 支持复杂SQL语法：多表JOIN、子查询、聚合函数、窗口函数等
+ *
+ * 广播模式下查询在每个分片上并行执行：FROM中的逻辑表替换为分片的物理表（以逻辑表名作为别名），
+ * 每个分片只返回前offset+limit行，各分片的有序结果通过{@link ShardMergeIterator}逐行归并，
+ * 每个分片按不超过页大小的fetchSize读取，内存占用约为分片数乘以页大小；
+ * 设置了分片归属且有桶正在迁移时，按每行的分片键值丢弃非归属分片上的行，跨分片计数拒绝执行
  */
 public class EnhancedQueryBuilderImpl<T> implements EnhancedQueryBuilder<T> {
     
@@ -29,6 +49,11 @@ public class EnhancedQueryBuilderImpl<T> implements EnhancedQueryBuilder<T> {
     private final Map<String, Object> parameters;
     private final List<EnhancedQueryBuilder<T>> unionQueries;
     private UnionQuery.UnionType unionType;
+    private int fetchSize = JdbcStreamUtils.DEFAULT_FETCH_SIZE;
+    private List<ShardTarget> shards;
+    private Map<ShardTarget, Criteria> shardCriteria;
+    private ShardOwnership shardOwnership;
+    private String shardingColumn;
     
     public EnhancedQueryBuilderImpl(Class<T> entityClass,
                                    EnhancedSqlGenerator sqlGenerator,
@@ -303,11 +328,40 @@ public class EnhancedQueryBuilderImpl<T> implements EnhancedQueryBuilder<T> {
         return this;
     }
     
+    @Override
+    public EnhancedQueryBuilder<T> fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+    
     @Override
     public EnhancedQueryBuilder<T> page(int page, int size) {
         return limit(size).offset(page * size);
     }
     
+    @Override
+    public EnhancedQueryBuilder<T> broadcast(List<ShardTarget> shards) {
+        this.shards = shards != null && !shards.isEmpty() ? new ArrayList<>(shards) : null;
+        this.shardCriteria = null;
+        return this;
+    }
+    
+    /**
+     * 设置广播查询所用的分片归属和查询结果中分片键对应的列
+     */
+    public EnhancedQueryBuilderImpl<T> shardOwnership(ShardOwnership shardOwnership, String shardingColumn) {
+        this.shardOwnership = shardOwnership;
+        this.shardingColumn = shardingColumn;
+        return this;
+    }
+    
+    @Override
+    public EnhancedQueryBuilder<T> broadcast(Map<ShardTarget, Criteria> shardCriteria) {
+        this.shards = shardCriteria != null ? new ArrayList<>(shardCriteria.keySet()) : null;
+        this.shardCriteria = shardCriteria != null ? new HashMap<>(shardCriteria) : null;
+        return this;
+    }
+    
     @Override
     public EnhancedQueryBuilder<T> selectWindowFunction(String function, String field, String alias) {
         StringBuilder windowFunc = new StringBuilder();
@@ -384,9 +438,31 @@ public class EnhancedQueryBuilderImpl<T> implements EnhancedQueryBuilder<T> {
     
     @Override
     public List<T> execute() {
+        if (shards != null) {
+            try (Stream<T> stream = broadcastStream()) {
+                return stream.collect(Collectors.toList());
+            }
+        }
+        String sql = toSql();
+        Map<String, Object> params = getParameters();
+        return jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass, sql));
+    }
+    
+    @Override
+    public Stream<T> stream() {
+        if (shards != null) {
+            return broadcastStream();
+        }
         String sql = toSql();
         Map<String, Object> params = getParameters();
-        return jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass));
+        return JdbcStreamUtils.stream(jdbcTemplate, sql, params, rowMapperFactory.getRowMapper(entityClass, sql), fetchSize);
+    }
+    
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        try (Stream<T> stream = stream()) {
+            stream.forEach(action);
+        }
     }
     
     @Override
@@ -410,13 +486,196 @@ public class EnhancedQueryBuilderImpl<T> implements EnhancedQueryBuilder<T> {
         countQuery.getJoins().addAll(complexQuery.getJoins());
         countQuery.where(complexQuery.getWhereClause());
         
-        String sql = sqlGenerator.generateComplexSelect(countQuery);
         Map<String, Object> params = getParameters();
+        if (shards != null) {
+            if (shardOwnership != null && shardOwnership.isMigrating()) {
+                // 部分计数无法区分迁移中的桶在两个分片上的重复行
+                throw new IllegalStateException("Cannot count across shards of table " + shardOwnership.getLogicalTable()
+                        + " while buckets are migrating");
+            }
+            Map<ShardTarget, String> sqlByShard = new HashMap<>();
+            for (ShardTarget shard : shards) {
+                sqlByShard.put(shard, sqlGenerator.generateComplexSelect(forShard(countQuery, shard, shardWhere(shard), null)));
+            }
+            ScatterGatherExecutor executor = DataSourceContext.getScatterGatherExecutor();
+            List<Long> counts = executor.executeOnShards(shards, shard -> {
+                Long count = jdbcTemplate.queryForObject(sqlByShard.get(shard), shardParameters(shard, params), Long.class);
+                return count != null ? count : 0L;
+            }, executor.getDefaultTimeoutMillis(), ScatterGatherExecutor.FailurePolicy.FAIL_FAST).getResults();
+            return counts.stream().mapToLong(Long::longValue).sum();
+        }
         
+        String sql = sqlGenerator.generateComplexSelect(countQuery);
         Long count = jdbcTemplate.queryForObject(sql, params, Long.class);
         return count != null ? count : 0L;
     }
     
+    /**
+     * 在所有分片上并行打开流式查询并归并
+     * 任一分片失败或超时时关闭已打开的分片并抛出该异常；返回的Stream持有每个分片的连接，必须关闭
+     */
+    private Stream<T> broadcastStream() {
+        if (!unionQueries.isEmpty()) {
+            throw new IllegalStateException("UNION is not supported in broadcast queries");
+        }
+        if (!complexQuery.getGroupByFields().isEmpty()) {
+            throw new IllegalStateException("GROUP BY is not supported in broadcast queries");
+        }
+        Integer limit = complexQuery.getLimit();
+        int offset = complexQuery.getOffset() != null ? complexQuery.getOffset() : 0;
+        // 全局第offset+1到offset+limit行一定在各分片的前offset+limit行之内
+        Integer shardLimit = limit != null ? offset + limit : null;
+        int shardFetchSize = shardLimit != null ? Math.max(1, Math.min(fetchSize, shardLimit)) : fetchSize;
+        // 各分片按归并时的比较规则放置NULL：升序在前、降序在后；不支持NULLS FIRST/LAST的数据库默认顺序与之相同
+        List<OrderBy> orderBy = new ArrayList<>(complexQuery.getOrderByFields().size());
+        for (OrderBy order : complexQuery.getOrderByFields()) {
+            orderBy.add(new OrderBy(order.getField(), order.getDirection(), order.getDirection() == SortDirection.ASC));
+        }
+        Map<String, Object> params = getParameters();
+        Map<ShardTarget, String> sqlByShard = new HashMap<>();
+        Map<ShardTarget, String> defaultNullsSqlByShard = new HashMap<>();
+        for (ShardTarget shard : shards) {
+            ComplexSelectQuery shardQuery = forShard(complexQuery, shard, shardWhere(shard), shardLimit);
+            defaultNullsSqlByShard.put(shard, sqlGenerator.generateComplexSelect(shardQuery));
+            shardQuery.getOrderByFields().clear();
+            shardQuery.getOrderByFields().addAll(orderBy);
+            sqlByShard.put(shard, sqlGenerator.generateComplexSelect(shardQuery));
+        }
+        // 每行都在其归属分片的前offset+limit行之内，丢弃其他分片上的副本后归并结果不变
+        ShardOwnership ownership = shardOwnership != null && shardOwnership.isMigrating() ? shardOwnership : null;
+        
+        // 超时后才打开的分片发现查询已放弃，自行关闭
+        List<Stream<?>> opened = new ArrayList<>();
+        boolean[] abandoned = new boolean[1];
+        ScatterGatherExecutor executor = DataSourceContext.getScatterGatherExecutor();
+        Iterator<T> merged;
+        try {
+            ScatterGatherResult<Iterator<ShardMergeIterator.KeyedRow<T>>> result = executor.executeOnShards(shards, shard -> {
+                String sql = sqlByShard.get(shard);
+                RowMapper<ShardMergeIterator.KeyedRow<T>> rowMapper =
+                        ShardMergeIterator.keyedRowMapper(orderBy, rowMapperFactory.getRowMapper(entityClass, sql));
+                if (ownership != null) {
+                    rowMapper = ownedRows(rowMapper, shard, ownership);
+                }
+                Stream<ShardMergeIterator.KeyedRow<T>> stream = JdbcStreamUtils.stream(jdbcTemplate,
+                        dialect -> dialect.supportsNullsOrdering() ? sql : defaultNullsSqlByShard.get(shard),
+                        shardParameters(shard, params), rowMapper, shardFetchSize);
+                synchronized (opened) {
+                    if (abandoned[0]) {
+                        stream.close();
+                        throw new IllegalStateException("Broadcast query on shard '" + shard + "' was abandoned");
+                    }
+                    opened.add(stream);
+                }
+                return ownership != null ? stream.filter(Objects::nonNull).iterator() : stream.iterator();
+            }, executor.getDefaultTimeoutMillis(), ScatterGatherExecutor.FailurePolicy.BEST_EFFORT);
+            if (result.isPartial()) {
+                Throwable failure = result.getFailures().values().iterator().next();
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                throw failure instanceof RuntimeException ? (RuntimeException) failure
+                        : new IllegalStateException("Broadcast query failed on shards " + result.getFailures().keySet(), failure);
+            }
+            merged = new ShardMergeIterator<>(result.getResults(), orderBy);
+        } catch (RuntimeException | Error e) {
+            closeShards(opened, abandoned);
+            throw e;
+        }
+        
+        Stream<T> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> closeShards(opened, abandoned));
+        if (offset > 0) {
+            stream = stream.skip(offset);
+        }
+        return limit != null ? stream.limit(limit) : stream;
+    }
+    
+    /**
+     * 只映射以该分片为准的行，其他行返回null，在归并前过滤掉
+     */
+    private RowMapper<ShardMergeIterator.KeyedRow<T>> ownedRows(RowMapper<ShardMergeIterator.KeyedRow<T>> rowMapper,
+                                                                 ShardTarget shard, ShardOwnership ownership) {
+        String column = ShardMergeIterator.columnLabel(shardingColumn != null ? shardingColumn : ownership.getShardingKey());
+        return new RowMapper<ShardMergeIterator.KeyedRow<T>>() {
+            private int index;
+
+            @Override
+            public ShardMergeIterator.KeyedRow<T> mapRow(ResultSet rs, int rowNum) throws SQLException {
+                if (index == 0) {
+                    try {
+                        index = rs.findColumn(column);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Broadcast query on table " + ownership.getLogicalTable()
+                                + " must select sharding column '" + column + "' while buckets are migrating", e);
+                    }
+                }
+                return ownership.owns(shard, rs.getObject(index)) ? rowMapper.mapRow(rs, rowNum) : null;
+            }
+        };
+    }
+    
+    private static void closeShards(List<Stream<?>> opened, boolean[] abandoned) {
+        synchronized (opened) {
+            abandoned[0] = true;
+            for (Stream<?> stream : opened) {
+                stream.close();
+            }
+            opened.clear();
+        }
+    }
+    
+    /**
+     * 分片上的WHERE条件：where设置的条件与该分片自己的条件AND
+     */
+    private Criteria shardWhere(ShardTarget shard) {
+        Criteria where = complexQuery.getWhereClause();
+        Criteria own = shardCriteria != null ? shardCriteria.get(shard) : null;
+        if (own == null) {
+            return where;
+        }
+        return where != null ? where.and(own) : own;
+    }
+    
+    private Map<String, Object> shardParameters(ShardTarget shard, Map<String, Object> params) {
+        Criteria own = shardCriteria != null ? shardCriteria.get(shard) : null;
+        if (own == null) {
+            return params;
+        }
+        Map<String, Object> shardParams = new HashMap<>(params);
+        shardParams.putAll(own.getParameters());
+        return shardParams;
+    }
+    
+    /**
+     * 复制查询并把FROM中的逻辑表替换为分片的物理表，物理表以逻辑表名作为别名，条件中的"逻辑表.列"保持有效
+     */
+    private static ComplexSelectQuery forShard(ComplexSelectQuery source, ShardTarget shard, Criteria where, Integer limit) {
+        ComplexSelectQuery query = new ComplexSelectQuery();
+        query.getSelectFields().addAll(source.getSelectFields());
+        for (TableReference table : source.getFromTables()) {
+            if (shard.isTableMapped() && !table.isSubQuery() && shard.getLogicalTable().equals(table.getTableName())) {
+                query.getFromTables().add(new TableReference(shard.getPhysicalTable(), table.getEffectiveName()));
+            } else {
+                query.getFromTables().add(table);
+            }
+        }
+        query.getJoins().addAll(source.getJoins());
+        query.where(where);
+        query.getGroupByFields().addAll(source.getGroupByFields());
+        query.having(source.getHavingClause());
+        query.getOrderByFields().addAll(source.getOrderByFields());
+        query.getCteDefinitions().addAll(source.getCteDefinitions());
+        if (source.isDistinct()) {
+            query.distinct();
+        }
+        if (limit != null) {
+            query.limit(limit);
+        }
+        return query;
+    }
+    
     @Override
     public T executeFirst() {
         List<T> results = limit(1).execute();
@@ -485,16 +744,26 @@ public class EnhancedQueryBuilderImpl<T> implements EnhancedQueryBuilder<T> {
     private static class SimpleCriteria implements Criteria {
         private final String condition;
         private final Map<String, Object> parameters;
+        // 只有按字段、操作符和值构造时才有结构
+        private final String field;
+        private final String operator;
+        private final Object value;
         
         public SimpleCriteria(String condition) {
             this.condition = condition;
             this.parameters = new HashMap<>();
+            this.field = null;
+            this.operator = null;
+            this.value = null;
         }
         
         public SimpleCriteria(String field, String operator, Object value) {
             this.condition = field + " " + operator + " :" + field.replace(".", "_");
             this.parameters = new HashMap<>();
             this.parameters.put(field.replace(".", "_"), value);
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
         }
         
         @Override
@@ -507,6 +776,11 @@ public class EnhancedQueryBuilderImpl<T> implements EnhancedQueryBuilder<T> {
             return parameters;
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return field != null ? visitor.visitComparison(field, operator, value) : visitor.visitOther(this);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
@@ -542,6 +816,11 @@ public class EnhancedQueryBuilderImpl<T> implements EnhancedQueryBuilder<T> {
             return params;
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return visitor.visitComposite(left, operator, right);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
@@ -634,6 +913,11 @@ public class EnhancedQueryBuilderImpl<T> implements EnhancedQueryBuilder<T> {
             return params;
         }
         
+        @Override
+        public <R> R accept(CriteriaVisitor<R> visitor) {
+            return visitor.visitIn(field, values, false);
+        }
+        
         @Override
         public Criteria and(Criteria other) {
             return new CompositeCriteria(this, "AND", other);
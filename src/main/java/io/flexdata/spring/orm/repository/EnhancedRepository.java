@@ -1,5 +1,6 @@
 package io.flexdata.spring.orm.repository;
 
+import io.flexdata.spring.orm.core.cache.EntityCache;
 import io.flexdata.spring.orm.core.interfaces.Criteria;
 import io.flexdata.spring.orm.core.interfaces.EnhancedQueryBuilder;
 import io.flexdata.spring.orm.core.sql.complex.SubQuery;
@@ -10,6 +11,8 @@ import org.springframework.data.domain.Pageable;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * 增强Repository接口
@@ -101,6 +104,17 @@ public interface EnhancedRepository<T, ID> {
      */
     Page<T> findByCriteria(Criteria criteria, Pageable pageable);
     
+    /**
+     * 流式查询，结果逐行读取而不整体加载到内存
+     * 返回的Stream持有数据库连接，必须在try-with-resources中使用
+     */
+    Stream<T> stream(Criteria criteria);
+    
+    /**
+     * 逐行处理查询结果，处理完毕后立即释放连接
+     */
+    void forEach(Criteria criteria, Consumer<? super T> action);
+    
     // ========== 多表JOIN查询 ==========
     
     /**
@@ -228,6 +242,7 @@ public interface EnhancedRepository<T, ID> {
     
     /**
      * 执行原生更新
+     * 无法同步写入迁移目标，本表的桶迁移期间抛出IllegalStateException，迁移中的表应使用save、deleteById或按条件更新删除
      */
     int executeNativeUpdate(String sql, Map<String, Object> parameters);
     
@@ -256,12 +271,17 @@ public interface EnhancedRepository<T, ID> {
     // ========== 缓存支持 ==========
     
     /**
-     * 启用查询缓存
+     * 启用一级实体缓存，使用默认容量和存活时间
      */
     EnhancedRepository<T, ID> enableCache();
     
     /**
-     * 禁用查询缓存
+     * 启用一级实体缓存，使用指定的（可共享的）缓存实例
+     */
+    EnhancedRepository<T, ID> enableCache(EntityCache entityCache);
+    
+    /**
+     * 禁用实体缓存，并清除本实体类已缓存的数据
      */
     EnhancedRepository<T, ID> disableCache();
     
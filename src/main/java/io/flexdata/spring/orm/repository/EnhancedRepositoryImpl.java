@@ -1,26 +1,41 @@
 package io.flexdata.spring.orm.repository;
 
+import io.flexdata.spring.orm.core.cache.CacheInvalidationBus;
+import io.flexdata.spring.orm.core.cache.CacheInvalidationEvent;
+import io.flexdata.spring.orm.core.cache.CacheInvalidationListener;
+import io.flexdata.spring.orm.core.cache.EntityCache;
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
+import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.datasource.ScatterGatherExecutor;
+import io.flexdata.spring.orm.core.datasource.ShadowWrite;
+import io.flexdata.spring.orm.core.datasource.ShardOwnership;
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
 import io.flexdata.spring.orm.core.interfaces.Criteria;
 import io.flexdata.spring.orm.core.interfaces.EnhancedQueryBuilder;
 import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
 import io.flexdata.spring.orm.core.sql.EnhancedCriteriaBuilder;
 import io.flexdata.spring.orm.core.sql.EnhancedSqlGenerator;
 import io.flexdata.spring.orm.core.sql.SortDirection;
+import io.flexdata.spring.orm.core.sql.SqlTableReplacer;
 import io.flexdata.spring.orm.core.sql.complex.SubQuery;
 import io.flexdata.spring.orm.core.sql.complex.ComplexSelectQuery;
 import io.flexdata.spring.orm.core.metadata.EntityMetadata;
 import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
 import io.flexdata.spring.orm.core.metadata.FieldMetadata;
+import io.flexdata.spring.orm.core.util.JdbcBatchUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.lang.reflect.Field;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * 增强Repository实现类
@@ -28,6 +43,11 @@ import java.util.*;
  */
 public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID> {
     
+    /**
+     * 同步写入时每条语句携带的主键数上限
+     */
+    private static final int SHADOW_ID_CHUNK = 1000;
+
     private final Class<T> entityClass;
     private final Class<ID> idClass;
     private final String tableName;
@@ -36,7 +56,19 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     private final EnhancedSqlGenerator sqlGenerator;
     private final RowMapperFactory rowMapperFactory;
     private final EntityMetadataRegistry metadataRegistry;
-    private boolean cacheEnabled = false;
+    private volatile EntityCache entityCache;
+    private volatile QueryResultCache queryResultCache;
+    private volatile CacheInvalidationBus invalidationBus;
+    private volatile List<ShardTarget> shards;
+    private volatile ShardOwnership shardOwnership;
+    private final CacheInvalidationListener remoteInvalidationListener = this::onRemoteInvalidation;
+    
+    // 只依赖表名和主键列的语句，构造时生成一次
+    private final String findByIdSql;
+    private final String findAllSql;
+    private final String deleteByIdSql;
+    private final String existsByIdSql;
+    private final String countSql;
     
     public EnhancedRepositoryImpl(Class<T> entityClass, 
                                  Class<ID> idClass,
@@ -54,6 +86,11 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
         this.sqlGenerator = sqlGenerator;
         this.rowMapperFactory = rowMapperFactory;
         this.metadataRegistry = metadataRegistry;
+        this.findByIdSql = "SELECT * FROM " + tableName + " WHERE " + idFieldName + " = :id";
+        this.findAllSql = "SELECT * FROM " + tableName;
+        this.deleteByIdSql = "DELETE FROM " + tableName + " WHERE " + idFieldName + " = :id";
+        this.existsByIdSql = "SELECT COUNT(*) FROM " + tableName + " WHERE " + idFieldName + " = :id";
+        this.countSql = "SELECT COUNT(*) FROM " + tableName;
     }
     
     // ========== 基础CRUD操作 ==========
@@ -65,45 +102,30 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
             // 获取实体的ID值
             Object idValue = getIdValue(entity);
             
-            if (idValue == null || (idValue instanceof Number && ((Number) idValue).longValue() == 0)) {
+            T saved;
+            if (isNew(idValue)) {
                 // 插入新记录
-                return insert(entity);
+                saved = insert(entity);
             } else {
                 // 更新现有记录
-                return update(entity);
+                saved = update(entity);
             }
+            replayUpserts(Collections.singletonList(saved));
+            cachePut(saved);
+            invalidateQueries(Collections.singletonList(getIdValue(saved)));
+            return saved;
         } catch (Exception e) {
             throw new RuntimeException("Failed to save entity: " + entity.getClass().getSimpleName(), e);
         }
     }
     
     private T insert(T entity) throws Exception {
-        // 构建INSERT SQL
-        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
-        StringBuilder values = new StringBuilder(" VALUES (");
-        Map<String, Object> params = new HashMap<>();
-        
-        // 获取实体元数据
         EntityMetadata metadata = getEntityMetadata();
-        List<String> columns = new ArrayList<>();
-        
-        for (FieldMetadata field : metadata.getFields().values()) {
-            if (!field.getColumnName().equals(idFieldName)) { // 跳过自增ID
-                Object value = getFieldValue(entity, field.getFieldName());
-                if (value != null) {
-                    columns.add(field.getColumnName());
-                    params.put(field.getColumnName(), value);
-                }
-            }
-        }
-        
-        sql.append(String.join(", ", columns)).append(")");
-        values.append(columns.stream().map(col -> ":" + col).collect(java.util.stream.Collectors.joining(", "))).append(")");
-        sql.append(values);
-        
+        List<FieldMetadata> columns = insertColumns(entity, metadata);
+
         // 执行插入
         KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(sql.toString(), new MapSqlParameterSource(params), keyHolder);
+        jdbcTemplate.update(buildInsertSql(tableName, columns), insertParameters(entity, columns), keyHolder);
         
         // 设置生成的ID
         if (keyHolder.getKey() != null) {
@@ -114,33 +136,152 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     }
     
     private T update(T entity) throws Exception {
-        // 构建UPDATE SQL
-        StringBuilder sql = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
-        Map<String, Object> params = new HashMap<>();
-        
-        // 获取实体元数据
         EntityMetadata metadata = getEntityMetadata();
-        List<String> setClauses = new ArrayList<>();
+
+        // 执行更新
+        int updated = jdbcTemplate.update(buildUpdateSql(tableName, metadata), updateParameters(entity, metadata));
+        if (updated == 0) {
+            throw new RuntimeException("Entity not found for update: " + getIdValue(entity));
+        }
         
+        return entity;
+    }
+
+    private boolean isNew(Object idValue) {
+        return idValue == null || (idValue instanceof Number && ((Number) idValue).longValue() == 0);
+    }
+
+    /**
+     * 插入时只写入非空的非主键列，未写入的列使用数据库默认值
+     */
+    private List<FieldMetadata> insertColumns(T entity, EntityMetadata metadata) {
+        List<FieldMetadata> columns = new ArrayList<>();
+        for (FieldMetadata field : metadata.getFields().values()) {
+            if (!field.getColumnName().equals(idFieldName) && field.getValue(entity) != null) { // 跳过自增ID
+                columns.add(field);
+            }
+        }
+        return columns;
+    }
+
+    private String buildInsertSql(String table, List<FieldMetadata> columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder values = new StringBuilder(" VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append(columns.get(i).getColumnName());
+            values.append(':').append(columns.get(i).getColumnName());
+        }
+        return sql.append(")").append(values).append(")").toString();
+    }
+
+    private MapSqlParameterSource insertParameters(T entity, List<FieldMetadata> columns) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        for (FieldMetadata field : columns) {
+            params.addValue(field.getColumnName(), getFieldValue(entity, field.getFieldName()));
+        }
+        return params;
+    }
+
+    private String buildUpdateSql(String table, EntityMetadata metadata) {
+        List<String> setClauses = new ArrayList<>();
         for (FieldMetadata field : metadata.getFields().values()) {
             if (!field.getColumnName().equals(idFieldName)) {
-                Object value = getFieldValue(entity, field.getFieldName());
                 setClauses.add(field.getColumnName() + " = :" + field.getColumnName());
-                params.put(field.getColumnName(), value);
             }
         }
-        
-        sql.append(String.join(", ", setClauses));
-        sql.append(" WHERE ").append(idFieldName).append(" = :id");
-        params.put("id", getIdValue(entity));
-        
-        // 执行更新
-        int updated = jdbcTemplate.update(sql.toString(), params);
-        if (updated == 0) {
-            throw new RuntimeException("Entity not found for update: " + getIdValue(entity));
+        return "UPDATE " + table + " SET " + String.join(", ", setClauses) + " WHERE " + idFieldName + " = :id";
+    }
+
+    private MapSqlParameterSource updateParameters(T entity, EntityMetadata metadata) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        for (FieldMetadata field : metadata.getFields().values()) {
+            if (!field.getColumnName().equals(idFieldName)) {
+                params.addValue(field.getColumnName(), getFieldValue(entity, field.getFieldName()));
+            }
         }
-        
-        return entity;
+        params.addValue("id", getIdValue(entity));
+        return params;
+    }
+
+    /**
+     * 桶迁移期间把主分片上写入的行同步到另一个分片
+     * 主键已经确定，按主键更新，未命中再带主键插入，重复执行结果不变；参数在此时取值，提交后写入也不受实体后续修改的影响。
+     * 只同步分片键值落在迁往同步目标的桶中的行
+     */
+    private void replayUpserts(List<T> entities) {
+        ShadowWrite shadow = ShadowWrite.current(tableName);
+        if (shadow == null || entities.isEmpty()) {
+            return;
+        }
+        EntityMetadata metadata = getEntityMetadata();
+        FieldMetadata idField = getFieldMetadata(idFieldName);
+        FieldMetadata shardingField = shardingField(shadow.getShardingKey());
+        List<MapSqlParameterSource> updateParams = new ArrayList<>(entities.size());
+        List<List<FieldMetadata>> insertColumns = new ArrayList<>(entities.size());
+        List<MapSqlParameterSource> insertParams = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            if (shardingField != null && !shadow.covers(getFieldValue(entity, shardingField.getFieldName()))) {
+                continue;
+            }
+            List<FieldMetadata> columns = new ArrayList<>();
+            columns.add(idField);
+            columns.addAll(insertColumns(entity, metadata));
+            updateParams.add(updateParameters(entity, metadata));
+            insertColumns.add(columns);
+            insertParams.add(insertParameters(entity, columns));
+        }
+        if (updateParams.isEmpty()) {
+            return;
+        }
+        shadow.execute(jdbcTemplate, (template, table) -> {
+            String updateSql = buildUpdateSql(table, metadata);
+            for (int i = 0; i < updateParams.size(); i++) {
+                if (template.update(updateSql, updateParams.get(i)) == 0) {
+                    template.update(buildInsertSql(table, insertColumns.get(i)), insertParams.get(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * 桶迁移期间按条件写入前，在主分片上选出需要同步的行的主键
+     * 同步目标上还有不在迁移中的桶的行，不能在同步目标上直接按条件写入，只能按这些主键同步
+     */
+    private List<Object> shadowIds(ShadowWrite shadow, String where, Map<String, Object> params) {
+        String shardingColumn = shardingColumn(shadow.getOwnership());
+        List<Object> ids = new ArrayList<>();
+        if (shardingColumn == null) {
+            ids.addAll(jdbcTemplate.queryForList("SELECT " + idFieldName + " FROM " + tableName + where, params, Object.class));
+            return ids;
+        }
+        jdbcTemplate.query("SELECT " + idFieldName + ", " + shardingColumn + " FROM " + tableName + where, params, rs -> {
+            if (shadow.covers(rs.getObject(2))) {
+                ids.add(rs.getObject(1));
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * 在同步目标上按主键执行写入，statement由同步目标的表名生成不带WHERE的语句
+     */
+    private void replayByIds(ShadowWrite shadow, List<Object> ids, Map<String, Object> params,
+                             Function<String, String> statement) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        shadow.execute(jdbcTemplate, (template, table) -> {
+            String sql = statement.apply(table) + " WHERE " + idFieldName + " IN (:shadow_ids)";
+            for (int from = 0; from < ids.size(); from += SHADOW_ID_CHUNK) {
+                Map<String, Object> chunkParams = new HashMap<>(params);
+                chunkParams.put("shadow_ids", ids.subList(from, Math.min(ids.size(), from + SHADOW_ID_CHUNK)));
+                template.update(sql, chunkParams);
+            }
+        });
     }
     
     // 辅助方法
@@ -148,11 +289,17 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
         return metadataRegistry.getMetadata(entityClass);
     }
     
+    private FieldMetadata getFieldMetadata(String fieldName) {
+        FieldMetadata field = getEntityMetadata().getFields().get(fieldName);
+        if (field == null) {
+            throw new RuntimeException("No such field: " + fieldName + " in " + entityClass.getName());
+        }
+        return field;
+    }
+    
     private Object getFieldValue(T entity, String fieldName) {
         try {
-            java.lang.reflect.Field field = entityClass.getDeclaredField(fieldName);
-            field.setAccessible(true);
-            return field.get(entity);
+            return getFieldMetadata(fieldName).getValue(entity);
         } catch (Exception e) {
             throw new RuntimeException("Failed to get field value: " + fieldName, e);
         }
@@ -160,9 +307,7 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     
     private ID getIdValue(T entity) {
         try {
-            java.lang.reflect.Field field = entityClass.getDeclaredField(idFieldName);
-            field.setAccessible(true);
-            return (ID) field.get(entity);
+            return (ID) getFieldMetadata(idFieldName).getValue(entity);
         } catch (Exception e) {
             throw new RuntimeException("Failed to get ID value", e);
         }
@@ -170,9 +315,7 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     
     private void setIdValue(T entity, Number generatedId) {
         try {
-            java.lang.reflect.Field field = entityClass.getDeclaredField(idFieldName);
-            field.setAccessible(true);
-            field.set(entity, generatedId);
+            getFieldMetadata(idFieldName).setGeneratedValue(entity, generatedId);
         } catch (Exception e) {
             throw new RuntimeException("Failed to set ID value", e);
         }
@@ -181,43 +324,120 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     @Override
     @Transactional
     public List<T> saveAll(Iterable<T> entities) {
+        EntityMetadata metadata = getEntityMetadata();
         List<T> result = new ArrayList<>();
+        // 插入语句只包含非空列，按列组合分组后每组一次批处理
+        Map<List<FieldMetadata>, List<T>> insertGroups = new LinkedHashMap<>();
+        List<T> updates = new ArrayList<>();
+
         for (T entity : entities) {
-            result.add(save(entity));
+            result.add(entity);
+            if (isNew(getIdValue(entity))) {
+                insertGroups.computeIfAbsent(insertColumns(entity, metadata), k -> new ArrayList<>()).add(entity);
+            } else {
+                updates.add(entity);
+            }
+        }
+
+        try {
+            for (Map.Entry<List<FieldMetadata>, List<T>> group : insertGroups.entrySet()) {
+                List<FieldMetadata> columns = group.getKey();
+                List<T> inserts = group.getValue();
+                List<MapSqlParameterSource> params = new ArrayList<>(inserts.size());
+                for (T entity : inserts) {
+                    params.add(insertParameters(entity, columns));
+                }
+
+                List<Object> keys = JdbcBatchUtils.batchInsertReturningKeys(jdbcTemplate,
+                        buildInsertSql(tableName, columns), params, getFieldMetadata(idFieldName).getColumnName());
+                for (int i = 0; i < inserts.size(); i++) {
+                    if (keys.get(i) instanceof Number) {
+                        setIdValue(inserts.get(i), (Number) keys.get(i));
+                    }
+                }
+            }
+
+            if (!updates.isEmpty()) {
+                SqlParameterSource[] params = new SqlParameterSource[updates.size()];
+                for (int i = 0; i < updates.size(); i++) {
+                    params[i] = updateParameters(updates.get(i), metadata);
+                }
+                int[] counts = jdbcTemplate.batchUpdate(buildUpdateSql(tableName, metadata), params);
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        throw new RuntimeException("Entity not found for update: " + getIdValue(updates.get(i)));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Failed to save entities: " + entityClass.getSimpleName(), e);
+        }
+        replayUpserts(result);
+        for (T entity : result) {
+            cachePut(entity);
+        }
+        if (!result.isEmpty()) {
+            List<Object> ids = new ArrayList<>(result.size());
+            for (T entity : result) {
+                ids.add(getIdValue(entity));
+            }
+            invalidateQueries(ids);
         }
         return result;
     }
     
     @Override
     public Optional<T> findById(ID id) {
-        String sql = "SELECT * FROM " + tableName + " WHERE " + idFieldName + " = :id";
+        EntityCache cache = entityCache;
+        if (cache != null) {
+            T cached = cache.get(entityClass, id);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+
+        String sql = findByIdSql;
         Map<String, Object> params = Collections.singletonMap("id", id);
+        // 读取前记下版本，读取期间有写入提交时不把读到的旧行放入缓存
+        long stamp = cache != null ? cache.stamp(entityClass, id) : 0L;
         
-        List<T> results = jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass));
-        return results.isEmpty() ? Optional.empty() : Optional.of(results.get(0));
+        List<T> results = jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass, sql));
+        if (results.isEmpty()) {
+            return Optional.empty();
+        }
+        if (cache != null) {
+            cache.putLoaded(entityClass, id, results.get(0), stamp);
+        }
+        return Optional.of(results.get(0));
     }
     
     @Override
     public List<T> findAll() {
-        String sql = "SELECT * FROM " + tableName;
-        return jdbcTemplate.query(sql, rowMapperFactory.getRowMapper(entityClass));
+        String sql = findAllSql;
+        return jdbcTemplate.query(sql, rowMapperFactory.getRowMapper(entityClass, sql));
     }
     
     @Override
     @Transactional
     public void deleteById(ID id) {
-        String sql = "DELETE FROM " + tableName + " WHERE " + idFieldName + " = :id";
+        String sql = deleteByIdSql;
         Map<String, Object> params = Collections.singletonMap("id", id);
+        ShadowWrite shadow = ShadowWrite.current(tableName);
+        List<Object> shadowIds = shadow != null
+                ? shadowIds(shadow, " WHERE " + idFieldName + " = :id", params) : Collections.emptyList();
         jdbcTemplate.update(sql, params);
+        if (shadow != null) {
+            replayByIds(shadow, shadowIds, Collections.emptyMap(), table -> "DELETE FROM " + table);
+        }
+        cacheEvict(id);
+        invalidateQueries(Collections.singletonList(id));
     }
     
     @Override
     @Transactional
     public void delete(T entity) {
         try {
-            Field idField = entityClass.getDeclaredField(idFieldName);
-            idField.setAccessible(true);
-            ID id = (ID) idField.get(entity);
+            ID id = getIdValue(entity);
             deleteById(id);
         } catch (Exception e) {
             throw new RuntimeException("Failed to delete entity", e);
@@ -226,7 +446,12 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     
     @Override
     public boolean existsById(ID id) {
-        String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE " + idFieldName + " = :id";
+        EntityCache cache = entityCache;
+        if (cache != null && cache.get(entityClass, id) != null) {
+            return true;
+        }
+
+        String sql = existsByIdSql;
         Map<String, Object> params = Collections.singletonMap("id", id);
         Long count = jdbcTemplate.queryForObject(sql, params, Long.class);
         return count != null && count > 0;
@@ -234,7 +459,7 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     
     @Override
     public long count() {
-        String sql = "SELECT COUNT(*) FROM " + tableName;
+        String sql = countSql;
         Long count = jdbcTemplate.queryForObject(sql, Collections.emptyMap(), Long.class);
         return count != null ? count : 0L;
     }
@@ -244,15 +469,49 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     @Override
     public EnhancedQueryBuilder<T> createQuery() {
         return new EnhancedQueryBuilderImpl<>(entityClass, sqlGenerator, jdbcTemplate, rowMapperFactory)
+                .shardOwnership(shardOwnership, shardingColumn(shardOwnership))
                 .from(tableName);
     }
     
     @Override
     public <R> EnhancedQueryBuilder<R> createQuery(Class<R> resultType) {
         return new EnhancedQueryBuilderImpl<>(resultType, sqlGenerator, jdbcTemplate, rowMapperFactory)
+                .shardOwnership(shardOwnership, shardingColumn(shardOwnership))
                 .from(tableName);
     }
     
+    /**
+     * 分片键对应的列，分片键是实体字段名时取其列名
+     */
+    private String shardingColumn(ShardOwnership ownership) {
+        String shardingKey = ownership != null ? ownership.getShardingKey() : null;
+        if (shardingKey == null) {
+            return null;
+        }
+        FieldMetadata field = getEntityMetadata().getFields().get(shardingKey);
+        return field != null ? field.getColumnName() : shardingKey;
+    }
+
+    /**
+     * 分片键对应的实体字段，分片键可以是字段名或列名，找不到时返回null
+     */
+    private FieldMetadata shardingField(String shardingKey) {
+        if (shardingKey == null) {
+            return null;
+        }
+        EntityMetadata metadata = getEntityMetadata();
+        FieldMetadata field = metadata.getFields().get(shardingKey);
+        if (field != null) {
+            return field;
+        }
+        for (FieldMetadata candidate : metadata.getFields().values()) {
+            if (candidate.getColumnName().equalsIgnoreCase(shardingKey)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+    
     // ========== 条件查询 ==========
     
     @Override
@@ -274,6 +533,7 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     @Override
     public long countByCriteria(Criteria criteria) {
         return createQuery()
+                .broadcast(shards)
                 .where(criteria)
                 .count();
     }
@@ -290,6 +550,20 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
                 .executePage(pageable);
     }
     
+    @Override
+    public Stream<T> stream(Criteria criteria) {
+        return createQuery()
+                .where(criteria)
+                .stream();
+    }
+    
+    @Override
+    public void forEach(Criteria criteria, Consumer<? super T> action) {
+        createQuery()
+                .where(criteria)
+                .forEach(action);
+    }
+    
     // ========== 多表JOIN查询 ==========
     
     @Override
@@ -350,6 +624,11 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     @Override
     @SuppressWarnings("unchecked")
     public List<Map<String, Object>> groupBy(Criteria criteria, String... fields) {
+        List<ShardTarget> targets = shards;
+        if (targets != null) {
+            return aggregateAcrossShards(targets, countByGroup(fields), criteria, null);
+        }
+        
         EnhancedQueryBuilder<Map> query = createQuery(Map.class)
                 .select(fields)
                 .selectCount("*", "count");
@@ -365,6 +644,11 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     @Override
     @SuppressWarnings("unchecked")
     public List<Map<String, Object>> groupByHaving(Criteria whereClause, String[] groupFields, Criteria havingClause) {
+        List<ShardTarget> targets = shards;
+        if (targets != null) {
+            return aggregateAcrossShards(targets, countByGroup(groupFields), whereClause, havingClause);
+        }
+        
         EnhancedQueryBuilder<Map> query = createQuery(Map.class)
                 .select(groupFields)
                 .selectCount("*", "count");
@@ -390,6 +674,11 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     
     @Override
     public <N extends Number> N sum(String field, Criteria criteria, Class<N> resultType) {
+        List<ShardTarget> targets = shards;
+        if (targets != null) {
+            return aggregateAcrossShards(targets, ShardAggregation.Function.SUM, field, criteria, resultType);
+        }
+        
         String sql = "SELECT SUM(" + field + ") FROM " + tableName;
         Map<String, Object> params = new HashMap<>();
         
@@ -408,6 +697,11 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     
     @Override
     public <N extends Number> N avg(String field, Criteria criteria, Class<N> resultType) {
+        List<ShardTarget> targets = shards;
+        if (targets != null) {
+            return aggregateAcrossShards(targets, ShardAggregation.Function.AVG, field, criteria, resultType);
+        }
+        
         String sql = "SELECT AVG(" + field + ") FROM " + tableName;
         Map<String, Object> params = new HashMap<>();
         
@@ -426,6 +720,11 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     
     @Override
     public <V> V max(String field, Criteria criteria, Class<V> resultType) {
+        List<ShardTarget> targets = shards;
+        if (targets != null) {
+            return aggregateAcrossShards(targets, ShardAggregation.Function.MAX, field, criteria, resultType);
+        }
+        
         String sql = "SELECT MAX(" + field + ") FROM " + tableName;
         Map<String, Object> params = new HashMap<>();
         
@@ -444,6 +743,11 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     
     @Override
     public <V> V min(String field, Criteria criteria, Class<V> resultType) {
+        List<ShardTarget> targets = shards;
+        if (targets != null) {
+            return aggregateAcrossShards(targets, ShardAggregation.Function.MIN, field, criteria, resultType);
+        }
+        
         String sql = "SELECT MIN(" + field + ") FROM " + tableName;
         Map<String, Object> params = new HashMap<>();
         
@@ -455,12 +759,49 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
         return jdbcTemplate.queryForObject(sql, params, resultType);
     }
     
+    private static ShardAggregation countByGroup(String[] fields) {
+        return new ShardAggregation(fields, Collections.singletonList(
+                new ShardAggregation.Aggregate(ShardAggregation.Function.COUNT, "*", "count")));
+    }
+    
+    private <V> V aggregateAcrossShards(List<ShardTarget> targets, ShardAggregation.Function function, String field,
+                                        Criteria criteria, Class<V> resultType) {
+        List<Map<String, Object>> rows = aggregateAcrossShards(targets, ShardAggregation.scalar(function, field), criteria, null);
+        return rows.isEmpty() ? null : ShardAggregation.convert(rows.get(0).get("result"), resultType);
+    }
+    
+    /**
+     * 在所有分片上并行执行部分聚合并合并
+     * 物理表以逻辑表名作为别名，条件中带逻辑表前缀的字段在每个分片上仍然有效
+     */
+    private List<Map<String, Object>> aggregateAcrossShards(List<ShardTarget> targets, ShardAggregation aggregation,
+                                                           Criteria where, Criteria having) {
+        ShardOwnership ownership = shardOwnership;
+        if (ownership != null && ownership.isMigrating()) {
+            // 部分聚合无法区分迁移中的桶在两个分片上的重复行
+            throw new IllegalStateException("Cannot aggregate across shards of table " + tableName
+                    + " while buckets are migrating");
+        }
+        Map<String, Object> params = where != null ? where.getParameters() : Collections.emptyMap();
+        Map<ShardTarget, String> sqlByShard = new HashMap<>();
+        for (ShardTarget shard : targets) {
+            String from = shard.isTableMapped() ? shard.getPhysicalTable() + " " + tableName : tableName;
+            sqlByShard.put(shard, aggregation.partialSql(from, where));
+        }
+        ScatterGatherExecutor executor = DataSourceContext.getScatterGatherExecutor();
+        List<List<Map<String, Object>>> partials = executor.executeOnShards(targets,
+                shard -> jdbcTemplate.queryForList(sqlByShard.get(shard), params),
+                executor.getDefaultTimeoutMillis(), ScatterGatherExecutor.FailurePolicy.FAIL_FAST).getResults();
+        return aggregation.merge(partials, having);
+    }
+    
     // ========== 批量操作 ==========
     
     @Override
     @Transactional
     public int updateByCriteria(Map<String, Object> updates, Criteria criteria) {
-        StringBuilder sql = new StringBuilder("UPDATE " + tableName + " SET ");
+        StringBuilder sql = new StringBuilder(" SET ");
+        String where = "";
         Map<String, Object> params = new HashMap<>();
         
         // 构建SET子句
@@ -474,43 +815,80 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
         
         // 添加WHERE子句
         if (criteria != null) {
-            sql.append(" WHERE ").append(criteria.toSql());
+            where = " WHERE " + criteria.toSql();
             params.putAll(criteria.getParameters());
         }
         
-        return jdbcTemplate.update(sql.toString(), params);
+        String set = sql.toString();
+        ShadowWrite shadow = ShadowWrite.current(tableName);
+        List<Object> shadowIds = shadow != null ? shadowIds(shadow, where, params) : Collections.emptyList();
+        int updated = jdbcTemplate.update("UPDATE " + tableName + set + where, params);
+        if (shadow != null) {
+            replayByIds(shadow, shadowIds, params, table -> "UPDATE " + table + set);
+        }
+        cacheEvictAll();
+        invalidateQueries(null);
+        return updated;
     }
     
     @Override
     @Transactional
     public int deleteByCriteria(Criteria criteria) {
-        String sql = "DELETE FROM " + tableName;
+        String where = "";
         Map<String, Object> params = new HashMap<>();
         
         if (criteria != null) {
-            sql += " WHERE " + criteria.toSql();
+            where = " WHERE " + criteria.toSql();
             params.putAll(criteria.getParameters());
         }
         
-        return jdbcTemplate.update(sql, params);
+        ShadowWrite shadow = ShadowWrite.current(tableName);
+        List<Object> shadowIds = shadow != null ? shadowIds(shadow, where, params) : Collections.emptyList();
+        int deleted = jdbcTemplate.update("DELETE FROM " + tableName + where, params);
+        if (shadow != null) {
+            replayByIds(shadow, shadowIds, Collections.emptyMap(), table -> "DELETE FROM " + table);
+        }
+        cacheEvictAll();
+        invalidateQueries(null);
+        return deleted;
     }
     
     // ========== 原生SQL支持 ==========
     
     @Override
     public List<T> findByNativeQuery(String sql, Map<String, Object> parameters) {
-        return jdbcTemplate.query(sql, parameters, rowMapperFactory.getRowMapper(entityClass));
+        return jdbcTemplate.query(sql, parameters, rowMapperFactory.getRowMapper(entityClass, sql));
     }
     
     @Override
     public <R> List<R> findByNativeQuery(String sql, Map<String, Object> parameters, Class<R> resultType) {
-        return jdbcTemplate.query(sql, parameters, rowMapperFactory.getRowMapper(resultType));
+        return jdbcTemplate.query(sql, parameters, rowMapperFactory.getRowMapper(resultType, sql));
     }
     
     @Override
     @Transactional
     public int executeNativeUpdate(String sql, Map<String, Object> parameters) {
-        return jdbcTemplate.update(sql, parameters);
+        // 原生SQL中的表名无法可靠地改写到同步目标，也无法判断影响了哪些桶的行，桶迁移期间拒绝执行
+        ShadowWrite.rejectIfBound(tableName, "executeNativeUpdate");
+        int updated = jdbcTemplate.update(sql, parameters);
+        // 无法判断原生SQL影响了哪些行，保守地清除本实体类的缓存
+        cacheEvictAll();
+        QueryResultCache cache = queryResultCache;
+        if (cache != null) {
+            cache.invalidateForSql(sql);
+        }
+        CacheInvalidationBus bus = invalidationBus;
+        if (bus != null) {
+            // 其他节点只能按表失效，识别不出表名时至少失效本实体表
+            Set<String> tables = SqlTableReplacer.extractTableNames(sql);
+            if (tables.isEmpty()) {
+                bus.publishTable(tableName);
+            }
+            for (String table : tables) {
+                bus.publishTable(table);
+            }
+        }
+        return updated;
     }
     
     @Override
@@ -539,13 +917,11 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
         List<Criteria> criteriaList = new ArrayList<>();
         
         try {
-            Field[] fields = entityClass.getDeclaredFields();
-            for (Field field : fields) {
-                field.setAccessible(true);
-                Object value = field.get(example);
+            for (FieldMetadata field : getEntityMetadata().getFields().values()) {
+                Object value = field.getValue(example);
                 
                 if (value != null || !ignoreNull) {
-                    criteriaList.add(EnhancedCriteriaBuilder.eq(field.getName(), value));
+                    criteriaList.add(EnhancedCriteriaBuilder.eq(field.getFieldName(), value));
                 }
             }
         } catch (Exception e) {
@@ -564,31 +940,153 @@ public class EnhancedRepositoryImpl<T, ID> implements EnhancedRepository<T, ID>
     
     @Override
     public EnhancedRepository<T, ID> enableCache() {
-        this.cacheEnabled = true;
+        if (entityCache == null) {
+            entityCache = new EntityCache();
+        }
+        return this;
+    }
+    
+    @Override
+    public EnhancedRepository<T, ID> enableCache(EntityCache entityCache) {
+        this.entityCache = Objects.requireNonNull(entityCache, "entityCache");
         return this;
     }
     
     @Override
     public EnhancedRepository<T, ID> disableCache() {
-        this.cacheEnabled = false;
+        EntityCache cache = entityCache;
+        entityCache = null;
+        if (cache != null) {
+            // 禁用期间的写入不会维护缓存，重新启用时不能读到旧数据
+            cache.evictAll(entityClass);
+        }
         return this;
     }
     
     @Override
     public void clearCache() {
-        if (cacheEnabled) {
-            // 清除实体缓存
-            String cacheKey = "entity:" + entityClass.getSimpleName();
-            // 这里可以集成具体的缓存实现，如Redis、Caffeine等
-            // cacheManager.evict(cacheKey);
-            
-            // 清除查询结果缓存
-            String queryCacheKey = "query:" + entityClass.getSimpleName();
-            // cacheManager.evict(queryCacheKey);
-            
-            // 记录缓存清除日志
-            System.out.println("Cache cleared for entity: " + entityClass.getSimpleName());
+        cacheEvictAll();
+    }
+    
+    public EntityCache getEntityCache() {
+        return entityCache;
+    }
+    
+    /**
+     * 设置查询结果缓存，本仓储的写操作会使相关表的缓存失效
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+    
+    /**
+     * 设置表的分片，通常来自RoutingEngine.getShardTargets(逻辑表名)
+     * 设置后countByCriteria、groupBy、groupByHaving、sum、avg、max、min在所有分片上并行执行部分聚合并在应用内合并，
+     * 传入空列表恢复为单表执行；bucket策略的表还应设置{@link #setShardOwnership(ShardOwnership)}
+     */
+    public void setShards(List<ShardTarget> shards) {
+        this.shards = shards != null && !shards.isEmpty() ? Collections.unmodifiableList(new ArrayList<>(shards)) : null;
+    }
+    
+    public List<ShardTarget> getShards() {
+        return shards;
+    }
+    
+    /**
+     * 设置表上数据的归属，通常来自RoutingEngine.getShardOwnership(逻辑表名)
+     * 有桶正在迁移时，广播查询丢弃非归属分片上的行，跨分片的计数和聚合抛出IllegalStateException
+     */
+    public void setShardOwnership(ShardOwnership shardOwnership) {
+        this.shardOwnership = shardOwnership;
+    }
+    
+    public ShardOwnership getShardOwnership() {
+        return shardOwnership;
+    }
+    
+    /**
+     * 设置缓存失效总线：本仓储的写操作通知其他节点，其他节点的写操作淘汰本仓储的实体缓存
+     */
+    public synchronized void setInvalidationBus(CacheInvalidationBus invalidationBus) {
+        if (this.invalidationBus != null) {
+            this.invalidationBus.removeListener(remoteInvalidationListener);
+        }
+        this.invalidationBus = invalidationBus;
+        if (invalidationBus != null) {
+            invalidationBus.addListener(remoteInvalidationListener);
+        }
+    }
+    
+    private void cachePut(T entity) {
+        EntityCache cache = entityCache;
+        if (cache != null) {
+            cache.putAfterCommit(entityClass, getIdValue(entity), entity);
+        }
+    }
+    
+    private void cacheEvict(ID id) {
+        EntityCache cache = entityCache;
+        if (cache != null) {
+            cache.evictAfterCommit(entityClass, id);
+        }
+    }
+    
+    private void cacheEvictAll() {
+        EntityCache cache = entityCache;
+        if (cache != null) {
+            cache.evictAllAfterCommit(entityClass);
+        }
+    }
+    
+    /**
+     * 写入后使本地查询缓存失效并通知其他节点；ids为null表示整表
+     */
+    private void invalidateQueries(Collection<?> ids) {
+        QueryResultCache cache = queryResultCache;
+        if (cache != null) {
+            cache.invalidateTable(tableName);
+        }
+        CacheInvalidationBus bus = invalidationBus;
+        if (bus != null) {
+            bus.publish(tableName, ids);
+        }
+    }
+    
+    /**
+     * 其他节点写入本实体表时淘汰实体缓存
+     */
+    private void onRemoteInvalidation(CacheInvalidationEvent event) {
+        EntityCache cache = entityCache;
+        if (cache == null || !event.getTable().equals(QueryResultCache.normalizeTable(tableName))) {
+            return;
+        }
+        if (event.isWholeTable()) {
+            cache.evictAll(entityClass);
+            return;
+        }
+        for (Object id : event.getIds()) {
+            Object converted = toIdType(id);
+            if (converted == null) {
+                cache.evictAll(entityClass);
+                return;
+            }
+            cache.evict(entityClass, converted);
+        }
+    }
+    
+    private Object toIdType(Object id) {
+        if (idClass.isInstance(id)) {
+            return id;
+        }
+        if (id instanceof Number) {
+            Number number = (Number) id;
+            if (idClass == Long.class) {
+                return number.longValue();
+            } else if (idClass == Integer.class) {
+                return number.intValue();
+            }
         }
+        return null;
     }
     
     // ========== 事务支持 ==========
@@ -102,7 +102,7 @@ public class QueryBuilderImpl<T> implements QueryBuilder<T> {
         String sql = buildSql();
         Map<String, Object> params = buildParameters();
 
-        return jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass));
+        return jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass, sql));
     }
 
     @Override
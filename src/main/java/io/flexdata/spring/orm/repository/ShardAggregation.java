@@ -0,0 +1,383 @@
+package io.flexdata.spring.orm.repository;
+
+import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.interfaces.CriteriaVisitor;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.util.NumberUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 跨分片聚合
+ * 每个分片只返回部分聚合结果：COUNT、SUM、MAX、MIN原样下推，AVG改写为SUM和COUNT；
+ * 各分片的部分结果按分组键在哈希表中合并，AVG在合并后用总和除以总数得到，HAVING在合并后的分组上求值。
+ * 内存占用与分组数成正比，与分片上的行数无关
+ *
+ * HAVING在应用内按条件结构求值，只支持比较、IN、BETWEEN、IS NULL、LIKE及其AND/OR/NOT组合，
+ * 字段可以是分组字段、聚合别名或聚合表达式（如COUNT(*)）；原生SQL等其他条件抛出IllegalStateException
+ */
+final class ShardAggregation {
+
+    enum Function { COUNT, SUM, AVG, MAX, MIN }
+
+    private static final String AVG_SUM_SUFFIX = "__sum";
+    private static final String AVG_COUNT_SUFFIX = "__count";
+
+    private final String[] groupFields;
+    private final String[] groupLabels;
+    private final List<Aggregate> aggregates;
+
+    ShardAggregation(String[] groupFields, List<Aggregate> aggregates) {
+        this.groupFields = groupFields != null ? groupFields.clone() : new String[0];
+        this.groupLabels = new String[this.groupFields.length];
+        for (int i = 0; i < groupLabels.length; i++) {
+            groupLabels[i] = ShardMergeIterator.columnLabel(this.groupFields[i]);
+        }
+        this.aggregates = new ArrayList<>(aggregates);
+    }
+
+    /**
+     * 不分组的单个聚合，结果列名为result
+     */
+    static ShardAggregation scalar(Function function, String expression) {
+        return new ShardAggregation(null, Collections.singletonList(new Aggregate(function, expression, "result")));
+    }
+
+    /**
+     * 在一个分片上执行的部分聚合SQL
+     *
+     * @param from  FROM子句中的表，物理表与逻辑表不同时为"物理表 逻辑表"，条件中带逻辑表前缀的字段仍然有效
+     * @param where 过滤条件，可以为空
+     */
+    String partialSql(String from, Criteria where) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        List<String> columns = new ArrayList<>(Arrays.asList(groupFields));
+        for (Aggregate aggregate : aggregates) {
+            if (aggregate.function == Function.AVG) {
+                columns.add("SUM(" + aggregate.expression + ") AS " + aggregate.alias + AVG_SUM_SUFFIX);
+                columns.add("COUNT(" + aggregate.expression + ") AS " + aggregate.alias + AVG_COUNT_SUFFIX);
+            } else {
+                columns.add(aggregate.function + "(" + aggregate.expression + ") AS " + aggregate.alias);
+            }
+        }
+        sql.append(String.join(", ", columns)).append(" FROM ").append(from);
+        if (where != null) {
+            sql.append(" WHERE ").append(where.toSql());
+        }
+        if (groupFields.length > 0) {
+            sql.append(" GROUP BY ").append(String.join(", ", groupFields));
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 合并各分片的部分结果，结果按分组第一次出现的顺序排列
+     *
+     * @param partials 每个分片的部分聚合结果
+     * @param having   合并后应用的HAVING条件，可以为空
+     */
+    List<Map<String, Object>> merge(List<List<Map<String, Object>>> partials, Criteria having) {
+        Map<List<Object>, Group> groups = new LinkedHashMap<>();
+        for (List<Map<String, Object>> rows : partials) {
+            for (Map<String, Object> row : rows) {
+                Object[] key = new Object[groupLabels.length];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = row.get(groupLabels[i]);
+                }
+                groups.computeIfAbsent(Arrays.asList(key), k -> new Group(aggregates.size())).accumulate(row);
+            }
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(groups.size());
+        for (Map.Entry<List<Object>, Group> entry : groups.entrySet()) {
+            Map<String, Object> row = entry.getValue().toRow(entry.getKey());
+            if (having == null || Boolean.TRUE.equals(having.accept(new HavingEvaluator(row)))) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把合并后的聚合值转换为调用方要求的类型
+     */
+    @SuppressWarnings("unchecked")
+    static <V> V convert(Object value, Class<V> type) {
+        if (value == null || type.isInstance(value)) {
+            return (V) value;
+        }
+        if (value instanceof Number && Number.class.isAssignableFrom(type)) {
+            return (V) NumberUtils.convertNumberToTargetClass((Number) value, (Class<? extends Number>) type);
+        }
+        return DefaultConversionService.getSharedInstance().convert(value, type);
+    }
+
+    static Number add(Number a, Number b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (isIntegral(a) && isIntegral(b)) {
+            return Math.addExact(a.longValue(), b.longValue());
+        }
+        if (a instanceof BigDecimal || b instanceof BigDecimal || a instanceof BigInteger || b instanceof BigInteger) {
+            return toBigDecimal(a).add(toBigDecimal(b));
+        }
+        return a.doubleValue() + b.doubleValue();
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        return new BigDecimal(number.toString());
+    }
+
+    /**
+     * 聚合列
+     */
+    static final class Aggregate {
+        final Function function;
+        final String expression;
+        final String alias;
+
+        Aggregate(Function function, String expression, String alias) {
+            this.function = function;
+            this.expression = expression;
+            this.alias = alias;
+        }
+
+        boolean matches(String field) {
+            String normalized = normalize(field);
+            return normalized.equals(normalize(alias)) || normalized.equals(normalize(function + "(" + expression + ")"));
+        }
+
+        private static String normalize(String text) {
+            return text.replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * 一个分组的累加状态
+     */
+    private final class Group {
+        final Object[] values;
+        final long[] counts;
+
+        Group(int size) {
+            this.values = new Object[size];
+            this.counts = new long[size];
+        }
+
+        void accumulate(Map<String, Object> row) {
+            for (int i = 0; i < aggregates.size(); i++) {
+                Aggregate aggregate = aggregates.get(i);
+                switch (aggregate.function) {
+                    case COUNT:
+                    case SUM:
+                        values[i] = add((Number) values[i], (Number) row.get(aggregate.alias));
+                        break;
+                    case AVG:
+                        values[i] = add((Number) values[i], (Number) row.get(aggregate.alias + AVG_SUM_SUFFIX));
+                        Number count = (Number) row.get(aggregate.alias + AVG_COUNT_SUFFIX);
+                        counts[i] += count != null ? count.longValue() : 0L;
+                        break;
+                    case MAX:
+                    case MIN:
+                        Object value = row.get(aggregate.alias);
+                        if (value != null) {
+                            int compared = values[i] == null ? 1 : ShardMergeIterator.compareValues(value, values[i]);
+                            if (aggregate.function == Function.MAX ? compared > 0 : compared < 0) {
+                                values[i] = value;
+                            }
+                        }
+                        break;
+                    default:
+                        throw new IllegalStateException("Unsupported aggregate function: " + aggregate.function);
+                }
+            }
+        }
+
+        Map<String, Object> toRow(List<Object> key) {
+            Map<String, Object> row = new LinkedCaseInsensitiveMap<>(groupLabels.length + aggregates.size());
+            for (int i = 0; i < groupLabels.length; i++) {
+                row.put(groupLabels[i], key.get(i));
+            }
+            for (int i = 0; i < aggregates.size(); i++) {
+                Aggregate aggregate = aggregates.get(i);
+                Object value = values[i];
+                if (aggregate.function == Function.AVG) {
+                    value = value == null || counts[i] == 0 ? null
+                            : toBigDecimal((Number) value).divide(BigDecimal.valueOf(counts[i]), MathContext.DECIMAL64);
+                } else if (aggregate.function == Function.COUNT && value == null) {
+                    value = 0L;
+                }
+                row.put(aggregate.alias, value);
+            }
+            return row;
+        }
+    }
+
+    /**
+     * 在合并后的分组上按SQL三值逻辑求值HAVING条件
+     * 与NULL比较的结果为UNKNOWN（返回null），经过NOT、AND、OR按SQL规则传递，最终只保留结果为TRUE的分组
+     */
+    private final class HavingEvaluator implements CriteriaVisitor<Boolean> {
+        private final Map<String, Object> row;
+
+        HavingEvaluator(Map<String, Object> row) {
+            this.row = row;
+        }
+
+        @Override
+        public Boolean visitComparison(String field, String operator, Object value) {
+            Object actual = resolve(field);
+            if (actual == null || value == null) {
+                return null;
+            }
+            String op = operator.trim().toUpperCase(Locale.ROOT);
+            if (op.equals("LIKE") || op.equals("NOT LIKE")) {
+                return like(actual.toString(), value.toString()) == op.equals("LIKE");
+            }
+            int compared = ShardMergeIterator.compareValues(actual, value);
+            switch (op) {
+                case "=":
+                    return compared == 0;
+                case "<>":
+                case "!=":
+                    return compared != 0;
+                case ">":
+                    return compared > 0;
+                case ">=":
+                    return compared >= 0;
+                case "<":
+                    return compared < 0;
+                case "<=":
+                    return compared <= 0;
+                default:
+                    throw new IllegalStateException("Unsupported HAVING operator after cross-shard merge: " + operator);
+            }
+        }
+
+        @Override
+        public Boolean visitIn(String field, Collection<?> values, boolean negated) {
+            Object actual = resolve(field);
+            if (actual == null) {
+                return null;
+            }
+            boolean unknown = false;
+            for (Object value : values) {
+                if (value == null) {
+                    unknown = true;
+                } else if (ShardMergeIterator.compareValues(actual, value) == 0) {
+                    return !negated;
+                }
+            }
+            // 没有匹配项且列表中有NULL时IN和NOT IN的结果都是UNKNOWN
+            return unknown ? null : negated;
+        }
+
+        @Override
+        public Boolean visitBetween(String field, Object start, Object end) {
+            Object actual = resolve(field);
+            if (actual == null) {
+                return null;
+            }
+            Boolean lower = start == null ? null : ShardMergeIterator.compareValues(actual, start) >= 0;
+            Boolean upper = end == null ? null : ShardMergeIterator.compareValues(actual, end) <= 0;
+            return and(lower, upper);
+        }
+
+        @Override
+        public Boolean visitNull(String field, boolean isNull) {
+            return (resolve(field) == null) == isNull;
+        }
+
+        @Override
+        public Boolean visitComposite(Criteria left, String operator, Criteria right) {
+            boolean and = "AND".equalsIgnoreCase(operator.trim());
+            Boolean first = left.accept(this);
+            // FALSE AND x、TRUE OR x的结果与x无关
+            if (first != null && first != and) {
+                return first;
+            }
+            Boolean second = right.accept(this);
+            return and ? and(first, second) : or(first, second);
+        }
+
+        @Override
+        public Boolean visitNot(Criteria criteria) {
+            Boolean result = criteria.accept(this);
+            return result == null ? null : !result;
+        }
+
+        @Override
+        public Boolean visitOther(Criteria criteria) {
+            throw new IllegalStateException("HAVING condition cannot be evaluated after cross-shard merge: " + criteria.toSql());
+        }
+
+        private Boolean and(Boolean a, Boolean b) {
+            if (Boolean.FALSE.equals(a) || Boolean.FALSE.equals(b)) {
+                return false;
+            }
+            return a == null || b == null ? null : true;
+        }
+
+        private Boolean or(Boolean a, Boolean b) {
+            if (Boolean.TRUE.equals(a) || Boolean.TRUE.equals(b)) {
+                return true;
+            }
+            return a == null || b == null ? null : false;
+        }
+
+        private Object resolve(String field) {
+            for (Aggregate aggregate : aggregates) {
+                if (aggregate.matches(field)) {
+                    return row.get(aggregate.alias);
+                }
+            }
+            String label = ShardMergeIterator.columnLabel(field);
+            for (String groupLabel : groupLabels) {
+                if (groupLabel.equalsIgnoreCase(label)) {
+                    return row.get(groupLabel);
+                }
+            }
+            throw new IllegalStateException("HAVING field '" + field + "' is neither a group field nor an aggregate");
+        }
+
+        private boolean like(String value, String pattern) {
+            StringBuilder regex = new StringBuilder();
+            for (char c : pattern.toCharArray()) {
+                if (c == '%') {
+                    regex.append(".*");
+                } else if (c == '_') {
+                    regex.append('.');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return Pattern.compile(regex.toString(), Pattern.DOTALL).matcher(value).matches();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package io.flexdata.spring.orm.repository;
+
+import io.flexdata.spring.orm.core.sql.OrderBy;
+import io.flexdata.spring.orm.core.sql.SortDirection;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 多个分片有序结果的k路归并
+ * 每个分片的结果已按相同的ORDER BY排好序，堆中每个分片只保留当前行，内存占用与分片数成正比而与总行数无关；
+ * 排序键在映射实体前从结果集按列标签读取，键相同时按分片顺序输出，结果稳定
+ *
+ * 排序值在应用内比较：null最小，不同数值类型按BigDecimal比较，其余按Comparable比较；
+ * 字符串按Java的字典序比较，数据库使用其他排序规则时跨分片顺序可能与单库不同
+ */
+final class ShardMergeIterator<T> implements Iterator<T> {
+
+    private final PriorityQueue<Cursor<T>> heap;
+
+    ShardMergeIterator(List<? extends Iterator<KeyedRow<T>>> sources, List<OrderBy> orderBy) {
+        Comparator<Object[]> keyComparator = keyComparator(orderBy);
+        this.heap = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+            int result = keyComparator.compare(a.current.keys, b.current.keys);
+            return result != 0 ? result : Integer.compare(a.index, b.index);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            Cursor<T> cursor = new Cursor<>(i, sources.get(i));
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heap.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        Cursor<T> cursor = heap.poll();
+        if (cursor == null) {
+            throw new NoSuchElementException();
+        }
+        T value = cursor.current.value;
+        if (cursor.advance()) {
+            heap.add(cursor);
+        }
+        return value;
+    }
+
+    /**
+     * 读取排序键后再映射实体的RowMapper
+     * ORDER BY字段去掉表别名和引号后作为列标签，排序字段必须出现在查询结果中
+     */
+    static <T> RowMapper<KeyedRow<T>> keyedRowMapper(List<OrderBy> orderBy, RowMapper<T> rowMapper) {
+        String[] labels = new String[orderBy.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = columnLabel(orderBy.get(i).getField());
+        }
+        return new RowMapper<KeyedRow<T>>() {
+            private int[] columns;
+
+            @Override
+            public KeyedRow<T> mapRow(ResultSet rs, int rowNum) throws SQLException {
+                if (columns == null) {
+                    int[] resolved = new int[labels.length];
+                    for (int i = 0; i < labels.length; i++) {
+                        resolved[i] = rs.findColumn(labels[i]);
+                    }
+                    columns = resolved;
+                }
+                Object[] keys = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    keys[i] = rs.getObject(columns[i]);
+                }
+                return new KeyedRow<>(keys, rowMapper.mapRow(rs, rowNum));
+            }
+        };
+    }
+
+    static String columnLabel(String field) {
+        String label = field.trim();
+        int dot = label.lastIndexOf('.');
+        if (dot >= 0) {
+            label = label.substring(dot + 1);
+        }
+        if (label.length() > 1 && "`\"[".indexOf(label.charAt(0)) >= 0) {
+            label = label.substring(1, label.length() - 1);
+        }
+        return label;
+    }
+
+    static Comparator<Object[]> keyComparator(List<OrderBy> orderBy) {
+        boolean[] descending = new boolean[orderBy.size()];
+        for (int i = 0; i < descending.length; i++) {
+            descending[i] = orderBy.get(i).getDirection() == SortDirection.DESC;
+        }
+        return (a, b) -> {
+            for (int i = 0; i < descending.length; i++) {
+                int result = compareValues(a[i], b[i]);
+                if (result != 0) {
+                    return descending[i] ? -result : result;
+                }
+            }
+            return 0;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareValues(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            return toBigDecimal((Number) a).compareTo(toBigDecimal((Number) b));
+        }
+        if (a instanceof Comparable && a.getClass().isInstance(b)) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+
+    /**
+     * 带排序键的行
+     */
+    static final class KeyedRow<T> {
+        final Object[] keys;
+        final T value;
+
+        KeyedRow(Object[] keys, T value) {
+            this.keys = keys;
+            this.value = value;
+        }
+    }
+
+    private static final class Cursor<T> {
+        final int index;
+        final Iterator<KeyedRow<T>> source;
+        KeyedRow<T> current;
+
+        Cursor(int index, Iterator<KeyedRow<T>> source) {
+            this.index = index;
+            this.source = source;
+        }
+
+        boolean advance() {
+            if (source.hasNext()) {
+                current = source.next();
+                return true;
+            }
+            current = null;
+            return false;
+        }
+    }
+}
@@ -1,22 +1,34 @@
 package io.flexdata.spring.orm.repository.impl;
 
+import io.flexdata.spring.orm.core.cache.CacheInvalidationBus;
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
+import io.flexdata.spring.orm.core.datasource.ShadowWrite;
 import io.flexdata.spring.orm.core.interfaces.Criteria;
 import io.flexdata.spring.orm.core.interfaces.GenericRepository;
 import io.flexdata.spring.orm.core.metadata.EntityMetadata;
 import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
 import io.flexdata.spring.orm.core.metadata.FieldMetadata;
+import io.flexdata.spring.orm.core.sql.EntityStatements;
+import io.flexdata.spring.orm.core.sql.KeysetPageRequest;
+import io.flexdata.spring.orm.core.sql.KeysetSlice;
+import io.flexdata.spring.orm.core.sql.KeysetToken;
+import io.flexdata.spring.orm.core.sql.OrderBy;
 import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.core.util.JdbcBatchUtils;
+import io.flexdata.spring.orm.core.util.JdbcStreamUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 
-import java.lang.reflect.Field;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * 通用仓储实现
@@ -28,6 +40,8 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
     private final EntityMetadataRegistry metadataRegistry;
     private final RowMapperFactory rowMapperFactory;
     private final Class<T> entityClass;
+    private volatile QueryResultCache queryResultCache;
+    private volatile CacheInvalidationBus invalidationBus;
 
     public GenericRepositoryImpl(NamedParameterJdbcTemplate jdbcTemplate,
                                  SqlGenerator sqlGenerator,
@@ -44,6 +58,7 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
     @Override
     public T save(T entity) {
         EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+        ShadowWrite.rejectIfBound(metadata.getTableName(), "save");
         Object idValue = getIdValue(entity, metadata);
 
         if (idValue == null) {
@@ -63,6 +78,7 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
         if (keyHolder.getKey() != null) {
             setIdValue(entity, keyHolder.getKey());
         }
+        invalidateQueries(entityIds(Collections.singletonList(entity)));
 
         return entity;
     }
@@ -72,30 +88,57 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
         Map<String, Object> params = entityToMap(entity);
 
         jdbcTemplate.update(sql, params);
+        invalidateQueries(entityIds(Collections.singletonList(entity)));
         return entity;
     }
 
     @Override
     public List<T> saveAll(Iterable<T> entities) {
+        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+        ShadowWrite.rejectIfBound(metadata.getTableName(), "saveAll");
         List<T> result = new ArrayList<>();
+        List<T> inserts = new ArrayList<>();
+        List<MapSqlParameterSource> insertParams = new ArrayList<>();
+        List<MapSqlParameterSource> updateParams = new ArrayList<>();
+
+        // 与save相同按主键是否为空拆分，插入组和更新组各自走一次JDBC批处理
         for (T entity : entities) {
-            result.add(save(entity));
+            result.add(entity);
+            MapSqlParameterSource params = new MapSqlParameterSource(entityToMap(entity));
+            if (getIdValue(entity, metadata) == null) {
+                inserts.add(entity);
+                insertParams.add(params);
+            } else {
+                updateParams.add(params);
+            }
+        }
+
+        EntityStatements statements = sqlGenerator.getStatements(entityClass);
+        if (!inserts.isEmpty()) {
+            FieldMetadata idField = metadata.getIdFieldMetadata();
+            List<Object> keys = JdbcBatchUtils.batchInsertReturningKeys(jdbcTemplate,
+                    statements.getInsertWithoutId(), insertParams, idField != null ? idField.getColumnName() : null);
+            for (int i = 0; i < inserts.size(); i++) {
+                if (keys.get(i) != null) {
+                    setIdValue(inserts.get(i), keys.get(i));
+                }
+            }
+        }
+        if (!updateParams.isEmpty()) {
+            jdbcTemplate.batchUpdate(statements.getUpdateById(), updateParams.toArray(new SqlParameterSource[0]));
+        }
+        if (!result.isEmpty()) {
+            invalidateQueries(entityIds(result));
         }
         return result;
     }
 
     @Override
     public Optional<T> findById(ID id) {
-        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
-        FieldMetadata idField = findIdField(metadata);
-
-        if (idField == null) {
-            throw new IllegalStateException("No ID field found for entity: " + entityClass.getName());
-        }
-
-        Criteria criteria = createEqualsCriteria(idField.getFieldName(), id);
-        List<T> results = findByCriteria(criteria);
+        String sql = sqlGenerator.generateSelectById(entityClass);
+        Map<String, Object> params = idParameters(id);
 
+        List<T> results = jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass, sql));
         return results.isEmpty() ? Optional.empty() : Optional.of(results.get(0));
     }
 
@@ -109,7 +152,7 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
         String sql = sqlGenerator.generateSelect(entityClass, criteria, null, null, null, null);
         Map<String, Object> params = criteria != null ? criteria.getParameters() : new HashMap<>();
 
-        return jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass));
+        return jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass, sql));
     }
 
     @Override
@@ -120,11 +163,54 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
                 pageable.getPageSize(), (int) pageable.getOffset());
         Map<String, Object> params = criteria != null ? criteria.getParameters() : new HashMap<>();
 
-        List<T> content = jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass));
+        List<T> content = jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass, sql));
 
         return new PageImpl<>(content, pageable, total);
     }
 
+    @Override
+    public KeysetSlice<T> findByCriteria(Criteria criteria, KeysetPageRequest request) {
+        List<OrderBy> keysetOrder = sqlGenerator.resolveKeysetOrder(entityClass, request.getOrderBy());
+        Map<String, Object> params = criteria != null ? new HashMap<>(criteria.getParameters()) : new HashMap<>();
+
+        boolean afterCursor = request.getToken() != null;
+        if (afterCursor) {
+            List<Object> lastValues = KeysetToken.decode(request.getToken(), keysetOrder);
+            for (int i = 0; i < lastValues.size(); i++) {
+                params.put(KeysetToken.parameterName(i), lastValues.get(i));
+            }
+        }
+
+        // 多取一行判断是否还有下一页
+        String sql = sqlGenerator.generateKeysetSelect(entityClass, criteria, keysetOrder, afterCursor,
+                request.getSize() + 1);
+        List<T> content = jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass, sql));
+
+        boolean hasNext = content.size() > request.getSize();
+        if (hasNext) {
+            content = new ArrayList<>(content.subList(0, request.getSize()));
+        }
+        String nextToken = hasNext ? KeysetToken.fromEntity(metadataRegistry.getMetadata(entityClass),
+                keysetOrder, content.get(content.size() - 1)) : null;
+        return new KeysetSlice<>(content, request.getSize(), hasNext, nextToken);
+    }
+
+    @Override
+    public Stream<T> stream(Criteria criteria) {
+        String sql = sqlGenerator.generateSelect(entityClass, criteria, null, null, null, null);
+        Map<String, Object> params = criteria != null ? criteria.getParameters() : new HashMap<>();
+
+        return JdbcStreamUtils.stream(jdbcTemplate, sql, params, rowMapperFactory.getRowMapper(entityClass, sql),
+                JdbcStreamUtils.DEFAULT_FETCH_SIZE);
+    }
+
+    @Override
+    public void forEach(Criteria criteria, Consumer<? super T> action) {
+        try (Stream<T> stream = stream(criteria)) {
+            stream.forEach(action);
+        }
+    }
+
     @Override
     public long count() {
         return countByCriteria(null);
@@ -141,15 +227,10 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
 
     @Override
     public void deleteById(ID id) {
-        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
-        FieldMetadata idField = findIdField(metadata);
-
-        if (idField == null) {
-            throw new IllegalStateException("No ID field found for entity: " + entityClass.getName());
-        }
-
-        Criteria criteria = createEqualsCriteria(idField.getFieldName(), id);
-        deleteByCriteria(criteria);
+        ShadowWrite.rejectIfBound(metadataRegistry.getMetadata(entityClass).getTableName(), "deleteById");
+        String sql = sqlGenerator.generateDeleteById(entityClass);
+        jdbcTemplate.update(sql, idParameters(id));
+        invalidateQueries(Collections.singletonList(id));
     }
 
     @Override
@@ -164,10 +245,12 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
 
     @Override
     public void deleteByCriteria(Criteria criteria) {
+        ShadowWrite.rejectIfBound(metadataRegistry.getMetadata(entityClass).getTableName(), "deleteByCriteria");
         String sql = sqlGenerator.generateDelete(entityClass, criteria);
         Map<String, Object> params = criteria != null ? criteria.getParameters() : new HashMap<>();
 
         jdbcTemplate.update(sql, params);
+        invalidateQueries(null);
     }
 
     @Override
@@ -175,15 +258,60 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
         return findById(id).isPresent();
     }
 
+    /**
+     * 设置查询结果缓存，本仓储的写操作会使该实体表相关的缓存失效
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * 设置缓存失效总线，本仓储的写操作会通知其他节点
+     */
+    public void setInvalidationBus(CacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
     // 工具方法
+
+    /**
+     * 写入后使本地查询缓存失效并通知其他节点；ids为null表示整表
+     */
+    private void invalidateQueries(Collection<?> ids) {
+        QueryResultCache cache = queryResultCache;
+        CacheInvalidationBus bus = invalidationBus;
+        if (cache == null && bus == null) {
+            return;
+        }
+        String tableName = metadataRegistry.getMetadata(entityClass).getTableName();
+        if (cache != null) {
+            cache.invalidateTable(tableName);
+        }
+        if (bus != null) {
+            bus.publish(tableName, ids);
+        }
+    }
+
+    private List<Object> entityIds(List<T> entities) {
+        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+        List<Object> ids = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            Object id = getIdValue(entity, metadata);
+            if (id == null) {
+                // 缺少主键时无法精确失效
+                return null;
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
     private Object getIdValue(T entity, EntityMetadata metadata) {
-        FieldMetadata idField = findIdField(metadata);
+        FieldMetadata idField = metadata.getIdFieldMetadata();
         if (idField == null) return null;
 
         try {
-            Field field = entityClass.getDeclaredField(idField.getFieldName());
-            field.setAccessible(true);
-            return field.get(entity);
+            return idField.getValue(entity);
         } catch (Exception e) {
             return null;
         }
@@ -191,38 +319,21 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
 
     private void setIdValue(T entity, Object idValue) {
         EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
-        FieldMetadata idField = findIdField(metadata);
+        FieldMetadata idField = metadata.getIdFieldMetadata();
 
         if (idField != null) {
-            try {
-                Field field = entityClass.getDeclaredField(idField.getFieldName());
-                field.setAccessible(true);
-                field.set(entity, idValue);
-            } catch (Exception e) {
-                // 忽略设置失败
-            }
+            idField.setGeneratedValue(entity, idValue);
         }
     }
 
-    private FieldMetadata findIdField(EntityMetadata metadata) {
-        return metadata.getFields().values().stream()
-                .filter(FieldMetadata::isPrimaryKey)
-                .findFirst()
-                .orElse(null);
-    }
-
     private Map<String, Object> entityToMap(T entity) {
         EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
         Map<String, Object> params = new HashMap<>();
 
         for (FieldMetadata field : metadata.getFields().values()) {
             try {
-                Field javaField = entityClass.getDeclaredField(field.getFieldName());
-                javaField.setAccessible(true);
-                Object value = javaField.get(entity);
-                if (value != null) {
-                    params.put(field.getFieldName(), value);
-                }
+                // 预生成的INSERT/UPDATE语句包含所有列，null值也需要绑定
+                params.put(field.getFieldName(), field.getValue(entity));
             } catch (Exception e) {
                 // 忽略获取失败的字段
             }
@@ -231,29 +342,8 @@ public class GenericRepositoryImpl<T, ID> implements GenericRepository<T, ID> {
         return params;
     }
 
-    private Criteria createEqualsCriteria(String fieldName, Object value) {
-        return new Criteria() {
-            @Override
-            public String toSql() {
-                return fieldName + " = :" + fieldName;
-            }
-
-            @Override
-            public Map<String, Object> getParameters() {
-                Map<String, Object> params = new HashMap<>();
-                params.put(fieldName, value);
-                return params;
-            }
-
-            @Override
-            public Criteria and(Criteria other) {
-                return null; // 简化实现
-            }
-
-            @Override
-            public Criteria or(Criteria other) {
-                return null; // 简化实现
-            }
-        };
+    private Map<String, Object> idParameters(Object id) {
+        FieldMetadata idField = metadataRegistry.getMetadata(entityClass).getIdFieldMetadata();
+        return Collections.singletonMap(idField.getFieldName(), id);
     }
 }
@@ -7,6 +7,7 @@ import io.flexdata.spring.orm.routing.context.RoutingContext;
 import io.flexdata.spring.orm.routing.engine.RoutingEngine;
 import io.flexdata.spring.orm.routing.engine.SpelExpressionEvaluator;
 import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.datasource.ShadowWrite;
 import io.flexdata.spring.orm.core.table.TableContext;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -57,7 +58,7 @@ public class RoutingAspect {
     }
 
     /**
-     * 路由结果缓存
+     * 路由结果缓存，结果记录计算时的路由方案版本，方案重新编译后不再命中
      */
     private final Map<String, CachedRoutingResult> routingCache = new ConcurrentHashMap<>();
 
@@ -68,17 +69,23 @@ public class RoutingAspect {
         private final String dataSource;
         private final String tableName;
         private final long expireTime;
+        private final long planVersion;
 
-        public CachedRoutingResult(String dataSource, String tableName, long expireTime) {
+        public CachedRoutingResult(String dataSource, String tableName, long expireTime, long planVersion) {
             this.dataSource = dataSource;
             this.tableName = tableName;
             this.expireTime = expireTime;
+            this.planVersion = planVersion;
         }
 
         public boolean isExpired() {
             return System.currentTimeMillis() > expireTime;
         }
 
+        public boolean isCurrent(long currentPlanVersion) {
+            return planVersion == currentPlanVersion && !isExpired();
+        }
+
         public String getDataSource() {
             return dataSource;
         }
@@ -150,18 +157,20 @@ public class RoutingAspect {
         // 构建路由上下文
         RoutingContext context = buildRoutingContext(joinPoint);
         
-        // 检查缓存
+        // 检查缓存，版本在路由前读取，路由期间方案被替换时缓存的结果下次也不会命中
         String cacheKey = null;
+        long planVersion = routingEngine != null ? routingEngine.getPlanVersion() : 0L;
         if (autoRouting != null && autoRouting.cache()) {
             cacheKey = buildCacheKey(autoRouting, context);
             CachedRoutingResult cached = routingCache.get(cacheKey);
-            if (cached != null && !cached.isExpired()) {
+            if (cached != null && cached.isCurrent(planVersion)) {
                 return executeWithSpecificRouting(joinPoint, cached.getDataSource(), cached.getTableName());
             }
         }
         
         String targetDataSource = null;
         String targetTable = null;
+        RoutingEngine.RoutingResult shadow = null;
         
         // 处理自动路由
         if (autoRouting != null) {
@@ -169,6 +178,9 @@ public class RoutingAspect {
             if (result != null) {
                 targetDataSource = result.getDataSource();
                 targetTable = result.getTableName();
+                if (result.hasShadow()) {
+                    shadow = result;
+                }
             }
         }
         
@@ -177,6 +189,7 @@ public class RoutingAspect {
             String dataSource = handleDataSourceRouting(routeDataSource, context);
             if (StringUtils.hasText(dataSource)) {
                 targetDataSource = dataSource;
+                shadow = null;
             }
         }
         
@@ -185,13 +198,27 @@ public class RoutingAspect {
             String table = handleTableRouting(routeTable, context);
             if (StringUtils.hasText(table)) {
                 targetTable = table;
+                shadow = null;
+            }
+        }
+        
+        // 桶迁移中的写操作每次都要同步写入，不缓存；方法只执行一次，由仓储在主分片写入后把确定了主键的行同步过去
+        if (shadow != null) {
+            ShadowWrite previous = ShadowWrite.current();
+            ShadowWrite.set(new ShadowWrite(context.getTableName(), shadow.getShadowDataSource(),
+                    shadow.getShadowTableName(), shadow.getShadowFailurePolicy(),
+                    routingEngine.getShardOwnership(context.getTableName())));
+            try {
+                return executeWithSpecificRouting(joinPoint, targetDataSource, targetTable);
+            } finally {
+                ShadowWrite.set(previous);
             }
         }
         
         // 缓存结果
         if (cacheKey != null && autoRouting != null) {
             long expireTime = System.currentTimeMillis() + (autoRouting.cacheExpire() * 1000L);
-            routingCache.put(cacheKey, new CachedRoutingResult(targetDataSource, targetTable, expireTime));
+            routingCache.put(cacheKey, new CachedRoutingResult(targetDataSource, targetTable, expireTime, planVersion));
         }
         
         return executeWithSpecificRouting(joinPoint, targetDataSource, targetTable);
@@ -321,10 +348,10 @@ public class RoutingAspect {
         int shardIndex;
         switch (routeTable.shardingStrategy().toLowerCase()) {
             case "mod":
-                shardIndex = Math.abs(shardingValue.hashCode()) % routeTable.shardCount();
+                shardIndex = Math.abs(shardingValue.hashCode() % routeTable.shardCount());
                 break;
             case "hash":
-                shardIndex = Math.abs(shardingValue.toString().hashCode()) % routeTable.shardCount();
+                shardIndex = Math.abs(shardingValue.toString().hashCode() % routeTable.shardCount());
                 break;
             default:
                 // 对于其他策略，尝试使用SpEL表达式
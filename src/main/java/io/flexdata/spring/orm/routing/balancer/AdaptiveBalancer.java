@@ -0,0 +1,234 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import io.flexdata.spring.orm.core.datasource.DataSourceStats;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 自适应负载均衡
+ * 随机取两个候选数据源（power of two choices），选择得分较低的一个；
+ * 得分 = 耗时EWMA × (未完成请求数 + 1) / (1 - 失败率EWMA)，统计来自{@link DataSourceStats}，
+ * 由{@link io.flexdata.spring.orm.core.datasource.DynamicDataSource}在语句执行时记录
+ *
+ * 耗时EWMA按距最近一次样本的时间指数衰减，长时间未被选中的慢实例会逐渐重新获得流量；
+ * 没有样本的实例得分为0，会被优先选中以获得样本
+ *
+ * 连续失败次数或失败率超过阈值的实例被摘除，摘除时长从基础时长开始每次翻倍，直到最大时长；
+ * 摘除到期后进入试探期：同一时刻只放行一个试探请求，其余请求仍把它当作被摘除，试探请求在基础摘除时长内
+ * 没有结果时才放行下一个；试探请求成功则恢复正常并重置退避，再次失败则重新摘除；
+ * 所有实例都被摘除时返回null，由调用方回退（读写分离回退到主库）
+ */
+public class AdaptiveBalancer implements DataSourceBalancer {
+
+    /**
+     * 失败率折算得分时的下限，避免除以0
+     */
+    private static final double MIN_SUCCESS_RATE = 0.1;
+
+    private static final int EJECTED = 0;
+    private static final int AVAILABLE = 1;
+    /**
+     * 试探期内取得了试探名额，本次选择直接使用
+     */
+    private static final int PROBE = 2;
+
+    private final Node[] nodes;
+    private final List<String> dataSourceList;
+    private final int failureThreshold;
+    private final double errorRateThreshold;
+    private final long baseEjectionNanos;
+    private final long maxEjectionNanos;
+    private final double decayNanos;
+    private final LongSupplier clock;
+
+    public AdaptiveBalancer(List<String> dataSources, RoutingRuleConfig.AdaptiveConfig config) {
+        this(dataSources, config, System::nanoTime);
+    }
+
+    AdaptiveBalancer(List<String> dataSources, RoutingRuleConfig.AdaptiveConfig config, LongSupplier clock) {
+        RoutingRuleConfig.AdaptiveConfig settings = config != null ? config : new RoutingRuleConfig.AdaptiveConfig();
+        this.nodes = new Node[dataSources.size()];
+        List<String> names = new ArrayList<>(dataSources.size());
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node(dataSources.get(i));
+            names.add(dataSources.get(i));
+        }
+        this.dataSourceList = Collections.unmodifiableList(names);
+        this.failureThreshold = Math.max(1, settings.getFailureThreshold());
+        this.errorRateThreshold = settings.getErrorRateThreshold();
+        this.baseEjectionNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, settings.getBaseEjectionTime()));
+        this.maxEjectionNanos = Math.max(baseEjectionNanos, TimeUnit.MILLISECONDS.toNanos(settings.getMaxEjectionTime()));
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, settings.getDecayTime()));
+        this.clock = clock;
+    }
+
+    @Override
+    public String select() {
+        long now = clock.getAsLong();
+        int size = nodes.length;
+        if (size == 1) {
+            return nodes[0].state(now, true) != EJECTED ? nodes[0].dataSource : null;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Node a = nodes[first];
+        Node b = nodes[second];
+        int aState = a.state(now, true);
+        if (aState == PROBE) {
+            return a.dataSource;
+        }
+        int bState = b.state(now, true);
+        if (bState == PROBE) {
+            return b.dataSource;
+        }
+        boolean aAvailable = aState == AVAILABLE;
+        boolean bAvailable = bState == AVAILABLE;
+        if (aAvailable && bAvailable) {
+            return a.score(now) <= b.score(now) ? a.dataSource : b.dataSource;
+        }
+        if (aAvailable) {
+            return a.dataSource;
+        }
+        if (bAvailable) {
+            return b.dataSource;
+        }
+
+        // 两个候选都被摘除，按顺序找任意一个可用实例
+        for (int offset = 1; offset < size; offset++) {
+            Node node = nodes[(first + offset) % size];
+            if (node != b && node.state(now, true) != EJECTED) {
+                return node.dataSource;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> getDataSources() {
+        return dataSourceList;
+    }
+
+    @Override
+    public String getStrategy() {
+        return DataSourceBalancers.ADAPTIVE;
+    }
+
+    /**
+     * 数据源当前是否被摘除，试探期内不算摘除；只查询状态，不占用试探名额
+     */
+    boolean isEjected(String dataSource) {
+        long now = clock.getAsLong();
+        for (Node node : nodes) {
+            if (node.dataSource.equals(dataSource)) {
+                return node.state(now, false) == EJECTED;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 单个候选数据源的摘除状态，并发更新时以最后一次写入为准，不影响正确性
+     */
+    private final class Node {
+        final String dataSource;
+        final DataSourceStats stats;
+        /**
+         * 摘除到期时间，0表示未摘除
+         */
+        volatile long ejectedUntil;
+        /**
+         * 连续摘除次数，决定退避时长
+         */
+        volatile int ejections;
+        /**
+         * 最近一次摘除时的累计失败数和样本数，用于判断之后是否有新的结果
+         */
+        volatile long failureMark;
+        volatile long sampleMark;
+        /**
+         * 试探期内放行试探请求的时间，0表示没有未完成的试探
+         */
+        final AtomicLong probeStartedAt = new AtomicLong();
+
+        Node(String dataSource) {
+            this.dataSource = dataSource;
+            this.stats = DataSourceStats.of(dataSource);
+        }
+
+        /**
+         * @param acquireProbe 试探期内是否尝试取得试探名额，取得时返回PROBE，名额已被占用时返回EJECTED；
+         *                     为false时试探期按AVAILABLE返回
+         */
+        int state(long now, boolean acquireProbe) {
+            long until = ejectedUntil;
+            if (until != 0 && now - until < 0) {
+                return EJECTED;
+            }
+            long failures = stats.getFailureCount();
+            if (failures > failureMark && isUnhealthy()) {
+                eject(now, failures);
+                return EJECTED;
+            }
+            if (until == 0) {
+                return AVAILABLE;
+            }
+            if (stats.getSampleCount() > sampleMark && stats.getConsecutiveFailures() == 0) {
+                // 试探请求成功，恢复正常
+                ejectedUntil = 0;
+                ejections = 0;
+                probeStartedAt.set(0);
+                return AVAILABLE;
+            }
+            if (!acquireProbe) {
+                return AVAILABLE;
+            }
+            long started = probeStartedAt.get();
+            if (started != 0 && now - started < baseEjectionNanos) {
+                return EJECTED;
+            }
+            // 0表示没有试探，时钟恰好为0时记为1
+            return probeStartedAt.compareAndSet(started, now != 0 ? now : 1) ? PROBE : EJECTED;
+        }
+
+        boolean isUnhealthy() {
+            return stats.getConsecutiveFailures() >= failureThreshold || stats.getErrorRate() >= errorRateThreshold;
+        }
+
+        void eject(long now, long failures) {
+            int count = ejections + 1;
+            long backoff = baseEjectionNanos << Math.min(count - 1, 20);
+            if (backoff <= 0 || backoff > maxEjectionNanos) {
+                backoff = maxEjectionNanos;
+            }
+            ejections = count;
+            failureMark = failures;
+            sampleMark = stats.getSampleCount();
+            probeStartedAt.set(0);
+            ejectedUntil = now + backoff;
+        }
+
+        double score(long now) {
+            double latency = stats.getLatencyEwmaNanos();
+            if (latency > 0) {
+                long idle = now - stats.getLastSampleNanos();
+                if (idle > 0) {
+                    latency *= Math.exp(-idle / decayNanos);
+                }
+            }
+            double successRate = Math.max(MIN_SUCCESS_RATE, 1.0 - stats.getErrorRate());
+            return latency * (stats.getInFlight() + 1) / successRate;
+        }
+    }
+}
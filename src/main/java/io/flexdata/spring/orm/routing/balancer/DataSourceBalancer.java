@@ -0,0 +1,26 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import java.util.List;
+
+/**
+ * 数据源负载均衡器
+ * 在一组候选数据源中为每次请求选择一个，实现必须线程安全
+ * 由{@link DataSourceBalancers#create}按读写分离或负载均衡配置中的策略名创建，配置重载时重建
+ */
+public interface DataSourceBalancer {
+
+    /**
+     * 选择一个数据源
+     */
+    String select();
+
+    /**
+     * 候选数据源
+     */
+    List<String> getDataSources();
+
+    /**
+     * 策略名称
+     */
+    String getStrategy();
+}
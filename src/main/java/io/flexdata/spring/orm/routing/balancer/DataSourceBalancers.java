@@ -0,0 +1,69 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 负载均衡器工厂
+ * 策略名与{@link RoutingRuleConfig.ReadWriteSplitConfig}
+ * 和{@link RoutingRuleConfig.LoadBalanceConfig}中的strategy一致
+ */
+public final class DataSourceBalancers {
+
+    public static final String ROUND_ROBIN = "round_robin";
+    public static final String RANDOM = "random";
+    public static final String WEIGHT = "weight";
+    public static final String WEIGHTED = "weighted";
+    public static final String LEAST_CONNECTIONS = "least_connections";
+    public static final String LEAST_OUTSTANDING = "least_outstanding";
+    public static final String ADAPTIVE = "adaptive";
+
+    private DataSourceBalancers() {
+    }
+
+    /**
+     * 按策略名创建负载均衡器，未知策略按轮询处理
+     *
+     * @param strategy 策略名
+     * @param dataSources 候选数据源
+     * @param weights 权重，仅weight策略使用
+     * @return 负载均衡器，没有候选数据源时返回null
+     */
+    public static DataSourceBalancer create(String strategy, List<String> dataSources, Map<String, Integer> weights) {
+        return create(strategy, dataSources, weights, null);
+    }
+
+    /**
+     * 按策略名创建负载均衡器，未知策略按轮询处理
+     *
+     * @param strategy 策略名
+     * @param dataSources 候选数据源
+     * @param weights 权重，仅weight策略使用
+     * @param adaptive 自适应策略参数，仅adaptive策略使用，为null时使用默认值
+     * @return 负载均衡器，没有候选数据源时返回null
+     */
+    public static DataSourceBalancer create(String strategy, List<String> dataSources, Map<String, Integer> weights,
+                                            RoutingRuleConfig.AdaptiveConfig adaptive) {
+        if (dataSources == null || dataSources.isEmpty()) {
+            return null;
+        }
+        String name = strategy != null ? strategy : ROUND_ROBIN;
+        switch (name) {
+            case RANDOM:
+                return new RandomBalancer(dataSources);
+            case WEIGHT:
+            case WEIGHTED:
+                return new SmoothWeightedRoundRobinBalancer(dataSources, weights);
+            case LEAST_CONNECTIONS:
+            case LEAST_OUTSTANDING:
+                return new LeastOutstandingBalancer(dataSources);
+            case ADAPTIVE:
+                return new AdaptiveBalancer(dataSources, adaptive);
+            case ROUND_ROBIN:
+            default:
+                return new RoundRobinBalancer(dataSources);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import io.flexdata.spring.orm.core.datasource.DataSourceStats;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 最少未完成请求负载均衡
+ * 选择当前持有连接数最少的数据源，计数由{@link io.flexdata.spring.orm.core.datasource.DynamicDataSource}
+ * 在获取和关闭连接时维护；计数相同时从轮询位置开始比较，避免总是选中列表中靠前的数据源
+ */
+public class LeastOutstandingBalancer implements DataSourceBalancer {
+
+    private final String[] dataSources;
+    private final DataSourceStats[] stats;
+    private final List<String> dataSourceList;
+    private final StripedSequence sequence = new StripedSequence();
+
+    public LeastOutstandingBalancer(List<String> dataSources) {
+        this.dataSources = dataSources.toArray(new String[0]);
+        this.stats = new DataSourceStats[this.dataSources.length];
+        for (int i = 0; i < this.dataSources.length; i++) {
+            stats[i] = DataSourceStats.of(this.dataSources[i]);
+        }
+        this.dataSourceList = Collections.unmodifiableList(Arrays.asList(this.dataSources));
+    }
+
+    @Override
+    public String select() {
+        int size = dataSources.length;
+        int start = sequence.next(size);
+        int best = start;
+        long bestInFlight = stats[start].getInFlight();
+        for (int offset = 1; offset < size && bestInFlight > 0; offset++) {
+            int index = (start + offset) % size;
+            long inFlight = stats[index].getInFlight();
+            if (inFlight < bestInFlight) {
+                best = index;
+                bestInFlight = inFlight;
+            }
+        }
+        return dataSources[best];
+    }
+
+    @Override
+    public List<String> getDataSources() {
+        return dataSourceList;
+    }
+
+    @Override
+    public String getStrategy() {
+        return DataSourceBalancers.LEAST_CONNECTIONS;
+    }
+}
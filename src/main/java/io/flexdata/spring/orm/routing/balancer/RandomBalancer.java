@@ -0,0 +1,35 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 随机负载均衡
+ */
+public class RandomBalancer implements DataSourceBalancer {
+
+    private final String[] dataSources;
+    private final List<String> dataSourceList;
+
+    public RandomBalancer(List<String> dataSources) {
+        this.dataSources = dataSources.toArray(new String[0]);
+        this.dataSourceList = Collections.unmodifiableList(Arrays.asList(this.dataSources));
+    }
+
+    @Override
+    public String select() {
+        return dataSources[ThreadLocalRandom.current().nextInt(dataSources.length)];
+    }
+
+    @Override
+    public List<String> getDataSources() {
+        return dataSourceList;
+    }
+
+    @Override
+    public String getStrategy() {
+        return DataSourceBalancers.RANDOM;
+    }
+}
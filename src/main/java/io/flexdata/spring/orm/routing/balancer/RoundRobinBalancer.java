@@ -0,0 +1,36 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 轮询负载均衡
+ * 计数使用{@link StripedSequence}，高并发下不会在单个计数器上争用
+ */
+public class RoundRobinBalancer implements DataSourceBalancer {
+
+    private final String[] dataSources;
+    private final List<String> dataSourceList;
+    private final StripedSequence sequence = new StripedSequence();
+
+    public RoundRobinBalancer(List<String> dataSources) {
+        this.dataSources = dataSources.toArray(new String[0]);
+        this.dataSourceList = Collections.unmodifiableList(Arrays.asList(this.dataSources));
+    }
+
+    @Override
+    public String select() {
+        return dataSources[sequence.next(dataSources.length)];
+    }
+
+    @Override
+    public List<String> getDataSources() {
+        return dataSourceList;
+    }
+
+    @Override
+    public String getStrategy() {
+        return DataSourceBalancers.ROUND_ROBIN;
+    }
+}
@@ -0,0 +1,125 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 平滑加权轮询负载均衡（nginx算法）
+ * 每轮给所有数据源的当前权重加上各自权重，选出当前权重最大的数据源并减去总权重，
+ * 高权重的数据源被均匀地穿插在低权重数据源之间，而不是连续命中
+ *
+ * 选择顺序只取决于权重，因此构造时把一个完整周期预先展开成调度表，
+ * 选择时只按{@link StripedSequence}取下标，不加锁也不再累加权重
+ */
+public class SmoothWeightedRoundRobinBalancer implements DataSourceBalancer {
+
+    /**
+     * 调度表最大长度，总权重超过时按比例缩小权重
+     */
+    static final int MAX_SCHEDULE_LENGTH = 4096;
+
+    private final List<String> dataSources;
+    private final String[] schedule;
+    private final StripedSequence sequence = new StripedSequence();
+
+    /**
+     * @param dataSources 候选数据源
+     * @param weights 数据源权重，未配置或不大于0的数据源不参与选择；全部未配置时等权
+     */
+    public SmoothWeightedRoundRobinBalancer(List<String> dataSources, Map<String, Integer> weights) {
+        List<String> candidates = new ArrayList<>();
+        List<Integer> candidateWeights = new ArrayList<>();
+        for (String dataSource : dataSources) {
+            Integer weight = weights != null ? weights.get(dataSource) : null;
+            if (weight != null && weight > 0) {
+                candidates.add(dataSource);
+                candidateWeights.add(weight);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.addAll(dataSources);
+            for (int i = 0; i < dataSources.size(); i++) {
+                candidateWeights.add(1);
+            }
+        }
+        this.dataSources = Collections.unmodifiableList(candidates);
+        this.schedule = buildSchedule(candidates, normalize(candidateWeights));
+    }
+
+    @Override
+    public String select() {
+        return schedule[sequence.next(schedule.length)];
+    }
+
+    @Override
+    public List<String> getDataSources() {
+        return dataSources;
+    }
+
+    @Override
+    public String getStrategy() {
+        return DataSourceBalancers.WEIGHT;
+    }
+
+    /**
+     * 一个完整调度周期
+     */
+    List<String> getSchedule() {
+        return Collections.unmodifiableList(Arrays.asList(schedule));
+    }
+
+    /**
+     * 除以最大公约数，总权重过大时按比例缩小
+     */
+    private static int[] normalize(List<Integer> weights) {
+        int gcd = 0;
+        long total = 0;
+        for (int weight : weights) {
+            gcd = gcd(gcd, weight);
+            total += weight;
+        }
+        total /= gcd;
+        int[] normalized = new int[weights.size()];
+        for (int i = 0; i < normalized.length; i++) {
+            int weight = weights.get(i) / gcd;
+            if (total > MAX_SCHEDULE_LENGTH) {
+                weight = (int) Math.max(1, (long) weight * MAX_SCHEDULE_LENGTH / total);
+            }
+            normalized[i] = weight;
+        }
+        return normalized;
+    }
+
+    private static String[] buildSchedule(List<String> dataSources, int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        String[] schedule = new String[total];
+        int[] current = new int[weights.length];
+        for (int round = 0; round < total; round++) {
+            int best = 0;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            schedule[round] = dataSources.get(best);
+        }
+        return schedule;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
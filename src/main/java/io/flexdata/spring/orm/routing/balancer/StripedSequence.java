@@ -0,0 +1,46 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段递增序列
+ * 按线程把计数分散到多个独立缓存行上的计数器，线程之间不争用同一个CAS位置；
+ * 每个分段从不同的偏移开始递增，单个线程看到的是严格轮询，整体上各位置被均匀访问
+ */
+final class StripedSequence {
+
+    /**
+     * 每个分段占用的long数，保证相邻分段不在同一缓存行
+     */
+    private static final int PADDING = 16;
+
+    private static final int MAX_STRIPES = 64;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    StripedSequence() {
+        int stripes = 1;
+        int processors = Runtime.getRuntime().availableProcessors();
+        while (stripes < processors && stripes < MAX_STRIPES) {
+            stripes <<= 1;
+        }
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        this.mask = stripes - 1;
+    }
+
+    /**
+     * 取下一个序号，返回值非负
+     */
+    long next() {
+        int stripe = (int) Thread.currentThread().getId() & mask;
+        return (cells.getAndIncrement(stripe * PADDING) + stripe) & Long.MAX_VALUE;
+    }
+
+    /**
+     * 取下一个[0, bound)范围内的位置
+     */
+    int next(int bound) {
+        return (int) (next() % bound);
+    }
+}
@@ -0,0 +1,308 @@
+package io.flexdata.spring.orm.routing.config;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 有界并发缓存
+ * 淘汰使用CLOCK算法：每个条目占用环形数组中的一个槽位，命中时只设置访问标记；
+ * 需要槽位时时钟指针前进，跳过并清除带访问标记的条目，淘汰第一个未被访问的条目，均摊O(1)
+ * 过期使用单层时间轮：条目按过期时间挂到对应的格子上，每个tick只处理一个格子，
+ * 过期时间超过一圈的条目留到下一圈再检查。每个格子是以哨兵节点加锁的侵入式双向链表，
+ * 条目被替换、删除或淘汰时立即从所在格子摘除，格子中只保留仍在缓存中的条目
+ *
+ * 读路径不加锁，不分配对象；写路径不加全局锁
+ *
+ * @author FlexData
+ * @since 1.0.0
+ */
+public final class ConcurrentClockCache<K, V> {
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final ConcurrentHashMap<K, Node<K, V>> map;
+    private final AtomicReferenceArray<Node<K, V>> slots;
+    private final AtomicInteger hand = new AtomicInteger();
+    private final int capacity;
+
+    private final Node<K, V>[] wheel;
+    private final long tickMillis;
+    private final AtomicBoolean advancing = new AtomicBoolean();
+    private volatile long currentTick;
+    private final LongSupplier clock;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    public ConcurrentClockCache(int capacity, long tickMillis) {
+        this(capacity, tickMillis, System::currentTimeMillis);
+    }
+
+    @SuppressWarnings("unchecked")
+    ConcurrentClockCache(int capacity, long tickMillis, LongSupplier clock) {
+        if (capacity <= 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException("capacity and tickMillis must be positive");
+        }
+        this.capacity = capacity;
+        this.map = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16) * 4 / 3 + 1);
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.wheel = new Node[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = Node.sentinel();
+        }
+        this.currentTick = clock.getAsLong() / tickMillis;
+    }
+
+    /**
+     * 读取条目，未命中或已过期时返回null
+     */
+    public V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        if (node.expireAt <= clock.getAsLong()) {
+            // 过期条目由时间轮回收，这里只当作未命中
+            missCount.increment();
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        hitCount.increment();
+        return node.value;
+    }
+
+    /**
+     * 写入条目；缓存已满时按CLOCK淘汰一个条目
+     */
+    public void put(K key, V value, long ttlMillis) {
+        long now = clock.getAsLong();
+        advance(now);
+
+        Node<K, V> node = new Node<>(key, value, now + ttlMillis);
+        claimSlot(node);
+        Node<K, V> previous = map.put(key, node);
+        if (previous != null) {
+            release(previous);
+            unschedule(previous);
+        }
+        // 槽位在写入map之前可能已被其他线程淘汰抢走，此时放弃这个条目以保持容量上限
+        if (slots.get(node.slot) != node) {
+            map.remove(key, node);
+            unschedule(node);
+            return;
+        }
+        schedule(node);
+    }
+
+    public void remove(K key) {
+        Node<K, V> node = map.remove(key);
+        if (node != null) {
+            release(node);
+            unschedule(node);
+        }
+    }
+
+    public void clear() {
+        for (Node<K, V> node : map.values()) {
+            remove(node.key);
+        }
+    }
+
+    /**
+     * 推进时间轮，回收到期的条目；由定时任务和写操作驱动，同一时刻只有一个线程推进
+     */
+    public void advance(long now) {
+        long targetTick = now / tickMillis;
+        if (targetTick <= currentTick || !advancing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long tick = currentTick;
+            // 落后超过一圈时每个格子只需处理一次
+            long stop = Math.min(targetTick, tick + WHEEL_SIZE);
+            while (tick < stop) {
+                tick++;
+                expireBucket((int) (tick & WHEEL_MASK), now);
+            }
+            currentTick = targetTick;
+        } finally {
+            advancing.set(false);
+        }
+    }
+
+    private void expireBucket(int index, long now) {
+        Node<K, V> bucket = wheel[index];
+        synchronized (bucket) {
+            Node<K, V> node = bucket.next;
+            while (node != bucket) {
+                Node<K, V> next = node.next;
+                // 还没到期（过期时间超过一圈）的留到下一圈
+                if (node.expireAt <= now) {
+                    unlink(node);
+                    if (map.remove(node.key, node)) {
+                        release(node);
+                        expirationCount.increment();
+                    }
+                }
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * 把条目挂到过期时间对应的格子上；条目已经被摘除（替换、删除或淘汰先于挂入发生）时不再挂入
+     */
+    private void schedule(Node<K, V> node) {
+        long tick = Math.max(node.expireAt / tickMillis, currentTick + 1);
+        Node<K, V> bucket = wheel[(int) (tick & WHEEL_MASK)];
+        synchronized (bucket) {
+            if (node.unscheduled) {
+                return;
+            }
+            node.prev = bucket.prev;
+            node.next = bucket;
+            bucket.prev.next = node;
+            bucket.prev = node;
+            node.bucket = bucket;
+        }
+    }
+
+    /**
+     * 把不再在缓存中的条目从格子上摘除
+     * 先设置标记再读取所在格子：与schedule的先读标记再记录格子配对，两者至少有一方看到对方的写入
+     */
+    private void unschedule(Node<K, V> node) {
+        node.unscheduled = true;
+        Node<K, V> bucket = node.bucket;
+        if (bucket != null) {
+            synchronized (bucket) {
+                if (node.bucket == bucket) {
+                    unlink(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * 调用方持有所在格子的锁
+     */
+    private static <K, V> void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        node.bucket = null;
+    }
+
+    /**
+     * 为新条目分配槽位：时钟指针前进，遇到空槽直接占用；
+     * 遇到带访问标记的条目清除标记给它第二次机会；否则淘汰该条目并占用其槽位
+     */
+    private void claimSlot(Node<K, V> node) {
+        // 新条目带访问标记，至少经过一圈才会被淘汰
+        node.referenced = true;
+        while (true) {
+            int index = Math.floorMod(hand.getAndIncrement(), capacity);
+            Node<K, V> current = slots.get(index);
+            if (current == null) {
+                if (slots.compareAndSet(index, null, node)) {
+                    node.slot = index;
+                    return;
+                }
+            } else if (current.referenced) {
+                current.referenced = false;
+            } else if (slots.compareAndSet(index, current, node)) {
+                node.slot = index;
+                if (map.remove(current.key, current)) {
+                    evictionCount.increment();
+                }
+                unschedule(current);
+                return;
+            }
+        }
+    }
+
+    private void release(Node<K, V> node) {
+        if (node.slot >= 0) {
+            slots.compareAndSet(node.slot, node, null);
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirationCount.sum();
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final long expireAt;
+        volatile boolean referenced;
+        volatile int slot = -1;
+
+        // 时间轮链表，prev和next由所在格子的锁保护
+        Node<K, V> prev;
+        Node<K, V> next;
+        volatile Node<K, V> bucket;
+        volatile boolean unscheduled;
+
+        Node(K key, V value, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        static <K, V> Node<K, V> sentinel() {
+            Node<K, V> sentinel = new Node<>(null, null, Long.MAX_VALUE);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+    }
+
+    /**
+     * 挂在时间轮上的条目数，用于检查格子不保留已离开缓存的条目
+     */
+    int scheduledCount() {
+        int count = 0;
+        for (Node<K, V> bucket : wheel) {
+            synchronized (bucket) {
+                for (Node<K, V> node = bucket.next; node != bucket; node = node.next) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
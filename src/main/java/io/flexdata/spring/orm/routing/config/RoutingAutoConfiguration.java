@@ -5,6 +5,8 @@ import io.flexdata.spring.orm.routing.selector.DataSourceSelector;
 import io.flexdata.spring.orm.routing.selector.RuleBasedDataSourceSelector;
 import io.flexdata.spring.orm.routing.engine.SpelExpressionEvaluator;
 import io.flexdata.spring.orm.routing.aspect.RoutingAspect;
+import io.flexdata.spring.orm.routing.consistency.ReplicationPositionProvider;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -67,10 +69,12 @@ public class RoutingAutoConfiguration {
             SpelExpressionEvaluator spelEvaluator,
             List<DataSourceSelector> selectors,
             RoutingCacheManager cacheManager,
-            RoutingMonitor routingMonitor) {
+            RoutingMonitor routingMonitor,
+            ObjectProvider<ReplicationPositionProvider> replicationPositionProvider) {
         RoutingEngine engine = new RoutingEngine(routingConfig, spelEvaluator, selectors);
         engine.setCacheManager(cacheManager);
         engine.setRoutingMonitor(routingMonitor);
+        replicationPositionProvider.ifAvailable(engine::setReplicationPositionProvider);
         return engine;
     }
 
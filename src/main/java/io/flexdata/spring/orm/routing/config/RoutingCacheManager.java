@@ -11,14 +11,14 @@ import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 路由缓存管理器
- * 管理路由结果的缓存，支持TTL和LRU策略
+ * 管理路由结果的缓存，支持TTL和容量上限；容量满时按CLOCK算法淘汰，过期由时间轮回收，
+ * 读写和统计都不需要遍历整个缓存
  * 
  * @author FlexData
  * @since 1.0.0
@@ -30,7 +30,7 @@ public class RoutingCacheManager {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private final RoutingRuleConfig routingConfig;
-    private final Map<String, CacheEntry> cacheMap = new ConcurrentHashMap<>();
+    private final ConcurrentClockCache<Object, RoutingResult> cache;
     private final ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor(
             r -> {
                 Thread t = new Thread(r, "routing-cache-cleanup");
@@ -42,6 +42,10 @@ public class RoutingCacheManager {
     private final long defaultTtlMs;
     private final int maxCacheSize;
     private final boolean enableCache;
+    private final long tickMs;
+
+    /** 最近一次命中的时间，按秒粗粒度更新以避免多线程反复写同一个字段 */
+    private volatile long lastAccessTime;
 
     public RoutingCacheManager(RoutingRuleConfig routingConfig) {
         this.routingConfig = routingConfig;
@@ -50,13 +54,16 @@ public class RoutingCacheManager {
                 routingConfig.getCache().getDefaultTtl() : 300000; // 默认5分钟
         this.maxCacheSize = routingConfig.getCache() != null ? 
                 routingConfig.getCache().getMaxSize() : 1000; // 默认1000条
+        // 时间轮一圈覆盖大部分TTL，tick在10ms到1s之间
+        this.tickMs = Math.max(10, Math.min(1000, defaultTtlMs / 64));
+        this.cache = new ConcurrentClockCache<>(Math.max(1, maxCacheSize), tickMs);
     }
 
     @PostConstruct
     public void init() {
         if (enableCache) {
-            // 启动定期清理任务
-            cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredEntries, 60, 60, TimeUnit.SECONDS);
+            // 定期推进时间轮，每次只处理到期的格子
+            cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredEntries, tickMs, tickMs, TimeUnit.MILLISECONDS);
             logger.info("Routing cache manager initialized with TTL: {}ms, Max Size: {}", 
                     defaultTtlMs, maxCacheSize);
         }
@@ -64,59 +71,48 @@ public class RoutingCacheManager {
 
     /**
      * 获取缓存的路由结果
+     * 缓存键可以是字符串，也可以是实现了equals/hashCode的结构化键
      */
-    public RoutingResult get(String cacheKey) {
+    public RoutingResult get(Object cacheKey) {
         if (!enableCache || cacheKey == null) {
             return null;
         }
 
-        CacheEntry entry = cacheMap.get(cacheKey);
-        if (entry == null) {
-            return null;
-        }
-
-        // 检查是否过期
-        if (entry.isExpired()) {
-            cacheMap.remove(cacheKey);
-            return null;
+        RoutingResult result = cache.get(cacheKey);
+        if (result != null) {
+            long now = System.currentTimeMillis();
+            if (now - lastAccessTime >= 1000) {
+                lastAccessTime = now;
+            }
         }
-
-        // 更新访问时间（LRU）
-        entry.updateAccessTime();
-        return entry.getResult();
+        return result;
     }
 
     /**
      * 缓存路由结果
      */
-    public void put(String cacheKey, RoutingResult result, long ttlMs) {
+    public void put(Object cacheKey, RoutingResult result, long ttlMs) {
         if (!enableCache || cacheKey == null || result == null) {
             return;
         }
 
-        // 检查缓存大小限制
-        if (cacheMap.size() >= maxCacheSize) {
-            evictLeastRecentlyUsed();
-        }
-
         long actualTtl = ttlMs > 0 ? ttlMs : defaultTtlMs;
-        CacheEntry entry = new CacheEntry(result, actualTtl);
-        cacheMap.put(cacheKey, entry);
+        cache.put(cacheKey, result, actualTtl);
     }
 
     /**
      * 使用默认TTL缓存路由结果
      */
-    public void put(String cacheKey, RoutingResult result) {
+    public void put(Object cacheKey, RoutingResult result) {
         put(cacheKey, result, defaultTtlMs);
     }
 
     /**
      * 移除缓存项
      */
-    public void evict(String cacheKey) {
+    public void evict(Object cacheKey) {
         if (cacheKey != null) {
-            cacheMap.remove(cacheKey);
+            cache.remove(cacheKey);
         }
     }
 
@@ -124,7 +120,7 @@ public class RoutingCacheManager {
      * 清空所有缓存
      */
     public void clear() {
-        cacheMap.clear();
+        cache.clear();
         logger.info("Routing cache cleared");
     }
 
@@ -134,23 +130,21 @@ public class RoutingCacheManager {
     public Map<String, Object> getCacheStats() {
         Map<String, Object> stats = new HashMap<>();
         stats.put("enabled", enableCache);
-        stats.put("size", cacheMap.size());
+        stats.put("size", cache.size());
         stats.put("max-size", maxCacheSize);
         stats.put("default-ttl-ms", defaultTtlMs);
         
         if (enableCache) {
-            long expiredCount = cacheMap.values().stream()
-                    .mapToLong(entry -> entry.isExpired() ? 1 : 0)
-                    .sum();
-            stats.put("expired-entries", expiredCount);
+            stats.put("hits", cache.getHitCount());
+            stats.put("misses", cache.getMissCount());
+            stats.put("evictions", cache.getEvictionCount());
+            stats.put("expirations", cache.getExpirationCount());
             
             // 最近访问时间统计
-            OptionalLong lastAccess = cacheMap.values().stream()
-                    .mapToLong(CacheEntry::getLastAccessTime)
-                    .max();
-            if (lastAccess.isPresent()) {
+            long lastAccess = lastAccessTime;
+            if (lastAccess > 0) {
                 stats.put("last-access-time", LocalDateTime.ofInstant(
-                        java.time.Instant.ofEpochMilli(lastAccess.getAsLong()),
+                        java.time.Instant.ofEpochMilli(lastAccess),
                         java.time.ZoneId.systemDefault()).format(FORMATTER));
             }
         }
@@ -184,77 +178,7 @@ public class RoutingCacheManager {
         if (!enableCache) {
             return;
         }
-
-        int removedCount = 0;
-        Iterator<Map.Entry<String, CacheEntry>> iterator = cacheMap.entrySet().iterator();
-        
-        while (iterator.hasNext()) {
-            Map.Entry<String, CacheEntry> entry = iterator.next();
-            if (entry.getValue().isExpired()) {
-                iterator.remove();
-                removedCount++;
-            }
-        }
-
-        if (removedCount > 0) {
-            logger.debug("Cleaned up {} expired routing cache entries", removedCount);
-        }
-    }
-
-    /**
-     * 驱逐最近最少使用的缓存项
-     */
-    private void evictLeastRecentlyUsed() {
-        if (cacheMap.isEmpty()) {
-            return;
-        }
-
-        String lruKey = null;
-        long oldestAccessTime = Long.MAX_VALUE;
-
-        for (Map.Entry<String, CacheEntry> entry : cacheMap.entrySet()) {
-            long accessTime = entry.getValue().getLastAccessTime();
-            if (accessTime < oldestAccessTime) {
-                oldestAccessTime = accessTime;
-                lruKey = entry.getKey();
-            }
-        }
-
-        if (lruKey != null) {
-            cacheMap.remove(lruKey);
-            logger.debug("Evicted LRU routing cache entry: {}", lruKey);
-        }
-    }
-
-    /**
-     * 缓存项
-     */
-    private static class CacheEntry {
-        private final RoutingResult result;
-        private final long expirationTime;
-        private volatile long lastAccessTime;
-
-        public CacheEntry(RoutingResult result, long ttlMs) {
-            this.result = result;
-            this.lastAccessTime = System.currentTimeMillis();
-            this.expirationTime = this.lastAccessTime + ttlMs;
-        }
-
-        public RoutingResult getResult() {
-            return result;
-        }
-
-        public boolean isExpired() {
-            return System.currentTimeMillis() > expirationTime;
-        }
-
-        public long getLastAccessTime() {
-            return lastAccessTime;
-        }
-
-        public void updateAccessTime() {
-            this.lastAccessTime = System.currentTimeMillis();
-        }
+        cache.advance(System.currentTimeMillis());
     }
 
     /**
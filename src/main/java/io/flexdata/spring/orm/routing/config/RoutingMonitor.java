@@ -1,5 +1,6 @@
 package io.flexdata.spring.orm.routing.config;
 
+import io.flexdata.spring.orm.core.datasource.ShadowWrite;
 import io.flexdata.spring.orm.routing.engine.RoutingEngine;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
@@ -34,6 +35,15 @@ public class RoutingMonitor {
     private static final Logger logger = LoggerFactory.getLogger(RoutingMonitor.class);
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    // 路由阶段
+    public static final String STAGE_CACHE = "cache";
+    public static final String STAGE_CUSTOM_RULES = "custom-rules";
+    public static final String STAGE_MULTI_TENANT = "multi-tenant";
+    public static final String STAGE_SHARDING = "sharding";
+    public static final String STAGE_READ_WRITE_SPLIT = "read-write-split";
+    public static final String STAGE_LOAD_BALANCE = "load-balance";
+    public static final String STAGE_SELECTOR = "selector";
+
     private final RoutingEngine routingEngine;
     
     @Autowired(required = false)
@@ -43,6 +53,7 @@ public class RoutingMonitor {
     private final Map<String, LongAdder> dataSourceUsageCount = new ConcurrentHashMap<>();
     private final Map<String, LongAdder> tableUsageCount = new ConcurrentHashMap<>();
     private final Map<String, LongAdder> ruleHitCount = new ConcurrentHashMap<>();
+    private final Map<String, StageTiming> stageTimings = new ConcurrentHashMap<>();
     private final AtomicLong totalRoutingCount = new AtomicLong(0);
     private final AtomicLong routingErrorCount = new AtomicLong(0);
     private final AtomicLong cacheHitCount = new AtomicLong(0);
@@ -93,6 +104,9 @@ public class RoutingMonitor {
             Gauge.builder("routing.rules.active", this, monitor -> (double) routingEngine.getCustomRulesCount())
                     .description("Number of active routing rules")
                     .register(meterRegistry);
+
+            // 桶迁移期间的同步写入
+            ShadowWrite.bindTo(meterRegistry);
         }
     }
 
@@ -170,6 +184,32 @@ public class RoutingMonitor {
         }
     }
 
+    /**
+     * 记录路由阶段耗时
+     */
+    public void recordStageDuration(String stage, long durationNanos) {
+        StageTiming timing = stageTimings.get(stage);
+        if (timing == null) {
+            timing = stageTimings.computeIfAbsent(stage, this::createStageTiming);
+        }
+        timing.count.increment();
+        timing.totalNanos.add(durationNanos);
+        if (timing.timer != null) {
+            timing.timer.record(durationNanos, java.util.concurrent.TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private StageTiming createStageTiming(String stage) {
+        Timer timer = null;
+        if (meterRegistry != null) {
+            timer = Timer.builder("routing.stage.duration")
+                    .description("Routing decision duration per stage")
+                    .tag("stage", stage)
+                    .register(meterRegistry);
+        }
+        return new StageTiming(timer);
+    }
+
     /**
      * 获取路由统计信息
      */
@@ -207,6 +247,19 @@ public class RoutingMonitor {
         ruleHitCount.forEach((rule, count) -> ruleHits.put(rule, count.sum()));
         stats.put("rule-hits", ruleHits);
         
+        // 各阶段耗时统计
+        Map<String, Object> stageStats = new HashMap<>();
+        stageTimings.forEach((stage, timing) -> {
+            long count = timing.count.sum();
+            long totalNanos = timing.totalNanos.sum();
+            Map<String, Object> stageStat = new HashMap<>();
+            stageStat.put("count", count);
+            stageStat.put("total-ms", totalNanos / 1_000_000.0);
+            stageStat.put("avg-us", count > 0 ? totalNanos / 1_000.0 / count : 0.0);
+            stageStats.put(stage, stageStat);
+        });
+        stats.put("stage-timing", stageStats);
+        
         // 路由引擎状态
         Map<String, Object> engineStatus = new HashMap<>();
         engineStatus.put("active-rules-count", routingEngine.getCustomRulesCount());
@@ -225,6 +278,7 @@ public class RoutingMonitor {
         dataSourceUsageCount.clear();
         tableUsageCount.clear();
         ruleHitCount.clear();
+        stageTimings.values().forEach(StageTiming::reset);
         totalRoutingCount.set(0);
         routingErrorCount.set(0);
         cacheHitCount.set(0);
@@ -243,4 +297,22 @@ public class RoutingMonitor {
             logger.info("Routing Statistics: {}", stats);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 单个路由阶段的耗时累计
+     */
+    private static final class StageTiming {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final Timer timer;
+
+        StageTiming(Timer timer) {
+            this.timer = timer;
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+        }
+    }
+}
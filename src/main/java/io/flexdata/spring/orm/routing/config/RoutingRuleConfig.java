@@ -140,8 +140,13 @@ public class RoutingRuleConfig {
         private boolean enabled = false;
         private String masterDataSource;
         private List<String> slaveDataSources;
-        private String strategy = "round_robin"; // round_robin, random, weight
+        private String strategy = "round_robin"; // round_robin, random, weight, least_connections, adaptive
         private Map<String, Integer> weights; // 权重配置
+        private AdaptiveConfig adaptive = new AdaptiveConfig(); // adaptive策略参数
+        private String consistency = "eventual"; // eventual, session（写后读一致）
+        private String sessionKey; // 会话键SpEL表达式，未配置时使用userInfo，再退化为按线程
+        private long consistencyWindow = 1000; // 写入后多长时间内的读操作需要保证一致（毫秒）
+        private int maxSessions = 10000; // 最多记录的会话数
 
         // Getters and Setters
         public boolean isEnabled() {
@@ -183,6 +188,46 @@ public class RoutingRuleConfig {
         public void setWeights(Map<String, Integer> weights) {
             this.weights = weights;
         }
+
+        public AdaptiveConfig getAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(AdaptiveConfig adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public String getConsistency() {
+            return consistency;
+        }
+
+        public void setConsistency(String consistency) {
+            this.consistency = consistency;
+        }
+
+        public String getSessionKey() {
+            return sessionKey;
+        }
+
+        public void setSessionKey(String sessionKey) {
+            this.sessionKey = sessionKey;
+        }
+
+        public long getConsistencyWindow() {
+            return consistencyWindow;
+        }
+
+        public void setConsistencyWindow(long consistencyWindow) {
+            this.consistencyWindow = consistencyWindow;
+        }
+
+        public int getMaxSessions() {
+            return maxSessions;
+        }
+
+        public void setMaxSessions(int maxSessions) {
+            this.maxSessions = maxSessions;
+        }
     }
 
     /**
@@ -190,13 +235,17 @@ public class RoutingRuleConfig {
      */
     public static class ShardingConfig {
         private boolean enabled = false;
-        private String strategy = "mod"; // mod, range, hash, custom
+        private String strategy = "mod"; // mod, range, hash, bucket, custom
         private String shardingKey;
         private int shardCount = 2;
         private String tableTemplate = "{table}_{0}";
         private Map<String, String> dataSourceMapping;
         private List<RangeConfig> ranges; // 范围分片配置
         private String customExpression; // SpEL表达式
+        private int bucketCount = 4096; // bucket策略的虚拟桶数量，上线后不能再修改
+        private Map<String, String> bucketMapping; // 桶（或桶区间"0-1023"）到分片序号的映射，未配置的桶按区间均分到各分片
+        private List<BucketMigrationConfig> migrations; // 正在迁移的桶
+        private String shadowWriteFailurePolicy = "log"; // 迁移期间同步写入失败的处理：log, fail
 
         // Getters and Setters
         public boolean isEnabled() {
@@ -262,6 +311,76 @@ public class RoutingRuleConfig {
         public void setCustomExpression(String customExpression) {
             this.customExpression = customExpression;
         }
+
+        public int getBucketCount() {
+            return bucketCount;
+        }
+
+        public void setBucketCount(int bucketCount) {
+            this.bucketCount = bucketCount;
+        }
+
+        public Map<String, String> getBucketMapping() {
+            return bucketMapping;
+        }
+
+        public void setBucketMapping(Map<String, String> bucketMapping) {
+            this.bucketMapping = bucketMapping;
+        }
+
+        public List<BucketMigrationConfig> getMigrations() {
+            return migrations;
+        }
+
+        public void setMigrations(List<BucketMigrationConfig> migrations) {
+            this.migrations = migrations;
+        }
+
+        public String getShadowWriteFailurePolicy() {
+            return shadowWriteFailurePolicy;
+        }
+
+        public void setShadowWriteFailurePolicy(String shadowWriteFailurePolicy) {
+            this.shadowWriteFailurePolicy = shadowWriteFailurePolicy;
+        }
+    }
+
+    /**
+     * 桶迁移配置
+     * dual-write阶段读写仍以原分片为准，写操作同时写入目标分片，期间把存量数据复制到目标分片；
+     * 数据追平后切换到dual-read阶段，读写以目标分片为准，写操作同时写回原分片以便回退；
+     * 确认无误后把bucketMapping中的桶改到目标分片并删除本配置。
+     * 每次切换阶段后调用RoutingEngine.refreshRoutingPlan()，开启了注解路由缓存时还要调用RoutingAspect.clearCache()
+     */
+    public static class BucketMigrationConfig {
+        private String buckets; // 桶或桶区间，如"5"、"0-127"
+        private int targetShard; // 目标分片序号
+        private String phase = "dual-write"; // dual-write, dual-read
+
+        // Getters and Setters
+        public String getBuckets() {
+            return buckets;
+        }
+
+        public void setBuckets(String buckets) {
+            this.buckets = buckets;
+        }
+
+        public int getTargetShard() {
+            return targetShard;
+        }
+
+        public void setTargetShard(int targetShard) {
+            this.targetShard = targetShard;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public void setPhase(String phase) {
+            this.phase = phase;
+        }
     }
 
     /**
@@ -442,11 +561,12 @@ public class RoutingRuleConfig {
      * 负载均衡配置
      */
     public static class LoadBalanceConfig {
-        private String strategy = "round_robin"; // round_robin, random, weight, least_connections
+        private String strategy = "round_robin"; // round_robin, random, weight, least_connections, adaptive
         private List<String> dataSources;
         private Map<String, Integer> weights;
         private boolean healthCheck = true;
         private int healthCheckInterval = 30000; // 毫秒
+        private AdaptiveConfig adaptive = new AdaptiveConfig(); // adaptive策略参数
 
         // Getters and Setters
         public String getStrategy() {
@@ -488,6 +608,67 @@ public class RoutingRuleConfig {
         public void setHealthCheckInterval(int healthCheckInterval) {
             this.healthCheckInterval = healthCheckInterval;
         }
+
+        public AdaptiveConfig getAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(AdaptiveConfig adaptive) {
+            this.adaptive = adaptive;
+        }
+    }
+
+    /**
+     * 自适应负载均衡配置
+     * 按语句耗时和失败率的EWMA做二选一（power of two choices），失败过多的实例按退避时间摘除
+     */
+    public static class AdaptiveConfig {
+        private int failureThreshold = 5; // 连续失败多少次后摘除
+        private double errorRateThreshold = 0.5; // 失败率EWMA超过该值后摘除
+        private long baseEjectionTime = 1000; // 首次摘除时长（毫秒），再次摘除时翻倍
+        private long maxEjectionTime = 60000; // 最长摘除时长（毫秒）
+        private long decayTime = 10000; // 耗时EWMA的衰减时间常数（毫秒），长时间未被选中的实例逐渐恢复
+
+        // Getters and Setters
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        public double getErrorRateThreshold() {
+            return errorRateThreshold;
+        }
+
+        public void setErrorRateThreshold(double errorRateThreshold) {
+            this.errorRateThreshold = errorRateThreshold;
+        }
+
+        public long getBaseEjectionTime() {
+            return baseEjectionTime;
+        }
+
+        public void setBaseEjectionTime(long baseEjectionTime) {
+            this.baseEjectionTime = baseEjectionTime;
+        }
+
+        public long getMaxEjectionTime() {
+            return maxEjectionTime;
+        }
+
+        public void setMaxEjectionTime(long maxEjectionTime) {
+            this.maxEjectionTime = maxEjectionTime;
+        }
+
+        public long getDecayTime() {
+            return decayTime;
+        }
+
+        public void setDecayTime(long decayTime) {
+            this.decayTime = decayTime;
+        }
     }
 
     /**
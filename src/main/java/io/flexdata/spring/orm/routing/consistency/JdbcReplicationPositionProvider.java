@@ -0,0 +1,59 @@
+package io.flexdata.spring.orm.routing.consistency;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于JDBC查询的复制位点提供者
+ * MySQL使用GTID集合，PostgreSQL使用WAL LSN
+ *
+ * 传入的必须是各个物理数据源本身，而不是按线程上下文路由的{@link io.flexdata.spring.orm.core.datasource.DynamicDataSource}
+ */
+public class JdbcReplicationPositionProvider implements ReplicationPositionProvider {
+
+    public static final String MYSQL = "mysql";
+    public static final String POSTGRESQL = "postgresql";
+
+    private final Map<String, JdbcTemplate> templates = new HashMap<>();
+    private final String currentPositionSql;
+    private final String replayedSql;
+
+    /**
+     * @param dataSources 数据源名称到物理数据源的映射，需包含主库和所有从库
+     * @param dialect mysql或postgresql
+     */
+    public JdbcReplicationPositionProvider(Map<String, DataSource> dataSources, String dialect) {
+        switch (dialect.toLowerCase()) {
+            case MYSQL:
+                currentPositionSql = "SELECT @@GLOBAL.gtid_executed";
+                replayedSql = "SELECT GTID_SUBSET(?, @@GLOBAL.gtid_executed)";
+                break;
+            case POSTGRESQL:
+                currentPositionSql = "SELECT pg_current_wal_lsn()::text";
+                replayedSql = "SELECT CASE WHEN pg_last_wal_replay_lsn() >= CAST(? AS pg_lsn) THEN 1 ELSE 0 END";
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported replication dialect: " + dialect);
+        }
+        dataSources.forEach((name, dataSource) -> templates.put(name, new JdbcTemplate(dataSource)));
+    }
+
+    @Override
+    public String currentPosition(String masterDataSource) {
+        JdbcTemplate template = templates.get(masterDataSource);
+        return template != null ? template.queryForObject(currentPositionSql, String.class) : null;
+    }
+
+    @Override
+    public boolean hasReplayed(String replicaDataSource, String position) {
+        JdbcTemplate template = templates.get(replicaDataSource);
+        if (template == null) {
+            return false;
+        }
+        Integer replayed = template.queryForObject(replayedSql, Integer.class, position);
+        return replayed != null && replayed == 1;
+    }
+}
@@ -0,0 +1,25 @@
+package io.flexdata.spring.orm.routing.consistency;
+
+/**
+ * 复制位点提供者
+ * 会话一致性模式下用于判断从库是否已经回放到会话最近一次写入的位置（MySQL GTID、PostgreSQL LSN等）；
+ * 没有提供者时只能按时间窗口判断，窗口内的读全部发往主库
+ */
+public interface ReplicationPositionProvider {
+
+    /**
+     * 获取主库当前的复制位点
+     *
+     * @param masterDataSource 主库数据源名称
+     * @return 位点，无法获取时返回null
+     */
+    String currentPosition(String masterDataSource);
+
+    /**
+     * 判断从库是否已回放到指定位点
+     *
+     * @param replicaDataSource 从库数据源名称
+     * @param position {@link #currentPosition}返回的位点
+     */
+    boolean hasReplayed(String replicaDataSource, String position);
+}
@@ -0,0 +1,138 @@
+package io.flexdata.spring.orm.routing.consistency;
+
+import io.flexdata.spring.orm.routing.config.ConcurrentClockCache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 会话写入水位记录
+ * 路由引擎把写操作路由到主库时记录会话的写入水位，之后一个一致性窗口内该会话的读操作
+ * 只能发往主库或确认已追上水位的从库
+ *
+ * 会话由会话键区分（例如用户ID）；没有会话键时按线程记录，覆盖同一请求内先写后读的场景。
+ * 会话数有上限，超出时按CLOCK淘汰，被淘汰的会话退化为最终一致
+ */
+public class SessionConsistencyTracker {
+
+    private static final long TICK_MILLIS = 100;
+
+    private final long windowMillis;
+    private final ConcurrentClockCache<Object, Watermark> sessions;
+    private final ThreadLocal<Watermark> threadWatermark = new ThreadLocal<>();
+    private final LongSupplier clock;
+
+    /**
+     * @param windowMillis 一致性窗口，写入后超过该时间的读操作不再受限
+     * @param maxSessions 最多记录的会话数
+     */
+    public SessionConsistencyTracker(long windowMillis, int maxSessions) {
+        this(windowMillis, maxSessions, System::currentTimeMillis);
+    }
+
+    SessionConsistencyTracker(long windowMillis, int maxSessions, LongSupplier clock) {
+        this.windowMillis = windowMillis;
+        this.sessions = new ConcurrentClockCache<>(maxSessions, TICK_MILLIS);
+        this.clock = clock;
+    }
+
+    /**
+     * 记录一次写入，返回新的水位
+     * 写入发生在事务中时水位在事务结束前处于未决状态，此时主库的位点还不包含这次写入，不能用来判断从库是否追上
+     *
+     * @param sessionKey 会话键，为null时按当前线程记录
+     */
+    public Watermark recordWrite(Object sessionKey) {
+        Watermark watermark = new Watermark(clock.getAsLong());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            watermark.pending = true;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    watermark.pending = false;
+                }
+            });
+        }
+        if (sessionKey == null) {
+            threadWatermark.set(watermark);
+        } else {
+            sessions.put(sessionKey, watermark, windowMillis);
+        }
+        return watermark;
+    }
+
+    /**
+     * 获取会话仍在一致性窗口内的写入水位，没有时返回null
+     *
+     * @param sessionKey 会话键，为null时取当前线程的水位
+     */
+    public Watermark getWatermark(Object sessionKey) {
+        Watermark watermark = sessionKey == null ? threadWatermark.get() : sessions.get(sessionKey);
+        if (watermark == null) {
+            return null;
+        }
+        if (clock.getAsLong() - watermark.writeTime >= windowMillis) {
+            if (sessionKey == null) {
+                threadWatermark.remove();
+            }
+            return null;
+        }
+        return watermark;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * 会话的写入水位
+     * 复制位点在写入所在的事务结束后第一次读取时才从主库获取，此时主库的位点一定已经包含这次写入；
+     * 事务结束前的读取只能发往主库
+     */
+    public static final class Watermark {
+        private final long writeTime;
+        private volatile boolean pending;
+        private volatile String position;
+        private final Set<String> caughtUpReplicas = ConcurrentHashMap.newKeySet();
+
+        Watermark(long writeTime) {
+            this.writeTime = writeTime;
+        }
+
+        public long getWriteTime() {
+            return writeTime;
+        }
+
+        /**
+         * 写入所在的事务是否尚未结束，未结束时不能获取复制位点
+         */
+        public boolean isPending() {
+            return pending;
+        }
+
+        /**
+         * 复制位点，尚未获取时为null
+         */
+        public String getPosition() {
+            return position;
+        }
+
+        public void setPosition(String position) {
+            this.position = position;
+        }
+
+        /**
+         * 从库是否已确认追上该水位
+         */
+        public boolean isCaughtUp(String replica) {
+            return caughtUpReplicas.contains(replica);
+        }
+
+        public void markCaughtUp(String replica) {
+            caughtUpReplicas.add(replica);
+        }
+    }
+}
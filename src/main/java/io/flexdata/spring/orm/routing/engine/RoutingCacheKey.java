@@ -0,0 +1,331 @@
+package io.flexdata.spring.orm.routing.engine;
+
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.context.RoutingContext;
+import org.springframework.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 路由缓存键
+ * 只包含表名、操作类型以及路由规则实际引用到的参数和请求头的值，按字段比较，不拼接字符串
+ *
+ * 查询缓存时每个线程复用一个探测键（{@link #probe}），填充后直接用于查找，不分配对象；
+ * 未命中需要写入缓存时才通过{@link #snapshot()}复制出不可变的键
+ */
+final class RoutingCacheKey {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private String tableName;
+    private RoutingContext.OperationType operationType;
+    private Object[] values;
+    private int valueCount;
+    private Map<String, Object> allParameters;
+    private Map<String, String> allHeaders;
+    private int hash;
+    private final boolean mutable;
+
+    private RoutingCacheKey(boolean mutable) {
+        this.mutable = mutable;
+        this.values = EMPTY;
+    }
+
+    /**
+     * 创建可复用的探测键
+     */
+    static RoutingCacheKey probe() {
+        return new RoutingCacheKey(true);
+    }
+
+    /**
+     * 按布局从路由上下文填充探测键
+     */
+    RoutingCacheKey fill(Layout layout, RoutingContext context) {
+        if (!mutable) {
+            throw new IllegalStateException("Routing cache key is immutable");
+        }
+        tableName = context.getTableName();
+        operationType = context.getOperationType();
+
+        Layout.TableLayout tableLayout = layout.forTable(tableName);
+        String[] parameterNames = tableLayout.parameterNames;
+        String[] headerNames = tableLayout.headerNames;
+        int count = parameterNames.length + headerNames.length;
+        if (values.length < count) {
+            values = new Object[count];
+        }
+        valueCount = count;
+
+        int h = Objects.hashCode(tableName);
+        h = 31 * h + (operationType != null ? operationType.ordinal() + 1 : 0);
+        int index = 0;
+        for (String name : parameterNames) {
+            Object value = context.getParameter(name);
+            values[index++] = value;
+            h = 31 * h + Objects.hashCode(value);
+        }
+        for (String name : headerNames) {
+            Object value = context.getHeader(name);
+            values[index++] = value;
+            h = 31 * h + Objects.hashCode(value);
+        }
+
+        // 规则引用了无法静态确定的参数或请求头时整体参与比较
+        allParameters = layout.allParameters ? context.getParameters() : null;
+        allHeaders = layout.allHeaders ? context.getHeaders() : null;
+        if (allParameters != null) {
+            h = 31 * h + allParameters.hashCode();
+        }
+        if (allHeaders != null) {
+            h = 31 * h + allHeaders.hashCode();
+        }
+        hash = h;
+        return this;
+    }
+
+    /**
+     * 释放探测键对上下文中值的引用
+     */
+    void reset() {
+        Arrays.fill(values, 0, valueCount, null);
+        valueCount = 0;
+        tableName = null;
+        operationType = null;
+        allParameters = null;
+        allHeaders = null;
+    }
+
+    /**
+     * 复制为可放入缓存的不可变键
+     */
+    RoutingCacheKey snapshot() {
+        RoutingCacheKey key = new RoutingCacheKey(false);
+        key.tableName = tableName;
+        key.operationType = operationType;
+        key.values = valueCount == 0 ? EMPTY : Arrays.copyOf(values, valueCount);
+        key.valueCount = valueCount;
+        key.allParameters = allParameters != null ? new HashMap<>(allParameters) : null;
+        key.allHeaders = allHeaders != null ? new HashMap<>(allHeaders) : null;
+        key.hash = hash;
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RoutingCacheKey)) {
+            return false;
+        }
+        RoutingCacheKey other = (RoutingCacheKey) o;
+        if (hash != other.hash || valueCount != other.valueCount
+                || operationType != other.operationType
+                || !Objects.equals(tableName, other.tableName)) {
+            return false;
+        }
+        for (int i = 0; i < valueCount; i++) {
+            if (!Objects.equals(values[i], other.values[i])) {
+                return false;
+            }
+        }
+        return Objects.equals(allParameters, other.allParameters)
+                && Objects.equals(allHeaders, other.allHeaders);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(tableName).append(':').append(operationType);
+        for (int i = 0; i < valueCount; i++) {
+            builder.append(':').append(values[i]);
+        }
+        if (allParameters != null) {
+            builder.append(":params=").append(allParameters.keySet());
+        }
+        if (allHeaders != null) {
+            builder.append(":headers=").append(allHeaders.keySet());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 缓存键布局
+     * 从路由配置中预先计算每张表需要参与缓存键的参数名和请求头名
+     */
+    static final class Layout {
+
+        /**
+         * SpEL中以字面量引用的参数，如 parameters['userType']、getParameter('userId')
+         */
+        private static final Pattern PARAMETER_REFERENCE = Pattern.compile(
+                "parameters\\s*\\[\\s*['\"]([^'\"]+)['\"]\\s*\\]"
+                        + "|get(?:String|Int|Long)?Parameter\\s*\\(\\s*['\"]([^'\"]+)['\"]");
+
+        /**
+         * SpEL中以字面量引用的请求头，如 headers['X-Tenant-Id']、getHeader('X-Region')
+         */
+        private static final Pattern HEADER_REFERENCE = Pattern.compile(
+                "headers\\s*\\[\\s*['\"]([^'\"]+)['\"]\\s*\\]"
+                        + "|getHeader\\s*\\(\\s*['\"]([^'\"]+)['\"]");
+
+        /**
+         * 去掉字面量引用后仍出现这些标识符，说明引用了整个参数表、请求头表或整个上下文
+         */
+        private static final Pattern OPAQUE_PARAMETER_ACCESS = Pattern.compile(
+                "\\bparameters\\b|Parameters?\\b|#context\\b|#root\\b|#this\\b");
+        private static final Pattern OPAQUE_HEADER_ACCESS = Pattern.compile(
+                "\\bheaders\\b|Headers?\\b|#context\\b|#root\\b|#this\\b");
+
+        private static final String[] NONE = new String[0];
+
+        private final Map<String, TableLayout> tableLayouts;
+        private final TableLayout defaultLayout;
+        private final boolean allParameters;
+        private final boolean allHeaders;
+
+        private Layout(Map<String, TableLayout> tableLayouts, TableLayout defaultLayout,
+                       boolean allParameters, boolean allHeaders) {
+            this.tableLayouts = tableLayouts;
+            this.defaultLayout = defaultLayout;
+            this.allParameters = allParameters;
+            this.allHeaders = allHeaders;
+        }
+
+        TableLayout forTable(String tableName) {
+            if (tableName == null) {
+                return defaultLayout;
+            }
+            TableLayout layout = tableLayouts.get(tableName);
+            return layout != null ? layout : defaultLayout;
+        }
+
+        boolean isAllParameters() {
+            return allParameters;
+        }
+
+        boolean isAllHeaders() {
+            return allHeaders;
+        }
+
+        /**
+         * 根据当前启用的自定义规则、多租户和分片配置计算布局
+         */
+        static Layout from(RoutingRuleConfig config) {
+            Set<String> parameters = new LinkedHashSet<>();
+            Set<String> headers = new LinkedHashSet<>();
+            boolean[] opaque = new boolean[2];
+
+            List<RoutingRuleConfig.CustomRoutingRule> customRules = config.getCustomRules();
+            if (customRules != null) {
+                for (RoutingRuleConfig.CustomRoutingRule rule : customRules) {
+                    if (!rule.isEnabled()) {
+                        continue;
+                    }
+                    collect(rule.getCondition(), parameters, headers, opaque);
+                    collectIfExpression(rule.getDataSource(), parameters, headers, opaque);
+                    collectIfExpression(rule.getTable(), parameters, headers, opaque);
+                }
+            }
+
+            RoutingRuleConfig.MultiTenantConfig tenantConfig = config.getMultiTenant();
+            if (tenantConfig != null && tenantConfig.isEnabled()) {
+                collect(tenantConfig.getCustomExpression(), parameters, headers, opaque);
+                if (StringUtils.hasText(tenantConfig.getTenantKey())) {
+                    if ("parameter".equals(tenantConfig.getTenantResolver())) {
+                        parameters.add(tenantConfig.getTenantKey());
+                    } else if ("header".equals(tenantConfig.getTenantResolver())) {
+                        headers.add(tenantConfig.getTenantKey());
+                    }
+                }
+            }
+
+            Map<String, TableLayout> tableLayouts = new HashMap<>();
+            Map<String, RoutingRuleConfig.ShardingConfig> shardingConfigs = config.getSharding();
+            if (shardingConfigs != null) {
+                for (Map.Entry<String, RoutingRuleConfig.ShardingConfig> entry : shardingConfigs.entrySet()) {
+                    RoutingRuleConfig.ShardingConfig sharding = entry.getValue();
+                    if (sharding == null || !sharding.isEnabled()) {
+                        continue;
+                    }
+                    Set<String> tableParameters = new LinkedHashSet<>(parameters);
+                    Set<String> tableHeaders = new LinkedHashSet<>(headers);
+                    if (StringUtils.hasText(sharding.getShardingKey())) {
+                        tableParameters.add(sharding.getShardingKey());
+                    }
+                    collect(sharding.getCustomExpression(), tableParameters, tableHeaders, opaque);
+                    tableLayouts.put(entry.getKey(), new TableLayout(tableParameters, tableHeaders));
+                }
+            }
+
+            return new Layout(Collections.unmodifiableMap(tableLayouts),
+                    new TableLayout(parameters, headers), opaque[0], opaque[1]);
+        }
+
+        private static void collectIfExpression(String expression, Set<String> parameters,
+                                                Set<String> headers, boolean[] opaque) {
+            if (expression != null && expression.startsWith("#{") && expression.endsWith("}")) {
+                collect(expression, parameters, headers, opaque);
+            }
+        }
+
+        private static void collect(String expression, Set<String> parameters,
+                                    Set<String> headers, boolean[] opaque) {
+            if (!StringUtils.hasText(expression)) {
+                return;
+            }
+            String remaining = extract(PARAMETER_REFERENCE, expression, parameters);
+            remaining = extract(HEADER_REFERENCE, remaining, headers);
+            if (OPAQUE_PARAMETER_ACCESS.matcher(remaining).find()) {
+                opaque[0] = true;
+            }
+            if (OPAQUE_HEADER_ACCESS.matcher(remaining).find()) {
+                opaque[1] = true;
+            }
+        }
+
+        private static String extract(Pattern pattern, String expression, Set<String> names) {
+            Matcher matcher = pattern.matcher(expression);
+            StringBuffer remaining = new StringBuffer();
+            while (matcher.find()) {
+                names.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+                matcher.appendReplacement(remaining, " ");
+            }
+            matcher.appendTail(remaining);
+            return remaining.toString();
+        }
+
+        static final class TableLayout {
+            private final String[] parameterNames;
+            private final String[] headerNames;
+
+            TableLayout(Set<String> parameterNames, Set<String> headerNames) {
+                this.parameterNames = parameterNames.isEmpty() ? NONE : parameterNames.toArray(NONE);
+                this.headerNames = headerNames.isEmpty() ? NONE : headerNames.toArray(NONE);
+            }
+
+            List<String> getParameterNames() {
+                return Arrays.asList(parameterNames);
+            }
+
+            List<String> getHeaderNames() {
+                return Arrays.asList(headerNames);
+            }
+        }
+    }
+}
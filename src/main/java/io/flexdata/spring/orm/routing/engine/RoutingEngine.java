@@ -1,8 +1,14 @@
 package io.flexdata.spring.orm.routing.engine;
 
+import io.flexdata.spring.orm.core.datasource.ShadowWrite;
+import io.flexdata.spring.orm.core.datasource.ShardOwnership;
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
+import io.flexdata.spring.orm.core.interfaces.Criteria;
 import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
 import io.flexdata.spring.orm.routing.config.RoutingCacheManager;
 import io.flexdata.spring.orm.routing.config.RoutingMonitor;
+import io.flexdata.spring.orm.routing.consistency.ReplicationPositionProvider;
+import io.flexdata.spring.orm.routing.consistency.SessionConsistencyTracker;
 import io.flexdata.spring.orm.routing.selector.DataSourceSelector;
 import io.flexdata.spring.orm.routing.context.RoutingContext;
 import org.slf4j.Logger;
@@ -11,9 +17,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PostConstruct;
+
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 路由策略引擎
@@ -29,6 +39,35 @@ public class RoutingEngine {
     private final List<DataSourceSelector> dataSourceSelectors;
     private RoutingCacheManager cacheManager;
     private RoutingMonitor routingMonitor;
+    private ReplicationPositionProvider replicationPositionProvider;
+
+    /**
+     * 配置的规则都未命中时缓存的占位结果
+     */
+    private static final RoutingCacheManager.RoutingResult NO_RULE_MATCHED =
+            new RoutingCacheManager.RoutingResult(null, null);
+
+    /**
+     * 缓存结果中记录同步写入目标的元数据键
+     */
+    private static final String SHADOW_DATA_SOURCE = "shadowDataSource";
+    private static final String SHADOW_TABLE_NAME = "shadowTableName";
+    private static final String SHADOW_FAILURE_POLICY = "shadowFailurePolicy";
+
+    /**
+     * 由路由配置编译得到的路由方案，配置重载时整体替换
+     */
+    private volatile RoutingPlan routingPlan;
+
+    /**
+     * 路由方案的版本，每次重新编译加一，自行缓存路由结果的调用方据此丢弃旧方案下的结果
+     */
+    private final AtomicLong planVersion = new AtomicLong();
+
+    /**
+     * 每个线程复用的探测键，查询缓存时不分配对象
+     */
+    private final ThreadLocal<RoutingCacheKey> cacheKeyProbe = ThreadLocal.withInitial(RoutingCacheKey::probe);
 
     public RoutingEngine(RoutingRuleConfig routingConfig, 
                         SpelExpressionEvaluator spelEvaluator,
@@ -45,6 +84,14 @@ public class RoutingEngine {
         this.cacheManager = cacheManager;
     }
 
+    /**
+     * 启动时编译路由配置
+     */
+    @PostConstruct
+    public void init() {
+        refreshRoutingPlan();
+    }
+
     /**
      * 设置监控器
      */
@@ -52,13 +99,24 @@ public class RoutingEngine {
         this.routingMonitor = routingMonitor;
     }
 
+    /**
+     * 设置复制位点提供者，会话一致性模式下用于判断从库是否已追上会话的写入
+     */
+    public void setReplicationPositionProvider(ReplicationPositionProvider replicationPositionProvider) {
+        this.replicationPositionProvider = replicationPositionProvider;
+    }
+
     /**
      * 路由结果
+     * 桶迁移期间的写操作带有同步写入目标，仓储在主目标写入后按主键把同一行幂等地写到该目标
      */
     public static class RoutingResult {
         private String dataSource;
         private String tableName;
         private String reason;
+        private String shadowDataSource;
+        private String shadowTableName;
+        private ShadowWrite.FailurePolicy shadowFailurePolicy;
 
         public RoutingResult(String dataSource, String tableName, String reason) {
             this.dataSource = dataSource;
@@ -66,6 +124,27 @@ public class RoutingEngine {
             this.reason = reason;
         }
 
+        public RoutingResult(String dataSource, String tableName, String reason,
+                             String shadowDataSource, String shadowTableName) {
+            this(dataSource, tableName, reason);
+            this.shadowDataSource = shadowDataSource;
+            this.shadowTableName = shadowTableName;
+        }
+
+        public RoutingResult(String dataSource, String tableName, String reason,
+                             String shadowDataSource, String shadowTableName,
+                             ShadowWrite.FailurePolicy shadowFailurePolicy) {
+            this(dataSource, tableName, reason, shadowDataSource, shadowTableName);
+            this.shadowFailurePolicy = shadowFailurePolicy;
+        }
+
+        /**
+         * 是否需要同步写入另一个分片
+         */
+        public boolean hasShadow() {
+            return shadowDataSource != null;
+        }
+
         // Getters and Setters
         public String getDataSource() {
             return dataSource;
@@ -90,6 +169,30 @@ public class RoutingEngine {
         public void setReason(String reason) {
             this.reason = reason;
         }
+
+        public String getShadowDataSource() {
+            return shadowDataSource;
+        }
+
+        public void setShadowDataSource(String shadowDataSource) {
+            this.shadowDataSource = shadowDataSource;
+        }
+
+        public String getShadowTableName() {
+            return shadowTableName;
+        }
+
+        public void setShadowTableName(String shadowTableName) {
+            this.shadowTableName = shadowTableName;
+        }
+
+        public ShadowWrite.FailurePolicy getShadowFailurePolicy() {
+            return shadowFailurePolicy;
+        }
+
+        public void setShadowFailurePolicy(ShadowWrite.FailurePolicy shadowFailurePolicy) {
+            this.shadowFailurePolicy = shadowFailurePolicy;
+        }
     }
 
     /**
@@ -100,42 +203,60 @@ public class RoutingEngine {
      */
     public RoutingResult route(RoutingContext context) {
         long startTime = System.currentTimeMillis();
-        String cacheKey = generateCacheKey(context);
-        
-        // 尝试从缓存获取路由结果
-         RoutingCacheManager.RoutingResult cachedResult = null;
-         if (cacheManager != null) {
-             cachedResult = cacheManager.get(cacheKey);
-             if (cachedResult != null) {
-                 if (routingMonitor != null) {
-                     routingMonitor.recordCacheHit();
-                 }
-                 logger.debug("Cache hit for routing key: {}", cacheKey);
-                 return new RoutingResult(cachedResult.getDataSource(), cachedResult.getTable(), "Cache hit");
-             }
-         }
-         
-         if (routingMonitor != null) {
-             routingMonitor.recordCacheMiss();
-         }
-         
-         RoutingResult result = performRouting(context);
-         
-         // 缓存路由结果
-         if (result != null && cacheManager != null) {
-             RoutingCacheManager.RoutingResult cacheResult = 
-                 new RoutingCacheManager.RoutingResult(result.getDataSource(), result.getTableName());
-             cacheManager.put(cacheKey, cacheResult);
-         }
-         
-         long duration = System.currentTimeMillis() - startTime;
-         if (routingMonitor != null) {
-             routingMonitor.recordRoutingDuration(duration);
-             if (result != null) {
-                 routingMonitor.recordDataSourceUsage(result.getDataSource());
-                 routingMonitor.recordTableUsage(result.getTableName());
-             }
-         }
+        RoutingPlan plan = getRoutingPlan();
+        RoutingResult result = null;
+        boolean rulesMatched = true;
+
+        if (cacheManager != null) {
+            long stageStart = System.nanoTime();
+            RoutingCacheKey probe = cacheKeyProbe.get().fill(plan.getCacheKeyLayout(), context);
+            try {
+                // 尝试从缓存获取路由结果
+                RoutingCacheManager.RoutingResult cachedResult = cacheManager.get(probe);
+                recordStage(RoutingMonitor.STAGE_CACHE, stageStart);
+                if (cachedResult != null) {
+                    if (routingMonitor != null) {
+                        routingMonitor.recordCacheHit();
+                    }
+                    logger.debug("Cache hit for routing key: {}", probe);
+                    if (cachedResult == NO_RULE_MATCHED) {
+                        rulesMatched = false;
+                    } else {
+                        Map<String, Object> metadata = cachedResult.getMetadata();
+                        result = new RoutingResult(cachedResult.getDataSource(), cachedResult.getTable(), "Cache hit",
+                                (String) metadata.get(SHADOW_DATA_SOURCE), (String) metadata.get(SHADOW_TABLE_NAME),
+                                (ShadowWrite.FailurePolicy) metadata.get(SHADOW_FAILURE_POLICY));
+                    }
+                } else {
+                    if (routingMonitor != null) {
+                        routingMonitor.recordCacheMiss();
+                    }
+                    result = evaluateRoutingRules(plan, context);
+                    rulesMatched = result != null;
+                    // 缓存路由结果；没有规则命中时也缓存下来，下次直接交给数据源选择器
+                    RoutingCacheManager.RoutingResult cacheResult = rulesMatched ? toCacheResult(result) : NO_RULE_MATCHED;
+                    cacheManager.put(probe.snapshot(), cacheResult);
+                }
+            } finally {
+                probe.reset();
+            }
+        } else {
+            result = evaluateRoutingRules(plan, context);
+            rulesMatched = result != null;
+        }
+
+        if (!rulesMatched) {
+            result = selectDataSource(plan, context);
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        if (routingMonitor != null) {
+            routingMonitor.recordRoutingDuration(duration);
+            if (result != null) {
+                routingMonitor.recordDataSourceUsage(result.getDataSource());
+                routingMonitor.recordTableUsage(result.getTableName());
+            }
+        }
         
         logger.debug("Routing completed for table {} in {}ms, result: {}", 
                     context.getTableName(), duration, result.getDataSource());
@@ -144,35 +265,62 @@ public class RoutingEngine {
     }
     
     /**
-     * 执行实际的路由逻辑
+     * 转换为缓存结果，同步写入目标放在元数据中
      */
-    private RoutingResult performRouting(RoutingContext context) {
+    private static RoutingCacheManager.RoutingResult toCacheResult(RoutingResult result) {
+        if (!result.hasShadow()) {
+            return new RoutingCacheManager.RoutingResult(result.getDataSource(), result.getTableName());
+        }
+        Map<String, Object> metadata = new HashMap<>(4);
+        metadata.put(SHADOW_DATA_SOURCE, result.getShadowDataSource());
+        metadata.put(SHADOW_TABLE_NAME, result.getShadowTableName());
+        metadata.put(SHADOW_FAILURE_POLICY, result.getShadowFailurePolicy());
+        return new RoutingCacheManager.RoutingResult(result.getDataSource(), result.getTableName(), metadata);
+    }
+
+    /**
+     * 按顺序评估自定义规则、多租户和分片，全部未命中时返回null
+     * 这些规则只依赖缓存键布局中记录的参数和请求头，结果可以缓存
+     */
+    private RoutingResult evaluateRoutingRules(RoutingPlan plan, RoutingContext context) {
         // 1. 首先检查自定义路由规则
-        RoutingResult customResult = evaluateCustomRules(context);
+        long stageStart = System.nanoTime();
+        RoutingResult customResult = evaluateCustomRules(plan, context);
+        stageStart = recordStage(RoutingMonitor.STAGE_CUSTOM_RULES, stageStart);
         if (customResult != null) {
             return customResult;
         }
 
         // 2. 检查多租户路由
-        RoutingResult tenantResult = evaluateMultiTenantRouting(context);
+        RoutingResult tenantResult = evaluateMultiTenantRouting(plan, context);
+        stageStart = recordStage(RoutingMonitor.STAGE_MULTI_TENANT, stageStart);
         if (tenantResult != null) {
             return tenantResult;
         }
 
         // 3. 检查分片路由
-        RoutingResult shardingResult = evaluateShardingRouting(context);
-        if (shardingResult != null) {
-            return shardingResult;
-        }
+        RoutingResult shardingResult = evaluateShardingRouting(plan, context);
+        recordStage(RoutingMonitor.STAGE_SHARDING, stageStart);
+        return shardingResult;
+    }
 
+    /**
+     * 规则全部未命中时依次尝试读写分离、负载均衡和数据源选择器，最后回退到默认数据源
+     * 读写分离和负载均衡每次请求都要重新挑选实例，选择器可能读取上下文中的任意内容，
+     * 因此这一步的结果不缓存
+     */
+    private RoutingResult selectDataSource(RoutingPlan plan, RoutingContext context) {
         // 4. 检查读写分离
-        RoutingResult readWriteResult = evaluateReadWriteSplitRouting(context);
+        long stageStart = System.nanoTime();
+        RoutingResult readWriteResult = evaluateReadWriteSplitRouting(plan, context);
+        stageStart = recordStage(RoutingMonitor.STAGE_READ_WRITE_SPLIT, stageStart);
         if (readWriteResult != null) {
             return readWriteResult;
         }
 
         // 5. 检查负载均衡
-        RoutingResult loadBalanceResult = evaluateLoadBalanceRouting(context);
+        RoutingResult loadBalanceResult = evaluateLoadBalanceRouting(plan, context);
+        stageStart = recordStage(RoutingMonitor.STAGE_LOAD_BALANCE, stageStart);
         if (loadBalanceResult != null) {
             return loadBalanceResult;
         }
@@ -182,70 +330,89 @@ public class RoutingEngine {
             if (selector.supports(context)) {
                 String dataSource = selector.selectDataSource(context);
                 if (StringUtils.hasText(dataSource)) {
-                    String tableName = resolveTableName(context, dataSource);
+                    String tableName = plan.resolveTableName(context.getTableName());
+                    recordStage(RoutingMonitor.STAGE_SELECTOR, stageStart);
                     return new RoutingResult(dataSource, tableName, "DataSourceSelector: " + selector.getClass().getSimpleName());
                 }
             }
         }
+        recordStage(RoutingMonitor.STAGE_SELECTOR, stageStart);
 
         // 7. 返回默认数据源
-        String defaultDataSource = routingConfig.getDefaultDataSource();
-        String tableName = resolveTableName(context, defaultDataSource);
+        String defaultDataSource = plan.getDefaultDataSource();
+        String tableName = plan.resolveTableName(context.getTableName());
         return new RoutingResult(defaultDataSource, tableName, "Default routing");
     }
+
+    /**
+     * 向监控器报告阶段耗时，返回当前时间作为下一阶段的起点
+     */
+    private long recordStage(String stage, long stageStart) {
+        long now = System.nanoTime();
+        if (routingMonitor != null) {
+            routingMonitor.recordStageDuration(stage, now - stageStart);
+        }
+        return now;
+    }
     
     /**
-     * 生成缓存键
+     * 获取路由方案，尚未编译时根据当前配置编译
      */
-    private String generateCacheKey(RoutingContext context) {
-        StringBuilder keyBuilder = new StringBuilder();
-        keyBuilder.append(context.getTableName());
-        keyBuilder.append(":").append(context.getOperationType());
-        
-        // 添加关键参数到缓存键
-        Map<String, Object> parameters = context.getParameters();
-        if (parameters != null && !parameters.isEmpty()) {
-            parameters.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEach(entry -> keyBuilder.append(":").append(entry.getKey()).append("=").append(entry.getValue()));
+    private RoutingPlan getRoutingPlan() {
+        RoutingPlan plan = routingPlan;
+        if (plan == null) {
+            plan = RoutingPlan.compile(routingConfig);
+            routingPlan = plan;
         }
-        
-        return keyBuilder.toString();
+        return plan;
     }
 
     /**
-     * 评估自定义路由规则
+     * 重新编译路由配置并清空路由缓存，配置变更后调用
      */
-    private RoutingResult evaluateCustomRules(RoutingContext context) {
-        List<RoutingRuleConfig.CustomRoutingRule> customRules = routingConfig.getCustomRules();
-        if (customRules == null || customRules.isEmpty()) {
-            return null;
+    public void refreshRoutingPlan() {
+        routingPlan = RoutingPlan.compile(routingConfig);
+        planVersion.incrementAndGet();
+        if (cacheManager != null) {
+            cacheManager.clear();
         }
+    }
 
-        // 按优先级排序
-        customRules.sort((r1, r2) -> Integer.compare(r2.getPriority(), r1.getPriority()));
-
-        for (RoutingRuleConfig.CustomRoutingRule rule : customRules) {
-            if (!rule.isEnabled()) {
-                continue;
-            }
+    /**
+     * 当前路由方案的版本，配置重载（包括桶迁移阶段变化）后递增
+     */
+    public long getPlanVersion() {
+        return planVersion.get();
+    }
 
-            if (StringUtils.hasText(rule.getCondition())) {
-                try {
-                    boolean matches = spelEvaluator.evaluateCondition(rule.getCondition(), context);
-                    if (matches) {
-                        String dataSource = resolveDataSourceExpression(rule.getDataSource(), context);
-                        String tableName = resolveTableExpression(rule.getTable(), context);
-                        return new RoutingResult(dataSource, tableName, "Custom rule: " + rule.getName());
+    /**
+     * 评估自定义路由规则
+     */
+    private RoutingResult evaluateCustomRules(RoutingPlan plan, RoutingContext context) {
+        // 只遍历按表名和操作类型索引出的规则，已按优先级排序
+        for (RoutingPlan.CompiledRule rule : plan.customRules(context.getTableName(), context.getOperationType())) {
+            try {
+                // 条件已在编译期折叠为常量true时不再执行SpEL
+                boolean matches = rule.condition == null || spelEvaluator.evaluateCondition(rule.condition, context);
+                if (matches) {
+                    String dataSource = rule.dataSourceExpression != null
+                            ? evaluateDataSourceExpression(rule.dataSourceExpression, context)
+                            : rule.dataSource;
+                    String tableName = rule.tableExpression != null
+                            ? evaluateTableExpression(rule.tableExpression, context)
+                            : (rule.table != null ? rule.table : context.getTableName());
+                    if (routingMonitor != null) {
+                        routingMonitor.recordRuleHit(rule.name);
                     }
-                } catch (Exception e) {
-                     // 记录日志但继续处理其他规则
-                     logger.warn("Error evaluating custom rule '{}': {}", rule.getName(), e.getMessage());
-                     if (routingMonitor != null) {
-                         routingMonitor.recordRoutingError();
-                     }
+                    return new RoutingResult(dataSource, tableName, "Custom rule: " + rule.name);
+                }
+            } catch (Exception e) {
+                 // 记录日志但继续处理其他规则
+                 logger.warn("Error evaluating custom rule '{}': {}", rule.name, e.getMessage());
+                 if (routingMonitor != null) {
+                     routingMonitor.recordRoutingError();
                  }
-            }
+             }
         }
 
         return null;
@@ -254,9 +421,9 @@ public class RoutingEngine {
     /**
      * 评估多租户路由
      */
-    private RoutingResult evaluateMultiTenantRouting(RoutingContext context) {
-        RoutingRuleConfig.MultiTenantConfig config = routingConfig.getMultiTenant();
-        if (config == null || !config.isEnabled()) {
+    private RoutingResult evaluateMultiTenantRouting(RoutingPlan plan, RoutingContext context) {
+        RoutingRuleConfig.MultiTenantConfig config = plan.getMultiTenant();
+        if (config == null) {
             return null;
         }
 
@@ -295,18 +462,15 @@ public class RoutingEngine {
 
     /**
      * 评估分片路由
+     * bucket策略下迁移中的桶的写操作额外返回同步写入的分片，读操作只访问当前阶段为准的分片
      */
-    private RoutingResult evaluateShardingRouting(RoutingContext context) {
-        Map<String, RoutingRuleConfig.ShardingConfig> shardingConfigs = routingConfig.getSharding();
-        if (shardingConfigs == null || shardingConfigs.isEmpty()) {
-            return null;
-        }
-
+    private RoutingResult evaluateShardingRouting(RoutingPlan plan, RoutingContext context) {
         String tableName = context.getTableName();
-        RoutingRuleConfig.ShardingConfig config = shardingConfigs.get(tableName);
-        if (config == null || !config.isEnabled()) {
+        RoutingPlan.CompiledSharding sharding = plan.getSharding(tableName);
+        if (sharding == null) {
             return null;
         }
+        RoutingRuleConfig.ShardingConfig config = sharding.config;
 
         Object shardingValue = context.getParameter(config.getShardingKey());
         if (shardingValue == null) {
@@ -318,24 +482,30 @@ public class RoutingEngine {
 
         switch (config.getStrategy()) {
             case "mod":
-                int shardIndex = Math.abs(shardingValue.hashCode()) % config.getShardCount();
-                dataSource = getShardDataSource(config, shardIndex);
-                actualTableName = config.getTableTemplate().replace("{0}", String.valueOf(shardIndex));
+            case "hash":
+                int shardIndex = sharding.shardIndex(shardingValue);
+                dataSource = sharding.dataSource(shardIndex);
+                actualTableName = sharding.tableName(tableName, shardIndex);
+                break;
+            case "bucket":
+                int bucket = sharding.bucket(shardingValue);
+                int bucketShard = sharding.bucketShard(bucket);
+                dataSource = sharding.dataSource(bucketShard);
+                actualTableName = sharding.tableName(tableName, bucketShard);
+                int shadowShard = context.isWriteOperation() ? sharding.shadowShard(bucket) : -1;
+                if (shadowShard >= 0 && StringUtils.hasText(dataSource)) {
+                    ShardTarget shadow = sharding.shard(shadowShard);
+                    return new RoutingResult(dataSource, actualTableName, "Sharding routing: bucket " + bucket + " migrating",
+                            shadow.getDataSource(), shadow.getPhysicalTable(), sharding.shadowFailurePolicy);
+                }
                 break;
             case "range":
-                RoutingRuleConfig.RangeConfig rangeConfig = findRangeConfig(config, shardingValue);
+                RoutingRuleConfig.RangeConfig rangeConfig = sharding.findRange(shardingValue);
                 if (rangeConfig != null) {
                     dataSource = rangeConfig.getDataSource();
-                    if (StringUtils.hasText(rangeConfig.getTableSuffix())) {
-                        actualTableName = tableName + "_" + rangeConfig.getTableSuffix();
-                    }
+                    actualTableName = RoutingPlan.CompiledSharding.rangeTableName(tableName, rangeConfig);
                 }
                 break;
-            case "hash":
-                int hashIndex = Math.abs(shardingValue.toString().hashCode()) % config.getShardCount();
-                dataSource = getShardDataSource(config, hashIndex);
-                actualTableName = config.getTableTemplate().replace("{0}", String.valueOf(hashIndex));
-                break;
             case "custom":
                 if (StringUtils.hasText(config.getCustomExpression())) {
                     try {
@@ -360,46 +530,133 @@ public class RoutingEngine {
     /**
      * 评估读写分离路由
      */
-    private RoutingResult evaluateReadWriteSplitRouting(RoutingContext context) {
-        RoutingRuleConfig.ReadWriteSplitConfig config = routingConfig.getReadWriteSplit();
-        if (config == null || !config.isEnabled()) {
+    private RoutingResult evaluateReadWriteSplitRouting(RoutingPlan plan, RoutingContext context) {
+        RoutingPlan.CompiledReadWriteSplit readWriteSplit = plan.getReadWriteSplit();
+        if (readWriteSplit == null) {
             return null;
         }
 
         String dataSource;
+        String reason;
         if (context.isReadOperation()) {
-            // 读操作，选择从库
-            dataSource = selectSlaveDataSource(config);
+            // 读操作，选择从库；会话在一致性窗口内写过时只选已追上的从库
+            SessionConsistencyTracker.Watermark watermark = readWriteSplit.consistency != null
+                    ? readWriteSplit.consistency.getWatermark(resolveSessionKey(readWriteSplit, context))
+                    : null;
+            if (watermark != null) {
+                dataSource = selectCaughtUpDataSource(readWriteSplit, watermark);
+                reason = "Read-write split: read-your-writes";
+            } else {
+                dataSource = readWriteSplit.selectSlave();
+                reason = "Read-write split: read";
+            }
         } else {
             // 写操作，选择主库
-            dataSource = config.getMasterDataSource();
+            dataSource = readWriteSplit.masterDataSource;
+            reason = "Read-write split: write";
+            if (readWriteSplit.consistency != null) {
+                readWriteSplit.consistency.recordWrite(resolveSessionKey(readWriteSplit, context));
+            }
         }
 
         if (StringUtils.hasText(dataSource)) {
-            String tableName = resolveTableName(context, dataSource);
-            return new RoutingResult(dataSource, tableName, "Read-write split: " + (context.isReadOperation() ? "read" : "write"));
+            String tableName = plan.resolveTableName(context.getTableName());
+            return new RoutingResult(dataSource, tableName, reason);
         }
 
         return null;
     }
 
     /**
-     * 评估负载均衡路由
+     * 解析会话键：优先使用配置的表达式，其次是用户信息；都没有时返回null，按线程记录水位
      */
-    private RoutingResult evaluateLoadBalanceRouting(RoutingContext context) {
-        Map<String, RoutingRuleConfig.LoadBalanceConfig> loadBalanceConfigs = routingConfig.getLoadBalance();
-        if (loadBalanceConfigs == null || loadBalanceConfigs.isEmpty()) {
-            return null;
+    private Object resolveSessionKey(RoutingPlan.CompiledReadWriteSplit readWriteSplit, RoutingContext context) {
+        if (readWriteSplit.sessionKeyExpression != null) {
+            try {
+                String sessionKey = spelEvaluator.evaluateExpression(readWriteSplit.sessionKeyExpression, context, String.class);
+                if (StringUtils.hasText(sessionKey)) {
+                    return sessionKey;
+                }
+            } catch (Exception e) {
+                 logger.warn("Error evaluating session key expression: {}", e.getMessage());
+                 if (routingMonitor != null) {
+                     routingMonitor.recordRoutingError();
+                 }
+             }
         }
+        return context.getUserInfo();
+    }
 
+    /**
+     * 为写后读选择数据源
+     * 没有复制位点提供者时只能按时间窗口判断，直接使用主库；
+     * 否则先取负载均衡选出的从库，再依次尝试其他从库，都没有追上会话的写入时使用主库
+     */
+    private String selectCaughtUpDataSource(RoutingPlan.CompiledReadWriteSplit readWriteSplit,
+                                            SessionConsistencyTracker.Watermark watermark) {
+        String master = readWriteSplit.masterDataSource;
+        if (replicationPositionProvider == null) {
+            return master;
+        }
+        try {
+            String position = watermark.getPosition();
+            if (position == null) {
+                // 写入的事务还没有提交，主库当前的位点不包含这次写入
+                if (watermark.isPending()) {
+                    return master;
+                }
+                position = replicationPositionProvider.currentPosition(master);
+                if (position == null) {
+                    return master;
+                }
+                watermark.setPosition(position);
+            }
+
+            String preferred = readWriteSplit.slaves.select();
+            if (preferred != null && isCaughtUp(preferred, watermark, position)) {
+                return preferred;
+            }
+            for (String replica : readWriteSplit.slaves.getDataSources()) {
+                if (!replica.equals(preferred) && isCaughtUp(replica, watermark, position)) {
+                    return replica;
+                }
+            }
+        } catch (Exception e) {
+             logger.warn("Error checking replication position: {}", e.getMessage());
+             if (routingMonitor != null) {
+                 routingMonitor.recordRoutingError();
+             }
+         }
+        return master;
+    }
+
+    private boolean isCaughtUp(String replica, SessionConsistencyTracker.Watermark watermark, String position) {
+        if (watermark.isCaughtUp(replica)) {
+            return true;
+        }
+        if (replicationPositionProvider.hasReplayed(replica, position)) {
+            // 位点只会前进，确认过的从库在水位有效期内不再查询
+            watermark.markCaughtUp(replica);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 评估负载均衡路由
+     */
+    private RoutingResult evaluateLoadBalanceRouting(RoutingPlan plan, RoutingContext context) {
         // 这里可以根据具体的负载均衡组名来选择配置
         // 暂时使用第一个配置作为示例
-        RoutingRuleConfig.LoadBalanceConfig config = loadBalanceConfigs.values().iterator().next();
+        RoutingPlan.CompiledLoadBalance loadBalance = plan.getLoadBalance();
+        if (loadBalance == null) {
+            return null;
+        }
         
-        String dataSource = selectLoadBalancedDataSource(config);
+        String dataSource = loadBalance.select();
         if (StringUtils.hasText(dataSource)) {
-            String tableName = resolveTableName(context, dataSource);
-            return new RoutingResult(dataSource, tableName, "Load balance: " + config.getStrategy());
+            String tableName = plan.resolveTableName(context.getTableName());
+            return new RoutingResult(dataSource, tableName, "Load balance: " + loadBalance.config.getStrategy());
         }
 
         return null;
@@ -437,184 +694,120 @@ public class RoutingEngine {
     }
 
     /**
-     * 解析数据源表达式
+     * 执行数据源SpEL表达式
      */
-    private String resolveDataSourceExpression(String expression, RoutingContext context) {
-        if (!StringUtils.hasText(expression)) {
-            return null;
-        }
-
-        if (expression.startsWith("#{") && expression.endsWith("}")) {
-            // SpEL表达式
-            try {
-                return spelEvaluator.evaluateExpression(expression, context, String.class);
-            } catch (Exception e) {
-                 logger.warn("Error evaluating dataSource expression: {}", e.getMessage());
-                 if (routingMonitor != null) {
-                     routingMonitor.recordRoutingError();
-                 }
-                 return null;
+    private String evaluateDataSourceExpression(String expression, RoutingContext context) {
+        try {
+            return spelEvaluator.evaluateExpression(expression, context, String.class);
+        } catch (Exception e) {
+             logger.warn("Error evaluating dataSource expression: {}", e.getMessage());
+             if (routingMonitor != null) {
+                 routingMonitor.recordRoutingError();
              }
-        }
-
-        // 检查别名映射
-        Map<String, String> aliases = routingConfig.getAliases();
-        if (aliases != null && aliases.containsKey(expression)) {
-            return aliases.get(expression);
-        }
-
-        return expression;
+             return null;
+         }
     }
 
     /**
-     * 解析表名表达式
+     * 执行表名SpEL表达式
      */
-    private String resolveTableExpression(String expression, RoutingContext context) {
-        if (!StringUtils.hasText(expression)) {
-            return context.getTableName();
-        }
-
-        if (expression.startsWith("#{") && expression.endsWith("}")) {
-            // SpEL表达式
-            try {
-                return spelEvaluator.evaluateExpression(expression, context, String.class);
-            } catch (Exception e) {
-                 logger.warn("Error evaluating table expression: {}", e.getMessage());
-                 if (routingMonitor != null) {
-                     routingMonitor.recordRoutingError();
-                 }
-                 return context.getTableName();
+    private String evaluateTableExpression(String expression, RoutingContext context) {
+        try {
+            return spelEvaluator.evaluateExpression(expression, context, String.class);
+        } catch (Exception e) {
+             logger.warn("Error evaluating table expression: {}", e.getMessage());
+             if (routingMonitor != null) {
+                 routingMonitor.recordRoutingError();
              }
-        }
-
-        return expression;
+             return context.getTableName();
+         }
     }
 
     /**
-     * 解析表名
+     * 获取表的全部分片，用于不带分片键的广播查询
+     * 表没有启用分片或使用自定义策略时返回空列表
      */
-    private String resolveTableName(RoutingContext context, String dataSource) {
-        String tableName = context.getTableName();
-        
-        // 检查表名映射
-        Map<String, String> tableMappings = routingConfig.getTableMappings();
-        if (tableMappings != null && tableMappings.containsKey(tableName)) {
-            return tableMappings.get(tableName);
-        }
-
-        return tableName;
+    public List<ShardTarget> getShardTargets(String tableName) {
+        RoutingPlan.CompiledSharding sharding = getRoutingPlan().getSharding(tableName);
+        return sharding != null ? sharding.targets : Collections.emptyList();
     }
 
     /**
-     * 获取分片数据源
+     * 获取分片键值所在的桶，供迁移时复制存量数据的任务筛选需要搬迁的行
+     *
+     * @return 桶序号；表没有启用分片或不是bucket策略时返回-1
      */
-    private String getShardDataSource(RoutingRuleConfig.ShardingConfig config, int shardIndex) {
-        Map<String, String> dataSourceMapping = config.getDataSourceMapping();
-        if (dataSourceMapping != null) {
-            return dataSourceMapping.get(String.valueOf(shardIndex));
+    public int getBucket(String tableName, Object shardingValue) {
+        RoutingPlan.CompiledSharding sharding = getRoutingPlan().getSharding(tableName);
+        if (sharding == null || !"bucket".equals(sharding.config.getStrategy()) || shardingValue == null) {
+            return -1;
         }
-        return "shard" + shardIndex;
+        return sharding.bucket(shardingValue);
     }
 
     /**
-     * 查找范围配置
+     * 获取表上数据的归属，与{@link #getShardTargets(String)}一起交给仓储，避免桶迁移期间跨分片读取重复计入迁移中的桶
+     * 每次调用都按当前的路由方案判断；只有bucket策略会处于迁移中，其他策略的数据总是以所在分片为准
      */
-    private RoutingRuleConfig.RangeConfig findRangeConfig(RoutingRuleConfig.ShardingConfig config, Object value) {
-        List<RoutingRuleConfig.RangeConfig> ranges = config.getRanges();
-        if (ranges == null || ranges.isEmpty()) {
-            return null;
-        }
+    public ShardOwnership getShardOwnership(String tableName) {
+        return new ShardOwnership() {
+            @Override
+            public String getLogicalTable() {
+                return tableName;
+            }
 
-        String strValue = value.toString();
-        for (RoutingRuleConfig.RangeConfig range : ranges) {
-            if (isInRange(strValue, range.getStart(), range.getEnd())) {
-                return range;
+            @Override
+            public String getShardingKey() {
+                RoutingPlan.CompiledSharding sharding = getRoutingPlan().getSharding(tableName);
+                return sharding != null ? sharding.config.getShardingKey() : null;
             }
-        }
 
-        return null;
-    }
+            @Override
+            public boolean isMigrating() {
+                RoutingPlan.CompiledSharding sharding = getRoutingPlan().getSharding(tableName);
+                return sharding != null && sharding.migrating;
+            }
 
-    /**
-     * 检查值是否在范围内
-     */
-    private boolean isInRange(String value, String start, String end) {
-        try {
-            // 尝试数值比较
-            long longValue = Long.parseLong(value);
-            long longStart = Long.parseLong(start);
-            long longEnd = Long.parseLong(end);
-            return longValue >= longStart && longValue <= longEnd;
-        } catch (NumberFormatException e) {
-            // 字符串比较
-            return value.compareTo(start) >= 0 && value.compareTo(end) <= 0;
-        }
-    }
+            @Override
+            public boolean owns(ShardTarget shard, Object shardingValue) {
+                RoutingPlan.CompiledSharding sharding = getRoutingPlan().getSharding(tableName);
+                if (sharding == null || !"bucket".equals(sharding.config.getStrategy()) || shardingValue == null) {
+                    return true;
+                }
+                return sharding.shard(sharding.bucketShard(sharding.bucket(shardingValue))).equals(shard);
+            }
 
-    /**
-     * 选择从库数据源
-     */
-    private String selectSlaveDataSource(RoutingRuleConfig.ReadWriteSplitConfig config) {
-        List<String> slaves = config.getSlaveDataSources();
-        if (slaves == null || slaves.isEmpty()) {
-            return config.getMasterDataSource(); // 没有从库时使用主库
-        }
+            @Override
+            public ShardTarget shadowOf(Object shardingValue) {
+                RoutingPlan.CompiledSharding sharding = getRoutingPlan().getSharding(tableName);
+                if (sharding == null || !sharding.migrating || shardingValue == null) {
+                    return null;
+                }
+                int shadowShard = sharding.shadowShard(sharding.bucket(shardingValue));
+                return shadowShard >= 0 ? sharding.shard(shadowShard) : null;
+            }
 
-        switch (config.getStrategy()) {
-            case "random":
-                return slaves.get(ThreadLocalRandom.current().nextInt(slaves.size()));
-            case "weight":
-                return selectWeightedDataSource(slaves, config.getWeights());
-            case "round_robin":
-            default:
-                // 简单的轮询实现（实际应用中需要考虑线程安全）
-                return slaves.get((int) (System.currentTimeMillis() % slaves.size()));
-        }
+            @Override
+            public String toString() {
+                return "ShardOwnership{" + tableName + "}";
+            }
+        };
     }
 
     /**
-     * 选择负载均衡数据源
+     * 根据查询条件裁剪分片，不需要在路由参数中提供分片键
+     * 分片键上的等值、IN、BETWEEN条件（范围策略下还有大小比较）决定需要访问的分片，IN列表按分片拆开，
+     * 返回的每个分片只带本分片上的条件，可直接传给{@link io.flexdata.spring.orm.core.interfaces.EnhancedQueryBuilder#broadcast(Map)}；
+     * 条件无法裁剪时返回全部分片和原条件，条件不可能命中任何分片时返回空Map
+     *
+     * @return 分片及其条件，按分片顺序排列；表没有启用分片或使用自定义策略时返回null
      */
-    private String selectLoadBalancedDataSource(RoutingRuleConfig.LoadBalanceConfig config) {
-        List<String> dataSources = config.getDataSources();
-        if (dataSources == null || dataSources.isEmpty()) {
+    public Map<ShardTarget, Criteria> pruneShards(String tableName, Criteria criteria) {
+        RoutingPlan.CompiledSharding sharding = getRoutingPlan().getSharding(tableName);
+        if (sharding == null || sharding.targets.isEmpty()) {
             return null;
         }
-
-        switch (config.getStrategy()) {
-            case "random":
-                return dataSources.get(ThreadLocalRandom.current().nextInt(dataSources.size()));
-            case "weight":
-                return selectWeightedDataSource(dataSources, config.getWeights());
-            case "round_robin":
-            default:
-                return dataSources.get((int) (System.currentTimeMillis() % dataSources.size()));
-        }
-    }
-
-    /**
-     * 根据权重选择数据源
-     */
-    private String selectWeightedDataSource(List<String> dataSources, Map<String, Integer> weights) {
-        if (weights == null || weights.isEmpty()) {
-            return dataSources.get(ThreadLocalRandom.current().nextInt(dataSources.size()));
-        }
-
-        int totalWeight = weights.values().stream().mapToInt(Integer::intValue).sum();
-        int randomWeight = ThreadLocalRandom.current().nextInt(totalWeight);
-        
-        int currentWeight = 0;
-        for (String dataSource : dataSources) {
-            Integer weight = weights.get(dataSource);
-            if (weight != null) {
-                currentWeight += weight;
-                if (randomWeight < currentWeight) {
-                    return dataSource;
-                }
-            }
-        }
-
-        return dataSources.get(0); // 默认返回第一个
+        return new ShardPruner(sharding).prune(criteria);
     }
 
     /**
@@ -0,0 +1,935 @@
+package io.flexdata.spring.orm.routing.engine;
+
+import io.flexdata.spring.orm.core.datasource.ShadowWrite;
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
+import io.flexdata.spring.orm.routing.balancer.DataSourceBalancer;
+import io.flexdata.spring.orm.routing.balancer.DataSourceBalancers;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.consistency.SessionConsistencyTracker;
+import io.flexdata.spring.orm.routing.context.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.BooleanLiteral;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.OpAnd;
+import org.springframework.expression.spel.ast.OpEQ;
+import org.springframework.expression.spel.ast.OpOr;
+import org.springframework.expression.spel.ast.OperatorNot;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的路由方案
+ * 启动和配置重载时由{@link RoutingRuleConfig}编译得到，之后只读
+ *
+ * 自定义规则预先按优先级排序，并按表名和操作类型建立索引，路由时只遍历可能匹配的规则；
+ * 条件中只涉及表名和读写类型的部分在编译期折叠，完全静态的条件不再执行SpEL
+ */
+final class RoutingPlan {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingPlan.class);
+
+    private static final RoutingContext.OperationType[] OPERATION_TYPES = RoutingContext.OperationType.values();
+
+    /**
+     * 操作类型为null时使用的索引槽位
+     */
+    private static final int NULL_OPERATION = OPERATION_TYPES.length;
+
+    private static final CompiledRule[] NO_RULES = new CompiledRule[0];
+
+    private final RoutingCacheKey.Layout cacheKeyLayout;
+    private final Map<String, CompiledRule[][]> rulesByTable;
+    private final CompiledRule[][] rulesForOtherTables;
+    private final int customRuleCount;
+    private final RoutingRuleConfig.MultiTenantConfig multiTenant;
+    private final Map<String, CompiledSharding> sharding;
+    private final CompiledReadWriteSplit readWriteSplit;
+    private final CompiledLoadBalance loadBalance;
+    private final Map<String, String> tableMappings;
+    private final String defaultDataSource;
+
+    private RoutingPlan(RoutingCacheKey.Layout cacheKeyLayout,
+                        Map<String, CompiledRule[][]> rulesByTable,
+                        CompiledRule[][] rulesForOtherTables,
+                        int customRuleCount,
+                        RoutingRuleConfig.MultiTenantConfig multiTenant,
+                        Map<String, CompiledSharding> sharding,
+                        CompiledReadWriteSplit readWriteSplit,
+                        CompiledLoadBalance loadBalance,
+                        Map<String, String> tableMappings,
+                        String defaultDataSource) {
+        this.cacheKeyLayout = cacheKeyLayout;
+        this.rulesByTable = rulesByTable;
+        this.rulesForOtherTables = rulesForOtherTables;
+        this.customRuleCount = customRuleCount;
+        this.multiTenant = multiTenant;
+        this.sharding = sharding;
+        this.readWriteSplit = readWriteSplit;
+        this.loadBalance = loadBalance;
+        this.tableMappings = tableMappings;
+        this.defaultDataSource = defaultDataSource;
+    }
+
+    /**
+     * 获取对指定表和操作类型可能生效的自定义规则，已按优先级从高到低排序
+     */
+    CompiledRule[] customRules(String tableName, RoutingContext.OperationType operationType) {
+        if (customRuleCount == 0) {
+            return NO_RULES;
+        }
+        CompiledRule[][] byOperation = tableName != null ? rulesByTable.get(tableName) : null;
+        if (byOperation == null) {
+            byOperation = rulesForOtherTables;
+        }
+        return byOperation[operationType != null ? operationType.ordinal() : NULL_OPERATION];
+    }
+
+    RoutingCacheKey.Layout getCacheKeyLayout() {
+        return cacheKeyLayout;
+    }
+
+    int getCustomRuleCount() {
+        return customRuleCount;
+    }
+
+    RoutingRuleConfig.MultiTenantConfig getMultiTenant() {
+        return multiTenant;
+    }
+
+    CompiledSharding getSharding(String tableName) {
+        return tableName != null ? sharding.get(tableName) : null;
+    }
+
+    CompiledReadWriteSplit getReadWriteSplit() {
+        return readWriteSplit;
+    }
+
+    CompiledLoadBalance getLoadBalance() {
+        return loadBalance;
+    }
+
+    String resolveTableName(String tableName) {
+        String mapped = tableName != null ? tableMappings.get(tableName) : null;
+        return mapped != null ? mapped : tableName;
+    }
+
+    String getDefaultDataSource() {
+        return defaultDataSource;
+    }
+
+    /**
+     * 编译路由配置
+     */
+    static RoutingPlan compile(RoutingRuleConfig config) {
+        Map<String, String> aliases = copy(config.getAliases());
+
+        // 自定义规则
+        List<CompiledRule> rules = new ArrayList<>();
+        List<RoutingRuleConfig.CustomRoutingRule> customRules = config.getCustomRules();
+        if (customRules != null) {
+            for (RoutingRuleConfig.CustomRoutingRule rule : customRules) {
+                if (rule == null || !rule.isEnabled() || !StringUtils.hasText(rule.getCondition())) {
+                    continue;
+                }
+                CompiledRule compiled = CompiledRule.compile(rule, aliases);
+                if (compiled != null) {
+                    rules.add(compiled);
+                }
+            }
+            // 稳定排序，优先级相同的规则保持配置顺序
+            rules.sort((r1, r2) -> Integer.compare(r2.priority, r1.priority));
+        }
+
+        Set<String> indexedTables = new LinkedHashSet<>();
+        for (CompiledRule rule : rules) {
+            if (rule.tables != null) {
+                indexedTables.addAll(rule.tables);
+            }
+        }
+        Map<String, CompiledRule[][]> rulesByTable = new HashMap<>();
+        for (String table : indexedTables) {
+            rulesByTable.put(table, index(rules, table));
+        }
+        CompiledRule[][] rulesForOtherTables = index(rules, null);
+
+        // 多租户
+        RoutingRuleConfig.MultiTenantConfig multiTenant = config.getMultiTenant();
+        if (multiTenant != null && !multiTenant.isEnabled()) {
+            multiTenant = null;
+        }
+
+        // 分片
+        Map<String, CompiledSharding> sharding = new HashMap<>();
+        Map<String, RoutingRuleConfig.ShardingConfig> shardingConfigs = config.getSharding();
+        if (shardingConfigs != null) {
+            shardingConfigs.forEach((table, shardingConfig) -> {
+                if (shardingConfig != null && shardingConfig.isEnabled()) {
+                    sharding.put(table, new CompiledSharding(table, shardingConfig, config.getDefaultDataSource()));
+                }
+            });
+        }
+
+        // 读写分离
+        CompiledReadWriteSplit readWriteSplit = null;
+        RoutingRuleConfig.ReadWriteSplitConfig readWriteSplitConfig = config.getReadWriteSplit();
+        if (readWriteSplitConfig != null && readWriteSplitConfig.isEnabled()) {
+            readWriteSplit = new CompiledReadWriteSplit(readWriteSplitConfig);
+        }
+
+        // 负载均衡，沿用第一个配置
+        CompiledLoadBalance loadBalance = null;
+        Map<String, RoutingRuleConfig.LoadBalanceConfig> loadBalanceConfigs = config.getLoadBalance();
+        if (loadBalanceConfigs != null && !loadBalanceConfigs.isEmpty()) {
+            RoutingRuleConfig.LoadBalanceConfig loadBalanceConfig = loadBalanceConfigs.values().iterator().next();
+            if (loadBalanceConfig != null) {
+                loadBalance = new CompiledLoadBalance(loadBalanceConfig);
+            }
+        }
+
+        RoutingPlan plan = new RoutingPlan(RoutingCacheKey.Layout.from(config),
+                Collections.unmodifiableMap(rulesByTable), rulesForOtherTables, rules.size(),
+                multiTenant, Collections.unmodifiableMap(sharding), readWriteSplit, loadBalance,
+                copy(config.getTableMappings()), config.getDefaultDataSource());
+        logger.debug("Compiled routing plan: {} custom rules ({} table-indexed), {} sharded tables",
+                rules.size(), rulesByTable.size(), sharding.size());
+        return plan;
+    }
+
+    private static CompiledRule[][] index(List<CompiledRule> rules, String table) {
+        CompiledRule[][] byOperation = new CompiledRule[NULL_OPERATION + 1][];
+        for (int slot = 0; slot <= NULL_OPERATION; slot++) {
+            RoutingContext.OperationType operationType = slot < NULL_OPERATION ? OPERATION_TYPES[slot] : null;
+            List<CompiledRule> applicable = new ArrayList<>();
+            for (CompiledRule rule : rules) {
+                if (rule.appliesTo(table, operationType)) {
+                    applicable.add(rule);
+                }
+            }
+            byOperation[slot] = applicable.isEmpty() ? NO_RULES : applicable.toArray(NO_RULES);
+        }
+        return byOperation;
+    }
+
+    private static Map<String, String> copy(Map<String, String> source) {
+        return source == null || source.isEmpty()
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new HashMap<>(source));
+    }
+
+    /**
+     * 编译后的自定义规则
+     */
+    static final class CompiledRule {
+
+        private static final ExpressionParser PARSER = new SpelExpressionParser();
+
+        final String name;
+        final int priority;
+        /**
+         * 运行时需要执行的条件；条件完全由表名和读写类型决定时为null
+         */
+        final String condition;
+        /**
+         * 条件限定的表名，null表示不限
+         */
+        final Set<String> tables;
+        /**
+         * 条件限定的读写类型，按操作类型的ordinal索引，null表示不限
+         */
+        final boolean[] operations;
+        final String dataSourceExpression;
+        final String dataSource;
+        final String tableExpression;
+        final String table;
+
+        private CompiledRule(String name, int priority, String condition, Set<String> tables,
+                             boolean[] operations, String dataSourceExpression, String dataSource,
+                             String tableExpression, String table) {
+            this.name = name;
+            this.priority = priority;
+            this.condition = condition;
+            this.tables = tables;
+            this.operations = operations;
+            this.dataSourceExpression = dataSourceExpression;
+            this.dataSource = dataSource;
+            this.tableExpression = tableExpression;
+            this.table = table;
+        }
+
+        boolean appliesTo(String tableName, RoutingContext.OperationType operationType) {
+            if (tables != null && (tableName == null || !tables.contains(tableName))) {
+                return false;
+            }
+            return operations == null || operations[operationType != null ? operationType.ordinal() : NULL_OPERATION];
+        }
+
+        /**
+         * 编译规则；条件恒为false时返回null
+         */
+        static CompiledRule compile(RoutingRuleConfig.CustomRoutingRule rule, Map<String, String> aliases) {
+            Constraints constraints = analyze(rule.getCondition());
+            if (constraints.never) {
+                logger.debug("Custom rule '{}' can never match and is skipped", rule.getName());
+                return null;
+            }
+
+            String dataSourceExpression = null;
+            String dataSource = null;
+            if (isSpel(rule.getDataSource())) {
+                dataSourceExpression = rule.getDataSource();
+            } else if (StringUtils.hasText(rule.getDataSource())) {
+                String resolved = aliases.get(rule.getDataSource());
+                dataSource = resolved != null ? resolved : rule.getDataSource();
+            }
+
+            String tableExpression = null;
+            String table = null;
+            if (isSpel(rule.getTable())) {
+                tableExpression = rule.getTable();
+            } else if (StringUtils.hasText(rule.getTable())) {
+                table = rule.getTable();
+            }
+
+            return new CompiledRule(rule.getName(), rule.getPriority(),
+                    constraints.dynamic ? rule.getCondition() : null,
+                    constraints.tables, constraints.operations,
+                    dataSourceExpression, dataSource, tableExpression, table);
+        }
+
+        private static boolean isSpel(String expression) {
+            return expression != null && expression.startsWith("#{") && expression.endsWith("}");
+        }
+
+        /**
+         * 分析条件顶层的AND项：表名等值比较和读写判断是静态约束，其余为运行时约束
+         */
+        private static Constraints analyze(String condition) {
+            Constraints constraints = new Constraints();
+            String expression = isSpel(condition) ? condition.substring(2, condition.length() - 1) : condition;
+            SpelNode root;
+            try {
+                Expression parsed = PARSER.parseExpression(expression);
+                if (!(parsed instanceof SpelExpression)) {
+                    constraints.dynamic = true;
+                    return constraints;
+                }
+                root = ((SpelExpression) parsed).getAST();
+            } catch (Exception e) {
+                // 解析失败留到运行时报告
+                constraints.dynamic = true;
+                return constraints;
+            }
+
+            List<SpelNode> conjuncts = new ArrayList<>();
+            flattenAnd(root, conjuncts);
+            for (SpelNode conjunct : conjuncts) {
+                if (conjunct instanceof BooleanLiteral) {
+                    if (!Boolean.TRUE.equals(((BooleanLiteral) conjunct).getLiteralValue().getValue())) {
+                        constraints.never = true;
+                    }
+                    continue;
+                }
+                Set<String> tables = tableConstraint(conjunct);
+                if (tables != null) {
+                    constraints.restrictTables(tables);
+                    continue;
+                }
+                boolean[] operations = operationConstraint(conjunct);
+                if (operations != null) {
+                    constraints.restrictOperations(operations);
+                    continue;
+                }
+                constraints.dynamic = true;
+            }
+            return constraints;
+        }
+
+        private static void flattenAnd(SpelNode node, List<SpelNode> conjuncts) {
+            if (node instanceof OpAnd) {
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    flattenAnd(node.getChild(i), conjuncts);
+                }
+            } else {
+                conjuncts.add(node);
+            }
+        }
+
+        /**
+         * tableName == 'x'，或多个这样的比较用OR连接
+         */
+        private static Set<String> tableConstraint(SpelNode node) {
+            if (node instanceof OpOr) {
+                Set<String> tables = new LinkedHashSet<>();
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    Set<String> child = tableConstraint(node.getChild(i));
+                    if (child == null) {
+                        return null;
+                    }
+                    tables.addAll(child);
+                }
+                return tables;
+            }
+            if (node instanceof OpEQ) {
+                SpelNode left = node.getChild(0);
+                SpelNode right = node.getChild(1);
+                if (isTableNameReference(left) && right instanceof StringLiteral) {
+                    return Collections.singleton(stringValue((StringLiteral) right));
+                }
+                if (isTableNameReference(right) && left instanceof StringLiteral) {
+                    return Collections.singleton(stringValue((StringLiteral) left));
+                }
+            }
+            return null;
+        }
+
+        private static boolean isTableNameReference(SpelNode node) {
+            return "#tableName".equals(node.toStringAST())
+                    || (node instanceof PropertyOrFieldReference
+                        && "tableName".equals(((PropertyOrFieldReference) node).getName()));
+        }
+
+        private static String stringValue(StringLiteral literal) {
+            return String.valueOf(literal.getLiteralValue().getValue());
+        }
+
+        /**
+         * #isRead、#isWrite、#isBatch及对应的上下文方法，可以取反
+         */
+        private static boolean[] operationConstraint(SpelNode node) {
+            boolean negate = false;
+            if (node instanceof OperatorNot) {
+                negate = true;
+                node = node.getChild(0);
+            }
+            String flag = operationFlag(node);
+            if (flag == null) {
+                return null;
+            }
+            boolean[] operations = new boolean[NULL_OPERATION + 1];
+            for (int slot = 0; slot <= NULL_OPERATION; slot++) {
+                RoutingContext context = new RoutingContext(null, slot < NULL_OPERATION ? OPERATION_TYPES[slot] : null);
+                boolean value;
+                switch (flag) {
+                    case "read":
+                        value = context.isReadOperation();
+                        break;
+                    case "write":
+                        value = context.isWriteOperation();
+                        break;
+                    default:
+                        value = context.isBatchOperation();
+                        break;
+                }
+                operations[slot] = value != negate;
+            }
+            return operations;
+        }
+
+        private static String operationFlag(SpelNode node) {
+            String ast = node.toStringAST();
+            if (node instanceof VariableReference) {
+                switch (ast) {
+                    case "#isRead":
+                        return "read";
+                    case "#isWrite":
+                        return "write";
+                    case "#isBatch":
+                        return "batch";
+                    default:
+                        return null;
+                }
+            }
+            String name = null;
+            if (node instanceof PropertyOrFieldReference) {
+                name = ((PropertyOrFieldReference) node).getName();
+            } else if (node instanceof MethodReference && node.getChildCount() == 0) {
+                name = ((MethodReference) node).getName();
+            }
+            if (name == null) {
+                return null;
+            }
+            switch (name) {
+                case "readOperation":
+                case "isReadOperation":
+                    return "read";
+                case "writeOperation":
+                case "isWriteOperation":
+                    return "write";
+                case "batchOperation":
+                case "isBatchOperation":
+                    return "batch";
+                default:
+                    return null;
+            }
+        }
+
+        private static final class Constraints {
+            Set<String> tables;
+            boolean[] operations;
+            boolean dynamic;
+            boolean never;
+
+            void restrictTables(Set<String> allowed) {
+                if (tables == null) {
+                    tables = new LinkedHashSet<>(allowed);
+                } else {
+                    tables.retainAll(allowed);
+                }
+                if (tables.isEmpty()) {
+                    never = true;
+                }
+            }
+
+            void restrictOperations(boolean[] allowed) {
+                if (operations == null) {
+                    operations = allowed.clone();
+                } else {
+                    for (int i = 0; i < operations.length; i++) {
+                        operations[i] &= allowed[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 编译后的读写分离配置，从库负载均衡器和会话水位随方案一起创建，配置重载时重建
+     */
+    static final class CompiledReadWriteSplit {
+        static final String SESSION_CONSISTENCY = "session";
+
+        final RoutingRuleConfig.ReadWriteSplitConfig config;
+        final String masterDataSource;
+        /**
+         * 没有配置从库时为null，读操作回退到主库
+         */
+        final DataSourceBalancer slaves;
+        /**
+         * 未启用会话一致性时为null
+         */
+        final SessionConsistencyTracker consistency;
+        final String sessionKeyExpression;
+
+        CompiledReadWriteSplit(RoutingRuleConfig.ReadWriteSplitConfig config) {
+            this.config = config;
+            this.masterDataSource = config.getMasterDataSource();
+            this.slaves = DataSourceBalancers.create(config.getStrategy(),
+                    config.getSlaveDataSources(), config.getWeights(), config.getAdaptive());
+            this.consistency = SESSION_CONSISTENCY.equals(config.getConsistency()) && slaves != null
+                    ? new SessionConsistencyTracker(config.getConsistencyWindow(), config.getMaxSessions())
+                    : null;
+            this.sessionKeyExpression = StringUtils.hasText(config.getSessionKey()) ? config.getSessionKey() : null;
+        }
+
+        /**
+         * 选择从库，没有从库或从库全部被摘除时使用主库
+         */
+        String selectSlave() {
+            String slave = slaves != null ? slaves.select() : null;
+            return slave != null ? slave : masterDataSource;
+        }
+    }
+
+    /**
+     * 编译后的负载均衡配置
+     */
+    static final class CompiledLoadBalance {
+        final RoutingRuleConfig.LoadBalanceConfig config;
+        /**
+         * 没有配置数据源时为null
+         */
+        final DataSourceBalancer balancer;
+
+        CompiledLoadBalance(RoutingRuleConfig.LoadBalanceConfig config) {
+            this.config = config;
+            this.balancer = DataSourceBalancers.create(config.getStrategy(),
+                    config.getDataSources(), config.getWeights(), config.getAdaptive());
+        }
+
+        String select() {
+            return balancer != null ? balancer.select() : null;
+        }
+    }
+
+    /**
+     * 编译后的分片配置，范围分片的边界预先解析，bucket策略的桶到分片映射预先展开为数组
+     */
+    static final class CompiledSharding {
+        final RoutingRuleConfig.ShardingConfig config;
+        final List<CompiledRange> ranges;
+        final List<ShardTarget> targets;
+        /**
+         * 取模、哈希和bucket策略按分片序号索引的分片，范围策略按范围顺序排列，多个分片可能是同一个目标
+         */
+        private final ShardTarget[] shardTargets;
+        /**
+         * bucket策略下每个桶读写所用的分片序号，迁移中的桶在dual-read阶段已指向目标分片；其他策略为null
+         */
+        private final int[] bucketShards;
+        /**
+         * bucket策略下迁移中的桶写操作需要同时写入的分片序号，不在迁移中为-1
+         */
+        private final int[] shadowShards;
+        /**
+         * bucket策略下同步写入失败的处理策略，其他策略为null
+         */
+        final ShadowWrite.FailurePolicy shadowFailurePolicy;
+        /**
+         * 是否有正在迁移的桶，迁移中的桶在两个分片上都有数据
+         */
+        final boolean migrating;
+
+        CompiledSharding(String tableName, RoutingRuleConfig.ShardingConfig config, String defaultDataSource) {
+            this.config = config;
+            List<CompiledRange> compiled = new ArrayList<>();
+            if (config.getRanges() != null) {
+                for (RoutingRuleConfig.RangeConfig range : config.getRanges()) {
+                    compiled.add(new CompiledRange(range));
+                }
+            }
+            this.ranges = Collections.unmodifiableList(compiled);
+            if ("bucket".equals(config.getStrategy())) {
+                this.bucketShards = compileBucketShards(tableName);
+                this.shadowShards = compileShadowShards(tableName, bucketShards);
+                this.shadowFailurePolicy = parseFailurePolicy(tableName, config.getShadowWriteFailurePolicy());
+                this.migrating = Arrays.stream(shadowShards).anyMatch(shard -> shard >= 0);
+            } else {
+                this.bucketShards = null;
+                this.shadowShards = null;
+                this.shadowFailurePolicy = null;
+                this.migrating = false;
+            }
+            this.shardTargets = enumerateTargets(tableName, defaultDataSource);
+            this.targets = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(Arrays.asList(shardTargets))));
+        }
+
+        /**
+         * 列出全部分片，供广播查询使用；没有映射到数据源的分片落在默认数据源上，自定义策略无法列举
+         */
+        private ShardTarget[] enumerateTargets(String tableName, String defaultDataSource) {
+            List<ShardTarget> shards = new ArrayList<>();
+            switch (config.getStrategy()) {
+                case "mod":
+                case "hash":
+                case "bucket":
+                    for (int i = 0; i < config.getShardCount(); i++) {
+                        String dataSource = dataSource(i);
+                        shards.add(new ShardTarget(dataSource != null ? dataSource : defaultDataSource,
+                                tableName, tableName(tableName, i)));
+                    }
+                    break;
+                case "range":
+                    for (CompiledRange range : ranges) {
+                        String dataSource = range.config.getDataSource();
+                        shards.add(new ShardTarget(StringUtils.hasText(dataSource) ? dataSource : defaultDataSource,
+                                tableName, rangeTableName(tableName, range.config)));
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return shards.toArray(new ShardTarget[0]);
+        }
+
+        /**
+         * 未配置映射的桶按区间均分到各分片，再由bucketMapping覆盖
+         */
+        private int[] compileBucketShards(String tableName) {
+            int bucketCount = config.getBucketCount();
+            int shardCount = config.getShardCount();
+            if (bucketCount <= 0 || shardCount <= 0) {
+                throw new IllegalStateException("Bucket sharding of table " + tableName
+                        + " requires positive bucketCount and shardCount");
+            }
+            int[] shards = new int[bucketCount];
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                shards[bucket] = (int) ((long) bucket * shardCount / bucketCount);
+            }
+            Map<String, String> bucketMapping = config.getBucketMapping();
+            if (bucketMapping != null) {
+                bucketMapping.forEach((buckets, shard) -> {
+                    int shardIndex = parseShard(tableName, shard);
+                    int[] bounds = parseBuckets(tableName, buckets);
+                    Arrays.fill(shards, bounds[0], bounds[1] + 1, shardIndex);
+                });
+            }
+            return shards;
+        }
+
+        /**
+         * 按迁移阶段调整桶的读写分片并记录需要同时写入的分片：
+         * dual-write阶段以原分片为准、同时写目标分片，dual-read阶段以目标分片为准、同时写回原分片
+         */
+        private int[] compileShadowShards(String tableName, int[] shards) {
+            int[] shadows = new int[shards.length];
+            Arrays.fill(shadows, -1);
+            if (config.getMigrations() == null) {
+                return shadows;
+            }
+            for (RoutingRuleConfig.BucketMigrationConfig migration : config.getMigrations()) {
+                int target = parseShard(tableName, String.valueOf(migration.getTargetShard()));
+                boolean dualRead;
+                if ("dual-write".equals(migration.getPhase())) {
+                    dualRead = false;
+                } else if ("dual-read".equals(migration.getPhase())) {
+                    dualRead = true;
+                } else {
+                    throw new IllegalStateException("Unknown migration phase '" + migration.getPhase()
+                            + "' for table " + tableName);
+                }
+                int[] bounds = parseBuckets(tableName, migration.getBuckets());
+                for (int bucket = bounds[0]; bucket <= bounds[1]; bucket++) {
+                    int source = shards[bucket];
+                    if (source != target) {
+                        shards[bucket] = dualRead ? target : source;
+                        shadows[bucket] = dualRead ? source : target;
+                    }
+                }
+            }
+            return shadows;
+        }
+
+        private ShadowWrite.FailurePolicy parseFailurePolicy(String tableName, String policy) {
+            if (policy == null || "log".equalsIgnoreCase(policy.trim())) {
+                return ShadowWrite.FailurePolicy.LOG;
+            }
+            if ("fail".equalsIgnoreCase(policy.trim())) {
+                return ShadowWrite.FailurePolicy.FAIL;
+            }
+            throw new IllegalStateException("Unknown shadow write failure policy '" + policy
+                    + "' for table " + tableName + ", expected log or fail");
+        }
+
+        /**
+         * 解析桶或桶区间"start-end"，返回闭区间的两个端点
+         */
+        private int[] parseBuckets(String tableName, String buckets) {
+            Long start = null;
+            Long end = null;
+            if (buckets != null) {
+                String text = buckets.trim();
+                int dash = text.indexOf('-', 1);
+                start = parseLong(dash > 0 ? text.substring(0, dash).trim() : text);
+                end = dash > 0 ? parseLong(text.substring(dash + 1).trim()) : start;
+            }
+            if (start == null || end == null || start < 0 || start > end || end >= config.getBucketCount()) {
+                throw new IllegalStateException("Invalid buckets '" + buckets + "' for table " + tableName
+                        + ", expected bucket or range within [0, " + config.getBucketCount() + ")");
+            }
+            return new int[]{start.intValue(), end.intValue()};
+        }
+
+        private int parseShard(String tableName, String shard) {
+            Long shardIndex = parseLong(shard != null ? shard.trim() : null);
+            if (shardIndex == null || shardIndex < 0 || shardIndex >= config.getShardCount()) {
+                throw new IllegalStateException("Invalid shard '" + shard + "' for table " + tableName
+                        + ", expected shard index within [0, " + config.getShardCount() + ")");
+            }
+            return shardIndex.intValue();
+        }
+
+        /**
+         * 取模、哈希和bucket策略下分片键值所在的分片序号，bucket策略为读写所用的分片
+         * 先取余再取绝对值，hashCode为Integer.MIN_VALUE时也不会得到负数
+         */
+        int shardIndex(Object value) {
+            if (bucketShards != null) {
+                return bucketShards[bucket(value)];
+            }
+            int hashCode = "hash".equals(config.getStrategy()) ? value.toString().hashCode() : value.hashCode();
+            return Math.abs(hashCode % config.getShardCount());
+        }
+
+        /**
+         * bucket策略下分片键值所在的桶
+         * 按字符串取哈希，Integer、Long和字符串形式的同一个键落在同一个桶上；
+         * 再经过MurmurHash3的混合函数打散，连续的键均匀分布到各个桶
+         */
+        int bucket(Object value) {
+            int hash = value.toString().hashCode();
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            hash *= 0xc2b2ae35;
+            hash ^= hash >>> 16;
+            return Math.floorMod(hash, bucketShards.length);
+        }
+
+        /**
+         * 桶读写所用的分片序号
+         */
+        int bucketShard(int bucket) {
+            return bucketShards[bucket];
+        }
+
+        /**
+         * 迁移中的桶写操作需要同时写入的分片序号，不在迁移中返回-1
+         */
+        int shadowShard(int bucket) {
+            return shadowShards[bucket];
+        }
+
+        /**
+         * 按序号取分片，没有映射到数据源的分片已落在默认数据源上
+         */
+        ShardTarget shard(int shardIndex) {
+            return shardTargets[shardIndex];
+        }
+
+        /**
+         * 分片键值所在的分片，范围策略下不在任何范围内或自定义策略时返回null
+         */
+        ShardTarget targetOf(Object value) {
+            switch (config.getStrategy()) {
+                case "mod":
+                case "hash":
+                case "bucket":
+                    return shardTargets.length > 0 ? shardTargets[shardIndex(value)] : null;
+                case "range":
+                    if (!ranges.isEmpty()) {
+                        String strValue = value.toString();
+                        Long longValue = parseLong(strValue);
+                        for (int i = 0; i < ranges.size(); i++) {
+                            if (ranges.get(i).contains(strValue, longValue)) {
+                                return shardTargets[i];
+                            }
+                        }
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * 范围策略下与区间相交的分片，边界为null表示不限；其他策略返回null
+         */
+        Set<ShardTarget> targetsBetween(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+            if (!"range".equals(config.getStrategy())) {
+                return null;
+            }
+            Set<ShardTarget> shards = new LinkedHashSet<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                if (ranges.get(i).overlaps(lower, lowerInclusive, upper, upperInclusive)) {
+                    shards.add(shardTargets[i]);
+                }
+            }
+            return shards;
+        }
+
+        /**
+         * 分片的物理表名
+         */
+        String tableName(String tableName, int shardIndex) {
+            return config.getTableTemplate()
+                    .replace("{table}", tableName)
+                    .replace("{0}", String.valueOf(shardIndex));
+        }
+
+        /**
+         * 分片的数据源，配置了映射但没有该分片时返回null
+         */
+        String dataSource(int shardIndex) {
+            Map<String, String> dataSourceMapping = config.getDataSourceMapping();
+            if (dataSourceMapping != null) {
+                return dataSourceMapping.get(String.valueOf(shardIndex));
+            }
+            return "shard" + shardIndex;
+        }
+
+        static String rangeTableName(String tableName, RoutingRuleConfig.RangeConfig range) {
+            return StringUtils.hasText(range.getTableSuffix()) ? tableName + "_" + range.getTableSuffix() : tableName;
+        }
+
+        /**
+         * 查找值所在的范围；数值边界按数值比较，否则按字符串比较
+         */
+        RoutingRuleConfig.RangeConfig findRange(Object value) {
+            if (ranges.isEmpty()) {
+                return null;
+            }
+            String strValue = value.toString();
+            Long longValue = parseLong(strValue);
+            for (CompiledRange range : ranges) {
+                if (range.contains(strValue, longValue)) {
+                    return range.config;
+                }
+            }
+            return null;
+        }
+    }
+
+    static final class CompiledRange {
+        final RoutingRuleConfig.RangeConfig config;
+        private final Long start;
+        private final Long end;
+
+        CompiledRange(RoutingRuleConfig.RangeConfig config) {
+            this.config = config;
+            this.start = parseLong(config.getStart());
+            this.end = parseLong(config.getEnd());
+        }
+
+        boolean contains(String value, Long longValue) {
+            if (longValue != null && start != null && end != null) {
+                return longValue >= start && longValue <= end;
+            }
+            return value.compareTo(config.getStart()) >= 0 && value.compareTo(config.getEnd()) <= 0;
+        }
+
+        /**
+         * 范围是否与区间相交，比较方式与{@link #contains(String, Long)}一致
+         */
+        boolean overlaps(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+            if (lower != null) {
+                int compared = compareBound(lower.toString(), end, config.getEnd());
+                if (compared > 0 || (compared == 0 && !lowerInclusive)) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int compared = compareBound(upper.toString(), start, config.getStart());
+                if (compared < 0 || (compared == 0 && !upperInclusive)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int compareBound(String value, Long bound, String boundText) {
+            Long longValue = parseLong(value);
+            if (longValue != null && start != null && end != null) {
+                return Long.compare(longValue, bound);
+            }
+            return value.compareTo(boundText);
+        }
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
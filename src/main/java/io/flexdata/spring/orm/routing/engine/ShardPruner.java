@@ -0,0 +1,213 @@
+package io.flexdata.spring.orm.routing.engine;
+
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
+import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.interfaces.CriteriaVisitor;
+import io.flexdata.spring.orm.core.sql.EnhancedCriteriaBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分片裁剪
+ * 遍历查询条件树，根据分片键上的等值、IN、BETWEEN（范围策略下还有大小比较）条件计算需要访问的分片，
+ * 每个分片得到只针对本分片改写后的条件：IN列表按分片拆开，每个分片只收到落在本分片上的键
+ *
+ * 每个子条件的结果是"分片 -> 该分片上的条件"，null表示无法裁剪、所有分片都可能命中，分片上的条件为null表示沿用原条件；
+ * AND取交集，OR取并集，某个分片上只命中OR一侧时另一侧在该分片上恒为假，可以去掉；NOT、IS NULL和其他字段的条件不裁剪
+ */
+final class ShardPruner implements CriteriaVisitor<Map<ShardTarget, Criteria>> {
+
+    private final RoutingPlan.CompiledSharding sharding;
+    private final String shardingKey;
+
+    ShardPruner(RoutingPlan.CompiledSharding sharding) {
+        this.sharding = sharding;
+        this.shardingKey = sharding.config.getShardingKey();
+    }
+
+    /**
+     * 计算需要访问的分片及每个分片上的条件，结果按{@link RoutingPlan.CompiledSharding#targets}的顺序排列；
+     * 条件为空或无法裁剪时返回全部分片和原条件，条件不可能成立时返回空Map
+     */
+    Map<ShardTarget, Criteria> prune(Criteria criteria) {
+        Map<ShardTarget, Criteria> pruned = criteria != null ? criteria.accept(this) : null;
+        Map<ShardTarget, Criteria> ordered = new LinkedHashMap<>();
+        for (ShardTarget target : sharding.targets) {
+            if (pruned == null) {
+                ordered.put(target, criteria);
+            } else if (pruned.containsKey(target)) {
+                ordered.put(target, orElse(pruned.get(target), criteria));
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public Map<ShardTarget, Criteria> visitComparison(String field, String operator, Object value) {
+        if (!isShardingKey(field) || value == null) {
+            return null;
+        }
+        switch (operator.trim()) {
+            case "=":
+                ShardTarget target = sharding.targetOf(value);
+                return target != null ? Collections.singletonMap(target, null) : Collections.emptyMap();
+            case ">":
+                return unchanged(sharding.targetsBetween(value, false, null, false));
+            case ">=":
+                return unchanged(sharding.targetsBetween(value, true, null, false));
+            case "<":
+                return unchanged(sharding.targetsBetween(null, false, value, false));
+            case "<=":
+                return unchanged(sharding.targetsBetween(null, false, value, true));
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Map<ShardTarget, Criteria> visitIn(String field, Collection<?> values, boolean negated) {
+        if (negated || !isShardingKey(field)) {
+            return null;
+        }
+        Map<ShardTarget, List<Object>> valuesByShard = new LinkedHashMap<>();
+        for (Object value : values) {
+            ShardTarget target = value != null ? sharding.targetOf(value) : null;
+            if (target != null) {
+                valuesByShard.computeIfAbsent(target, t -> new ArrayList<>()).add(value);
+            }
+        }
+        Map<ShardTarget, Criteria> pruned = new LinkedHashMap<>();
+        valuesByShard.forEach((target, shardValues) -> pruned.put(target,
+                shardValues.size() == values.size() ? null : EnhancedCriteriaBuilder.in(field, shardValues)));
+        return pruned;
+    }
+
+    @Override
+    public Map<ShardTarget, Criteria> visitBetween(String field, Object start, Object end) {
+        if (!isShardingKey(field) || start == null || end == null) {
+            return null;
+        }
+        Set<ShardTarget> targets = sharding.targetsBetween(start, true, end, true);
+        return unchanged(targets != null ? targets : enumerate(start, end));
+    }
+
+    @Override
+    public Map<ShardTarget, Criteria> visitNull(String field, boolean isNull) {
+        return null;
+    }
+
+    @Override
+    public Map<ShardTarget, Criteria> visitComposite(Criteria left, String operator, Criteria right) {
+        Map<ShardTarget, Criteria> leftShards = left.accept(this);
+        Map<ShardTarget, Criteria> rightShards = right.accept(this);
+        Map<ShardTarget, Criteria> combined = new LinkedHashMap<>();
+        if ("AND".equalsIgnoreCase(operator.trim())) {
+            if (leftShards == null && rightShards == null) {
+                return null;
+            }
+            if (leftShards == null) {
+                rightShards.forEach((target, criteria) -> combined.put(target, left.and(orElse(criteria, right))));
+            } else if (rightShards == null) {
+                leftShards.forEach((target, criteria) -> combined.put(target, orElse(criteria, left).and(right)));
+            } else {
+                leftShards.forEach((target, criteria) -> {
+                    if (rightShards.containsKey(target)) {
+                        combined.put(target, orElse(criteria, left).and(orElse(rightShards.get(target), right)));
+                    }
+                });
+            }
+            return combined;
+        }
+        if (leftShards == null || rightShards == null) {
+            return null;
+        }
+        leftShards.forEach((target, criteria) -> combined.put(target, orElse(criteria, left)));
+        rightShards.forEach((target, criteria) -> {
+            Criteria shardRight = orElse(criteria, right);
+            Criteria shardLeft = combined.get(target);
+            combined.put(target, shardLeft != null ? shardLeft.or(shardRight) : shardRight);
+        });
+        return combined;
+    }
+
+    @Override
+    public Map<ShardTarget, Criteria> visitNot(Criteria criteria) {
+        return null;
+    }
+
+    @Override
+    public Map<ShardTarget, Criteria> visitOther(Criteria criteria) {
+        return null;
+    }
+
+    /**
+     * 取模和哈希策略下BETWEEN的整数区间不大于分片数时逐个计算，否则不裁剪
+     */
+    private Set<ShardTarget> enumerate(Object start, Object end) {
+        if (!isIntegral(start) || start.getClass() != end.getClass()) {
+            return null;
+        }
+        long from = ((Number) start).longValue();
+        long to = ((Number) end).longValue();
+        if (to < from) {
+            return Collections.emptySet();
+        }
+        if (to - from >= sharding.config.getShardCount()) {
+            return null;
+        }
+        Set<ShardTarget> targets = new LinkedHashSet<>();
+        for (long value = from; value <= to; value++) {
+            // 与分片键值的装箱类型一致，保证hashCode相同
+            targets.add(sharding.targetOf(start instanceof Long ? (Object) value : (Object) (int) value));
+        }
+        return targets;
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long;
+    }
+
+    /**
+     * 条件本身不需要改写的分片
+     */
+    private static Map<ShardTarget, Criteria> unchanged(Set<ShardTarget> targets) {
+        if (targets == null) {
+            return null;
+        }
+        Map<ShardTarget, Criteria> pruned = new LinkedHashMap<>();
+        for (ShardTarget target : targets) {
+            pruned.put(target, null);
+        }
+        return pruned;
+    }
+
+    private static Criteria orElse(Criteria criteria, Criteria original) {
+        return criteria != null ? criteria : original;
+    }
+
+    /**
+     * 字段去掉表前缀和引号后与分片键比较，不区分大小写
+     */
+    private boolean isShardingKey(String field) {
+        if (field == null || shardingKey == null) {
+            return false;
+        }
+        String column = field.trim();
+        int dot = column.lastIndexOf('.');
+        if (dot >= 0) {
+            column = column.substring(dot + 1);
+        }
+        if (column.length() > 1 && "`\"[".indexOf(column.charAt(0)) >= 0) {
+            column = column.substring(1, column.length() - 1);
+        }
+        return column.toLowerCase(Locale.ROOT).equals(shardingKey.toLowerCase(Locale.ROOT));
+    }
+}
@@ -4,28 +4,59 @@ import io.flexdata.spring.orm.routing.context.RoutingContext;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.Map;
 
 /**
  * SpEL表达式评估器
  * 支持在路由规则中使用Spring表达式语言
+ * 
+ * 表达式默认以MIXED模式编译：先解释执行，达到阈值后编译为字节码，编译后的代码遇到类型变化时自动退回解释执行；
+ * 评估上下文按线程复用，上下文相关的变量在查找时才从当前路由上下文读取
  */
 @Component
 public class SpelExpressionEvaluator {
 
-    private final ExpressionParser parser = new SpelExpressionParser();
+    /**
+     * 无状态的工具对象，所有评估共享
+     */
+    private static final SpelUtils UTILS = new SpelUtils();
+
+    private final ExpressionParser parser;
+
+    private final SpelCompilerMode compilerMode;
     
     /**
      * 表达式缓存
      */
     private final Map<String, Expression> expressionCache = new ConcurrentHashMap<>();
 
+    /**
+     * 每个线程复用的评估上下文
+     */
+    private final ThreadLocal<RoutingEvaluationContext> evaluationContexts =
+            ThreadLocal.withInitial(RoutingEvaluationContext::new);
+
+    public SpelExpressionEvaluator() {
+        this(SpelCompilerMode.MIXED);
+    }
+
+    public SpelExpressionEvaluator(SpelCompilerMode compilerMode) {
+        this.compilerMode = compilerMode;
+        this.parser = new SpelExpressionParser(
+                new SpelParserConfiguration(compilerMode, SpelExpressionEvaluator.class.getClassLoader()));
+    }
+
     /**
      * 评估条件表达式
      * 
@@ -44,8 +75,7 @@ public class SpelExpressionEvaluator {
 
         try {
             Expression expr = getExpression(expression);
-            StandardEvaluationContext evalContext = createEvaluationContext(context);
-            Object result = expr.getValue(evalContext);
+            Object result = evaluate(expr, context, Object.class);
             
             if (result instanceof Boolean) {
                 return (Boolean) result;
@@ -77,8 +107,7 @@ public class SpelExpressionEvaluator {
 
         try {
             Expression expr = getExpression(expression);
-            StandardEvaluationContext evalContext = createEvaluationContext(context);
-            return expr.getValue(evalContext, resultType);
+            return evaluate(expr, context, resultType);
         } catch (Exception e) {
             throw new EvaluationException("Error evaluating SpEL expression: " + expression, e);
         }
@@ -110,40 +139,106 @@ public class SpelExpressionEvaluator {
     }
 
     /**
-     * 创建评估上下文
+     * 使用当前线程的评估上下文执行表达式；表达式内部嵌套调用时使用临时上下文
      */
-    private StandardEvaluationContext createEvaluationContext(RoutingContext context) {
-        StandardEvaluationContext evalContext = new StandardEvaluationContext();
-        
-        if (context != null) {
-            // 设置根对象为路由上下文
-            evalContext.setRootObject(context);
-            
-            // 注册常用变量
-            evalContext.setVariable("context", context);
-            evalContext.setVariable("tableName", context.getTableName());
-            evalContext.setVariable("operationType", context.getOperationType());
-            evalContext.setVariable("parameters", context.getParameters());
-            evalContext.setVariable("headers", context.getHeaders());
-            evalContext.setVariable("userInfo", context.getUserInfo());
-            evalContext.setVariable("attributes", context.getAttributes());
-            
-            // 注册便捷方法
-            evalContext.setVariable("isRead", context.isReadOperation());
-            evalContext.setVariable("isWrite", context.isWriteOperation());
-            evalContext.setVariable("isBatch", context.isBatchOperation());
+    private <T> T evaluate(Expression expression, RoutingContext context, Class<T> resultType) {
+        RoutingEvaluationContext evalContext = evaluationContexts.get();
+        if (evalContext.inUse) {
+            evalContext = new RoutingEvaluationContext();
+        }
+        evalContext.bind(context);
+        try {
+            return expression.getValue(evalContext, resultType);
+        } finally {
+            evalContext.unbind();
+        }
+    }
+
+    /**
+     * 获取编译模式
+     */
+    public SpelCompilerMode getCompilerMode() {
+        return compilerMode;
+    }
+
+    /**
+     * 可复用的评估上下文
+     * 根对象为路由上下文；tableName、parameters等变量在查找时从当前路由上下文读取，
+     * now在每次查找时取当前时间，utils和random在线程内共享；
+     * 表达式中用#x = ...赋值的变量只在本次评估内可见，解绑时清除
+     */
+    private static final class RoutingEvaluationContext extends StandardEvaluationContext {
+
+        private final List<String> assignedVariables = new ArrayList<>(2);
+        private RoutingContext context;
+        private boolean inUse;
+
+        void bind(RoutingContext context) {
+            this.context = context;
+            this.inUse = true;
+            setRootObject(context);
+        }
+
+        void unbind() {
+            this.context = null;
+            this.inUse = false;
+            setRootObject(null);
+            if (!assignedVariables.isEmpty()) {
+                for (String name : assignedVariables) {
+                    super.setVariable(name, null);
+                }
+                assignedVariables.clear();
+            }
+        }
+
+        @Override
+        public void setVariable(String name, Object value) {
+            super.setVariable(name, value);
+            if (name != null) {
+                assignedVariables.add(name);
+            }
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            switch (name) {
+                case "utils":
+                    return UTILS;
+                case "random":
+                    return ThreadLocalRandom.current();
+                case "now":
+                    return java.time.LocalDateTime.now();
+                default:
+                    break;
+            }
+            if (context != null) {
+                switch (name) {
+                    case "context":
+                        return context;
+                    case "tableName":
+                        return context.getTableName();
+                    case "operationType":
+                        return context.getOperationType();
+                    case "parameters":
+                        return context.getParameters();
+                    case "headers":
+                        return context.getHeaders();
+                    case "userInfo":
+                        return context.getUserInfo();
+                    case "attributes":
+                        return context.getAttributes();
+                    case "isRead":
+                        return context.isReadOperation();
+                    case "isWrite":
+                        return context.isWriteOperation();
+                    case "isBatch":
+                        return context.isBatchOperation();
+                    default:
+                        break;
+                }
+            }
+            return super.lookupVariable(name);
         }
-        
-        // 注册工具函数（总是注册）
-        evalContext.setVariable("utils", new SpelUtils());
-        
-        // 注册随机数生成器（总是注册）
-        evalContext.setVariable("random", new java.util.Random());
-        
-        // 注册时间变量（总是注册）
-        evalContext.setVariable("now", java.time.LocalDateTime.now());
-        
-        return evalContext;
     }
 
     /**
@@ -1,5 +1,7 @@
 package io.flexdata.spring.orm.template;
 
+import io.flexdata.spring.orm.core.cache.CacheInvalidationBus;
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
 import io.flexdata.spring.orm.core.interfaces.Criteria;
 import io.flexdata.spring.orm.core.interfaces.GenericRepository;
 import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
@@ -25,6 +27,8 @@ public class OrmTemplate {
     private final NamedParameterJdbcTemplate jdbcTemplate;
     private final RowMapperFactory rowMapperFactory;
     private final Map<Class<?>, GenericRepository<?, ?>> repositoryCache = new ConcurrentHashMap<>();
+    private volatile QueryResultCache queryResultCache;
+    private volatile CacheInvalidationBus invalidationBus;
 
     public OrmTemplate(EntityMetadataRegistry metadataRegistry,
                        SqlGenerator sqlGenerator,
@@ -39,7 +43,32 @@ public class OrmTemplate {
     @SuppressWarnings("unchecked")
     public <T, ID> GenericRepository<T, ID> getRepository(Class<T> entityClass) {
         return (GenericRepository<T, ID>) repositoryCache.computeIfAbsent(entityClass,
-                clazz -> new GenericRepositoryImpl<>(jdbcTemplate, sqlGenerator, metadataRegistry, rowMapperFactory, clazz));
+                clazz -> {
+                    GenericRepositoryImpl<?, Object> repository = new GenericRepositoryImpl<>(jdbcTemplate, sqlGenerator, metadataRegistry, rowMapperFactory, clazz);
+                    repository.setQueryResultCache(queryResultCache);
+                    repository.setInvalidationBus(invalidationBus);
+                    return repository;
+                });
+    }
+
+    /**
+     * 设置查询结果缓存，通过本模板的写操作会使相关表的缓存失效
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+        for (GenericRepository<?, ?> repository : repositoryCache.values()) {
+            ((GenericRepositoryImpl<?, ?>) repository).setQueryResultCache(queryResultCache);
+        }
+    }
+
+    /**
+     * 设置缓存失效总线，通过本模板的写操作会通知其他节点
+     */
+    public void setInvalidationBus(CacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+        for (GenericRepository<?, ?> repository : repositoryCache.values()) {
+            ((GenericRepositoryImpl<?, ?>) repository).setInvalidationBus(invalidationBus);
+        }
     }
 
     // 便捷方法
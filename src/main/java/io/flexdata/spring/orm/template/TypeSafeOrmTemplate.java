@@ -1,5 +1,7 @@
 package io.flexdata.spring.orm.template;
 
+import io.flexdata.spring.orm.core.cache.CacheInvalidationBus;
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
 import io.flexdata.spring.orm.core.interfaces.TypeSafeCriteria;
 import io.flexdata.spring.orm.core.interfaces.TypeSafeRepository;
 import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
@@ -26,6 +28,8 @@ public class TypeSafeOrmTemplate {
     private final NamedParameterJdbcTemplate jdbcTemplate;
     private final RowMapperFactory rowMapperFactory;
     private final Map<Class<?>, TypeSafeRepository<?, ?>> repositoryCache = new ConcurrentHashMap<>();
+    private volatile QueryResultCache queryResultCache;
+    private volatile CacheInvalidationBus invalidationBus;
 
     public TypeSafeOrmTemplate(EntityMetadataRegistry metadataRegistry,
                                SqlGenerator sqlGenerator,
@@ -40,7 +44,32 @@ public class TypeSafeOrmTemplate {
     @SuppressWarnings("unchecked")
     public <T, ID> TypeSafeRepository<T, ID> getRepository(Class<T> entityClass) {
         return (TypeSafeRepository<T, ID>) repositoryCache.computeIfAbsent(entityClass,
-                clazz -> new TypeSafeRepositoryImpl<>(jdbcTemplate, sqlGenerator, metadataRegistry, rowMapperFactory, clazz));
+                clazz -> {
+                    TypeSafeRepositoryImpl<?, Object> repository = new TypeSafeRepositoryImpl<>(jdbcTemplate, sqlGenerator, metadataRegistry, rowMapperFactory, clazz);
+                    repository.setQueryResultCache(queryResultCache);
+                    repository.setInvalidationBus(invalidationBus);
+                    return repository;
+                });
+    }
+
+    /**
+     * 设置查询结果缓存，通过本模板的写操作会使相关表的缓存失效
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+        for (TypeSafeRepository<?, ?> repository : repositoryCache.values()) {
+            ((TypeSafeRepositoryImpl<?, ?>) repository).setQueryResultCache(queryResultCache);
+        }
+    }
+
+    /**
+     * 设置缓存失效总线，通过本模板的写操作会通知其他节点
+     */
+    public void setInvalidationBus(CacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+        for (TypeSafeRepository<?, ?> repository : repositoryCache.values()) {
+            ((TypeSafeRepositoryImpl<?, ?>) repository).setInvalidationBus(invalidationBus);
+        }
     }
 
     public <T> TypeSafeCriteriaBuilder<T> criteria(Class<T> entityClass) {
@@ -108,6 +137,10 @@ public class TypeSafeOrmTemplate {
         return getRepository(entityClass).findOne(criteria);
     }
 
+    public EntityMetadataRegistry getMetadataRegistry() {
+        return metadataRegistry;
+    }
+
     // 获取原始JdbcTemplate以支持复杂查询
     public NamedParameterJdbcTemplate getJdbcTemplate() {
         return jdbcTemplate;
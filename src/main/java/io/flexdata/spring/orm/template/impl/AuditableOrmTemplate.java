@@ -1,9 +1,10 @@
 package io.flexdata.spring.orm.template.impl;
 
+import io.flexdata.spring.orm.core.metadata.EntityMetadata;
+import io.flexdata.spring.orm.core.metadata.FieldMetadata;
 import io.flexdata.spring.orm.template.TypeSafeOrmTemplate;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Field;
 import java.time.LocalDateTime;
 
 /**
@@ -27,34 +28,37 @@ public class AuditableOrmTemplate {
     }
 
     private void setAuditFields(Object entity, String currentUser) {
-        Class<?> entityClass = entity.getClass();
+        EntityMetadata metadata = ormTemplate.getMetadataRegistry().getMetadata(entity.getClass());
         LocalDateTime now = LocalDateTime.now();
 
         // 设置创建时间和创建人
-        setFieldValue(entity, entityClass, "createdAt", now);
-        setFieldValue(entity, entityClass, "createdBy", currentUser);
+        setFieldValue(entity, metadata, "createdAt", now);
+        setFieldValue(entity, metadata, "createdBy", currentUser);
 
         // 设置更新时间和更新人
-        setFieldValue(entity, entityClass, "updatedAt", now);
-        setFieldValue(entity, entityClass, "updatedBy", currentUser);
+        setFieldValue(entity, metadata, "updatedAt", now);
+        setFieldValue(entity, metadata, "updatedBy", currentUser);
     }
 
-    private void setFieldValue(Object entity, Class<?> entityClass, String fieldName, Object value) {
-        try {
-            Field field = entityClass.getDeclaredField(fieldName);
-            field.setAccessible(true);
+    private void setFieldValue(Object entity, EntityMetadata metadata, String fieldName, Object value) {
+        FieldMetadata field = metadata.getFields().get(fieldName);
+        if (field == null) {
+            // 字段不存在，忽略
+            return;
+        }
 
+        try {
             // 如果是新实体，设置创建字段；否则只设置更新字段
             if (fieldName.startsWith("created")) {
-                Object currentValue = field.get(entity);
+                Object currentValue = field.getValue(entity);
                 if (currentValue == null) {
-                    field.set(entity, value);
+                    field.setValue(entity, value);
                 }
             } else {
-                field.set(entity, value);
+                field.setValue(entity, value);
             }
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            // 字段不存在或无法访问，忽略
+        } catch (RuntimeException e) {
+            // 字段类型不匹配或无法访问，忽略
         }
     }
 }
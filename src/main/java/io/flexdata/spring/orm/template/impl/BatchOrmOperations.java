@@ -1,16 +1,35 @@
 package io.flexdata.spring.orm.template.impl;
 
+import io.flexdata.spring.orm.core.cache.CacheInvalidationBus;
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
+import io.flexdata.spring.orm.core.datasource.ShadowWrite;
 import io.flexdata.spring.orm.core.metadata.EntityMetadata;
 import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
 import io.flexdata.spring.orm.core.metadata.FieldMetadata;
+import io.flexdata.spring.orm.core.sql.DatabaseDialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 /**
  * 批量操作工具
@@ -18,8 +37,24 @@ import java.util.List;
 @Component
 public class BatchOrmOperations {
 
+    private static final Logger logger = LoggerFactory.getLogger(BatchOrmOperations.class);
+
+    /**
+     * 无法读取max_allowed_packet时使用的保守值（MySQL 5.7默认4MB）
+     */
+    private static final long DEFAULT_MAX_ALLOWED_PACKET = 4L * 1024 * 1024;
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
     private final EntityMetadataRegistry metadataRegistry;
+    private final Map<Class<?>, MultiRowInsertShape> insertShapeCache = new ConcurrentHashMap<>();
+
+    private volatile DatabaseDialect dialect;
+    private volatile long maxAllowedPacket = -1;
+    private volatile boolean multiRowInsert = false;
+    private volatile int maxBindParameters = 0;
+    private volatile int batchSize = 1000;
+    private volatile QueryResultCache queryResultCache;
+    private volatile CacheInvalidationBus invalidationBus;
 
     public BatchOrmOperations(NamedParameterJdbcTemplate jdbcTemplate,
                               EntityMetadataRegistry metadataRegistry) {
@@ -29,12 +64,20 @@ public class BatchOrmOperations {
 
     /**
      * 批量插入
+     * 开启多行插入模式且数据库支持时改用多行VALUES语句，并回填自增主键。
+     * 批量写入不同步到桶迁移的目标分片，表正在迁移时抛出IllegalStateException
      */
     public <T> void batchInsert(List<T> entities) {
         if (entities.isEmpty()) return;
 
+        if (multiRowInsert && resolveDialect().supportsMultiRowInsert()) {
+            batchInsertMultiRow(entities);
+            return;
+        }
+
         Class<?> entityClass = entities.get(0).getClass();
         EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+        ShadowWrite.rejectIfBound(metadata.getTableName(), "batchInsert");
 
         // 构建批量插入SQL
         String sql = buildBatchInsertSql(metadata);
@@ -45,6 +88,104 @@ public class BatchOrmOperations {
                 .toArray(SqlParameterSource[]::new);
 
         jdbcTemplate.batchUpdate(sql, batchParams);
+        invalidateQueries(metadata);
+    }
+
+    /**
+     * 多行VALUES批量插入
+     * 每条语句的行数不超过方言的绑定参数上限，MySQL还按逐行累计的估算字节数在接近max_allowed_packet时截断，
+     * 整块语句按实体缓存复用；数据库生成的主键按顺序回填到每个实体
+     *
+     * @return 插入的行数
+     */
+    public <T> int batchInsertMultiRow(List<T> entities) {
+        if (entities.isEmpty()) return 0;
+
+        DatabaseDialect currentDialect = resolveDialect();
+        Class<?> entityClass = entities.get(0).getClass();
+        MultiRowInsertShape shape = getInsertShape(entityClass);
+        ShadowWrite.rejectIfBound(shape.metadata.getTableName(), "batchInsertMultiRow");
+
+        if (!currentDialect.supportsMultiRowInsert() || shape.columns.length == 0) {
+            // 不支持多行VALUES（如Oracle）或没有可插入的列时退回JDBC批处理
+            batchInsertJdbc(entities, shape.metadata);
+            invalidateQueries(shape.metadata);
+            return entities.size();
+        }
+
+        int rowsPerStatement = resolveRowsPerStatement(currentDialect, shape, entities.size());
+        int inserted = insertMultiRow(shape, entities, rowsPerStatement, resolveStatementBudget(currentDialect, shape),
+                new Object[rowsPerStatement * shape.columns.length]);
+        invalidateQueries(shape.metadata);
+        return inserted;
+    }
+
+    /**
+     * 流式批量插入
+     * 逐个读取实体，每满batchSize行刷新一次，刷新后释放实体引用，堆占用与输入总量无关
+     *
+     * @return 最终写入进度
+     */
+    public <T> BatchProgress streamInsert(Iterator<? extends T> entities) {
+        return streamInsert(entities, null);
+    }
+
+    public <T> BatchProgress streamInsert(Stream<? extends T> entities) {
+        return streamInsert(entities, null);
+    }
+
+    public <T> BatchProgress streamInsert(Spliterator<? extends T> entities) {
+        return streamInsert(entities, null);
+    }
+
+    public <T> BatchProgress streamInsert(Stream<? extends T> entities, BatchProgressListener listener) {
+        try (Stream<? extends T> stream = entities) {
+            return streamInsert(stream.iterator(), listener);
+        }
+    }
+
+    public <T> BatchProgress streamInsert(Spliterator<? extends T> entities, BatchProgressListener listener) {
+        return streamInsert(Spliterators.iterator(entities), listener);
+    }
+
+    /**
+     * 流式批量插入，每次刷新后回调进度监听器
+     */
+    public <T> BatchProgress streamInsert(Iterator<? extends T> entities, BatchProgressListener listener) {
+        int flushSize = batchSize;
+        List<Object> buffer = new ArrayList<>(flushSize);
+        StreamingInsertWriter writer = null;
+        long startTime = System.nanoTime();
+        long rowsWritten = 0;
+        int batchCount = 0;
+        BatchProgress progress = new BatchProgress(0, 0, 0, 0);
+
+        while (entities.hasNext()) {
+            buffer.add(entities.next());
+            if (buffer.size() < flushSize && entities.hasNext()) {
+                continue;
+            }
+
+            if (writer == null) {
+                MultiRowInsertShape shape = getInsertShape(buffer.get(0).getClass());
+                ShadowWrite.rejectIfBound(shape.metadata.getTableName(), "streamInsert");
+                writer = new StreamingInsertWriter(shape, buffer);
+            }
+            int rows = writer.write(buffer);
+            buffer.clear();
+            invalidateQueries(writer.shape.metadata);
+
+            rowsWritten += rows;
+            batchCount++;
+            progress = new BatchProgress(rowsWritten, batchCount, rows, System.nanoTime() - startTime);
+            if (listener != null) {
+                listener.onProgress(progress);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Stream insert flushed batch {}: {}", batchCount, progress);
+            }
+        }
+        return progress;
     }
 
     /**
@@ -55,6 +196,7 @@ public class BatchOrmOperations {
 
         Class<?> entityClass = entities.get(0).getClass();
         EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+        ShadowWrite.rejectIfBound(metadata.getTableName(), "batchUpdate");
 
         // 构建批量更新SQL
         String sql = buildBatchUpdateSql(metadata);
@@ -65,6 +207,275 @@ public class BatchOrmOperations {
                 .toArray(SqlParameterSource[]::new);
 
         jdbcTemplate.batchUpdate(sql, batchParams);
+        invalidateQueries(metadata);
+    }
+
+    /**
+     * 当前连接的数据库方言，首次使用时从连接元数据识别
+     */
+    public DatabaseDialect resolveDialect() {
+        DatabaseDialect current = dialect;
+        if (current == null) {
+            String productName = jdbcTemplate.getJdbcTemplate().execute(
+                    (ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+            current = DatabaseDialect.fromProductName(productName);
+            dialect = current;
+        }
+        return current;
+    }
+
+    /**
+     * 显式指定数据库方言，跳过自动识别
+     */
+    public void setDialect(DatabaseDialect dialect) {
+        this.dialect = dialect;
+    }
+
+    /**
+     * 是否让batchInsert使用多行VALUES插入
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    public boolean isMultiRowInsert() {
+        return multiRowInsert;
+    }
+
+    /**
+     * 流式插入每次刷新的行数
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 覆盖方言的单条语句绑定参数上限，小于等于0时使用方言默认值
+     */
+    public void setMaxBindParameters(int maxBindParameters) {
+        this.maxBindParameters = maxBindParameters;
+    }
+
+    /**
+     * 显式指定MySQL的max_allowed_packet（字节），小于等于0时从数据库读取
+     */
+    public void setMaxAllowedPacket(long maxAllowedPacket) {
+        this.maxAllowedPacket = maxAllowedPacket > 0 ? maxAllowedPacket : -1;
+    }
+
+    /**
+     * 设置查询结果缓存，批量写入后使对应表的缓存失效
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * 设置缓存失效总线，批量写入后通知其他节点
+     */
+    public void setInvalidationBus(CacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * 清空缓存的语句形状
+     */
+    public void clearCache() {
+        insertShapeCache.clear();
+    }
+
+    /**
+     * 批量写入后按整表失效：批次可能很大，逐个列出主键没有意义
+     */
+    private void invalidateQueries(EntityMetadata metadata) {
+        QueryResultCache cache = queryResultCache;
+        if (cache != null) {
+            cache.invalidateTable(metadata.getTableName());
+        }
+        CacheInvalidationBus bus = invalidationBus;
+        if (bus != null) {
+            bus.publishTable(metadata.getTableName());
+        }
+    }
+
+    /**
+     * 按绑定参数和方言行数上限计算每条语句最多的行数
+     */
+    int resolveRowsPerStatement(DatabaseDialect currentDialect, MultiRowInsertShape shape, int rowCount) {
+        int bindLimit = maxBindParameters > 0 ? maxBindParameters : currentDialect.getMaxBindParameters();
+        int rows = Math.min(bindLimit / shape.columns.length, currentDialect.getMaxRowsPerInsert());
+        if (shape.idField != null && !currentDialect.returnsMultiRowGeneratedKeys()) {
+            // 驱动只返回一个主键（如SQL Server），逐行插入才能把主键回填到对应的实体
+            return 1;
+        }
+
+        return Math.max(1, Math.min(rows, rowCount));
+    }
+
+    /**
+     * 单条语句中VALUES部分允许的估算字节数，只有MySQL受限，其他数据库返回-1
+     * MySQL驱动默认在客户端展开参数，整条语句必须放进一个网络包
+     */
+    private long resolveStatementBudget(DatabaseDialect currentDialect, MultiRowInsertShape shape) {
+        if (currentDialect != DatabaseDialect.MYSQL) {
+            return -1;
+        }
+        return Math.max(1, resolveMaxAllowedPacket() * 9 / 10 - shape.prefix.length());
+    }
+
+    private long resolveMaxAllowedPacket() {
+        long current = maxAllowedPacket;
+        if (current < 0) {
+            try {
+                Long value = jdbcTemplate.getJdbcOperations()
+                        .queryForObject("SELECT @@max_allowed_packet", Long.class);
+                current = value != null ? value : DEFAULT_MAX_ALLOWED_PACKET;
+            } catch (Exception e) {
+                current = DEFAULT_MAX_ALLOWED_PACKET;
+            }
+            maxAllowedPacket = current;
+        }
+        return current;
+    }
+
+    /**
+     * 估算一行在语句中展开后的字节数
+     */
+    private static long estimateRowBytes(MultiRowInsertShape shape, Object entity) {
+        long bytes = 3;
+        for (FieldMetadata column : shape.columns) {
+            bytes += estimateValueBytes(column.getValue(entity)) + 2;
+        }
+        return bytes;
+    }
+
+    private static long estimateValueBytes(Object value) {
+        if (value == null) {
+            return 4;
+        } else if (value instanceof CharSequence) {
+            // 按utf8mb4加转义的最坏情况估算
+            return ((CharSequence) value).length() * 4L + 2;
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length * 2L + 3;
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return 24;
+        }
+        return 32;
+    }
+
+    /**
+     * 分块执行多行插入，values在块之间复用
+     * 每块最多rowsPerStatement行；budget大于0时逐行累计估算字节数，下一行放不下就截断，
+     * 后面出现的大字段行不会让语句超过网络包上限。单行本身超出时仍单独发送，由数据库报错
+     */
+    private int insertMultiRow(MultiRowInsertShape shape, List<?> entities, int rowsPerStatement, long budget,
+                               Object[] values) {
+        int total = 0;
+        int start = 0;
+        while (start < entities.size()) {
+            int limit = Math.min(rowsPerStatement, entities.size() - start);
+            int rows = 0;
+            int index = 0;
+            long bytes = 0;
+            while (rows < limit) {
+                Object entity = entities.get(start + rows);
+                if (budget > 0) {
+                    long rowBytes = estimateRowBytes(shape, entity);
+                    if (rows > 0 && bytes + rowBytes > budget) {
+                        break;
+                    }
+                    bytes += rowBytes;
+                }
+                for (FieldMetadata column : shape.columns) {
+                    values[index++] = column.getValue(entity);
+                }
+                rows++;
+            }
+            total += executeMultiRowInsert(shape, shape.getSql(rows), values, index,
+                    entities.subList(start, start + rows));
+            start += rows;
+        }
+        return total;
+    }
+
+    private int executeMultiRowInsert(MultiRowInsertShape shape, String sql, Object[] values,
+                                      int valueCount, List<?> entities) {
+        if (shape.idField == null) {
+            return jdbcTemplate.getJdbcOperations().update(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                bindValues(ps, values, valueCount);
+                return ps;
+            });
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int updated = jdbcTemplate.getJdbcOperations().update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, new String[]{shape.idField.getColumnName()});
+            bindValues(ps, values, valueCount);
+            return ps;
+        }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != entities.size()) {
+            // 主键个数不一致时无法确定对应关系，宁可失败也不回填错位的主键
+            throw new IllegalStateException("Driver returned " + keys.size() + " generated keys for "
+                    + entities.size() + " rows inserted into " + shape.metadata.getTableName());
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Object key = extractKey(keys.get(i), shape.idField);
+            if (key != null) {
+                shape.idField.setGeneratedValue(entities.get(i), key);
+            }
+        }
+        return updated;
+    }
+
+    private static void bindValues(PreparedStatement ps, Object[] values, int valueCount) throws SQLException {
+        for (int i = 0; i < valueCount; i++) {
+            StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, values[i]);
+        }
+    }
+
+    private static Object extractKey(Map<String, Object> keyRow, FieldMetadata idField) {
+        if (keyRow.size() == 1) {
+            return keyRow.values().iterator().next();
+        }
+        // 部分驱动（如PostgreSQL）返回整行，按主键列名取值
+        Object key = keyRow.get(idField.getColumnName());
+        if (key == null) {
+            for (Map.Entry<String, Object> entry : keyRow.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(idField.getColumnName())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return key;
+    }
+
+    private <T> void batchInsertJdbc(List<T> entities, EntityMetadata metadata) {
+        String sql = buildBatchInsertSql(metadata);
+        SqlParameterSource[] batchParams = entities.stream()
+                .map(entity -> entityToParameterSource(entity, metadata))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(sql, batchParams);
+    }
+
+    MultiRowInsertShape getInsertShape(Class<?> entityClass) {
+        EntityMetadata metadata = metadataRegistry.getMetadata(entityClass);
+        MultiRowInsertShape shape = insertShapeCache.get(entityClass);
+        // 元数据缓存被清空重建后语句形状随之重建
+        if (shape == null || shape.metadata != metadata) {
+            shape = new MultiRowInsertShape(metadata);
+            insertShapeCache.put(entityClass, shape);
+        }
+        return shape;
     }
 
     private String buildBatchInsertSql(EntityMetadata metadata) {
@@ -110,10 +521,7 @@ public class BatchOrmOperations {
 
         for (FieldMetadata field : metadata.getFields().values()) {
             try {
-                Field javaField = entity.getClass().getDeclaredField(field.getFieldName());
-                javaField.setAccessible(true);
-                Object value = javaField.get(entity);
-                params.addValue(field.getFieldName(), value);
+                params.addValue(field.getFieldName(), field.getValue(entity));
             } catch (Exception e) {
                 // 忽略获取失败的字段
             }
@@ -121,4 +529,127 @@ public class BatchOrmOperations {
 
         return params;
     }
+
+    /**
+     * 流式插入的写入器
+     * 写入方式、每条语句行数上限、字节预算和参数缓冲区在第一次刷新时确定，之后每批复用；
+     * 每条语句实际的行数在写入时按字节预算逐块截断
+     */
+    private final class StreamingInsertWriter {
+
+        private final MultiRowInsertShape shape;
+        private final boolean multiRow;
+        private final int rowsPerStatement;
+        private final long budget;
+        private final Object[] values;
+
+        StreamingInsertWriter(MultiRowInsertShape shape, List<?> firstBatch) {
+            DatabaseDialect currentDialect = resolveDialect();
+            this.shape = shape;
+            this.multiRow = multiRowInsert && currentDialect.supportsMultiRowInsert() && shape.columns.length > 0;
+            if (multiRow) {
+                this.rowsPerStatement = resolveRowsPerStatement(currentDialect, shape, firstBatch.size());
+                this.budget = resolveStatementBudget(currentDialect, shape);
+                this.values = new Object[rowsPerStatement * shape.columns.length];
+            } else {
+                this.rowsPerStatement = 1;
+                this.budget = -1;
+                this.values = null;
+            }
+        }
+
+        int write(List<?> batch) {
+            if (multiRow) {
+                return insertMultiRow(shape, batch, rowsPerStatement, budget, values);
+            }
+
+            // 直接从缓冲区按位置绑定，不为每行构建参数对象
+            int[] counts = jdbcTemplate.getJdbcOperations().batchUpdate(shape.getSql(1),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Object entity = batch.get(i);
+                            FieldMetadata[] columns = shape.columns;
+                            for (int c = 0; c < columns.length; c++) {
+                                StatementCreatorUtils.setParameterValue(ps, c + 1, SqlTypeValue.TYPE_UNKNOWN,
+                                        columns[c].getValue(entity));
+                            }
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return batch.size();
+                        }
+                    });
+            return counts.length;
+        }
+    }
+
+    /**
+     * 多行插入语句形状
+     * 列顺序固定，按行数缓存生成好的SQL；一次批量中除最后一块外行数相同，只需生成一两种语句
+     */
+    static final class MultiRowInsertShape {
+
+        private static final int MAX_CACHED_STATEMENTS = 16;
+
+        final EntityMetadata metadata;
+        final FieldMetadata[] columns;
+        final FieldMetadata idField;
+        final String prefix;
+        private final String rowPlaceholder;
+        private final Map<Integer, String> sqlByRows = new ConcurrentHashMap<>();
+
+        MultiRowInsertShape(EntityMetadata metadata) {
+            this.metadata = metadata;
+            List<FieldMetadata> insertable = new ArrayList<>();
+            List<String> columnNames = new ArrayList<>();
+            for (FieldMetadata field : metadata.getFields().values()) {
+                if (!field.isPrimaryKey()) {
+                    insertable.add(field);
+                    columnNames.add(field.getColumnName());
+                }
+            }
+            this.columns = insertable.toArray(new FieldMetadata[0]);
+            this.idField = metadata.getIdFieldMetadata();
+            this.prefix = "INSERT INTO " + metadata.getTableName()
+                    + " (" + String.join(", ", columnNames) + ") VALUES ";
+
+            StringBuilder placeholder = new StringBuilder(columns.length * 3 + 2).append('(');
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    placeholder.append(", ");
+                }
+                placeholder.append('?');
+            }
+            this.rowPlaceholder = placeholder.append(')').toString();
+        }
+
+        String getSql(int rows) {
+            String sql = sqlByRows.get(rows);
+            if (sql == null) {
+                sql = buildSql(rows);
+                if (sqlByRows.size() < MAX_CACHED_STATEMENTS) {
+                    sqlByRows.put(rows, sql);
+                }
+            }
+            return sql;
+        }
+
+        int getCachedStatementCount() {
+            return sqlByRows.size();
+        }
+
+        private String buildSql(int rows) {
+            StringBuilder sql = new StringBuilder(prefix.length() + rows * (rowPlaceholder.length() + 2))
+                    .append(prefix);
+            for (int i = 0; i < rows; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(rowPlaceholder);
+            }
+            return sql.toString();
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package io.flexdata.spring.orm.template.impl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式批量写入进度
+ * 每次刷新后生成一个快照，记录累计写入行数、批次数和耗时
+ */
+public final class BatchProgress {
+
+    private final long rowsWritten;
+    private final int batchCount;
+    private final int lastBatchRows;
+    private final long elapsedNanos;
+
+    public BatchProgress(long rowsWritten, int batchCount, int lastBatchRows, long elapsedNanos) {
+        this.rowsWritten = rowsWritten;
+        this.batchCount = batchCount;
+        this.lastBatchRows = lastBatchRows;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * 累计写入行数
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * 已刷新的批次数
+     */
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * 最近一次刷新写入的行数
+     */
+    public int getLastBatchRows() {
+        return lastBatchRows;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * 平均吞吐量（行/秒）
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos > 0 ? rowsWritten * 1_000_000_000.0 / elapsedNanos : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchProgress{rows=%d, batches=%d, elapsed=%dms, throughput=%.1f rows/s}",
+                rowsWritten, batchCount, getElapsedMillis(), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,11 @@
+package io.flexdata.spring.orm.template.impl;
+
+/**
+ * 流式批量写入进度监听器
+ * 每个批次刷新到数据库后在写入线程中回调
+ */
+@FunctionalInterface
+public interface BatchProgressListener {
+
+    void onProgress(BatchProgress progress);
+}
@@ -1,55 +1,89 @@
 package io.flexdata.spring.orm.template.impl;
 
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
 import io.flexdata.spring.orm.core.interfaces.TypeSafeCriteria;
+import io.flexdata.spring.orm.core.metadata.EntityMetadata;
+import io.flexdata.spring.orm.core.sql.SqlTableReplacer;
 import io.flexdata.spring.orm.template.TypeSafeOrmTemplate;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * 缓存ORM模板
+ * 查询结果按规范化SQL和参数缓存在QueryResultCache中，写操作递增表版本号使相关查询失效；
+ * 通过其他途径（仓储、批量操作、原生SQL）写入同一张表时，只要共享同一个QueryResultCache也会失效
  */
-@Component
 public class CachedOrmTemplate {
 
     private final TypeSafeOrmTemplate ormTemplate;
+    private final QueryResultCache queryResultCache;
 
     public CachedOrmTemplate(TypeSafeOrmTemplate ormTemplate) {
+        this(ormTemplate, new QueryResultCache());
+    }
+
+    public CachedOrmTemplate(TypeSafeOrmTemplate ormTemplate, QueryResultCache queryResultCache) {
         this.ormTemplate = ormTemplate;
+        this.queryResultCache = queryResultCache;
     }
 
     /**
      * 缓存查询结果
      */
-    @Cacheable(value = "orm-entities", key = "#entityClass.simpleName + ':' + #id")
     public <T, ID> Optional<T> findByIdCached(Class<T> entityClass, ID id) {
-        return ormTemplate.findById(entityClass, id);
+        EntityMetadata metadata = ormTemplate.getMetadataRegistry().getMetadata(entityClass);
+        String table = metadata.getTableName();
+        String sql = "SELECT * FROM " + table + " WHERE " + metadata.getIdFieldMetadata().getColumnName() + " = :id";
+        return queryResultCache.get(sql, Collections.singletonMap("id", id), Collections.singleton(table),
+                () -> ormTemplate.findById(entityClass, id));
     }
 
     /**
      * 缓存查询结果
      */
-    @Cacheable(value = "orm-queries", key = "#entityClass.simpleName + ':' + #criteria.toString()")
     public <T> List<T> findByCriteriaCached(Class<T> entityClass, TypeSafeCriteria<T> criteria) {
-        return ormTemplate.findByCriteria(entityClass, criteria);
+        String table = tableName(entityClass);
+        String sql = "SELECT * FROM " + table;
+        Map<String, Object> params = Collections.emptyMap();
+        if (criteria != null) {
+            sql = sql + " WHERE " + criteria.toSql();
+            params = criteria.getParameters();
+        }
+
+        // 条件中的子查询可能读取其他表
+        Set<String> tables = new LinkedHashSet<>();
+        tables.add(table);
+        tables.addAll(SqlTableReplacer.extractTableNames(sql));
+        return queryResultCache.get(sql, params, tables, () -> ormTemplate.findByCriteria(entityClass, criteria));
     }
 
     /**
      * 保存并清除缓存
      */
-    @CacheEvict(value = {"orm-entities", "orm-queries"}, key = "#entity.class.simpleName + '*'")
     public <T> T saveAndEvictCache(T entity) {
-        return ormTemplate.save(entity);
+        T saved = ormTemplate.save(entity);
+        queryResultCache.invalidateTable(tableName(entity.getClass()));
+        return saved;
     }
 
     /**
      * 删除并清除缓存
      */
-    @CacheEvict(value = {"orm-entities", "orm-queries"}, key = "#entityClass.simpleName + '*'")
     public <T, ID> void deleteByIdAndEvictCache(Class<T> entityClass, ID id) {
         ormTemplate.deleteById(entityClass, id);
+        queryResultCache.invalidateTable(tableName(entityClass));
+    }
+
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    private String tableName(Class<?> entityClass) {
+        return ormTemplate.getMetadataRegistry().getMetadata(entityClass).getTableName();
     }
 }
@@ -109,7 +109,7 @@ public class TypeSafeQueryBuilderImpl<T> implements TypeSafeQueryBuilder<T> {
         String sql = buildSql();
         Map<String, Object> params = buildParameters();
 
-        return jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass));
+        return jdbcTemplate.query(sql, params, rowMapperFactory.getRowMapper(entityClass, sql));
     }
 
     @Override
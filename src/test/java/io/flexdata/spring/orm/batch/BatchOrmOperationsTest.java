@@ -0,0 +1,228 @@
+package io.flexdata.spring.orm.batch;
+
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.DatabaseDialect;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.template.impl.BatchOrmOperations;
+import io.flexdata.spring.orm.template.impl.BatchProgress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BatchOrmOperations测试类
+ * 验证多行VALUES插入的分块、按字节预算截断、主键回填、按方言逐行插入和流式插入
+ */
+class BatchOrmOperationsTest {
+
+    private EmbeddedDatabase database;
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private BatchOrmOperations batchOperations;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        jdbcTemplate = new NamedParameterJdbcTemplate(database);
+        batchOperations = new BatchOrmOperations(jdbcTemplate, new EntityMetadataRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void testDialectDetection() {
+        assertEquals(DatabaseDialect.H2, batchOperations.resolveDialect());
+        assertEquals(DatabaseDialect.POSTGRESQL, DatabaseDialect.fromProductName("PostgreSQL"));
+        assertEquals(DatabaseDialect.MYSQL, DatabaseDialect.fromProductName("MySQL"));
+        assertEquals(DatabaseDialect.GENERIC, DatabaseDialect.fromProductName(null));
+    }
+
+    @Test
+    void testMultiRowInsertChunksAndReturnsKeys() {
+        // User有5个非主键列，限制为12个参数时每条语句2行，103行需要52条语句
+        batchOperations.setMaxBindParameters(12);
+        List<User> users = createUsers(103);
+
+        assertEquals(103, batchOperations.batchInsertMultiRow(users));
+
+        assertEquals(103, jdbcTemplate.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        Set<Long> ids = new HashSet<>();
+        for (User user : users) {
+            assertNotNull(user.getId());
+            ids.add(user.getId());
+            String name = jdbcTemplate.getJdbcTemplate().queryForObject(
+                    "SELECT user_name FROM users WHERE id = ?", String.class, user.getId());
+            assertEquals(user.getUserName(), name);
+        }
+        assertEquals(103, ids.size());
+    }
+
+    @Test
+    void testBatchInsertUsesMultiRowMode() {
+        batchOperations.setMultiRowInsert(true);
+        List<User> users = createUsers(2500);
+
+        batchOperations.batchInsert(users);
+
+        assertEquals(2500, jdbcTemplate.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        assertNotNull(users.get(0).getId());
+        assertNotNull(users.get(2499).getId());
+        assertTrue(users.get(2499).getId() > users.get(0).getId());
+    }
+
+    @Test
+    void testSingleKeyDialectInsertsRowByRow() {
+        // SQL Server对多行VALUES只返回一个主键，必须逐行插入才能正确回填
+        List<String> statements = new ArrayList<>();
+        BatchOrmOperations operations = new BatchOrmOperations(recordingTemplate(statements), new EntityMetadataRegistry());
+        operations.setDialect(DatabaseDialect.SQLSERVER);
+        List<User> users = createUsers(10);
+
+        assertEquals(10, operations.batchInsertMultiRow(users));
+
+        assertEquals(10, statements.size());
+        assertTrue(statements.stream().allMatch(sql -> sql.indexOf("(?") == sql.lastIndexOf("(?")));
+        for (User user : users) {
+            assertEquals(user.getUserName(), jdbcTemplate.getJdbcTemplate().queryForObject(
+                    "SELECT user_name FROM users WHERE id = ?", String.class, user.getId()));
+        }
+    }
+
+    @Test
+    void testLaterLargeRowsAreCutByPacketBudget() {
+        // 前100行每行估算约200字节，后20行每行的email估算约1KB，约2KB的预算只能放下一行大字段；
+        // 只按前面的小行估算行数时大字段行会10行一条语句，总共只有约12条语句
+        List<String> statements = new ArrayList<>();
+        BatchOrmOperations operations = new BatchOrmOperations(recordingTemplate(statements), new EntityMetadataRegistry());
+        operations.setDialect(DatabaseDialect.MYSQL);
+        operations.setMaxAllowedPacket(2_300);
+
+        assertEquals(120, operations.batchInsertMultiRow(createMixedUsers()));
+        assertTrue(statements.size() >= 25, "statements: " + statements.size());
+
+        statements.clear();
+        operations.setMultiRowInsert(true);
+        operations.setBatchSize(60);
+        BatchProgress progress = operations.streamInsert(createMixedUsers().iterator());
+
+        assertEquals(120, progress.getRowsWritten());
+        assertTrue(statements.size() >= 25, "statements: " + statements.size());
+        assertEquals(240, jdbcTemplate.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    }
+
+    @Test
+    void testFallbackWithoutMultiRowSupport() {
+        batchOperations.setDialect(DatabaseDialect.ORACLE);
+        List<User> users = createUsers(10);
+
+        assertEquals(10, batchOperations.batchInsertMultiRow(users));
+        assertEquals(10, jdbcTemplate.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    }
+
+    @Test
+    void testStreamInsertFlushesEveryBatch() {
+        batchOperations.setBatchSize(1000);
+        List<BatchProgress> progresses = new ArrayList<>();
+
+        BatchProgress result = batchOperations.streamInsert(
+                IntStream.range(0, 10500).mapToObj(i -> new User("user" + i, null, i % 80)), progresses::add);
+
+        assertEquals(10500, result.getRowsWritten());
+        assertEquals(11, result.getBatchCount());
+        assertEquals(11, progresses.size());
+        assertEquals(1000, progresses.get(0).getLastBatchRows());
+        assertEquals(500, result.getLastBatchRows());
+        assertEquals(10500, jdbcTemplate.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    }
+
+    @Test
+    void testStreamInsertMultiRowFromIterator() {
+        batchOperations.setMultiRowInsert(true);
+        batchOperations.setBatchSize(300);
+        batchOperations.setMaxBindParameters(500);
+        List<User> users = createUsers(1000);
+
+        BatchProgress result = batchOperations.streamInsert(users.iterator());
+
+        assertEquals(1000, result.getRowsWritten());
+        assertEquals(4, result.getBatchCount());
+        assertEquals(1000, jdbcTemplate.getJdbcTemplate().queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        assertTrue(users.stream().allMatch(user -> user.getId() != null));
+    }
+
+    @Test
+    void testStreamInsertEmptyInput() {
+        BatchProgress result = batchOperations.streamInsert(new ArrayList<User>().spliterator());
+
+        assertEquals(0, result.getRowsWritten());
+        assertEquals(0, result.getBatchCount());
+    }
+
+    /**
+     * 记录每条预编译INSERT语句的模板
+     */
+    private NamedParameterJdbcTemplate recordingTemplate(List<String> statements) {
+        DataSource recording = new DelegatingDataSource(database) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                        (proxy, method, args) -> {
+                            if (method.getName().equals("prepareStatement") && args[0].toString().startsWith("INSERT")) {
+                                statements.add(args[0].toString());
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        };
+        return new NamedParameterJdbcTemplate(recording);
+    }
+
+    private List<User> createMixedUsers() {
+        List<User> users = createUsers(100);
+        StringBuilder email = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            email.append('x');
+        }
+        for (int i = 0; i < 20; i++) {
+            users.add(new User("large" + i, email.toString(), 30));
+        }
+        return users;
+    }
+
+    private List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new User("user" + i, i % 3 == 0 ? null : "user" + i + "@example.com", 20 + i % 50));
+        }
+        return users;
+    }
+}
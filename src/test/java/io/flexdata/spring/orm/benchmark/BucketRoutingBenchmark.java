@@ -0,0 +1,98 @@
+package io.flexdata.spring.orm.benchmark;
+
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.context.RoutingContext;
+import io.flexdata.spring.orm.routing.engine.RoutingEngine;
+import io.flexdata.spring.orm.routing.engine.SpelExpressionEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分片路由基准：16个分片，不启用路由缓存，随机键的读写各一半
+ * 对比取模策略与4096个虚拟桶的bucket策略，以及其中512个桶处于dual-write迁移阶段时的路由开销
+ *
+ * 运行方式：
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main BucketRoutingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BucketRoutingBenchmark {
+
+    private static final int SHARDS = 16;
+    private static final int BUCKETS = 4096;
+
+    @Param({"mod", "bucket", "bucket-migrating"})
+    private String strategy;
+
+    private RoutingContext[] contexts;
+    private RoutingEngine engine;
+
+    @Setup
+    public void setUp() {
+        RoutingRuleConfig.ShardingConfig sharding = new RoutingRuleConfig.ShardingConfig();
+        sharding.setEnabled(true);
+        sharding.setStrategy(strategy.startsWith("bucket") ? "bucket" : strategy);
+        sharding.setShardingKey("userId");
+        sharding.setShardCount(SHARDS);
+        sharding.setBucketCount(BUCKETS);
+        Map<String, String> mapping = new HashMap<>();
+        for (int i = 0; i < SHARDS; i++) {
+            mapping.put(String.valueOf(i), "ds" + (i % 4));
+        }
+        sharding.setDataSourceMapping(mapping);
+        if (strategy.equals("bucket-migrating")) {
+            RoutingRuleConfig.BucketMigrationConfig migration = new RoutingRuleConfig.BucketMigrationConfig();
+            migration.setBuckets("0-511");
+            migration.setTargetShard(SHARDS - 1);
+            sharding.setMigrations(Collections.singletonList(migration));
+        }
+
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        config.setSharding(Collections.singletonMap("orders", sharding));
+        engine = new RoutingEngine(config, new SpelExpressionEvaluator(), Collections.emptyList());
+        engine.init();
+
+        contexts = new RoutingContext[1024];
+        for (int i = 0; i < contexts.length; i++) {
+            contexts[i] = RoutingContext.builder()
+                    .tableName("orders")
+                    .operationType(i % 2 == 0 ? RoutingContext.OperationType.SELECT : RoutingContext.OperationType.UPDATE)
+                    .parameter("userId", ThreadLocalRandom.current().nextLong(1_000_000_000L))
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public Object route() {
+        return engine.route(contexts[ThreadLocalRandom.current().nextInt(contexts.length)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BucketRoutingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package io.flexdata.spring.orm.benchmark;
+
+import io.flexdata.spring.orm.core.metadata.EntityMetadata;
+import io.flexdata.spring.orm.core.metadata.FieldMetadata;
+import io.flexdata.spring.orm.core.sql.FieldNameRewriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 条件片段字段名改写基准：逐字段正则替换 vs 单次扫描改写器
+ *
+ * 运行方式：
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main FieldNameRewriteBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldNameRewriteBenchmark {
+
+    @Param({"10", "40", "80"})
+    private int fieldCount;
+
+    private EntityMetadata metadata;
+    private FieldNameRewriter rewriter;
+    private String whereClause;
+
+    @Setup
+    public void setUp() {
+        Map<String, FieldMetadata> fields = new LinkedHashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            String fieldName = "fieldName" + i;
+            fields.put(fieldName, new FieldMetadata(fieldName, "field_name_" + i, String.class, false, false));
+        }
+        metadata = new EntityMetadata(Object.class, "wide_entity", fields, null);
+        rewriter = FieldNameRewriter.of(metadata);
+
+        // 典型的组合条件：多个字段引用、命名参数和一个字符串字面量
+        whereClause = "(fieldName1 = :fieldName1 AND fieldName3 > :fieldName3) OR (fieldName5 LIKE :fieldName5"
+                + " AND fieldName7 IN (:fieldName7) AND fieldName9 <> 'fieldName2')";
+    }
+
+    @Benchmark
+    public String regexPerField() {
+        String result = whereClause;
+        for (FieldMetadata field : metadata.getFields().values()) {
+            result = result.replaceAll("\\b" + field.getFieldName() + "\\b", field.getColumnName());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public String singlePassRewriter() {
+        return rewriter.rewrite(whereClause);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FieldNameRewriteBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
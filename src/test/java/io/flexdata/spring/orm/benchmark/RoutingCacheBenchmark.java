@@ -0,0 +1,152 @@
+package io.flexdata.spring.orm.benchmark;
+
+import io.flexdata.spring.orm.routing.config.RoutingCacheManager;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由缓存基准：满容量下的读写混合负载，键空间是容量的两倍，约一半请求未命中并触发淘汰
+ * 对比原来逐个扫描找最久未访问条目的实现与CLOCK实现
+ *
+ * 运行方式：
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main RoutingCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class RoutingCacheBenchmark {
+
+    @Param({"1000", "100000"})
+    private int maxSize;
+
+    private String[] keys;
+    private RoutingCacheManager.RoutingResult result;
+    private RoutingCacheManager cacheManager;
+    private ScanningLruCache scanningCache;
+
+    @Setup
+    public void setUp() {
+        keys = new String[maxSize * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "ds:primary|table:orders|ctx:tenant=" + i + ";";
+        }
+        result = new RoutingCacheManager.RoutingResult("primary", "orders");
+
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        RoutingRuleConfig.CacheConfig cacheConfig = new RoutingRuleConfig.CacheConfig();
+        cacheConfig.setEnabled(true);
+        cacheConfig.setMaxSize(maxSize);
+        config.setCache(cacheConfig);
+        cacheManager = new RoutingCacheManager(config);
+        scanningCache = new ScanningLruCache(maxSize);
+        for (int i = 0; i < maxSize; i++) {
+            cacheManager.put(keys[i], result);
+            scanningCache.put(keys[i], result);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cacheManager.destroy();
+    }
+
+    @Benchmark
+    public Object clockCache() {
+        String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        RoutingCacheManager.RoutingResult cached = cacheManager.get(key);
+        if (cached == null) {
+            cacheManager.put(key, result);
+            return result;
+        }
+        return cached;
+    }
+
+    @Benchmark
+    public Object scanningLru() {
+        String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        RoutingCacheManager.RoutingResult cached = scanningCache.get(key);
+        if (cached == null) {
+            scanningCache.put(key, result);
+            return result;
+        }
+        return cached;
+    }
+
+    /**
+     * 原实现：满容量时遍历全部条目找最久未访问的一个
+     */
+    static final class ScanningLruCache {
+        private final Map<String, Entry> map = new ConcurrentHashMap<>();
+        private final int maxSize;
+
+        ScanningLruCache(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        RoutingCacheManager.RoutingResult get(String key) {
+            Entry entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            entry.lastAccessTime = System.currentTimeMillis();
+            return entry.result;
+        }
+
+        void put(String key, RoutingCacheManager.RoutingResult result) {
+            if (map.size() >= maxSize) {
+                String lruKey = null;
+                long oldest = Long.MAX_VALUE;
+                for (Map.Entry<String, Entry> e : map.entrySet()) {
+                    if (e.getValue().lastAccessTime < oldest) {
+                        oldest = e.getValue().lastAccessTime;
+                        lruKey = e.getKey();
+                    }
+                }
+                if (lruKey != null) {
+                    map.remove(lruKey);
+                }
+            }
+            map.put(key, new Entry(result));
+        }
+
+        private static final class Entry {
+            final RoutingCacheManager.RoutingResult result;
+            volatile long lastAccessTime = System.currentTimeMillis();
+
+            Entry(RoutingCacheManager.RoutingResult result) {
+                this.result = result;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RoutingCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
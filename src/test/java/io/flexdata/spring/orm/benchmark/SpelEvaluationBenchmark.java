@@ -0,0 +1,108 @@
+package io.flexdata.spring.orm.benchmark;
+
+import io.flexdata.spring.orm.routing.context.RoutingContext;
+import io.flexdata.spring.orm.routing.engine.SpelExpressionEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由条件SpEL评估基准，表达式取自RoutingRuleConfigTest中的自定义规则
+ * 对比原来每次新建评估上下文的解释执行、复用上下文的解释执行以及MIXED编译模式
+ *
+ * 运行方式：
+ * mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main SpelEvaluationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpelEvaluationBenchmark {
+
+    @Param({"#{parameters['userType'] == 'VIP'}", "#{parameters['region'] == 'US'}"})
+    private String condition;
+
+    private RoutingContext context;
+    private SpelExpressionEvaluator interpreted;
+    private SpelExpressionEvaluator compiled;
+    private Expression legacyExpression;
+
+    @Setup
+    public void setUp() {
+        context = RoutingContext.builder()
+                .tableName("user")
+                .operationType(RoutingContext.OperationType.SELECT)
+                .parameter("userType", "VIP")
+                .parameter("region", "EU")
+                .parameter("userId", 12345L)
+                .header("tenant-id", "tenant-a")
+                .build();
+        interpreted = new SpelExpressionEvaluator(SpelCompilerMode.OFF);
+        compiled = new SpelExpressionEvaluator(SpelCompilerMode.MIXED);
+        legacyExpression = new SpelExpressionParser()
+                .parseExpression(condition.substring(2, condition.length() - 1));
+    }
+
+    @Benchmark
+    public Object legacyPerCallContext() {
+        return legacyExpression.getValue(legacyContext(context));
+    }
+
+    @Benchmark
+    public boolean interpretedReusedContext() {
+        return interpreted.evaluateCondition(condition, context);
+    }
+
+    @Benchmark
+    public boolean compiledReusedContext() {
+        return compiled.evaluateCondition(condition, context);
+    }
+
+    /**
+     * 原实现：每次评估新建上下文并注册全部变量
+     */
+    private static StandardEvaluationContext legacyContext(RoutingContext context) {
+        StandardEvaluationContext evalContext = new StandardEvaluationContext();
+        evalContext.setRootObject(context);
+        evalContext.setVariable("context", context);
+        evalContext.setVariable("tableName", context.getTableName());
+        evalContext.setVariable("operationType", context.getOperationType());
+        evalContext.setVariable("parameters", context.getParameters());
+        evalContext.setVariable("headers", context.getHeaders());
+        evalContext.setVariable("userInfo", context.getUserInfo());
+        evalContext.setVariable("attributes", context.getAttributes());
+        evalContext.setVariable("isRead", context.isReadOperation());
+        evalContext.setVariable("isWrite", context.isWriteOperation());
+        evalContext.setVariable("isBatch", context.isBatchOperation());
+        evalContext.setVariable("utils", new SpelExpressionEvaluator.SpelUtils());
+        evalContext.setVariable("random", new java.util.Random());
+        evalContext.setVariable("now", java.time.LocalDateTime.now());
+        return evalContext;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SpelEvaluationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
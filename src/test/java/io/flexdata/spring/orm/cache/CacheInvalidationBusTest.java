@@ -0,0 +1,271 @@
+package io.flexdata.spring.orm.cache;
+
+import io.flexdata.spring.orm.core.cache.CacheInvalidationBus;
+import io.flexdata.spring.orm.core.cache.CacheInvalidationEvent;
+import io.flexdata.spring.orm.core.cache.CacheInvalidationTransport;
+import io.flexdata.spring.orm.core.cache.CacheInvalidationListener;
+import io.flexdata.spring.orm.core.cache.EntityCache;
+import io.flexdata.spring.orm.core.cache.JdbcPollingInvalidationTransport;
+import io.flexdata.spring.orm.core.cache.LoopbackInvalidationTransport;
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.EnhancedSqlGeneratorImpl;
+import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.repository.EnhancedRepositoryImpl;
+import io.flexdata.spring.orm.repository.impl.GenericRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存失效总线测试类
+ * 验证发送端合并、事务内延迟发布，以及回环和数据库轮询两种传输
+ */
+class CacheInvalidationBusTest {
+
+    private EmbeddedDatabase database;
+    private EntityMetadataRegistry metadataRegistry;
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private final List<AutoCloseable> closeables = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        metadataRegistry = new EntityMetadataRegistry();
+        jdbcTemplate = new NamedParameterJdbcTemplate(database);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (AutoCloseable closeable : closeables) {
+            closeable.close();
+        }
+        database.shutdown();
+    }
+
+    @Test
+    void testCoalescing() {
+        RecordingTransport transport = new RecordingTransport();
+        CacheInvalidationBus bus = bus("node-a", transport, 3);
+
+        bus.publish("users", Arrays.asList(1L, 2L));
+        bus.publish("USERS", Collections.singletonList(2L));
+        bus.publish("orders", Collections.singletonList(10L));
+        bus.publishTable("products");
+        bus.publish("products", Collections.singletonList(5L));
+        bus.flush();
+
+        assertEquals(1, transport.batches.size());
+        List<CacheInvalidationEvent> events = transport.batches.get(0);
+        assertEquals(3, events.size());
+        assertEquals("users", events.get(0).getTable());
+        assertEquals(2, events.get(0).getIds().size());
+        assertEquals(1L, events.get(0).getVersion());
+        assertTrue(events.get(2).isWholeTable());
+
+        // 超过主键上限或主键类型无法传输时整表失效
+        bus.publish("users", Arrays.asList(1L, 2L, 3L, 4L));
+        bus.publish("orders", Collections.singletonList(new Object()));
+        bus.flush();
+        events = transport.batches.get(1);
+        assertTrue(events.get(0).isWholeTable());
+        assertEquals(2L, events.get(0).getVersion());
+        assertTrue(events.get(1).isWholeTable());
+
+        // 没有待发送事件时不发送空批次
+        bus.flush();
+        assertEquals(2, transport.batches.size());
+        assertEquals(5, bus.getSentEventCount());
+        assertEquals(2, bus.getSentBatchCount());
+    }
+
+    @Test
+    void testFailedSendIsRetried() {
+        RecordingTransport transport = new RecordingTransport();
+        CacheInvalidationBus bus = bus("node-a", transport, 10);
+
+        transport.failNext = true;
+        bus.publish("users", Collections.singletonList(1L));
+        assertThrows(IllegalStateException.class, bus::flush);
+
+        bus.publish("users", Collections.singletonList(2L));
+        bus.flush();
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(transport.batches.get(0).get(0).getIds()));
+    }
+
+    @Test
+    void testPublishAfterCommitOnly() {
+        RecordingTransport transport = new RecordingTransport();
+        CacheInvalidationBus bus = bus("node-a", transport, 10);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            bus.publishTable("users");
+            status.setRollbackOnly();
+        });
+        bus.flush();
+        assertTrue(transport.batches.isEmpty());
+
+        transactionTemplate.executeWithoutResult(status -> bus.publishTable("users"));
+        bus.flush();
+        assertEquals(1, transport.batches.size());
+    }
+
+    @Test
+    void testLoopbackAcrossNodes() {
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        CacheInvalidationBus busA = bus("node-a", transport, 10);
+        CacheInvalidationBus busB = bus("node-b", transport, 10);
+
+        // 节点A通过仓储写入
+        GenericRepositoryImpl<User, Long> repository = new GenericRepositoryImpl<>(jdbcTemplate,
+                new SqlGenerator(metadataRegistry), metadataRegistry, new RowMapperFactory(metadataRegistry), User.class);
+        repository.setInvalidationBus(busA);
+
+        // 节点B缓存了users表的查询
+        QueryResultCache cacheB = new QueryResultCache(100, 0, TimeUnit.SECONDS);
+        busB.bindQueryResultCache(cacheB);
+        List<CacheInvalidationEvent> received = new ArrayList<>();
+        busB.addListener(received::add);
+        cacheB.get("SELECT * FROM users", null, null, () -> "cached");
+
+        repository.save(new User("alice", null, 30));
+        repository.save(new User("bob", null, 31));
+        busA.flush();
+
+        // 两次写入合并为一个事件，主键类型原样送达
+        assertEquals(1, received.size());
+        assertEquals(Long.class, received.get(0).getIds().iterator().next().getClass());
+        assertEquals(1, cacheB.getTableVersion("users"));
+        assertEquals(0, busA.getReceivedEventCount());
+        assertEquals("reloaded", cacheB.get("SELECT * FROM users", null, null, () -> "reloaded"));
+    }
+
+    @Test
+    void testJdbcPollingEvictsEntityCache() {
+        jdbcTemplate.getJdbcTemplate().execute("CREATE TABLE orm_cache_invalidation ("
+                + "id BIGINT AUTO_INCREMENT PRIMARY KEY, node_id VARCHAR(64) NOT NULL, "
+                + "payload CLOB NOT NULL, created_at TIMESTAMP NOT NULL)");
+        JdbcPollingInvalidationTransport transportA = transport();
+        JdbcPollingInvalidationTransport transportB = transport();
+        CacheInvalidationBus busA = bus("node-a", transportA, 10);
+        CacheInvalidationBus busB = bus("node-b", transportB, 10);
+
+        EnhancedRepositoryImpl<User, Long> repositoryA = enhancedRepository();
+        EnhancedRepositoryImpl<User, Long> repositoryB = enhancedRepository();
+        repositoryA.setInvalidationBus(busA);
+        repositoryB.setInvalidationBus(busB);
+        repositoryB.enableCache(new EntityCache(100, 0, TimeUnit.SECONDS));
+
+        User user = repositoryA.save(new User("alice", null, 30));
+        busA.flush();
+        transportB.poll();
+        assertEquals(30, repositoryB.findById(user.getId()).get().getAge());
+
+        // 节点A更新后，节点B的实体缓存被淘汰，读到新值
+        user.setAge(31);
+        repositoryA.save(user);
+        assertEquals(30, repositoryB.findById(user.getId()).get().getAge());
+        busA.flush();
+        transportB.poll();
+        assertEquals(31, repositoryB.findById(user.getId()).get().getAge());
+        assertEquals(2, busB.getReceivedEventCount());
+    }
+
+    @Test
+    void testJdbcPollingRevisitsGaps() {
+        jdbcTemplate.getJdbcTemplate().execute("CREATE TABLE orm_cache_invalidation ("
+                + "id BIGINT PRIMARY KEY, node_id VARCHAR(64) NOT NULL, "
+                + "payload CLOB NOT NULL, created_at TIMESTAMP NOT NULL)");
+        JdbcPollingInvalidationTransport transport = transport();
+        List<CacheInvalidationEvent> received = new ArrayList<>();
+        transport.start(received::add);
+
+        // 主键3先提交，主键1、2稍后才提交
+        insertRow(3, "c");
+        transport.poll();
+        assertEquals(1, received.size());
+        assertEquals(2, transport.getPendingGapCount());
+
+        insertRow(1, "a");
+        insertRow(2, "b");
+        transport.poll();
+        assertEquals(3, received.size());
+        assertEquals(0, transport.getPendingGapCount());
+
+        // 已处理的行不会重复投递
+        transport.poll();
+        assertEquals(3, received.size());
+    }
+
+    private void insertRow(long id, String table) {
+        String payload = "[{\"n\":\"node-x\",\"t\":\"" + table + "\",\"v\":1}]";
+        jdbcTemplate.getJdbcTemplate().update(
+                "INSERT INTO orm_cache_invalidation (id, node_id, payload, created_at) VALUES (?, 'node-x', ?, CURRENT_TIMESTAMP)",
+                id, payload);
+    }
+
+    private JdbcPollingInvalidationTransport transport() {
+        JdbcPollingInvalidationTransport transport = new JdbcPollingInvalidationTransport(jdbcTemplate,
+                JdbcPollingInvalidationTransport.DEFAULT_TABLE_NAME, 60_000, 10_000, TimeUnit.MINUTES.toMillis(10));
+        closeables.add(transport);
+        return transport;
+    }
+
+    private CacheInvalidationBus bus(String nodeId, CacheInvalidationTransport transport, int maxIds) {
+        // 发送周期足够长，测试中显式调用flush
+        CacheInvalidationBus bus = new CacheInvalidationBus(nodeId, transport, 60_000, maxIds);
+        bus.start();
+        closeables.add(bus);
+        return bus;
+    }
+
+    private EnhancedRepositoryImpl<User, Long> enhancedRepository() {
+        return new EnhancedRepositoryImpl<>(User.class, Long.class, "users", "id", jdbcTemplate,
+                new EnhancedSqlGeneratorImpl(metadataRegistry, new SqlGenerator(metadataRegistry)),
+                new RowMapperFactory(metadataRegistry), metadataRegistry);
+    }
+
+    private static class RecordingTransport implements CacheInvalidationTransport {
+
+        private final List<List<CacheInvalidationEvent>> batches = new ArrayList<>();
+        private boolean failNext;
+
+        @Override
+        public void start(CacheInvalidationListener listener) {
+        }
+
+        @Override
+        public void send(List<CacheInvalidationEvent> events) {
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("network down");
+            }
+            batches.add(events);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
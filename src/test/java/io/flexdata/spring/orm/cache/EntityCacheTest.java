@@ -0,0 +1,209 @@
+package io.flexdata.spring.orm.cache;
+
+import io.flexdata.spring.orm.core.cache.EntityCache;
+import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.EnhancedCriteriaBuilder;
+import io.flexdata.spring.orm.core.sql.EnhancedSqlGeneratorImpl;
+import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.core.table.TableContext;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.repository.EnhancedRepositoryImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 一级实体缓存测试类
+ * 验证缓存的命中、淘汰、指标以及仓储写操作对缓存的维护
+ */
+class EntityCacheTest {
+
+    private EmbeddedDatabase database;
+    private EnhancedRepositoryImpl<User, Long> repository;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        EntityMetadataRegistry metadataRegistry = new EntityMetadataRegistry();
+        SqlGenerator sqlGenerator = new SqlGenerator(metadataRegistry);
+        repository = new EnhancedRepositoryImpl<>(User.class, Long.class, "users", "id",
+                new NamedParameterJdbcTemplate(database), new EnhancedSqlGeneratorImpl(metadataRegistry, sqlGenerator),
+                new RowMapperFactory(metadataRegistry), metadataRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void testSizeEvictionAndMetrics() {
+        EntityCache cache = new EntityCache(2, 0, TimeUnit.SECONDS);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        cache.bindTo(meterRegistry, "entities");
+
+        cache.put(User.class, 1L, new User("a", null, 1));
+        cache.put(User.class, 2L, new User("b", null, 2));
+        assertNotNull(cache.get(User.class, 1L));
+        cache.put(User.class, 3L, new User("c", null, 3));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getStats().evictionCount());
+        assertNull(cache.get(String.class, 1L));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.evictions").functionCounter().count());
+    }
+
+    @Test
+    void testTtlExpiry() throws InterruptedException {
+        EntityCache cache = new EntityCache(100, 50, TimeUnit.MILLISECONDS);
+        cache.put(User.class, 1L, new User("a", null, 1));
+        assertNotNull(cache.get(User.class, 1L));
+
+        Thread.sleep(120);
+        assertNull(cache.get(User.class, 1L));
+    }
+
+    @Test
+    void testEntriesAreSeparatedByRoute() {
+        EntityCache cache = new EntityCache();
+        User tenantA = new User("a", null, 1);
+        User tenantB = new User("b", null, 2);
+        DataSourceContext.executeWithDataSource("tenant_a", () -> cache.put(User.class, 1L, tenantA));
+        DataSourceContext.executeWithDataSource("tenant_b", () -> cache.put(User.class, 1L, tenantB));
+        TableContext.executeWithTableMapping("users", "users_1", () -> cache.put(User.class, 1L, tenantB));
+
+        assertSame(tenantA, DataSourceContext.executeWithDataSource("tenant_a", () -> cache.get(User.class, 1L)));
+        assertSame(tenantB, DataSourceContext.executeWithDataSource("tenant_b", () -> cache.get(User.class, 1L)));
+        assertNull(cache.get(User.class, 1L));
+        assertNull(TableContext.executeWithTableMapping("users", "users_2", () -> cache.get(User.class, 1L)));
+
+        // 按主键淘汰时清除所有路由下的实体
+        cache.evict(User.class, 1L);
+        assertNull(DataSourceContext.executeWithDataSource("tenant_a", () -> cache.get(User.class, 1L)));
+        assertNull(TableContext.executeWithTableMapping("users", "users_1", () -> cache.get(User.class, 1L)));
+    }
+
+    @Test
+    void testRepositoryReadsThroughCache() {
+        EntityCache cache = new EntityCache();
+        repository.enableCache(cache);
+
+        User user = repository.save(new User("alice", null, 30));
+        assertSame(user, repository.findById(user.getId()).get());
+        assertTrue(repository.existsById(user.getId()));
+        assertEquals(2, cache.getStats().hitCount());
+
+        // 按条件更新无法确定受影响的主键，清除整个实体类
+        repository.updateByCriteria(Collections.singletonMap("age", 40), EnhancedCriteriaBuilder.eq("user_name", "alice"));
+        assertEquals(0, cache.size());
+        assertEquals(40, repository.findById(user.getId()).get().getAge());
+        assertEquals(1, cache.size());
+
+        repository.deleteById(user.getId());
+        assertEquals(0, cache.size());
+        assertFalse(repository.findById(user.getId()).isPresent());
+        assertFalse(repository.existsById(user.getId()));
+    }
+
+    @Test
+    void testTransactionalWritesAreCachedAfterCommit() {
+        EntityCache cache = new EntityCache();
+        repository.enableCache(cache);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+        User user = repository.save(new User("carol", null, 30));
+        Long id = user.getId();
+
+        // 事务中写入后立即淘汰旧值，提交前共享缓存中没有未提交的实体，回滚后也不会放入
+        transactionTemplate.executeWithoutResult(status -> {
+            user.setAge(31);
+            repository.save(user);
+            assertNull(cache.get(User.class, id));
+            status.setRollbackOnly();
+        });
+        assertNull(cache.get(User.class, id));
+        assertEquals(30, repository.findById(id).get().getAge());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            user.setAge(32);
+            repository.save(user);
+            assertNull(cache.get(User.class, id));
+        });
+        assertSame(user, cache.get(User.class, id));
+        assertEquals(32, repository.findById(id).get().getAge());
+    }
+
+    @Test
+    void testRowLoadedBeforeCommittedWriteIsNotCached() {
+        EntityCache cache = new EntityCache();
+        User stale = new User("stale", null, 1);
+        User committed = new User("committed", null, 2);
+
+        // 读取期间另一个事务提交并放入了新行，读到的旧行不能覆盖它
+        long stamp = cache.stamp(User.class, 1L);
+        cache.putAfterCommit(User.class, 1L, committed);
+        cache.putLoaded(User.class, 1L, stale, stamp);
+        assertSame(committed, cache.get(User.class, 1L));
+
+        // 读取期间主键被淘汰，读到的提交前的行不再放入
+        stamp = cache.stamp(User.class, 2L);
+        cache.evict(User.class, 2L);
+        cache.putLoaded(User.class, 2L, stale, stamp);
+        assertNull(cache.get(User.class, 2L));
+
+        stamp = cache.stamp(User.class, 3L);
+        cache.putLoaded(User.class, 3L, stale, stamp);
+        assertSame(stale, cache.get(User.class, 3L));
+    }
+
+    @Test
+    void testTransactionalDeletesEvictAgainAfterCommit() {
+        EntityCache cache = new EntityCache();
+        repository.enableCache(cache);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+        User user = repository.save(new User("dave", null, 40));
+        Long id = user.getId();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.deleteById(id);
+            assertNull(cache.get(User.class, id));
+            // 事务进行期间其他线程仍能读到提交前的行并放入缓存
+            cache.put(User.class, id, user);
+            repository.deleteByCriteria(EnhancedCriteriaBuilder.eq("user_name", "nobody"));
+            cache.put(User.class, id, user);
+        });
+        assertNull(cache.get(User.class, id));
+        assertFalse(repository.findById(id).isPresent());
+    }
+
+    @Test
+    void testDisableCacheDropsEntries() {
+        repository.enableCache();
+        User user = repository.save(new User("bob", null, 20));
+        EntityCache cache = repository.getEntityCache();
+        assertEquals(1, cache.size());
+
+        repository.disableCache();
+        assertNull(repository.getEntityCache());
+        assertEquals(0, cache.size());
+        assertTrue(repository.findById(user.getId()).isPresent());
+    }
+}
@@ -0,0 +1,224 @@
+package io.flexdata.spring.orm.cache;
+
+import io.flexdata.spring.orm.core.cache.QueryResultCache;
+import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.interfaces.TypeSafeCriteria;
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.core.table.TableContext;
+import io.flexdata.spring.orm.criteria.TypeSafeCriteriaBuilder;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.repository.impl.GenericRepositoryImpl;
+import io.flexdata.spring.orm.template.TypeSafeOrmTemplate;
+import io.flexdata.spring.orm.template.impl.BatchOrmOperations;
+import io.flexdata.spring.orm.template.impl.CachedOrmTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询结果缓存测试类
+ * 验证SQL规范化、按表版本失效以及各写入途径对缓存的失效
+ */
+class QueryResultCacheTest {
+
+    private EmbeddedDatabase database;
+    private EntityMetadataRegistry metadataRegistry;
+    private SqlGenerator sqlGenerator;
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private QueryResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        metadataRegistry = new EntityMetadataRegistry();
+        sqlGenerator = new SqlGenerator(metadataRegistry);
+        jdbcTemplate = new NamedParameterJdbcTemplate(database);
+        cache = new QueryResultCache(100, 0, TimeUnit.SECONDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void testNormalization() {
+        assertEquals("SELECT * FROM users WHERE user_name = 'a  b'",
+                QueryResultCache.normalizeSql("  SELECT *\n  FROM users\tWHERE user_name = 'a  b' "));
+        assertEquals("users", QueryResultCache.normalizeTable("public.\"USERS\""));
+
+        // 空白不同、参数顺序不同的同一查询命中同一条目
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("SELECT * FROM users WHERE a = :a AND b = :b", params("a", 1, "b", 2), null, loads::incrementAndGet);
+        cache.get("SELECT *  FROM users\nWHERE a = :a AND b = :b", params("b", 2, "a", 1), null, loads::incrementAndGet);
+        assertEquals(1, loads.get());
+
+        // 参数值不同则是不同条目
+        cache.get("SELECT * FROM users WHERE a = :a AND b = :b", params("a", 1, "b", 3), null, loads::incrementAndGet);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testEntriesAreSeparatedByRoute() {
+        String sql = "SELECT COUNT(*) FROM users";
+        assertEquals("a", DataSourceContext.executeWithDataSource("tenant_a", () -> cache.get(sql, null, null, () -> "a")));
+        assertEquals("b", DataSourceContext.executeWithDataSource("tenant_b", () -> cache.get(sql, null, null, () -> "b")));
+        assertEquals("shard", TableContext.executeWithTableMapping("users", "users_1",
+                () -> cache.get(sql, null, null, () -> "shard")));
+        assertEquals("default", cache.get(sql, null, null, () -> "default"));
+
+        assertEquals("a", DataSourceContext.executeWithDataSource("tenant_a", () -> cache.get(sql, null, null, () -> "x")));
+        assertEquals("shard", TableContext.executeWithTableMapping("users", "users_1",
+                () -> cache.get(sql, null, null, () -> "x")));
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    void testTableVersionInvalidation() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        cache.bindTo(meterRegistry, "queries");
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("SELECT * FROM users u JOIN orders o ON u.id = o.user_id", null, null, loads::incrementAndGet);
+        cache.get("SELECT * FROM orders", null, null, loads::incrementAndGet);
+        cache.get("SELECT * FROM products", null, null, loads::incrementAndGet);
+        assertEquals(3, loads.get());
+
+        cache.invalidateTable("ORDERS");
+        assertEquals(1, cache.getTableVersion("orders"));
+
+        // 依赖orders的两个条目过期，products不受影响
+        cache.get("SELECT * FROM users u JOIN orders o ON u.id = o.user_id", null, null, loads::incrementAndGet);
+        cache.get("SELECT * FROM orders", null, null, loads::incrementAndGet);
+        cache.get("SELECT * FROM products", null, null, loads::incrementAndGet);
+        assertEquals(5, loads.get());
+        assertEquals(2, cache.getStaleCount());
+        assertEquals(1, cache.getHitCount());
+
+        cache.invalidateForSql("UPDATE products SET price = 1");
+        cache.get("SELECT * FROM products", null, null, loads::incrementAndGet);
+        assertEquals(6, loads.get());
+
+        // 无法识别表名时全部失效
+        cache.invalidateForSql("CALL refresh_all()");
+        assertEquals(0, cache.size());
+        assertEquals(1.0, meterRegistry.get("orm.query.cache.hits").functionCounter().count());
+    }
+
+    @Test
+    void testTransactionBypassesCacheForTablesItWrote() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("SELECT * FROM products", null, null, loads::incrementAndGet);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            cache.invalidateTable("USERS");
+            // 读取本事务写过的表：每次都访问数据库，结果不放入共享缓存
+            cache.get("SELECT * FROM users", null, null, loads::incrementAndGet);
+            cache.get("SELECT * FROM users", null, null, loads::incrementAndGet);
+            assertEquals(3, loads.get());
+            assertEquals(1, cache.size());
+            assertEquals(2, cache.getBypassCount());
+
+            // 其他表照常命中
+            cache.get("SELECT * FROM products", null, null, loads::incrementAndGet);
+            assertEquals(3, loads.get());
+        });
+
+        // 事务结束后恢复缓存
+        cache.get("SELECT * FROM users", null, null, loads::incrementAndGet);
+        cache.get("SELECT * FROM users", null, null, loads::incrementAndGet);
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getBypassCount());
+
+        // 事务中全部失效后所有查询都绕过缓存
+        transactionTemplate.executeWithoutResult(status -> {
+            cache.invalidateForSql("CALL refresh_all()");
+            cache.get("SELECT * FROM products", null, null, loads::incrementAndGet);
+            assertEquals(0, cache.size());
+        });
+        assertEquals(5, loads.get());
+    }
+
+    @Test
+    void testRepositoryWritesInvalidate() {
+        GenericRepositoryImpl<User, Long> repository = new GenericRepositoryImpl<>(jdbcTemplate, sqlGenerator,
+                metadataRegistry, new RowMapperFactory(metadataRegistry), User.class);
+        repository.setQueryResultCache(cache);
+        String sql = "SELECT COUNT(*) FROM users";
+
+        assertEquals(0L, countCached(sql));
+        repository.save(new User("alice", null, 30));
+        assertEquals(1L, countCached(sql));
+        assertEquals(1L, countCached(sql));
+        assertEquals(1, cache.getHitCount());
+
+        // 批量操作写入同一张表
+        BatchOrmOperations batchOrmOperations = new BatchOrmOperations(jdbcTemplate, metadataRegistry);
+        batchOrmOperations.setQueryResultCache(cache);
+        batchOrmOperations.batchInsert(Arrays.asList(new User("bob", null, 20), new User("carol", null, 25)));
+        assertEquals(3L, countCached(sql));
+
+        repository.deleteByCriteria(null);
+        assertEquals(0L, countCached(sql));
+    }
+
+    @Test
+    void testCachedOrmTemplate() {
+        TypeSafeOrmTemplate ormTemplate = new TypeSafeOrmTemplate(metadataRegistry, sqlGenerator, jdbcTemplate,
+                new RowMapperFactory(metadataRegistry));
+        ormTemplate.setQueryResultCache(cache);
+        CachedOrmTemplate cachedOrmTemplate = new CachedOrmTemplate(ormTemplate, cache);
+
+        User alice = cachedOrmTemplate.saveAndEvictCache(new User("alice", null, 30));
+        TypeSafeCriteria<User> adults = TypeSafeCriteriaBuilder.<User>create().gte(User::getAge, 18);
+        assertEquals(1, cachedOrmTemplate.findByCriteriaCached(User.class, adults).size());
+        Optional<User> found = cachedOrmTemplate.findByIdCached(User.class, alice.getId());
+        assertTrue(found.isPresent());
+        assertSame(found, cachedOrmTemplate.findByIdCached(User.class, alice.getId()));
+
+        // 绕过CachedOrmTemplate直接通过模板写入同样使缓存失效
+        ormTemplate.save(new User("bob", null, 40));
+        List<User> result = cachedOrmTemplate.findByCriteriaCached(User.class, adults);
+        assertEquals(2, result.size());
+
+        cachedOrmTemplate.deleteByIdAndEvictCache(User.class, alice.getId());
+        assertFalse(cachedOrmTemplate.findByIdCached(User.class, alice.getId()).isPresent());
+        assertEquals(1, cachedOrmTemplate.findByCriteriaCached(User.class, adults).size());
+    }
+
+    private Long countCached(String sql) {
+        return cache.get(sql, Collections.emptyMap(), null,
+                () -> jdbcTemplate.queryForObject(sql, Collections.emptyMap(), Long.class));
+    }
+
+    private static java.util.Map<String, Object> params(Object... keyValues) {
+        java.util.Map<String, Object> params = new java.util.LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            params.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return params;
+    }
+}
@@ -0,0 +1,180 @@
+package io.flexdata.spring.orm.datasource;
+
+import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.datasource.ScatterGatherExecutor;
+import io.flexdata.spring.orm.core.datasource.ScatterGatherResult;
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
+import io.flexdata.spring.orm.core.table.TableContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多数据源并行执行测试类
+ * 验证并行分发的耗时、线程上下文传递、超时和两种失败策略下对未完成任务的取消，以及退化为顺序执行的场景
+ */
+class ScatterGatherExecutorTest {
+
+    private static final List<String> SHARDS = Arrays.asList("shard0", "shard1", "shard2", "shard3",
+            "shard4", "shard5", "shard6", "shard7");
+
+    private ScatterGatherExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ScatterGatherExecutor(8, 16, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        DataSourceContext.clearDataSource();
+        DataSourceContext.clearDataSourceMappings();
+        TableContext.clearTableMappings();
+        TableContext.clearTable();
+    }
+
+    @Test
+    void testFanOutCostsMaxNotSumOfLatencies() {
+        long start = System.nanoTime();
+        List<String> results = executor.execute(SHARDS, () -> {
+            sleep(200);
+            return DataSourceContext.getDataSource();
+        }).getResults();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(SHARDS, results);
+        assertTrue(elapsedMillis < 800, "fan-out took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void testContextPropagatesToWorkersAndIsRestored() {
+        DataSourceContext.setDataSource("caller");
+        DataSourceContext.setDataSourceMapping("orders", "orders_ds");
+        TableContext.setTableMapping("user", "user_2024");
+        TableContext.setTable("user");
+        String callerThread = Thread.currentThread().getName();
+
+        ScatterGatherResult<String> result = executor.execute(SHARDS, () -> {
+            assertNotEquals(callerThread, Thread.currentThread().getName());
+            return DataSourceContext.getDataSource() + "|" + DataSourceContext.getDataSourceMapping("orders")
+                    + "|" + TableContext.getTableMapping("user") + "|" + TableContext.getCurrentTable();
+        });
+
+        assertEquals("shard3|orders_ds|user_2024|user", result.getResultsByDataSource().get("shard3"));
+        assertFalse(result.isPartial());
+        assertEquals("caller", DataSourceContext.getDataSource());
+        assertEquals("user_2024", TableContext.getTableMapping("user"));
+    }
+
+    @Test
+    void testBestEffortTimesOutAndCancelsStragglers() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long start = System.nanoTime();
+        ScatterGatherResult<String> result = executor.execute(SHARDS, () -> {
+            String shard = DataSourceContext.getDataSource();
+            if ("shard5".equals(shard)) {
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+            return shard;
+        }, 300, ScatterGatherExecutor.FailurePolicy.BEST_EFFORT);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < 2000, "timed out after " + elapsedMillis + " ms");
+        assertTrue(result.isPartial());
+        assertEquals(7, result.getResults().size());
+        assertFalse(result.getResultsByDataSource().containsKey("shard5"));
+        assertTrue(result.getFailures().get("shard5") instanceof QueryTimeoutException);
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFailFastRethrowsAndCancelsRemainingShards() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("shard0 is down");
+        long start = System.nanoTime();
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+                executor.execute(Arrays.asList("shard0", "shard1"), () -> {
+                    if ("shard0".equals(DataSourceContext.getDataSource())) {
+                        throw failure;
+                    }
+                    try {
+                        Thread.sleep(5000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return null;
+                }));
+
+        assertSame(failure, thrown);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testBestEffortCollectsFailures() {
+        ScatterGatherResult<String> result = executor.execute(SHARDS, () -> {
+            String shard = DataSourceContext.getDataSource();
+            if (shard.endsWith("1") || shard.endsWith("6")) {
+                throw new IllegalArgumentException(shard);
+            }
+            return shard;
+        }, 0, ScatterGatherExecutor.FailurePolicy.BEST_EFFORT);
+
+        assertEquals(Arrays.asList("shard0", "shard2", "shard3", "shard4", "shard5", "shard7"), result.getResults());
+        assertEquals(2, result.getFailures().size());
+        assertEquals("shard6", result.getFailures().get("shard6").getMessage());
+    }
+
+    @Test
+    void testNestedAndTransactionalCallsRunSequentially() {
+        // 工作线程内的嵌套分发在该工作线程上顺序执行
+        List<List<String>> nested = executor.execute(Arrays.asList("a", "b"), () -> {
+            String worker = Thread.currentThread().getName();
+            return executor.execute(Arrays.asList("x", "y"), () -> {
+                assertEquals(worker, Thread.currentThread().getName());
+                return DataSourceContext.getDataSource();
+            }).getResults();
+        }).getResults();
+        assertEquals(Arrays.asList(Arrays.asList("x", "y"), Arrays.asList("x", "y")), nested);
+
+        // 事务同步中的连接绑定在调用线程上，不能分发到其他线程；同一数据源上的多张分表顺序执行
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            String callerThread = Thread.currentThread().getName();
+            List<ShardTarget> tables = Arrays.asList(new ShardTarget("shard0", "users", "users_0"),
+                    new ShardTarget("shard0", "users", "users_1"));
+            List<String> threads = executor.executeOnShards(tables, shard -> Thread.currentThread().getName(), 0,
+                    ScatterGatherExecutor.FailurePolicy.FAIL_FAST).getResults();
+            assertEquals(Arrays.asList(callerThread, callerThread), threads);
+
+            // 跨多个数据源时绑定的连接会被所有数据源复用，直接拒绝
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> executor.execute(SHARDS, () -> Thread.currentThread().getName()));
+            assertTrue(e.getMessage().contains("inside a transaction"));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
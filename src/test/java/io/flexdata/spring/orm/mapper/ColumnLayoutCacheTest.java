@@ -0,0 +1,130 @@
+package io.flexdata.spring.orm.mapper;
+
+import io.flexdata.spring.orm.core.mapper.ColumnLayoutCache;
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.example.entiry.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ColumnLayoutCache测试类
+ * 验证元数据读取次数不随行数和执行次数增长
+ */
+class ColumnLayoutCacheTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private RowMapperFactory rowMapperFactory;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        rowMapperFactory = new RowMapperFactory(new EntityMetadataRegistry());
+
+        for (int i = 0; i < 50; i++) {
+            jdbcTemplate.update("INSERT INTO users (user_name, email, age) VALUES (?, ?, ?)",
+                    "user" + i, "user" + i + "@example.com", 20 + i);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void testMetadataReadOncePerSql() {
+        String sql = "SELECT * FROM users ORDER BY id";
+        ColumnLayoutCache cache = rowMapperFactory.getLayoutCache();
+
+        for (int i = 0; i < 3; i++) {
+            List<User> users = jdbcTemplate.query(sql, rowMapperFactory.getRowMapper(User.class, sql));
+            assertEquals(50, users.size());
+            assertEquals("user0", users.get(0).getUserName());
+            assertEquals(20, users.get(0).getAge());
+        }
+
+        assertEquals(1, cache.getMetadataReadCount(), "同一SQL只应读取一次元数据");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testCompiledMapperUsesLayoutCache() {
+        rowMapperFactory.setEnableCompiledMapper(true);
+        String sql = "SELECT id, user_name FROM users";
+        ColumnLayoutCache cache = rowMapperFactory.getLayoutCache();
+
+        jdbcTemplate.query(sql, rowMapperFactory.getRowMapper(User.class, sql));
+        List<User> users = jdbcTemplate.query(sql, rowMapperFactory.getRowMapper(User.class, sql));
+
+        assertEquals(50, users.size());
+        assertNull(users.get(0).getEmail());
+        assertEquals(1, cache.getMetadataReadCount());
+        assertEquals(0.5, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    void testColumnOrderChangeIsDetectedOnHit() {
+        String sql = "SELECT * FROM users ORDER BY id";
+        ColumnLayoutCache cache = rowMapperFactory.getLayoutCache();
+        jdbcTemplate.query(sql, rowMapperFactory.getRowMapper(User.class, sql));
+
+        // 列数不变，email移到最后一列
+        jdbcTemplate.execute("ALTER TABLE users ADD COLUMN email2 VARCHAR(255)");
+        jdbcTemplate.execute("UPDATE users SET email2 = email");
+        jdbcTemplate.execute("ALTER TABLE users DROP COLUMN email");
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN email2 RENAME TO email");
+
+        List<User> users = jdbcTemplate.query(sql, rowMapperFactory.getRowMapper(User.class, sql));
+        assertEquals("user0@example.com", users.get(0).getEmail());
+        assertEquals(20, users.get(0).getAge());
+        assertEquals(2, cache.getMetadataReadCount());
+
+        jdbcTemplate.query(sql, rowMapperFactory.getRowMapper(User.class, sql));
+        assertEquals(2, cache.getMetadataReadCount(), "重新读取的布局应替换缓存");
+    }
+
+    @Test
+    void testLeastRecentlyUsedSqlIsEvicted() {
+        ColumnLayoutCache cache = new ColumnLayoutCache(2);
+        String[] sqls = {"SELECT id FROM users", "SELECT email FROM users", "SELECT age FROM users"};
+        for (String sql : sqls) {
+            jdbcTemplate.query(sql, rs -> {
+                cache.resolve(sql, rs);
+            });
+        }
+
+        assertEquals(2, cache.size());
+        jdbcTemplate.query(sqls[2], rs -> {
+            cache.resolve(sqls[2], rs);
+        });
+        assertEquals(1, cache.getHitCount(), "新SQL在容量满后仍应被缓存");
+    }
+
+    @Test
+    void testClearCache() {
+        String sql = "SELECT * FROM users";
+        jdbcTemplate.query(sql, rowMapperFactory.getRowMapper(User.class, sql));
+        assertEquals(1, rowMapperFactory.getLayoutCache().size());
+
+        rowMapperFactory.clearCache();
+        assertEquals(0, rowMapperFactory.getLayoutCache().size());
+    }
+}
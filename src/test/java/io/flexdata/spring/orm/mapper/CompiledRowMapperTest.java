@@ -0,0 +1,122 @@
+package io.flexdata.spring.orm.mapper;
+
+import io.flexdata.spring.orm.core.mapper.CompiledRowMapper;
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.mapper.UniversalRowMapper;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.example.entiry.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CompiledRowMapper测试类
+ * 验证预编译映射计划的映射结果与复用
+ */
+class CompiledRowMapperTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private EntityMetadataRegistry metadataRegistry;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        metadataRegistry = new EntityMetadataRegistry();
+
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        jdbcTemplate.update("INSERT INTO users (user_name, email, age, created_at, updated_at) VALUES (?, ?, ?, ?, ?)",
+                "alice", "alice@example.com", 30, now, now);
+        jdbcTemplate.update("INSERT INTO users (user_name, email, age, created_at, updated_at) VALUES (?, ?, ?, ?, ?)",
+                "bob", null, null, now, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void testMapRows() {
+        CompiledRowMapper<User> mapper = new CompiledRowMapper<>(User.class, metadataRegistry);
+        List<User> users = jdbcTemplate.query("SELECT * FROM users ORDER BY id", mapper);
+
+        assertEquals(2, users.size());
+        User alice = users.get(0);
+        assertNotNull(alice.getId());
+        assertEquals("alice", alice.getUserName());
+        assertEquals("alice@example.com", alice.getEmail());
+        assertEquals(30, alice.getAge());
+        assertEquals(LocalDateTime.of(2024, 1, 1, 12, 0), alice.getCreatedAt());
+
+        User bob = users.get(1);
+        assertEquals("bob", bob.getUserName());
+        assertNull(bob.getEmail());
+        assertNull(bob.getAge());
+        assertNull(bob.getUpdatedAt());
+    }
+
+    @Test
+    void testSameResultAsUniversalMapper() {
+        String sql = "SELECT * FROM users ORDER BY id";
+        List<User> compiled = jdbcTemplate.query(sql, new CompiledRowMapper<>(User.class, metadataRegistry));
+        List<User> universal = jdbcTemplate.query(sql, new UniversalRowMapper<>(User.class, metadataRegistry));
+
+        assertEquals(universal.size(), compiled.size());
+        for (int i = 0; i < compiled.size(); i++) {
+            assertEquals(universal.get(i).getId(), compiled.get(i).getId());
+            assertEquals(universal.get(i).getUserName(), compiled.get(i).getUserName());
+            assertEquals(universal.get(i).getEmail(), compiled.get(i).getEmail());
+            assertEquals(universal.get(i).getAge(), compiled.get(i).getAge());
+            assertEquals(universal.get(i).getCreatedAt(), compiled.get(i).getCreatedAt());
+        }
+    }
+
+    @Test
+    void testPlanReusedPerColumnLayout() {
+        CompiledRowMapper<User> mapper = new CompiledRowMapper<>(User.class, metadataRegistry);
+
+        jdbcTemplate.query("SELECT * FROM users", mapper);
+        jdbcTemplate.query("SELECT * FROM users WHERE age > 10", mapper);
+        assertEquals(1, mapper.getPlanCount(), "相同列布局应复用同一个映射计划");
+
+        // 只查询部分列时生成新的计划，未选择的列保持为null
+        List<User> partial = jdbcTemplate.query("SELECT id, user_name FROM users ORDER BY id", mapper);
+        assertEquals(2, mapper.getPlanCount());
+        assertEquals("alice", partial.get(0).getUserName());
+        assertNull(partial.get(0).getEmail());
+
+        mapper.clearPlans();
+        assertEquals(0, mapper.getPlanCount());
+    }
+
+    @Test
+    void testFactoryCompiledMode() {
+        RowMapperFactory factory = new RowMapperFactory(metadataRegistry);
+        assertFalse(factory.isCompiledMapperEnabled());
+
+        factory.setEnableCompiledMapper(true);
+        RowMapper<User> mapper = factory.getRowMapper(User.class);
+        assertTrue(mapper instanceof CompiledRowMapper);
+        assertSame(mapper, factory.getRowMapper(User.class));
+
+        // 关闭通用RowMapper时不使用预编译模式
+        factory.setEnableUniversalMapper(false);
+        assertFalse(factory.getRowMapper(User.class) instanceof CompiledRowMapper);
+    }
+}
@@ -0,0 +1,77 @@
+package io.flexdata.spring.orm.metadata;
+
+import io.flexdata.spring.orm.core.metadata.EntityMetadata;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.metadata.FieldMetadata;
+import io.flexdata.spring.orm.example.entiry.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EntityMetadataRegistry测试类
+ * 验证构建元数据时生成的属性访问器
+ */
+class EntityMetadataRegistryTest {
+
+    private EntityMetadataRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new EntityMetadataRegistry();
+    }
+
+    @Test
+    void testAccessorsWithPublicAccessors() {
+        // 公开的getter/setter走生成类路径
+        EntityMetadata metadata = registry.getMetadata(User.class);
+        User user = new User("alice", "alice@example.com", 30);
+
+        FieldMetadata userName = metadata.getFields().get("userName");
+        assertNotNull(userName.getAccessor());
+        assertEquals("alice", userName.getValue(user));
+
+        userName.setValue(user, "bob");
+        assertEquals("bob", user.getUserName());
+
+        FieldMetadata id = metadata.getIdFieldMetadata();
+        assertEquals("id", id.getFieldName());
+        id.setValue(user, 42L);
+        assertEquals(42L, user.getId());
+        assertEquals(42L, id.getValue(user));
+    }
+
+    @Test
+    void testAccessorsWithoutAccessorMethods() {
+        // 私有类、没有getter/setter时退回到字段MethodHandle
+        EntityMetadata metadata = registry.getMetadata(PlainEntity.class);
+        PlainEntity entity = new PlainEntity();
+
+        FieldMetadata count = metadata.getFields().get("count");
+        count.setValue(entity, 7);
+        assertEquals(7, entity.count);
+        assertEquals(7, count.getValue(entity));
+
+        FieldMetadata id = metadata.getIdFieldMetadata();
+        id.setValue(entity, 1L);
+        assertEquals(1L, id.getValue(entity));
+        assertNull(metadata.getFields().get("name").getValue(entity));
+    }
+
+    @Test
+    void testSetIncompatibleValue() {
+        EntityMetadata metadata = registry.getMetadata(User.class);
+        FieldMetadata age = metadata.getFields().get("age");
+
+        assertThrows(RuntimeException.class, () -> age.setValue(new User(), "not a number"));
+    }
+
+    private static class PlainEntity {
+        @Id
+        private Long id;
+        private String name;
+        private int count;
+    }
+}
@@ -0,0 +1,187 @@
+package io.flexdata.spring.orm.repository;
+
+import io.flexdata.spring.orm.core.datasource.DataSourceStats;
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
+import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.sql.EnhancedCriteriaBuilder;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.routing.engine.RoutingEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分片广播查询测试类
+ * 两个H2数据源上共4张分表，验证跨分片的ORDER BY/LIMIT归并、计数、流式读取、失败时的连接释放和裁剪后的分片查询
+ */
+class BroadcastQueryTest {
+
+    private static final int ROWS = 100;
+
+    private ShardedUsersFixture fixture;
+    private EnhancedRepositoryImpl<User, Long> repository;
+    private List<ShardTarget> shards;
+    private RoutingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ShardedUsersFixture("broadcast");
+        fixture.createModShards(ROWS);
+        engine = ShardedUsersFixture.engine(ShardedUsersFixture.sharding("mod", 4));
+        shards = engine.getShardTargets("users");
+        repository = fixture.repository();
+        DataSourceStats.of("ds0").reset();
+        DataSourceStats.of("ds1").reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.shutdown();
+    }
+
+    @Test
+    void testShardTargetsFollowTableTemplate() {
+        assertEquals(Arrays.asList(
+                new ShardTarget("ds0", "users", "users_0"),
+                new ShardTarget("ds1", "users", "users_1"),
+                new ShardTarget("ds0", "users", "users_2"),
+                new ShardTarget("ds1", "users", "users_3")), shards);
+    }
+
+    @Test
+    void testOrderByAndLimitMergeAcrossShards() {
+        List<Long> page = repository.createQuery()
+                .broadcast(shards)
+                .orderByDesc("age")
+                .orderByAsc("users.id")
+                .page(3, 7)
+                .execute()
+                .stream().map(User::getId).collect(Collectors.toList());
+
+        List<Long> expected = IntStream.rangeClosed(1, ROWS).boxed()
+                .sorted(Comparator.<Integer, Integer>comparing(ShardedUsersFixture::age).reversed().thenComparing(Comparator.naturalOrder()))
+                .skip(21).limit(7)
+                .map(Long::valueOf)
+                .collect(Collectors.toList());
+        assertEquals(expected, page);
+        assertNoOpenConnections();
+    }
+
+    @Test
+    void testNullsAreOrderedLikeTheMergeComparator() {
+        // 数据库默认把NULL排在升序末尾（与PostgreSQL相同），各分片仍须按归并的比较规则返回
+        fixture.template(0).execute("SET DEFAULT_NULL_ORDERING HIGH");
+        fixture.template(1).execute("SET DEFAULT_NULL_ORDERING HIGH");
+        for (int shard = 0; shard < 4; shard++) {
+            fixture.template(shard).update(
+                    "UPDATE users_" + shard + " SET email = CONCAT('user', id, '@example.com') WHERE MOD(id, 3) = 0");
+        }
+        Comparator<Integer> email = Comparator.comparing(id -> id % 3 == 0 ? "user" + id + "@example.com" : null,
+                Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+        List<Long> ascending = repository.createQuery()
+                .broadcast(shards)
+                .orderByAsc("email")
+                .orderByAsc("id")
+                .page(5, 10)
+                .execute()
+                .stream().map(User::getId).collect(Collectors.toList());
+        assertEquals(IntStream.rangeClosed(1, ROWS).boxed()
+                .sorted(email.thenComparing(Comparator.naturalOrder()))
+                .skip(60).limit(10).map(Long::valueOf).collect(Collectors.toList()), ascending);
+
+        List<Long> descending = repository.createQuery()
+                .broadcast(shards)
+                .orderByDesc("email")
+                .orderByAsc("id")
+                .page(2, 10)
+                .execute()
+                .stream().map(User::getId).collect(Collectors.toList());
+        assertEquals(IntStream.rangeClosed(1, ROWS).boxed()
+                .sorted(email.reversed().thenComparing(Comparator.naturalOrder()))
+                .skip(30).limit(10).map(Long::valueOf).collect(Collectors.toList()), descending);
+        assertNoOpenConnections();
+    }
+
+    @Test
+    void testCountAndWhereAcrossShards() {
+        assertEquals(ROWS, repository.createQuery().broadcast(shards).count());
+        long older = IntStream.rangeClosed(1, ROWS).filter(id -> ShardedUsersFixture.age(id) >= 25).count();
+        assertEquals(older, repository.createQuery().broadcast(shards).where("users.age >= 25").count());
+        assertEquals(older, repository.createQuery().broadcast(shards).where("users.age >= 25").execute().size());
+    }
+
+    @Test
+    void testStreamMergesLazilyAndReleasesConnections() {
+        try (Stream<User> stream = repository.createQuery().broadcast(shards).orderByAsc("id").stream()) {
+            // 每个分片都打开了一个连接
+            assertEquals(2, DataSourceStats.of("ds0").getInFlight());
+            assertEquals(2, DataSourceStats.of("ds1").getInFlight());
+            List<Long> first = stream.limit(5).map(User::getId).collect(Collectors.toList());
+            assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), first);
+        }
+        assertNoOpenConnections();
+    }
+
+    @Test
+    void testFailingShardClosesOpenedShards() {
+        fixture.template(1).execute("DROP TABLE users_3");
+        assertThrows(DataAccessException.class, () -> repository.createQuery().broadcast(shards).orderByAsc("id").execute());
+        assertNoOpenConnections();
+    }
+
+    @Test
+    void testPrunedInListOnlyQueriesOwningShards() {
+        // 裁剪后不会访问users_3，表被删除也不影响查询
+        fixture.template(1).execute("DROP TABLE users_3");
+        Map<ShardTarget, Criteria> pruned = engine.pruneShards("users",
+                EnhancedCriteriaBuilder.in("users.id", 4L, 9L, 8L, 13L, 2L));
+
+        List<Long> ids = repository.createQuery()
+                .broadcast(pruned)
+                .orderByAsc("id")
+                .execute()
+                .stream().map(User::getId).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(2L, 4L, 8L, 9L, 13L), ids);
+        assertEquals(5, repository.createQuery().broadcast(pruned).count());
+        assertEquals(0, repository.createQuery().broadcast(Collections.<ShardTarget, Criteria>emptyMap()).count());
+        assertNoOpenConnections();
+    }
+
+    private void assertNoOpenConnections() {
+        assertEquals(0, DataSourceStats.of("ds0").getInFlight());
+        assertEquals(0, DataSourceStats.of("ds1").getInFlight());
+    }
+
+    @Test
+    void testBroadcastInsideTransactionIsRejected() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(fixture.dynamicDataSource));
+        transactionTemplate.executeWithoutResult(status -> {
+            // 事务连接绑定在调用线程上，跨数据源的广播查询会全部落到同一个连接
+            assertThrows(IllegalStateException.class, () -> repository.createQuery().broadcast(shards).count());
+            assertThrows(IllegalStateException.class, () -> repository.createQuery().broadcast(shards).execute());
+            assertThrows(IllegalStateException.class, () -> repository.createQuery().broadcast(shards).stream());
+
+            // 只涉及一个数据源的分片仍可在事务中查询
+            List<ShardTarget> ds0Shards = shards.stream()
+                    .filter(shard -> shard.getDataSource().equals("ds0"))
+                    .collect(Collectors.toList());
+            assertEquals(ROWS / 2, repository.createQuery().broadcast(ds0Shards).count());
+        });
+    }
+}
\ No newline at end of file
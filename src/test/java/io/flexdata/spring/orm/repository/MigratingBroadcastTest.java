@@ -0,0 +1,133 @@
+package io.flexdata.spring.orm.repository;
+
+import io.flexdata.spring.orm.core.sql.EnhancedCriteriaBuilder;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.engine.RoutingEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 桶迁移期间的跨分片读取测试类
+ * 两个H2数据源上各一张分表，分片0的前1024个桶正在迁往分片1且已复制到分片1，
+ * 验证广播查询在两个阶段都只保留归属分片上的行，以及跨分片计数和聚合在迁移期间被拒绝
+ */
+class MigratingBroadcastTest {
+
+    private static final int ROWS = 100;
+    private static final int BUCKETS = 4096;
+
+    private ShardedUsersFixture fixture;
+    private RoutingRuleConfig.ShardingConfig sharding;
+    private RoutingEngine engine;
+    private EnhancedRepositoryImpl<User, Long> repository;
+    private int copied;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ShardedUsersFixture("migrating");
+        sharding = ShardedUsersFixture.sharding("bucket", 2);
+        engine = ShardedUsersFixture.engine(sharding);
+
+        fixture.createShardTable(0);
+        fixture.createShardTable(1);
+        JdbcTemplate shard0 = fixture.template(0);
+        JdbcTemplate shard1 = fixture.template(1);
+        for (long id = 1; id <= ROWS; id++) {
+            int bucket = engine.getBucket("users", id);
+            boolean onShard0 = bucket * 2 / BUCKETS == 0;
+            (onShard0 ? shard0 : shard1).update("INSERT INTO users_" + (onShard0 ? 0 : 1)
+                    + " (id, user_name, age) VALUES (?, ?, ?)", id, "user" + id, (int) (id % 50));
+            // 迁移中的桶已复制到目标分片
+            if (bucket < BUCKETS / 4) {
+                shard1.update("INSERT INTO users_1 (id, user_name, age) VALUES (?, ?, ?)", id, "user" + id, (int) (id % 50));
+                copied++;
+            }
+        }
+        migrate("dual-write");
+
+        repository = fixture.repository();
+        repository.setShards(engine.getShardTargets("users"));
+        repository.setShardOwnership(engine.getShardOwnership("users"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.shutdown();
+    }
+
+    @Test
+    void testBroadcastKeepsOnlyOwningShardRows() {
+        assertTrue(copied > 0, "no rows in migrating buckets");
+        assertTrue(engine.getShardOwnership("users").isMigrating());
+
+        for (String phase : new String[]{"dual-write", "dual-read"}) {
+            migrate(phase);
+            List<Long> ids = repository.createQuery()
+                    .broadcast(repository.getShards())
+                    .orderByAsc("id")
+                    .execute()
+                    .stream().map(User::getId).collect(Collectors.toList());
+            assertEquals(LongStream.rangeClosed(1, ROWS).boxed().collect(Collectors.toList()), ids, phase);
+
+            // 每行都在归属分片的前offset+limit行之内，分页结果不受丢弃的副本影响
+            List<Long> page = repository.createQuery()
+                    .broadcast(repository.getShards())
+                    .orderByAsc("id")
+                    .page(2, 10)
+                    .execute()
+                    .stream().map(User::getId).collect(Collectors.toList());
+            assertEquals(LongStream.rangeClosed(21, 30).boxed().collect(Collectors.toList()), page, phase);
+        }
+    }
+
+    @Test
+    void testBroadcastWithoutShardingColumnIsRejected() {
+        assertThrows(IllegalStateException.class, () -> repository.createQuery()
+                .select("user_name")
+                .broadcast(repository.getShards())
+                .execute());
+    }
+
+    @Test
+    void testCountAndAggregationAreRejectedWhileMigrating() {
+        assertThrows(IllegalStateException.class, () -> repository.countByCriteria(null));
+        assertThrows(IllegalStateException.class, () -> repository.createQuery().broadcast(repository.getShards()).count());
+        assertThrows(IllegalStateException.class, () -> repository.sum("age", Long.class));
+        assertThrows(IllegalStateException.class, () -> repository.groupBy(EnhancedCriteriaBuilder.gte("age", 10), "age"));
+
+        // 迁移完成、原分片上的副本清理后恢复跨分片聚合
+        sharding.setBucketMapping(Collections.singletonMap("0-" + (BUCKETS / 4 - 1), "1"));
+        sharding.setMigrations(null);
+        engine.refreshRoutingPlan();
+        fixture.template(0).update("DELETE FROM users_0 WHERE id NOT IN (" + remainingOnShard0() + ")");
+        assertFalse(engine.getShardOwnership("users").isMigrating());
+        assertEquals(ROWS, repository.countByCriteria(null));
+    }
+
+    private String remainingOnShard0() {
+        String ids = LongStream.rangeClosed(1, ROWS)
+                .filter(id -> engine.getBucket("users", id) >= BUCKETS / 4 && engine.getBucket("users", id) < BUCKETS / 2)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(", "));
+        return ids.isEmpty() ? "0" : ids;
+    }
+
+    private void migrate(String phase) {
+        RoutingRuleConfig.BucketMigrationConfig migration = new RoutingRuleConfig.BucketMigrationConfig();
+        migration.setBuckets("0-" + (BUCKETS / 4 - 1));
+        migration.setTargetShard(1);
+        migration.setPhase(phase);
+        sharding.setMigrations(Collections.singletonList(migration));
+        engine.refreshRoutingPlan();
+    }
+}
@@ -0,0 +1,182 @@
+package io.flexdata.spring.orm.repository;
+
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.EnhancedSqlGeneratorImpl;
+import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.repository.impl.GenericRepositoryImpl;
+import io.flexdata.spring.orm.repository.impl.TypeSafeRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * saveAll批处理测试类
+ * 验证批量保存的主键回填和插入/更新语义与逐条save一致
+ */
+class SaveAllTest {
+
+    private EmbeddedDatabase database;
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private EntityMetadataRegistry metadataRegistry;
+    private SqlGenerator sqlGenerator;
+    private RowMapperFactory rowMapperFactory;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        jdbcTemplate = new NamedParameterJdbcTemplate(database);
+        metadataRegistry = new EntityMetadataRegistry();
+        sqlGenerator = new SqlGenerator(metadataRegistry);
+        rowMapperFactory = new RowMapperFactory(metadataRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void testGenericSaveAllInsertsAndUpdates() {
+        GenericRepositoryImpl<User, Long> repository = new GenericRepositoryImpl<>(
+                jdbcTemplate, sqlGenerator, metadataRegistry, rowMapperFactory, User.class);
+
+        List<User> users = createUsers(2500);
+        List<User> saved = repository.saveAll(users);
+
+        assertEquals(users, saved);
+        assertDistinctIds(saved);
+        assertEquals(2500, repository.count());
+
+        // 混合新实体和已有实体：已有实体走批量更新
+        User existing = saved.get(10);
+        existing.setAge(99);
+        User fresh = new User("fresh", null, 1);
+        repository.saveAll(Arrays.asList(existing, fresh));
+
+        assertNotNull(fresh.getId());
+        assertEquals(2501, repository.count());
+        assertEquals(99, repository.findById(existing.getId()).get().getAge());
+    }
+
+    @Test
+    void testTypeSafeSaveAll() {
+        TypeSafeRepositoryImpl<User, Long> repository = new TypeSafeRepositoryImpl<>(
+                jdbcTemplate, sqlGenerator, metadataRegistry, rowMapperFactory, User.class);
+
+        List<User> saved = repository.saveAll(createUsers(50));
+
+        assertDistinctIds(saved);
+        assertEquals("user7", repository.findById(saved.get(7).getId()).get().getUserName());
+    }
+
+    @Test
+    void testEnhancedSaveAllGroupsByColumns() {
+        EnhancedRepositoryImpl<User, Long> repository = new EnhancedRepositoryImpl<>(User.class, Long.class,
+                "users", "id", jdbcTemplate, new EnhancedSqlGeneratorImpl(metadataRegistry, sqlGenerator),
+                rowMapperFactory, metadataRegistry);
+
+        // email为空和非空的实体生成不同的插入语句
+        List<User> saved = repository.saveAll(createUsers(30));
+
+        assertDistinctIds(saved);
+        assertEquals(30, repository.count());
+        for (User user : saved) {
+            User found = repository.findById(user.getId()).get();
+            assertEquals(user.getUserName(), found.getUserName());
+            assertEquals(user.getEmail(), found.getEmail());
+        }
+
+        User missing = new User("ghost", null, 1);
+        missing.setId(12345L);
+        assertThrows(RuntimeException.class, () -> repository.saveAll(Arrays.asList(missing)));
+    }
+
+    @Test
+    void testGeneratedKeysAreConvertedToIntegerId() {
+        // 自增列由驱动以Long返回，需转换为Integer后再写入主键字段
+        new JdbcTemplate(database).execute("CREATE TABLE tags (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255))");
+        GenericRepositoryImpl<Tag, Integer> generic = new GenericRepositoryImpl<>(
+                jdbcTemplate, sqlGenerator, metadataRegistry, rowMapperFactory, Tag.class);
+        TypeSafeRepositoryImpl<Tag, Integer> typeSafe = new TypeSafeRepositoryImpl<>(
+                jdbcTemplate, sqlGenerator, metadataRegistry, rowMapperFactory, Tag.class);
+
+        Tag first = generic.save(new Tag("first"));
+        assertEquals(Integer.valueOf(1), first.getId());
+
+        List<Tag> batch = typeSafe.saveAll(Arrays.asList(new Tag("second"), new Tag("third")));
+        assertEquals(Integer.valueOf(2), batch.get(0).getId());
+        assertEquals(Integer.valueOf(3), batch.get(1).getId());
+
+        Tag fourth = typeSafe.save(new Tag("fourth"));
+        assertEquals(Integer.valueOf(4), fourth.getId());
+        assertEquals("third", generic.findById(3).get().getName());
+    }
+
+    private List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new User("user" + i, i % 2 == 0 ? null : "user" + i + "@example.com", 20 + i % 50));
+        }
+        return users;
+    }
+
+    private void assertDistinctIds(List<User> users) {
+        Set<Long> ids = new HashSet<>();
+        for (User user : users) {
+            assertNotNull(user.getId());
+            ids.add(user.getId());
+        }
+        assertEquals(users.size(), ids.size());
+    }
+
+    @Table("tags")
+    public static class Tag {
+        @Id
+        private Integer id;
+        private String name;
+
+        public Tag() {
+        }
+
+        Tag(String name) {
+            this.name = name;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
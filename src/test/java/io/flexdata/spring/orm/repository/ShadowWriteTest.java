@@ -0,0 +1,223 @@
+package io.flexdata.spring.orm.repository;
+
+import io.flexdata.spring.orm.core.datasource.ShadowWrite;
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.EnhancedCriteriaBuilder;
+import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.repository.impl.GenericRepositoryImpl;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.engine.RoutingEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 桶迁移同步写入测试类
+ * 主分片和同步目标在两个H2数据源上，同步目标的主键没有默认值，验证同步写入带上主分片分配的主键、重复执行幂等、
+ * 两种失败策略，事务回滚时不写同步目标，以及同步目标上不在迁移中的桶的行不受影响
+ */
+class ShadowWriteTest {
+
+    private ShardedUsersFixture fixture;
+    private JdbcTemplate primary;
+    private JdbcTemplate target;
+    private EnhancedRepositoryImpl<User, Long> repository;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ShardedUsersFixture("shadow");
+        primary = fixture.template(0);
+        primary.execute("CREATE TABLE users (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_name VARCHAR(255) NOT NULL, "
+                + "email VARCHAR(255), age INT, created_at TIMESTAMP, updated_at TIMESTAMP)");
+        primary.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH 100");
+        fixture.createShardTable(1);
+        target = fixture.template(1);
+        repository = fixture.repository();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ShadowWrite.clear();
+        fixture.shutdown();
+    }
+
+    @Test
+    void testInsertIsReplayedWithAssignedKey() {
+        shadow(ShadowWrite.FailurePolicy.LOG);
+        User user = repository.save(new User("alice", null, 30));
+
+        assertEquals(100L, user.getId());
+        assertEquals("alice", target.queryForObject("SELECT user_name FROM users_1 WHERE id = 100", String.class));
+
+        // 重复执行同一次保存，同步目标上仍只有一行且与主分片一致
+        user.setAge(31);
+        repository.save(user);
+        repository.save(user);
+        assertEquals(1, count(target));
+        assertEquals(31, target.queryForObject("SELECT age FROM users_1 WHERE id = 100", Integer.class));
+    }
+
+    @Test
+    void testUpdateOfRowNotYetCopiedInsertsIt() {
+        User user = repository.save(new User("bob", "bob@example.com", 20));
+        assertEquals(0, count(target));
+
+        shadow(ShadowWrite.FailurePolicy.LOG);
+        user.setEmail(null);
+        repository.saveAll(Arrays.asList(user, new User("carol", null, 40)));
+
+        assertEquals(2, count(target));
+        assertNull(target.queryForObject("SELECT email FROM users_1 WHERE id = ?", String.class, user.getId()));
+        assertEquals("carol", target.queryForObject("SELECT user_name FROM users_1 WHERE id = 101", String.class));
+    }
+
+    @Test
+    void testDeletesAndCriteriaUpdatesAreReplayed() {
+        shadow(ShadowWrite.FailurePolicy.LOG);
+        List<User> users = repository.saveAll(Arrays.asList(
+                new User("a", null, 10), new User("b", null, 20), new User("c", null, 30)));
+
+        repository.updateByCriteria(Collections.singletonMap("age", 99), EnhancedCriteriaBuilder.gte("age", 20));
+        repository.deleteById(users.get(0).getId());
+        repository.deleteByCriteria(EnhancedCriteriaBuilder.eq("user_name", "c"));
+
+        assertEquals(1, count(primary));
+        assertEquals(1, count(target));
+        assertEquals(99, target.queryForObject("SELECT age FROM users_1 WHERE user_name = 'b'", Integer.class));
+    }
+
+    @Test
+    void testOnlyRowsInMigratingBucketsAreReplayed() {
+        RoutingEngine engine = migratingEngine(100L);
+        ShadowWrite.set(new ShadowWrite("users", "ds1", "users_1", ShadowWrite.FailurePolicy.LOG,
+                engine.getShardOwnership("users")));
+        // 同步目标上原有的、不在迁移中的桶的行
+        target.update("INSERT INTO users_1 (id, user_name, age) VALUES (900, 'zed', 50)");
+
+        List<User> users = repository.saveAll(Arrays.asList(
+                new User("a", null, 20), new User("b", null, 30), new User("c", null, 40)));
+        assertEquals(100L, users.get(0).getId());
+        assertNotEquals(engine.getBucket("users", 100L), engine.getBucket("users", users.get(1).getId()));
+        assertNotEquals(engine.getBucket("users", 100L), engine.getBucket("users", users.get(2).getId()));
+        assertEquals(2, count(target));
+
+        repository.updateByCriteria(Collections.singletonMap("age", 99), EnhancedCriteriaBuilder.gte("age", 20));
+        assertEquals(99, target.queryForObject("SELECT age FROM users_1 WHERE id = 100", Integer.class));
+        assertEquals(50, target.queryForObject("SELECT age FROM users_1 WHERE id = 900", Integer.class));
+
+        repository.deleteById(users.get(1).getId());
+        repository.deleteByCriteria(EnhancedCriteriaBuilder.gte("age", 0));
+        assertEquals(0, count(primary));
+        assertEquals(1, count(target));
+        assertEquals("zed", target.queryForObject("SELECT user_name FROM users_1 WHERE id = 900", String.class));
+    }
+
+    @Test
+    void testWritesThatCannotBeReplayedAreRejected() {
+        shadow(ShadowWrite.FailurePolicy.LOG);
+        assertThrows(IllegalStateException.class, () -> repository.executeNativeUpdate(
+                "UPDATE users SET age = 1", Collections.emptyMap()));
+
+        EntityMetadataRegistry metadataRegistry = new EntityMetadataRegistry();
+        GenericRepositoryImpl<User, Long> generic = new GenericRepositoryImpl<>(new NamedParameterJdbcTemplate(fixture.ds0),
+                new SqlGenerator(metadataRegistry), metadataRegistry, new RowMapperFactory(metadataRegistry), User.class);
+        assertThrows(IllegalStateException.class, () -> generic.save(new User("judy", null, 30)));
+        assertThrows(IllegalStateException.class, () -> generic.deleteById(1L));
+        assertEquals(0, count(primary));
+
+        ShadowWrite.clear();
+        generic.save(new User("judy", null, 30));
+        assertEquals(1, count(primary));
+    }
+
+    @Test
+    void testOtherTablesAreNotReplayed() {
+        ShadowWrite.set(new ShadowWrite("orders", "ds1", "users_1", ShadowWrite.FailurePolicy.LOG));
+        repository.save(new User("dave", null, 50));
+
+        assertEquals(1, count(primary));
+        assertEquals(0, count(target));
+    }
+
+    @Test
+    void testFailureIsLoggedAndCountedUnderLogPolicy() {
+        ShadowWrite.set(new ShadowWrite("users", "ds1", "missing_table", ShadowWrite.FailurePolicy.LOG));
+        long failures = ShadowWrite.getFailureCount();
+
+        repository.save(new User("erin", null, 25));
+
+        assertEquals(1, count(primary));
+        assertEquals(failures + 1, ShadowWrite.getFailureCount());
+    }
+
+    @Test
+    void testFailureRollsBackTransactionUnderFailPolicy() {
+        ShadowWrite.set(new ShadowWrite("users", "ds1", "missing_table", ShadowWrite.FailurePolicy.FAIL));
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(fixture.dynamicDataSource));
+
+        assertThrows(IllegalStateException.class,
+                () -> transaction.execute(status -> repository.save(new User("frank", null, 35))));
+        assertEquals(0, count(primary));
+
+        // 没有事务时失败直接抛给调用方
+        assertThrows(RuntimeException.class, () -> repository.save(new User("grace", null, 45)));
+    }
+
+    @Test
+    void testRolledBackTransactionDoesNotReachShadow() {
+        shadow(ShadowWrite.FailurePolicy.LOG);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(fixture.dynamicDataSource));
+
+        transaction.execute(status -> {
+            repository.save(new User("heidi", null, 28));
+            // 提交前同步目标上还没有数据
+            assertEquals(0, count(target));
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals(0, count(primary));
+        assertEquals(0, count(target));
+
+        transaction.execute(status -> repository.save(new User("ivan", null, 33)));
+        assertEquals(1, count(target));
+    }
+
+    /**
+     * 两个分片按主键分桶，只有该主键所在的桶由分片0迁往分片1，处于dual-write阶段
+     */
+    private static RoutingEngine migratingEngine(long id) {
+        RoutingRuleConfig.ShardingConfig sharding = ShardedUsersFixture.sharding("bucket", 2);
+        RoutingEngine engine = ShardedUsersFixture.engine(sharding);
+
+        String bucket = String.valueOf(engine.getBucket("users", id));
+        sharding.setBucketMapping(Collections.singletonMap(bucket, "0"));
+        RoutingRuleConfig.BucketMigrationConfig migration = new RoutingRuleConfig.BucketMigrationConfig();
+        migration.setBuckets(bucket);
+        migration.setTargetShard(1);
+        migration.setPhase("dual-write");
+        sharding.setMigrations(Collections.singletonList(migration));
+        engine.refreshRoutingPlan();
+        return engine;
+    }
+
+    private static void shadow(ShadowWrite.FailurePolicy failurePolicy) {
+        ShadowWrite.set(new ShadowWrite("users", "ds1", "users_1", failurePolicy));
+    }
+
+    private int count(JdbcTemplate template) {
+        String table = template == target ? "users_1" : "users";
+        return template.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+}
@@ -0,0 +1,158 @@
+package io.flexdata.spring.orm.repository;
+
+import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.sql.EnhancedCriteriaBuilder;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.routing.engine.RoutingEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 跨分片聚合测试类
+ * 两个H2数据源上共4张分表，同一年龄的两条记录总在不同分表上，验证部分聚合的合并、AVG改写和合并后的HAVING
+ */
+class ShardAggregationTest {
+
+    private static final int ROWS = 100;
+
+    private ShardedUsersFixture fixture;
+    private EnhancedRepositoryImpl<User, Long> repository;
+
+    @BeforeEach
+    void setUp() {
+        fixture = new ShardedUsersFixture("aggregation");
+        fixture.createModShards(ROWS);
+        RoutingEngine engine = ShardedUsersFixture.engine(ShardedUsersFixture.sharding("mod", 4));
+        repository = fixture.repository();
+        repository.setShards(engine.getShardTargets("users"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.shutdown();
+    }
+
+    @Test
+    void testScalarAggregatesMergeAcrossShards() {
+        Criteria older = EnhancedCriteriaBuilder.gte("users.age", 25);
+        List<Integer> ages = IntStream.rangeClosed(1, ROWS).map(ShardedUsersFixture::age).boxed().collect(Collectors.toList());
+        List<Integer> olderAges = ages.stream().filter(age -> age >= 25).collect(Collectors.toList());
+
+        assertEquals(ROWS, repository.countByCriteria(null));
+        assertEquals(olderAges.size(), repository.countByCriteria(older));
+        assertEquals(ages.stream().mapToLong(Integer::longValue).sum(), repository.sum("age", Long.class).longValue());
+        assertEquals(olderAges.stream().mapToLong(Integer::longValue).sum(), repository.sum("age", older, Long.class).longValue());
+        assertEquals(49, repository.max("age", Integer.class).intValue());
+        assertEquals(25, repository.min("age", older, Integer.class).intValue());
+        assertNull(repository.max("age", EnhancedCriteriaBuilder.gt("age", 100), Integer.class));
+    }
+
+    @Test
+    void testAvgIsRewrittenToSumAndCount() {
+        // 各分表的行数和年龄分布不同，分表平均值的平均值不等于总体平均值
+        Criteria uneven = EnhancedCriteriaBuilder.lte("id", 30).or(EnhancedCriteriaBuilder.gt("id", 97));
+        double expected = IntStream.rangeClosed(1, ROWS).filter(id -> id <= 30 || id > 97)
+                .map(ShardedUsersFixture::age).average().getAsDouble();
+
+        assertEquals(expected, repository.avg("age", uneven, Double.class), 1e-9);
+        assertEquals(IntStream.rangeClosed(1, ROWS).map(ShardedUsersFixture::age).average().getAsDouble(),
+                repository.avg("age", Double.class), 1e-9);
+        // 全部分表都没有匹配的行时与单表一致返回null
+        assertNull(repository.avg("age", EnhancedCriteriaBuilder.gt("age", 100), Double.class));
+    }
+
+    @Test
+    void testGroupByMergesPartialCountsByKey() {
+        List<Map<String, Object>> groups = repository.groupBy("age");
+
+        assertEquals(50, groups.size());
+        for (Map<String, Object> group : groups) {
+            assertEquals(2L, ((Number) group.get("count")).longValue(), "age " + group.get("age"));
+        }
+    }
+
+    @Test
+    void testHavingIsAppliedAfterMerge() {
+        // id 1..60中只有两端年龄重复的组计数为2，而每个分表上的计数都只有1，HAVING下推到分表会丢掉所有分组
+        Criteria where = EnhancedCriteriaBuilder.lte("id", 60);
+        Set<Integer> expected = IntStream.rangeClosed(1, 60).boxed()
+                .collect(Collectors.groupingBy(ShardedUsersFixture::age, Collectors.counting()))
+                .entrySet().stream()
+                .filter(entry -> entry.getValue() >= 2 && entry.getKey() < 40)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        List<Map<String, Object>> groups = repository.groupByHaving(where, new String[]{"users.age"},
+                EnhancedCriteriaBuilder.gte("COUNT(*)", 2).and(EnhancedCriteriaBuilder.lt("age", 40)));
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, groups.stream().map(group -> ((Number) group.get("age")).intValue())
+                .collect(Collectors.toCollection(TreeSet::new)));
+    }
+
+    @Test
+    void testHavingUsesThreeValuedLogic() {
+        for (int shard = 0; shard < 4; shard++) {
+            fixture.template(shard).update("UPDATE users_" + shard + " SET email = 'a@example.com' WHERE id <= 10");
+        }
+        String[] byEmail = {"email"};
+
+        // NULL分组上的比较为UNKNOWN，取反后仍为UNKNOWN，与单表HAVING一样不保留该分组
+        assertEquals(Collections.emptyList(), emails(repository.groupByHaving(null, byEmail,
+                EnhancedCriteriaBuilder.not(EnhancedCriteriaBuilder.eq("email", "a@example.com")))));
+        assertEquals(Collections.singletonList("a@example.com"), emails(repository.groupByHaving(null, byEmail,
+                EnhancedCriteriaBuilder.not(EnhancedCriteriaBuilder.eq("email", "b@example.com")))));
+        assertEquals(Collections.emptyList(), emails(repository.groupByHaving(null, byEmail,
+                EnhancedCriteriaBuilder.notIn("email", "a@example.com", null))));
+        // UNKNOWN AND FALSE为FALSE，取反后为TRUE；UNKNOWN OR TRUE为TRUE
+        assertEquals(Collections.singletonList(null), emails(repository.groupByHaving(null, byEmail,
+                EnhancedCriteriaBuilder.not(EnhancedCriteriaBuilder.eq("email", "b@example.com")
+                        .and(EnhancedCriteriaBuilder.lt("COUNT(*)", 50))).and(EnhancedCriteriaBuilder.isNull("email")))));
+        assertEquals(2, repository.groupByHaving(null, byEmail,
+                EnhancedCriteriaBuilder.eq("email", "b@example.com").or(EnhancedCriteriaBuilder.gte("COUNT(*)", 10))).size());
+    }
+
+    @Test
+    void testUnsupportedHavingIsRejected() {
+        assertThrows(IllegalStateException.class, () -> repository.groupByHaving(null, new String[]{"age"},
+                EnhancedCriteriaBuilder.nativeSql("COUNT(*) > 1")));
+    }
+
+    @Test
+    void testClearingShardsRestoresSingleTable() {
+        fixture.template(0).execute("CREATE TABLE users AS SELECT * FROM users_0");
+        repository.setShards(Collections.emptyList());
+
+        assertNull(repository.getShards());
+        assertEquals(25, repository.countByCriteria(null));
+    }
+
+    @Test
+    void testAggregationInsideTransactionIsRejected() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(fixture.dynamicDataSource));
+        transactionTemplate.executeWithoutResult(status -> {
+            // 事务连接绑定在调用线程上，跨数据源的部分聚合会全部落到同一个连接
+            assertThrows(IllegalStateException.class, () -> repository.countByCriteria(null));
+            assertThrows(IllegalStateException.class, () -> repository.sum("age", Long.class));
+            assertThrows(IllegalStateException.class, () -> repository.groupBy("age"));
+        });
+        assertEquals(ROWS, repository.countByCriteria(null));
+    }
+
+    private static List<Object> emails(List<Map<String, Object>> groups) {
+        return groups.stream().map(group -> group.get("email")).collect(Collectors.toList());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package io.flexdata.spring.orm.repository;
+
+import io.flexdata.spring.orm.core.datasource.DynamicDataSource;
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.EnhancedSqlGeneratorImpl;
+import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.engine.RoutingEngine;
+import io.flexdata.spring.orm.routing.engine.SpelExpressionEvaluator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 分片测试的公共环境
+ * 两个H2数据源ds0、ds1组成的动态数据源，users分表按分片序号交替放在两个数据源上（偶数分片在ds0，奇数分片在ds1）
+ */
+final class ShardedUsersFixture {
+
+    /**
+     * 分表的列定义，主键由调用方指定
+     */
+    static final String USER_COLUMNS = " (id BIGINT PRIMARY KEY, user_name VARCHAR(255) NOT NULL, "
+            + "email VARCHAR(255), age INT, created_at TIMESTAMP, updated_at TIMESTAMP)";
+
+    final EmbeddedDatabase ds0;
+    final EmbeddedDatabase ds1;
+    final DynamicDataSource dynamicDataSource;
+
+    /**
+     * @param name 数据库名前缀，各测试类使用不同的前缀，避免共用同名的内存库
+     */
+    ShardedUsersFixture(String name) {
+        ds0 = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName(name + "_ds0").build();
+        ds1 = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName(name + "_ds1").build();
+        dynamicDataSource = new DynamicDataSource();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put("ds0", ds0);
+        targets.put("ds1", ds1);
+        dynamicDataSource.setTargetDataSources(targets);
+        dynamicDataSource.setDefaultTargetDataSource(ds0);
+        dynamicDataSource.afterPropertiesSet();
+    }
+
+    /**
+     * 分片所在数据源上的JdbcTemplate
+     */
+    JdbcTemplate template(int shard) {
+        return new JdbcTemplate(shard % 2 == 0 ? ds0 : ds1);
+    }
+
+    /**
+     * 在分片所在的数据源上创建分表users_{shard}
+     */
+    void createShardTable(int shard) {
+        template(shard).execute("CREATE TABLE users_" + shard + USER_COLUMNS);
+    }
+
+    /**
+     * 创建4张分表，按id取模写入id为1..rows的用户，年龄为{@link #age(int)}
+     */
+    void createModShards(int rows) {
+        for (int shard = 0; shard < 4; shard++) {
+            createShardTable(shard);
+        }
+        for (int id = 1; id <= rows; id++) {
+            int shard = id % 4;
+            template(shard).update("INSERT INTO users_" + shard + " (id, user_name, age) VALUES (?, ?, ?)",
+                    id, "user" + id, age(id));
+        }
+    }
+
+    /**
+     * 基于动态数据源的users仓库，未设置分片
+     */
+    EnhancedRepositoryImpl<User, Long> repository() {
+        EntityMetadataRegistry metadataRegistry = new EntityMetadataRegistry();
+        SqlGenerator sqlGenerator = new SqlGenerator(metadataRegistry);
+        return new EnhancedRepositoryImpl<>(User.class, Long.class, "users", "id",
+                new NamedParameterJdbcTemplate(dynamicDataSource), new EnhancedSqlGeneratorImpl(metadataRegistry, sqlGenerator),
+                new RowMapperFactory(metadataRegistry), metadataRegistry);
+    }
+
+    void shutdown() {
+        ds0.shutdown();
+        ds1.shutdown();
+    }
+
+    /**
+     * users表按id分片的配置，分片与数据源的对应关系与{@link #template(int)}一致
+     */
+    static RoutingRuleConfig.ShardingConfig sharding(String strategy, int shardCount) {
+        RoutingRuleConfig.ShardingConfig sharding = new RoutingRuleConfig.ShardingConfig();
+        sharding.setEnabled(true);
+        sharding.setStrategy(strategy);
+        sharding.setShardingKey("id");
+        sharding.setShardCount(shardCount);
+        Map<String, String> mapping = new HashMap<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            mapping.put(String.valueOf(shard), "ds" + shard % 2);
+        }
+        sharding.setDataSourceMapping(mapping);
+        return sharding;
+    }
+
+    /**
+     * 只包含users表分片配置的路由引擎，之后修改配置需调用refreshRoutingPlan
+     */
+    static RoutingEngine engine(RoutingRuleConfig.ShardingConfig sharding) {
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        config.setSharding(Collections.singletonMap("users", sharding));
+        RoutingEngine engine = new RoutingEngine(config, new SpelExpressionEvaluator(), Collections.emptyList());
+        engine.init();
+        return engine;
+    }
+
+    /**
+     * 测试数据的年龄，同一年龄的两条记录总在不同分表上
+     */
+    static int age(int id) {
+        return (id * 37) % 50;
+    }
+}
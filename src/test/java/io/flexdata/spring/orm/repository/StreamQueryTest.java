@@ -0,0 +1,106 @@
+package io.flexdata.spring.orm.repository;
+
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.EnhancedSqlGeneratorImpl;
+import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.criteria.impl.SimpleCriteria;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.repository.impl.GenericRepositoryImpl;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式查询测试类
+ * 验证逐行读取的结果正确，并且无论正常结束、提前关闭还是异常都会归还连接
+ */
+class StreamQueryTest {
+
+    private JdbcConnectionPool dataSource;
+    private EntityMetadataRegistry metadataRegistry;
+    private SqlGenerator sqlGenerator;
+    private GenericRepositoryImpl<User, Long> repository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = JdbcConnectionPool.create("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        metadataRegistry = new EntityMetadataRegistry();
+        sqlGenerator = new SqlGenerator(metadataRegistry);
+        repository = new GenericRepositoryImpl<>(new NamedParameterJdbcTemplate(dataSource), sqlGenerator,
+                metadataRegistry, new RowMapperFactory(metadataRegistry), User.class);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            users.add(new User("user" + i, null, i % 100));
+        }
+        repository.saveAll(users);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.dispose();
+    }
+
+    @Test
+    void testStreamReadsAllRowsAndReleasesConnection() {
+        try (Stream<User> stream = repository.stream(new SimpleCriteria("age", ">=", 50))) {
+            assertEquals(1, dataSource.getActiveConnections());
+            List<User> adults = stream.collect(Collectors.toList());
+            assertEquals(250, adults.size());
+            assertTrue(adults.stream().allMatch(user -> user.getAge() >= 50 && user.getUserName() != null));
+        }
+        assertEquals(0, dataSource.getActiveConnections());
+    }
+
+    @Test
+    void testEarlyCloseReleasesConnection() {
+        try (Stream<User> stream = repository.stream(null)) {
+            assertEquals(3, stream.limit(3).count());
+        }
+        assertEquals(0, dataSource.getActiveConnections());
+    }
+
+    @Test
+    void testForEachReleasesConnectionOnFailure() {
+        AtomicInteger seen = new AtomicInteger();
+        repository.forEach(null, user -> seen.incrementAndGet());
+        assertEquals(500, seen.get());
+
+        assertThrows(IllegalStateException.class, () -> repository.forEach(null, user -> {
+            throw new IllegalStateException("stop");
+        }));
+        assertEquals(0, dataSource.getActiveConnections());
+    }
+
+    @Test
+    void testEnhancedQueryBuilderStream() {
+        EnhancedRepositoryImpl<User, Long> enhanced = new EnhancedRepositoryImpl<>(User.class, Long.class,
+                "users", "id", new NamedParameterJdbcTemplate(dataSource),
+                new EnhancedSqlGeneratorImpl(metadataRegistry, sqlGenerator),
+                new RowMapperFactory(metadataRegistry), metadataRegistry);
+
+        AtomicInteger seen = new AtomicInteger();
+        enhanced.forEach(new SimpleCriteria("age", "<", 10), user -> seen.incrementAndGet());
+        assertEquals(50, seen.get());
+
+        try (Stream<User> stream = enhanced.createQuery().fetchSize(16).stream()) {
+            assertEquals(500, stream.count());
+        }
+        assertEquals(0, dataSource.getActiveConnections());
+    }
+}
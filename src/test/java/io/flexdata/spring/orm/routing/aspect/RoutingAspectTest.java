@@ -156,6 +156,34 @@ class RoutingAspectTest {
         assertTrue(routingAspect.getCacheSize() >= 0);
     }
 
+    @Test
+    void testCachedRouteIsDroppedAfterPlanRefresh() throws Throwable {
+        Method method = TestService.class.getMethod("autoRoutingWithCache", String.class);
+        when(methodSignature.getMethod()).thenReturn(method);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{"test"});
+        when(joinPoint.proceed()).thenReturn("result");
+
+        AutoRouting autoRouting = mock(AutoRouting.class);
+        lenient().when(autoRouting.enabled()).thenReturn(true);
+        lenient().when(autoRouting.condition()).thenReturn("");
+        lenient().when(autoRouting.dataSource()).thenReturn("");
+        lenient().when(autoRouting.table()).thenReturn("");
+        when(autoRouting.cache()).thenReturn(true);
+        when(autoRouting.cacheExpire()).thenReturn(300);
+        when(routingEngine.route(any(RoutingContext.class)))
+                .thenReturn(new RoutingEngine.RoutingResult("selected_db", "user_table", "Auto routing"));
+
+        when(routingEngine.getPlanVersion()).thenReturn(1L);
+        routingAspect.aroundAutoRouting(joinPoint, autoRouting);
+        routingAspect.aroundAutoRouting(joinPoint, autoRouting);
+        verify(routingEngine, times(1)).route(any(RoutingContext.class));
+
+        // 路由方案重新编译后（如桶迁移进入下一阶段）缓存的结果不再使用
+        when(routingEngine.getPlanVersion()).thenReturn(2L);
+        routingAspect.aroundAutoRouting(joinPoint, autoRouting);
+        verify(routingEngine, times(2)).route(any(RoutingContext.class));
+    }
+
     @Test
     void testDataSourceRoutingAspect() throws Throwable {
         // Given
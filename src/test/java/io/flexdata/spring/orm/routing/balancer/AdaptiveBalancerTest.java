@@ -0,0 +1,245 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.datasource.DataSourceStats;
+import io.flexdata.spring.orm.core.datasource.DynamicDataSource;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自适应负载均衡测试类
+ * 使用注入了延迟和故障的H2数据源，验证二选一偏向低延迟实例、故障实例的摘除和退避恢复，以及只有连接类异常计为故障
+ */
+class AdaptiveBalancerTest {
+
+    private static final String SLOW = "adaptive_slow";
+    private static final String FAST = "adaptive_fast";
+
+    private EmbeddedDatabase slow;
+    private EmbeddedDatabase fast;
+    private JdbcTemplate jdbcTemplate;
+    /**
+     * 快实例上语句执行时抛出的异常，为null时正常执行
+     */
+    private final AtomicReference<SQLException> fastFault = new AtomicReference<>();
+    private final AtomicLong clock = new AtomicLong(System.nanoTime());
+
+    /**
+     * H2中注册的延迟函数
+     */
+    public static int delay(int millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+        return millis;
+    }
+
+    @BeforeEach
+    void setUp() {
+        slow = replica(SLOW, 15);
+        fast = replica(FAST, 0);
+        DynamicDataSource dynamicDataSource = new DynamicDataSource();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(SLOW, slow);
+        targets.put(FAST, faulty(fast, fastFault));
+        dynamicDataSource.setTargetDataSources(targets);
+        dynamicDataSource.afterPropertiesSet();
+        jdbcTemplate = new JdbcTemplate(dynamicDataSource);
+        DataSourceStats.of(SLOW).reset();
+        DataSourceStats.of(FAST).reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DataSourceContext.clearDataSource();
+        slow.shutdown();
+        fast.shutdown();
+    }
+
+    @Test
+    void testPrefersLowLatencyReplica() {
+        AdaptiveBalancer balancer = new AdaptiveBalancer(Arrays.asList(SLOW, FAST), new RoutingRuleConfig.AdaptiveConfig());
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 60; i++) {
+            String dataSource = balancer.select();
+            counts.merge(dataSource, 1, Integer::sum);
+            query(dataSource);
+        }
+
+        // 两个实例都拿到样本后，慢实例只有在得分衰减后才会被选中
+        assertTrue(counts.getOrDefault(SLOW, 0) <= 3, "slow replica selected " + counts.get(SLOW) + " times");
+        assertTrue(DataSourceStats.of(SLOW).getLatencyEwmaNanos() > TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(DataSourceStats.of(FAST).getLatencyEwmaNanos() < DataSourceStats.of(SLOW).getLatencyEwmaNanos());
+    }
+
+    @Test
+    void testEjectsFailingReplicaWithBackoff() {
+        RoutingRuleConfig.AdaptiveConfig config = new RoutingRuleConfig.AdaptiveConfig();
+        config.setFailureThreshold(3);
+        config.setBaseEjectionTime(1000);
+        config.setMaxEjectionTime(1500);
+        AdaptiveBalancer balancer = new AdaptiveBalancer(Arrays.asList(SLOW, FAST), config, clock::get);
+
+        query(SLOW);
+
+        // 快实例的连接在语句执行时断开
+        fastFault.set(new SQLTransientConnectionException("Connection reset", "08S01"));
+        for (int i = 0; i < 3; i++) {
+            assertThrows(DataAccessException.class, () -> query(FAST));
+        }
+        assertEquals(3, DataSourceStats.of(FAST).getConsecutiveFailures());
+
+        assertTrue(balancer.isEjected(FAST));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(SLOW, balancer.select());
+        }
+
+        // 到期后进入试探期，只放行一个试探请求，试探没有结果前其余请求仍选慢实例；
+        // 试探失败则按翻倍后的时长（受最大时长限制）重新摘除
+        advance(1000);
+        assertFalse(balancer.isEjected(FAST));
+        assertEquals(FAST, balancer.select());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(SLOW, balancer.select());
+        }
+        assertThrows(DataAccessException.class, () -> query(FAST));
+        assertTrue(balancer.isEjected(FAST));
+        advance(1000);
+        assertTrue(balancer.isEjected(FAST));
+        advance(500);
+        assertFalse(balancer.isEjected(FAST));
+
+        // 试探请求迟迟没有结果时，基础摘除时长后放行下一个试探
+        assertEquals(FAST, balancer.select());
+        assertEquals(SLOW, balancer.select());
+        advance(1000);
+        assertEquals(FAST, balancer.select());
+
+        // 故障恢复后试探成功，回到正常状态
+        fastFault.set(null);
+        query(FAST);
+        assertFalse(balancer.isEjected(FAST));
+        assertEquals(0, DataSourceStats.of(FAST).getConsecutiveFailures());
+    }
+
+    @Test
+    void testOnlyConnectionErrorsCountAsFailures() {
+        // 表不存在等语句错误说明实例仍在正常响应
+        new JdbcTemplate(fast).execute("DROP TABLE replica_delay");
+        assertThrows(DataAccessException.class, () -> query(FAST));
+        assertEquals(0, DataSourceStats.of(FAST).getConsecutiveFailures());
+        assertEquals(0.0, DataSourceStats.of(FAST).getErrorRate());
+        assertEquals(1, DataSourceStats.of(FAST).getSampleCount());
+
+        // 连接类SQLState、可恢复异常和超时计为失败
+        fastFault.set(new SQLException("Connection failure", "08006"));
+        assertThrows(DataAccessException.class, () -> query(FAST));
+        fastFault.set(new SQLRecoverableException("I/O error"));
+        assertThrows(DataAccessException.class, () -> query(FAST));
+        fastFault.set(new SQLTimeoutException("Query timed out"));
+        assertThrows(DataAccessException.class, () -> query(FAST));
+        assertEquals(3, DataSourceStats.of(FAST).getConsecutiveFailures());
+
+        fastFault.set(new SQLIntegrityConstraintViolationException("Duplicate key", "23505"));
+        assertThrows(DataAccessException.class, () -> query(FAST));
+        assertEquals(0, DataSourceStats.of(FAST).getConsecutiveFailures());
+        assertEquals(3, DataSourceStats.of(FAST).getFailureCount());
+    }
+
+    @Test
+    void testAllReplicasEjectedReturnsNull() {
+        RoutingRuleConfig.AdaptiveConfig config = new RoutingRuleConfig.AdaptiveConfig();
+        config.setFailureThreshold(1);
+        AdaptiveBalancer balancer = new AdaptiveBalancer(Arrays.asList(SLOW, FAST), config, clock::get);
+        DataSourceStats.of(SLOW).recordFailure(1000);
+        DataSourceStats.of(FAST).recordFailure(1000);
+        assertNull(balancer.select());
+
+        advance(config.getBaseEjectionTime());
+        assertNotNull(balancer.select());
+    }
+
+    private void query(String dataSource) {
+        DataSourceContext.executeWithDataSource(dataSource,
+                () -> jdbcTemplate.queryForObject("SELECT DELAY(ms) FROM replica_delay", Integer.class));
+    }
+
+    private void advance(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * 包装数据源：fault不为null时语句执行抛出该异常
+     */
+    private static DataSource faulty(DataSource dataSource, AtomicReference<SQLException> fault) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                        (proxy, method, args) -> {
+                            Object result = invoke(connection, method, args);
+                            if (!(result instanceof Statement) || !method.getReturnType().isInterface()) {
+                                return result;
+                            }
+                            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{method.getReturnType()},
+                                    (statementProxy, statementMethod, statementArgs) -> {
+                                        SQLException e = fault.get();
+                                        if (e != null && statementMethod.getName().startsWith("execute")) {
+                                            throw e;
+                                        }
+                                        return invoke(result, statementMethod, statementArgs);
+                                    });
+                        });
+            }
+        };
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static EmbeddedDatabase replica(String name, int delayMillis) {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName(name)
+                .build();
+        JdbcTemplate template = new JdbcTemplate(database);
+        template.execute("CREATE ALIAS DELAY FOR \"" + AdaptiveBalancerTest.class.getName() + ".delay\"");
+        template.execute("CREATE TABLE replica_delay (ms INT)");
+        template.update("INSERT INTO replica_delay VALUES (?)", delayMillis);
+        return database;
+    }
+}
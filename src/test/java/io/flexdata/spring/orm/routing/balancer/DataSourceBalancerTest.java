@@ -0,0 +1,202 @@
+package io.flexdata.spring.orm.routing.balancer;
+
+import io.flexdata.spring.orm.core.datasource.DataSourceContext;
+import io.flexdata.spring.orm.core.datasource.DataSourceStats;
+import io.flexdata.spring.orm.core.datasource.DynamicDataSource;
+import io.flexdata.spring.orm.routing.config.RoutingCacheManager;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.context.RoutingContext;
+import io.flexdata.spring.orm.routing.engine.RoutingEngine;
+import io.flexdata.spring.orm.routing.engine.SpelExpressionEvaluator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 负载均衡器测试类
+ * 验证轮询、平滑加权轮询和最少未完成请求策略，以及读写分离在启用路由缓存时仍然轮询从库
+ */
+class DataSourceBalancerTest {
+
+    private static final List<String> REPLICAS = Arrays.asList("replica1", "replica2", "replica3");
+
+    private EmbeddedDatabase replica1;
+    private EmbeddedDatabase replica2;
+
+    @BeforeEach
+    void setUp() {
+        replica1 = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                .setName("balancer_replica1").build();
+        replica2 = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+                .setName("balancer_replica2").build();
+        DataSourceStats.of("replica1").reset();
+        DataSourceStats.of("replica2").reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        DataSourceContext.clearDataSource();
+        replica1.shutdown();
+        replica2.shutdown();
+    }
+
+    @Test
+    void testRoundRobinRotatesWithinThread() {
+        DataSourceBalancer balancer = DataSourceBalancers.create("round_robin", REPLICAS, null);
+        assertTrue(balancer instanceof RoundRobinBalancer);
+
+        String first = balancer.select();
+        int start = REPLICAS.indexOf(first);
+        for (int i = 1; i < 9; i++) {
+            assertEquals(REPLICAS.get((start + i) % REPLICAS.size()), balancer.select());
+        }
+    }
+
+    @Test
+    void testRoundRobinSpreadsConcurrentRequests() throws InterruptedException {
+        DataSourceBalancer balancer = DataSourceBalancers.create("round_robin", REPLICAS, null);
+        Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+        int threads = 8;
+        int perThread = 3000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    counts.computeIfAbsent(balancer.select(), k -> new LongAdder()).increment();
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        // 每个线程都是完整的轮询，各从库得到的请求数完全相同
+        for (String replica : REPLICAS) {
+            assertEquals(threads * perThread / REPLICAS.size(), counts.get(replica).sum());
+        }
+    }
+
+    @Test
+    void testSmoothWeightedSchedule() {
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put("a", 5);
+        weights.put("b", 1);
+        weights.put("c", 1);
+        SmoothWeightedRoundRobinBalancer balancer = (SmoothWeightedRoundRobinBalancer)
+                DataSourceBalancers.create("weight", Arrays.asList("a", "b", "c"), weights);
+
+        // nginx的经典示例：高权重实例被穿插开，而不是连续命中5次
+        assertEquals(Arrays.asList("a", "a", "b", "a", "c", "a", "a"), balancer.getSchedule());
+
+        // 权重按最大公约数约简，未配置权重的数据源不参与选择
+        weights.put("a", 20);
+        weights.put("b", 10);
+        weights.remove("c");
+        balancer = (SmoothWeightedRoundRobinBalancer)
+                DataSourceBalancers.create("weighted", Arrays.asList("a", "b", "c"), weights);
+        assertEquals(Arrays.asList("a", "b", "a"), balancer.getSchedule());
+        assertEquals(Arrays.asList("a", "b"), balancer.getDataSources());
+    }
+
+    @Test
+    void testLargeWeightsAreScaled() {
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put("a", 100000);
+        weights.put("b", 3);
+        SmoothWeightedRoundRobinBalancer balancer = new SmoothWeightedRoundRobinBalancer(Arrays.asList("a", "b"), weights);
+        List<String> schedule = balancer.getSchedule();
+        assertTrue(schedule.size() <= SmoothWeightedRoundRobinBalancer.MAX_SCHEDULE_LENGTH + 1);
+        assertEquals(1, Collections.frequency(schedule, "b"));
+    }
+
+    @Test
+    void testLeastOutstandingFollowsOpenConnections() throws Exception {
+        DynamicDataSource dynamicDataSource = new DynamicDataSource();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put("replica1", replica1);
+        targets.put("replica2", replica2);
+        dynamicDataSource.setTargetDataSources(targets);
+        dynamicDataSource.afterPropertiesSet();
+
+        DataSourceBalancer balancer = DataSourceBalancers.create("least_connections",
+                Arrays.asList("replica1", "replica2"), null);
+
+        List<Connection> held = new ArrayList<>();
+        DataSourceContext.setDataSource("replica1");
+        held.add(dynamicDataSource.getConnection());
+        held.add(dynamicDataSource.getConnection());
+        DataSourceContext.setDataSource("replica2");
+        held.add(dynamicDataSource.getConnection());
+        assertEquals(2, DataSourceStats.of("replica1").getInFlight());
+        assertEquals(1, DataSourceStats.of("replica2").getInFlight());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("replica2", balancer.select());
+        }
+
+        // 重复关闭只计一次
+        held.get(0).close();
+        held.get(0).close();
+        held.get(1).close();
+        assertEquals(0, DataSourceStats.of("replica1").getInFlight());
+        assertEquals("replica1", balancer.select());
+
+        held.get(2).close();
+        assertEquals(3, DataSourceStats.of("replica1").getCompleted() + DataSourceStats.of("replica2").getCompleted());
+        // 计数相同时轮流选择
+        assertEquals(new HashSet<>(Arrays.asList("replica1", "replica2")),
+                new HashSet<>(Arrays.asList(balancer.select(), balancer.select())));
+    }
+
+    @Test
+    void testReadWriteSplitBalancesWithRoutingCache() {
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        RoutingRuleConfig.ReadWriteSplitConfig readWriteSplit = new RoutingRuleConfig.ReadWriteSplitConfig();
+        readWriteSplit.setEnabled(true);
+        readWriteSplit.setMasterDataSource("master");
+        readWriteSplit.setSlaveDataSources(REPLICAS);
+        config.setReadWriteSplit(readWriteSplit);
+        RoutingRuleConfig.CacheConfig cacheConfig = new RoutingRuleConfig.CacheConfig();
+        cacheConfig.setEnabled(true);
+        config.setCache(cacheConfig);
+
+        RoutingCacheManager cacheManager = new RoutingCacheManager(config);
+        RoutingEngine engine = new RoutingEngine(config, new SpelExpressionEvaluator(), Collections.emptyList());
+        engine.setCacheManager(cacheManager);
+
+        RoutingContext read = RoutingContext.builder()
+                .tableName("user")
+                .operationType(RoutingContext.OperationType.SELECT)
+                .build();
+        List<String> selected = new ArrayList<>();
+        for (int i = 0; i < REPLICAS.size(); i++) {
+            RoutingEngine.RoutingResult result = engine.route(read);
+            assertEquals("Read-write split: read", result.getReason());
+            selected.add(result.getDataSource());
+        }
+        assertEquals(new HashSet<>(REPLICAS), new HashSet<>(selected));
+
+        RoutingContext write = RoutingContext.builder()
+                .tableName("user")
+                .operationType(RoutingContext.OperationType.UPDATE)
+                .build();
+        assertEquals("master", engine.route(write).getDataSource());
+        cacheManager.destroy();
+    }
+}
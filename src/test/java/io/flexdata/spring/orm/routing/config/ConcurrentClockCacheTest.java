@@ -0,0 +1,153 @@
+package io.flexdata.spring.orm.routing.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 有界并发缓存测试类
+ * 验证CLOCK淘汰、时间轮过期、并发下的容量上限以及路由缓存管理器的统计
+ */
+class ConcurrentClockCacheTest {
+
+    @Test
+    void testClockGivesReferencedEntriesSecondChance() {
+        AtomicLong now = new AtomicLong(1_000);
+        ConcurrentClockCache<String, Integer> cache = new ConcurrentClockCache<>(3, 100, now::get);
+
+        cache.put("a", 1, 10_000);
+        cache.put("b", 2, 10_000);
+        cache.put("c", 3, 10_000);
+        // 第一圈清除所有新条目的访问标记，淘汰最先插入的a
+        cache.put("d", 4, 10_000);
+        assertNull(cache.get("a"));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        // b被访问过，再次需要槽位时跳过b淘汰c
+        assertEquals(2, cache.get("b"));
+        cache.put("e", 5, 10_000);
+        assertEquals(2, cache.get("b"));
+        assertNull(cache.get("c"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void testTimerWheelExpiry() {
+        AtomicLong now = new AtomicLong(1_000);
+        ConcurrentClockCache<String, Integer> cache = new ConcurrentClockCache<>(100, 100, now::get);
+
+        cache.put("short", 1, 250);
+        cache.put("long", 2, 100_000);
+        cache.put("replaced", 3, 250);
+        cache.put("replaced", 4, 100_000);
+
+        now.addAndGet(300);
+        // 过期后读取即未命中，时间轮推进后条目被回收
+        assertNull(cache.get("short"));
+        assertEquals(3, cache.size());
+        cache.advance(now.get());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getExpirationCount());
+        assertEquals(4, cache.get("replaced"));
+
+        // 过期时间超过一圈的条目留到之后的圈
+        now.addAndGet(512 * 100);
+        cache.advance(now.get());
+        assertEquals(2, cache.get("long"));
+        now.addAndGet(100_000);
+        cache.advance(now.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testReplacedAndEvictedEntriesLeaveTheWheel() {
+        AtomicLong now = new AtomicLong(1_000);
+        ConcurrentClockCache<String, Integer> cache = new ConcurrentClockCache<>(10, 100, now::get);
+
+        // 反复替换同一个键，时间轮上只保留最新的条目
+        for (int i = 0; i < 1_000; i++) {
+            cache.put("hot", i, 100_000);
+        }
+        assertEquals(1, cache.scheduledCount());
+
+        // 淘汰的条目也立即摘除
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, i, 100_000);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(cache.size(), cache.scheduledCount());
+
+        cache.remove("key99");
+        assertEquals(cache.size(), cache.scheduledCount());
+        cache.clear();
+        assertEquals(0, cache.scheduledCount());
+    }
+
+    @Test
+    void testConcurrentBound() throws Exception {
+        ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(1_000, 1_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 50_000; i++) {
+                        int key = random.nextInt(5_000);
+                        Integer value = cache.get(key);
+                        if (value == null) {
+                            cache.put(key, key, 60_000);
+                        } else {
+                            assertEquals(key, value.intValue());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.size() <= 1_000, "size " + cache.size());
+        assertTrue(cache.getEvictionCount() > 0);
+        assertEquals(cache.size(), cache.scheduledCount());
+    }
+
+    @Test
+    void testRoutingCacheManagerStats() {
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        RoutingRuleConfig.CacheConfig cacheConfig = new RoutingRuleConfig.CacheConfig();
+        cacheConfig.setEnabled(true);
+        cacheConfig.setMaxSize(2);
+        config.setCache(cacheConfig);
+        RoutingCacheManager manager = new RoutingCacheManager(config);
+
+        manager.put("k1", new RoutingCacheManager.RoutingResult("ds1", "t1"));
+        manager.put("k2", new RoutingCacheManager.RoutingResult("ds2", "t2"));
+        manager.put("k3", new RoutingCacheManager.RoutingResult("ds3", "t3"));
+        assertEquals("ds3", manager.get("k3").getDataSource());
+        assertNull(manager.get("missing"));
+        manager.evict("k3");
+        assertNull(manager.get("k3"));
+
+        Map<String, Object> stats = manager.getCacheStats();
+        assertEquals(1, stats.get("size"));
+        assertEquals(2, stats.get("max-size"));
+        assertEquals(1L, stats.get("evictions"));
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(2L, stats.get("misses"));
+        assertTrue(stats.containsKey("last-access-time"));
+        manager.destroy();
+    }
+}
@@ -0,0 +1,194 @@
+package io.flexdata.spring.orm.routing.consistency;
+
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.context.RoutingContext;
+import io.flexdata.spring.orm.routing.engine.RoutingEngine;
+import io.flexdata.spring.orm.routing.engine.SpelExpressionEvaluator;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 写后读一致性测试类
+ * 验证会话水位的时间窗口、按用户和按线程区分会话，以及借助复制位点选择已追上的从库
+ */
+class SessionConsistencyTest {
+
+    private static final String READ = "Read-write split: read";
+    private static final String READ_YOUR_WRITES = "Read-write split: read-your-writes";
+
+    @Test
+    void testWatermarkExpiresAfterWindow() {
+        AtomicLong clock = new AtomicLong(1000);
+        SessionConsistencyTracker tracker = new SessionConsistencyTracker(500, 16, clock::get);
+
+        tracker.recordWrite("alice");
+        tracker.recordWrite(null);
+        assertNotNull(tracker.getWatermark("alice"));
+        assertNotNull(tracker.getWatermark(null));
+        assertNull(tracker.getWatermark("bob"));
+
+        clock.addAndGet(499);
+        assertNotNull(tracker.getWatermark("alice"));
+        clock.addAndGet(1);
+        assertNull(tracker.getWatermark("alice"));
+        assertNull(tracker.getWatermark(null));
+    }
+
+    @Test
+    void testReadsAfterWriteGoToMasterWithinWindow() throws Exception {
+        RoutingEngine engine = new RoutingEngine(sessionConfig(null), new SpelExpressionEvaluator(), Collections.emptyList());
+
+        // 按用户区分会话
+        assertEquals("master", engine.route(context(RoutingContext.OperationType.UPDATE, "alice")).getDataSource());
+        RoutingEngine.RoutingResult aliceRead = engine.route(context(RoutingContext.OperationType.SELECT, "alice"));
+        assertEquals("master", aliceRead.getDataSource());
+        assertEquals(READ_YOUR_WRITES, aliceRead.getReason());
+        RoutingEngine.RoutingResult bobRead = engine.route(context(RoutingContext.OperationType.SELECT, "bob"));
+        assertEquals(READ, bobRead.getReason());
+        assertTrue(bobRead.getDataSource().startsWith("slave"));
+
+        // 没有用户信息时按线程区分
+        engine.route(context(RoutingContext.OperationType.INSERT, null));
+        assertEquals(READ_YOUR_WRITES, engine.route(context(RoutingContext.OperationType.SELECT, null)).getReason());
+        String otherThread = CompletableFuture.supplyAsync(
+                () -> engine.route(context(RoutingContext.OperationType.SELECT, null)).getReason()).get();
+        assertEquals(READ, otherThread);
+    }
+
+    @Test
+    void testSessionKeyExpression() {
+        RoutingEngine engine = new RoutingEngine(sessionConfig("#{headers['X-Session-Id']}"),
+                new SpelExpressionEvaluator(), Collections.emptyList());
+
+        RoutingContext write = context(RoutingContext.OperationType.UPDATE, "alice");
+        write.addHeader("X-Session-Id", "s1");
+        engine.route(write);
+
+        RoutingContext sameSession = context(RoutingContext.OperationType.SELECT, "bob");
+        sameSession.addHeader("X-Session-Id", "s1");
+        assertEquals("master", engine.route(sameSession).getDataSource());
+
+        RoutingContext otherSession = context(RoutingContext.OperationType.SELECT, "alice");
+        otherSession.addHeader("X-Session-Id", "s2");
+        assertEquals(READ, engine.route(otherSession).getReason());
+    }
+
+    @Test
+    void testCaughtUpReplicaServesReadYourWrites() {
+        FakePositionProvider provider = new FakePositionProvider();
+        provider.masterPosition = "gtid:1-10";
+        provider.replicaPositions.put("slave1", "gtid:1-9");
+        provider.replicaPositions.put("slave2", "gtid:1-10");
+
+        RoutingEngine engine = new RoutingEngine(sessionConfig(null), new SpelExpressionEvaluator(), Collections.emptyList());
+        engine.setReplicationPositionProvider(provider);
+
+        engine.route(context(RoutingContext.OperationType.UPDATE, "alice"));
+        Set<String> selected = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            RoutingEngine.RoutingResult result = engine.route(context(RoutingContext.OperationType.SELECT, "alice"));
+            assertEquals(READ_YOUR_WRITES, result.getReason());
+            selected.add(result.getDataSource());
+        }
+        assertEquals(Collections.singleton("slave2"), selected);
+        // 位点只在写入后第一次读取时获取，已追上的从库不再重复查询
+        assertEquals(1, provider.currentPositionCalls.get());
+        assertEquals(1, provider.replayedCalls.get("slave2").get());
+
+        // 所有从库都落后时回到主库
+        provider.masterPosition = "gtid:1-11";
+        engine.route(context(RoutingContext.OperationType.UPDATE, "alice"));
+        assertEquals("master", engine.route(context(RoutingContext.OperationType.SELECT, "alice")).getDataSource());
+    }
+
+    @Test
+    void testPositionIsNotPinnedBeforeWritingTransactionCompletes() {
+        FakePositionProvider provider = new FakePositionProvider();
+        provider.masterPosition = "gtid:1-10";
+        provider.replicaPositions.put("slave1", "gtid:1-10");
+        provider.replicaPositions.put("slave2", "gtid:1-10");
+
+        RoutingEngine engine = new RoutingEngine(sessionConfig(null), new SpelExpressionEvaluator(), Collections.emptyList());
+        engine.setReplicationPositionProvider(provider);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.route(context(RoutingContext.OperationType.UPDATE, "alice"));
+            // 事务未提交时主库位点还不包含这次写入，读取发往主库且不获取位点
+            assertEquals("master", engine.route(context(RoutingContext.OperationType.SELECT, "alice")).getDataSource());
+            assertEquals(0, provider.currentPositionCalls.get());
+
+            provider.masterPosition = "gtid:1-11";
+            provider.replicaPositions.put("slave2", "gtid:1-11");
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // 提交后获取的位点包含这次写入，只有追上的从库可以读
+        assertEquals("slave2", engine.route(context(RoutingContext.OperationType.SELECT, "alice")).getDataSource());
+        assertEquals(1, provider.currentPositionCalls.get());
+    }
+
+    private RoutingRuleConfig sessionConfig(String sessionKey) {
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        RoutingRuleConfig.ReadWriteSplitConfig readWriteSplit = new RoutingRuleConfig.ReadWriteSplitConfig();
+        readWriteSplit.setEnabled(true);
+        readWriteSplit.setMasterDataSource("master");
+        readWriteSplit.setSlaveDataSources(Arrays.asList("slave1", "slave2"));
+        readWriteSplit.setConsistency("session");
+        readWriteSplit.setConsistencyWindow(60000);
+        readWriteSplit.setSessionKey(sessionKey);
+        config.setReadWriteSplit(readWriteSplit);
+        return config;
+    }
+
+    private RoutingContext context(RoutingContext.OperationType operationType, Object user) {
+        return RoutingContext.builder()
+                .tableName("orders")
+                .operationType(operationType)
+                .userInfo(user)
+                .build();
+    }
+
+    /**
+     * 位点为"前缀:序号"形式的模拟提供者
+     */
+    private static class FakePositionProvider implements ReplicationPositionProvider {
+        volatile String masterPosition;
+        final Map<String, String> replicaPositions = new HashMap<>();
+        final AtomicInteger currentPositionCalls = new AtomicInteger();
+        final Map<String, AtomicInteger> replayedCalls = new HashMap<>();
+
+        @Override
+        public String currentPosition(String masterDataSource) {
+            currentPositionCalls.incrementAndGet();
+            return masterPosition;
+        }
+
+        @Override
+        public boolean hasReplayed(String replicaDataSource, String position) {
+            replayedCalls.computeIfAbsent(replicaDataSource, k -> new AtomicInteger()).incrementAndGet();
+            return sequence(replicaPositions.get(replicaDataSource)) >= sequence(position);
+        }
+
+        private static int sequence(String position) {
+            return Integer.parseInt(position.substring(position.lastIndexOf('-') + 1));
+        }
+    }
+}
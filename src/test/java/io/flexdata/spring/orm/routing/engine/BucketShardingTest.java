@@ -0,0 +1,251 @@
+package io.flexdata.spring.orm.routing.engine;
+
+import io.flexdata.spring.orm.core.datasource.ShadowWrite;
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
+import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.sql.EnhancedCriteriaBuilder;
+import io.flexdata.spring.orm.routing.config.RoutingCacheManager;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.context.RoutingContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 虚拟桶分片测试类
+ * 验证桶的默认均分和显式映射、迁移两个阶段的读写路由与同步写入目标及失败策略、迁移只影响所在桶的键，以及取模策略对Integer.MIN_VALUE的处理
+ */
+class BucketShardingTest {
+
+    private static final int BUCKETS = 4096;
+
+    private RoutingRuleConfig config;
+    private RoutingRuleConfig.ShardingConfig sharding;
+    private RoutingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        sharding = new RoutingRuleConfig.ShardingConfig();
+        sharding.setEnabled(true);
+        sharding.setStrategy("bucket");
+        sharding.setShardingKey("userId");
+        sharding.setShardCount(4);
+        Map<String, String> mapping = new HashMap<>();
+        mapping.put("0", "ds0");
+        mapping.put("1", "ds1");
+        mapping.put("2", "ds2");
+        mapping.put("3", "ds3");
+        sharding.setDataSourceMapping(mapping);
+
+        RoutingRuleConfig.ShardingConfig mod = new RoutingRuleConfig.ShardingConfig();
+        mod.setEnabled(true);
+        mod.setStrategy("mod");
+        mod.setShardingKey("userId");
+        mod.setShardCount(3);
+
+        Map<String, RoutingRuleConfig.ShardingConfig> shardingConfigs = new HashMap<>();
+        shardingConfigs.put("orders", sharding);
+        shardingConfigs.put("logs", mod);
+        config = new RoutingRuleConfig();
+        config.setSharding(shardingConfigs);
+        engine = new RoutingEngine(config, new SpelExpressionEvaluator(), Collections.emptyList());
+        engine.init();
+    }
+
+    @Test
+    void testDefaultLayoutSplitsBucketsIntoContiguousRanges() {
+        int[] perShard = new int[4];
+        for (long userId = 0; userId < 20000; userId++) {
+            int bucket = engine.getBucket("orders", userId);
+            assertTrue(bucket >= 0 && bucket < BUCKETS);
+            int shard = bucket * 4 / BUCKETS;
+            RoutingEngine.RoutingResult result = engine.route(context(RoutingContext.OperationType.SELECT, userId));
+            assertEquals("ds" + shard, result.getDataSource());
+            assertEquals("orders_" + shard, result.getTableName());
+            perShard[shard]++;
+        }
+        // 连续的键经过混合后均匀分布
+        for (int count : perShard) {
+            assertTrue(count > 4500 && count < 5500, "shard size " + count);
+        }
+        assertEquals(-1, engine.getBucket("logs", 1L));
+    }
+
+    @Test
+    void testSameKeyOfDifferentTypesShareBucket() {
+        assertEquals(engine.getBucket("orders", 123456L), engine.getBucket("orders", 123456));
+        assertEquals(engine.getBucket("orders", 123456L), engine.getBucket("orders", "123456"));
+    }
+
+    @Test
+    void testBucketMappingOverridesDefaultLayout() {
+        sharding.setBucketMapping(Collections.singletonMap("0-" + (BUCKETS - 1), "2"));
+        engine.refreshRoutingPlan();
+
+        for (long userId = 0; userId < 100; userId++) {
+            assertEquals("ds2", engine.route(context(RoutingContext.OperationType.SELECT, userId)).getDataSource());
+        }
+    }
+
+    @Test
+    void testDualWriteReadsSourceAndWritesBoth() {
+        long userId = 42L;
+        int bucket = engine.getBucket("orders", userId);
+        int source = bucket * 4 / BUCKETS;
+        int target = (source + 1) % 4;
+        migrate(bucket, target, "dual-write");
+
+        RoutingEngine.RoutingResult read = engine.route(context(RoutingContext.OperationType.SELECT, userId));
+        assertEquals("ds" + source, read.getDataSource());
+        assertFalse(read.hasShadow());
+
+        RoutingEngine.RoutingResult write = engine.route(context(RoutingContext.OperationType.UPDATE, userId));
+        assertEquals("ds" + source, write.getDataSource());
+        assertEquals("orders_" + source, write.getTableName());
+        assertEquals("ds" + target, write.getShadowDataSource());
+        assertEquals("orders_" + target, write.getShadowTableName());
+        assertEquals(ShadowWrite.FailurePolicy.LOG, write.getShadowFailurePolicy());
+    }
+
+    @Test
+    void testDualReadSwitchesToTargetAndWritesBackToSource() {
+        long userId = 42L;
+        int bucket = engine.getBucket("orders", userId);
+        int source = bucket * 4 / BUCKETS;
+        int target = (source + 1) % 4;
+        migrate(bucket, target, "dual-read");
+
+        RoutingEngine.RoutingResult read = engine.route(context(RoutingContext.OperationType.SELECT, userId));
+        assertEquals("ds" + target, read.getDataSource());
+        assertFalse(read.hasShadow());
+
+        RoutingEngine.RoutingResult write = engine.route(context(RoutingContext.OperationType.INSERT, userId));
+        assertEquals("ds" + target, write.getDataSource());
+        assertEquals("ds" + source, write.getShadowDataSource());
+        assertEquals("orders_" + source, write.getShadowTableName());
+
+        // 按条件裁剪时也以当前阶段为准
+        Map<ShardTarget, Criteria> pruned = engine.pruneShards("orders", EnhancedCriteriaBuilder.eq("userId", userId));
+        assertEquals(Collections.singletonList(new ShardTarget("ds" + target, "orders", "orders_" + target)),
+                new ArrayList<>(pruned.keySet()));
+    }
+
+    @Test
+    void testShadowTargetSurvivesRoutingCache() {
+        RoutingRuleConfig.CacheConfig cacheConfig = new RoutingRuleConfig.CacheConfig();
+        cacheConfig.setEnabled(true);
+        config.setCache(cacheConfig);
+        RoutingCacheManager cacheManager = new RoutingCacheManager(config);
+        engine.setCacheManager(cacheManager);
+        long userId = 7L;
+        int bucket = engine.getBucket("orders", userId);
+        int target = (bucket * 4 / BUCKETS + 2) % 4;
+        sharding.setShadowWriteFailurePolicy("fail");
+        migrate(bucket, target, "dual-write");
+
+        RoutingEngine.RoutingResult first = engine.route(context(RoutingContext.OperationType.DELETE, userId));
+        RoutingEngine.RoutingResult second = engine.route(context(RoutingContext.OperationType.DELETE, userId));
+        assertEquals("Cache hit", second.getReason());
+        assertEquals(first.getDataSource(), second.getDataSource());
+        assertEquals("ds" + target, second.getShadowDataSource());
+        assertEquals("orders_" + target, second.getShadowTableName());
+        assertEquals(ShadowWrite.FailurePolicy.FAIL, second.getShadowFailurePolicy());
+        assertFalse(engine.route(context(RoutingContext.OperationType.SELECT, userId)).hasShadow());
+        cacheManager.destroy();
+    }
+
+    @Test
+    void testFinishedMigrationOnlyMovesKeysOfMigratedBuckets() {
+        List<String> before = new ArrayList<>();
+        for (long userId = 0; userId < 10000; userId++) {
+            before.add(engine.route(context(RoutingContext.OperationType.SELECT, userId)).getDataSource());
+        }
+
+        // 把落在分片0上的前256个桶搬到分片3，完成后写入映射并删除迁移配置
+        sharding.setBucketMapping(Collections.singletonMap("0-255", "3"));
+        engine.refreshRoutingPlan();
+
+        int moved = 0;
+        for (long userId = 0; userId < 10000; userId++) {
+            RoutingEngine.RoutingResult result = engine.route(context(RoutingContext.OperationType.UPDATE, userId));
+            assertFalse(result.hasShadow());
+            if (engine.getBucket("orders", userId) < 256) {
+                assertEquals("ds3", result.getDataSource());
+                moved++;
+            } else {
+                assertEquals(before.get((int) userId), result.getDataSource());
+            }
+        }
+        assertTrue(moved > 0 && moved < 1000, "moved " + moved);
+    }
+
+    @Test
+    void testInvalidBucketConfigurationIsRejected() {
+        RoutingRuleConfig.BucketMigrationConfig migration = new RoutingRuleConfig.BucketMigrationConfig();
+        migration.setBuckets("0-" + BUCKETS);
+        migration.setTargetShard(1);
+        sharding.setMigrations(Collections.singletonList(migration));
+        assertThrows(IllegalStateException.class, () -> engine.refreshRoutingPlan());
+
+        migration.setBuckets("0-10");
+        migration.setTargetShard(4);
+        assertThrows(IllegalStateException.class, () -> engine.refreshRoutingPlan());
+
+        migration.setTargetShard(1);
+        migration.setPhase("copy");
+        assertThrows(IllegalStateException.class, () -> engine.refreshRoutingPlan());
+
+        migration.setPhase("dual-write");
+        sharding.setShadowWriteFailurePolicy("ignore");
+        assertThrows(IllegalStateException.class, () -> engine.refreshRoutingPlan());
+
+        // 编译失败时沿用原来的路由方案
+        assertEquals("ds0", engine.route(context(RoutingContext.OperationType.SELECT, keyInBucketBelow(1024))).getDataSource());
+    }
+
+    @Test
+    void testModStrategyHandlesMinValueHashCode() {
+        RoutingContext context = RoutingContext.builder()
+                .tableName("logs")
+                .operationType(RoutingContext.OperationType.SELECT)
+                .parameter("userId", Integer.MIN_VALUE)
+                .build();
+
+        RoutingEngine.RoutingResult result = engine.route(context);
+
+        assertEquals("shard2", result.getDataSource());
+        assertEquals("logs_2", result.getTableName());
+    }
+
+    private void migrate(int bucket, int targetShard, String phase) {
+        RoutingRuleConfig.BucketMigrationConfig migration = new RoutingRuleConfig.BucketMigrationConfig();
+        migration.setBuckets(String.valueOf(bucket));
+        migration.setTargetShard(targetShard);
+        migration.setPhase(phase);
+        sharding.setMigrations(Collections.singletonList(migration));
+        engine.refreshRoutingPlan();
+    }
+
+    private long keyInBucketBelow(int bucket) {
+        long userId = 0;
+        while (engine.getBucket("orders", userId) >= bucket) {
+            userId++;
+        }
+        return userId;
+    }
+
+    private static RoutingContext context(RoutingContext.OperationType operationType, long userId) {
+        return RoutingContext.builder()
+                .tableName("orders")
+                .operationType(operationType)
+                .parameter("userId", userId)
+                .build();
+    }
+}
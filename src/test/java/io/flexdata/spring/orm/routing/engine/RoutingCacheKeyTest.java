@@ -0,0 +1,140 @@
+package io.flexdata.spring.orm.routing.engine;
+
+import io.flexdata.spring.orm.routing.config.RoutingCacheManager;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.context.RoutingContext;
+import io.flexdata.spring.orm.routing.selector.DataSourceSelector;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 路由缓存键测试类
+ * 验证从路由配置计算的键布局、按字段比较的键以及路由引擎的缓存行为
+ */
+class RoutingCacheKeyTest {
+
+    @Test
+    void testLayoutCollectsReferencedNames() {
+        RoutingRuleConfig config = shardingConfig();
+        RoutingRuleConfig.CustomRoutingRule rule = new RoutingRuleConfig.CustomRoutingRule();
+        rule.setName("vip");
+        rule.setCondition("#{parameters['userType'] == 'VIP' && getHeader(\"X-Region\") == 'eu'}");
+        rule.setDataSource("vip_db");
+        config.setCustomRules(new ArrayList<>(Collections.singletonList(rule)));
+
+        RoutingCacheKey.Layout layout = RoutingCacheKey.Layout.from(config);
+
+        assertEquals(Arrays.asList("userType", "userId"), layout.forTable("orders").getParameterNames());
+        assertEquals(Collections.singletonList("X-Region"), layout.forTable("orders").getHeaderNames());
+        assertEquals(Collections.singletonList("userType"), layout.forTable("users").getParameterNames());
+        assertFalse(layout.isAllParameters());
+        assertFalse(layout.isAllHeaders());
+
+        // 无法确定引用了哪些参数时整个参数表参与比较
+        rule.setCondition("#{#parameters.size() > 1}");
+        assertTrue(RoutingCacheKey.Layout.from(config).isAllParameters());
+    }
+
+    @Test
+    void testKeyIgnoresUnreferencedParameters() {
+        RoutingCacheKey.Layout layout = RoutingCacheKey.Layout.from(shardingConfig());
+        RoutingContext context = RoutingContext.builder()
+                .tableName("orders")
+                .operationType(RoutingContext.OperationType.SELECT)
+                .parameter("userId", 1L)
+                .parameter("items", new ArrayList<>(Arrays.asList(1, 2, 3)))
+                .build();
+
+        RoutingCacheKey stored = RoutingCacheKey.probe().fill(layout, context).snapshot();
+
+        context.addParameter("items", "changed");
+        RoutingCacheKey probe = RoutingCacheKey.probe().fill(layout, context);
+        assertEquals(stored, probe);
+        assertEquals(stored.hashCode(), probe.hashCode());
+
+        context.addParameter("userId", 2L);
+        assertNotEquals(stored, probe.fill(layout, context));
+
+        context.setOperationType(RoutingContext.OperationType.UPDATE);
+        context.addParameter("userId", 1L);
+        assertNotEquals(stored, probe.fill(layout, context));
+    }
+
+    @Test
+    void testRoutingEngineUsesStructuredKey() {
+        RoutingRuleConfig config = shardingConfig();
+        RoutingRuleConfig.CacheConfig cacheConfig = new RoutingRuleConfig.CacheConfig();
+        cacheConfig.setEnabled(true);
+        config.setCache(cacheConfig);
+        config.setDefaultDataSource("main");
+
+        AtomicInteger selectorCalls = new AtomicInteger();
+        DataSourceSelector selector = new DataSourceSelector() {
+            @Override
+            public boolean supports(RoutingContext context) {
+                selectorCalls.incrementAndGet();
+                return false;
+            }
+
+            @Override
+            public String selectDataSource(RoutingContext context) {
+                return null;
+            }
+        };
+
+        RoutingCacheManager cacheManager = new RoutingCacheManager(config);
+        RoutingEngine engine = new RoutingEngine(config, new SpelExpressionEvaluator(),
+                Collections.singletonList(selector));
+        engine.setCacheManager(cacheManager);
+
+        RoutingEngine.RoutingResult first = engine.route(ordersContext(1L, "a"));
+        assertEquals("Sharding routing: mod", first.getReason());
+        RoutingEngine.RoutingResult second = engine.route(ordersContext(1L, "b"));
+        assertEquals("Cache hit", second.getReason());
+        assertEquals(first.getDataSource(), second.getDataSource());
+        assertEquals(first.getTableName(), second.getTableName());
+        assertEquals("Sharding routing: mod", engine.route(ordersContext(2L, "a")).getReason());
+
+        // 规则未命中的结果也会缓存，但数据源选择器每次都会参与
+        RoutingContext usersContext = RoutingContext.builder()
+                .tableName("users")
+                .operationType(RoutingContext.OperationType.SELECT)
+                .build();
+        assertEquals("Default routing", engine.route(usersContext).getReason());
+        assertEquals("Default routing", engine.route(usersContext).getReason());
+        assertEquals(2, selectorCalls.get());
+        assertEquals(3, cacheManager.getCacheStats().get("size"));
+        cacheManager.destroy();
+    }
+
+    private RoutingContext ordersContext(long userId, String note) {
+        return RoutingContext.builder()
+                .tableName("orders")
+                .operationType(RoutingContext.OperationType.SELECT)
+                .parameter("userId", userId)
+                .parameter("note", note)
+                .build();
+    }
+
+    private RoutingRuleConfig shardingConfig() {
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        RoutingRuleConfig.ShardingConfig sharding = new RoutingRuleConfig.ShardingConfig();
+        sharding.setEnabled(true);
+        sharding.setStrategy("mod");
+        sharding.setShardingKey("userId");
+        sharding.setShardCount(2);
+        sharding.setTableTemplate("orders_{0}");
+        Map<String, RoutingRuleConfig.ShardingConfig> shardingConfigs = new HashMap<>();
+        shardingConfigs.put("orders", sharding);
+        config.setSharding(shardingConfigs);
+        return config;
+    }
+}
@@ -0,0 +1,121 @@
+package io.flexdata.spring.orm.routing.engine;
+
+import io.flexdata.spring.orm.routing.config.RoutingMonitor;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import io.flexdata.spring.orm.routing.context.RoutingContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 路由方案测试类
+ * 验证自定义规则的优先级排序、按表名和操作类型的索引、静态条件折叠以及阶段耗时统计
+ */
+class RoutingPlanTest {
+
+    @Test
+    void testRulesIndexedByTableAndOperation() {
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        config.setCustomRules(new ArrayList<>(Arrays.asList(
+                rule("orders-read", "#{#tableName == 'orders' and #isRead}", "orders_replica", 10),
+                rule("orders-or-items", "#{tableName == 'orders' or tableName == 'items'}", "main", 5),
+                rule("vip", "#{parameters['userType'] == 'VIP'}", "vip_db", 20),
+                rule("never", "#{false and parameters['x'] != null}", "none", 30))));
+
+        RoutingPlan plan = RoutingPlan.compile(config);
+
+        assertEquals(Arrays.asList("vip", "orders-read", "orders-or-items"),
+                names(plan.customRules("orders", RoutingContext.OperationType.SELECT)));
+        assertEquals(Arrays.asList("vip", "orders-or-items"),
+                names(plan.customRules("orders", RoutingContext.OperationType.INSERT)));
+        assertEquals(Arrays.asList("vip", "orders-or-items"),
+                names(plan.customRules("items", RoutingContext.OperationType.SELECT)));
+        assertEquals(Collections.singletonList("vip"),
+                names(plan.customRules("users", RoutingContext.OperationType.SELECT)));
+        assertEquals(Collections.singletonList("vip"), names(plan.customRules(null, null)));
+        assertEquals(3, plan.getCustomRuleCount());
+
+        // 静态条件被折叠，动态条件保留原表达式
+        RoutingPlan.CompiledRule[] rules = plan.customRules("orders", RoutingContext.OperationType.SELECT);
+        assertNotNull(rules[0].condition);
+        assertNull(rules[1].condition);
+        assertNull(rules[2].condition);
+    }
+
+    @Test
+    void testStaticRulesSkipSpelAndResolveAliases() {
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        Map<String, String> aliases = new HashMap<>();
+        aliases.put("reporting", "report_db");
+        config.setAliases(aliases);
+        config.setCustomRules(new ArrayList<>(Collections.singletonList(
+                rule("reports", "#{#tableName == 'report' && !#isWrite}", "reporting", 1))));
+
+        SpelExpressionEvaluator evaluator = mock(SpelExpressionEvaluator.class);
+        RoutingEngine engine = new RoutingEngine(config, evaluator, Collections.emptyList());
+        RoutingMonitor monitor = new RoutingMonitor(engine);
+        engine.setRoutingMonitor(monitor);
+
+        RoutingEngine.RoutingResult read = engine.route(RoutingContext.builder()
+                .tableName("report")
+                .operationType(RoutingContext.OperationType.SELECT)
+                .build());
+        assertEquals("report_db", read.getDataSource());
+        assertEquals("Custom rule: reports", read.getReason());
+
+        RoutingEngine.RoutingResult write = engine.route(RoutingContext.builder()
+                .tableName("report")
+                .operationType(RoutingContext.OperationType.UPDATE)
+                .build());
+        assertEquals("Default routing", write.getReason());
+        verify(evaluator, never()).evaluateCondition(anyString(), any(RoutingContext.class));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stageTiming = (Map<String, Object>) monitor.getRoutingStats().get("stage-timing");
+        assertTrue(stageTiming.containsKey(RoutingMonitor.STAGE_CUSTOM_RULES));
+        assertTrue(stageTiming.containsKey(RoutingMonitor.STAGE_SELECTOR));
+    }
+
+    @Test
+    void testRefreshPicksUpConfigChanges() {
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        RoutingEngine engine = new RoutingEngine(config, mock(SpelExpressionEvaluator.class), Collections.emptyList());
+        RoutingContext context = RoutingContext.builder()
+                .tableName("user")
+                .operationType(RoutingContext.OperationType.SELECT)
+                .build();
+        assertEquals("Default routing", engine.route(context).getReason());
+
+        config.setCustomRules(new ArrayList<>(Collections.singletonList(rule("all", "#{true}", "other", 0))));
+        assertEquals("Default routing", engine.route(context).getReason());
+        engine.refreshRoutingPlan();
+        assertEquals("other", engine.route(context).getDataSource());
+    }
+
+    private RoutingRuleConfig.CustomRoutingRule rule(String name, String condition, String dataSource, int priority) {
+        RoutingRuleConfig.CustomRoutingRule rule = new RoutingRuleConfig.CustomRoutingRule();
+        rule.setName(name);
+        rule.setCondition(condition);
+        rule.setDataSource(dataSource);
+        rule.setPriority(priority);
+        return rule;
+    }
+
+    private List<String> names(RoutingPlan.CompiledRule[] rules) {
+        List<String> names = new ArrayList<>();
+        for (RoutingPlan.CompiledRule rule : rules) {
+            names.add(rule.name);
+        }
+        return names;
+    }
+}
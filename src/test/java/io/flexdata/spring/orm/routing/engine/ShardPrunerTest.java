@@ -0,0 +1,175 @@
+package io.flexdata.spring.orm.routing.engine;
+
+import io.flexdata.spring.orm.core.datasource.ShardTarget;
+import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.sql.EnhancedCriteriaBuilder;
+import io.flexdata.spring.orm.routing.config.RoutingRuleConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分片裁剪测试类
+ * 验证取模、哈希和范围策略下等值、IN、BETWEEN条件对分片的裁剪，IN列表按分片拆分，以及AND/OR组合和无法裁剪的条件
+ */
+class ShardPrunerTest {
+
+    private static final ShardTarget USER_0 = new ShardTarget("ds0", "user", "user_0");
+    private static final ShardTarget USER_1 = new ShardTarget("ds1", "user", "user_1");
+    private static final ShardTarget USER_2 = new ShardTarget("ds0", "user", "user_2");
+    private static final ShardTarget USER_3 = new ShardTarget("ds1", "user", "user_3");
+    private static final ShardTarget ORDER_2023 = new ShardTarget("ds0", "orders", "orders_2023");
+    private static final ShardTarget ORDER_2024 = new ShardTarget("ds1", "orders", "orders_2024");
+
+    private RoutingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, RoutingRuleConfig.ShardingConfig> sharding = new HashMap<>();
+
+        RoutingRuleConfig.ShardingConfig mod = new RoutingRuleConfig.ShardingConfig();
+        mod.setEnabled(true);
+        mod.setStrategy("mod");
+        mod.setShardingKey("id");
+        mod.setShardCount(4);
+        Map<String, String> mapping = new HashMap<>();
+        mapping.put("0", "ds0");
+        mapping.put("1", "ds1");
+        mapping.put("2", "ds0");
+        mapping.put("3", "ds1");
+        mod.setDataSourceMapping(mapping);
+        sharding.put("user", mod);
+
+        RoutingRuleConfig.ShardingConfig hash = new RoutingRuleConfig.ShardingConfig();
+        hash.setEnabled(true);
+        hash.setStrategy("hash");
+        hash.setShardingKey("code");
+        hash.setShardCount(8);
+        sharding.put("item", hash);
+
+        RoutingRuleConfig.ShardingConfig range = new RoutingRuleConfig.ShardingConfig();
+        range.setEnabled(true);
+        range.setStrategy("range");
+        range.setShardingKey("order_id");
+        range.setRanges(Arrays.asList(range("1", "1000", "ds0", "2023"), range("1001", "2000", "ds1", "2024")));
+        sharding.put("orders", range);
+
+        RoutingRuleConfig config = new RoutingRuleConfig();
+        config.setSharding(sharding);
+        engine = new RoutingEngine(config, new SpelExpressionEvaluator(), Collections.emptyList());
+        engine.init();
+    }
+
+    @Test
+    void testEqualityRoutesToSingleShard() {
+        Criteria criteria = EnhancedCriteriaBuilder.eq("user.id", 6L);
+
+        Map<ShardTarget, Criteria> pruned = engine.pruneShards("user", criteria);
+
+        assertEquals(Collections.singletonMap(USER_2, criteria), pruned);
+    }
+
+    @Test
+    void testInListIsSplitPerShard() {
+        Map<ShardTarget, Criteria> pruned = engine.pruneShards("user",
+                EnhancedCriteriaBuilder.in("id", 9L, 2L, 1L, 6L, 5L));
+
+        assertEquals(Arrays.asList(USER_1, USER_2), new ArrayList<>(pruned.keySet()));
+        assertEquals(Arrays.asList(9L, 1L, 5L), inValues(pruned.get(USER_1)));
+        assertEquals(Arrays.asList(2L, 6L), inValues(pruned.get(USER_2)));
+    }
+
+    @Test
+    void testAndIntersectsAndKeepsOtherConditions() {
+        Criteria age = EnhancedCriteriaBuilder.gt("age", 18);
+        Map<ShardTarget, Criteria> pruned = engine.pruneShards("user",
+                age.and(EnhancedCriteriaBuilder.in("id", 1L, 2L)));
+
+        assertEquals(Arrays.asList(USER_1, USER_2), new ArrayList<>(pruned.keySet()));
+        for (Criteria criteria : pruned.values()) {
+            assertTrue(criteria.toSql().contains("age >"), criteria.toSql());
+            assertTrue(criteria.toSql().contains("id IN"), criteria.toSql());
+        }
+
+        // 两个等值条件落在不同分片上时不需要查询任何分片
+        assertTrue(engine.pruneShards("user",
+                EnhancedCriteriaBuilder.eq("id", 1L).and(EnhancedCriteriaBuilder.eq("id", 2L))).isEmpty());
+    }
+
+    @Test
+    void testOrUnionsShardsAndDropsBranchesOfOtherShards() {
+        Criteria one = EnhancedCriteriaBuilder.eq("id", 1L);
+        Criteria two = EnhancedCriteriaBuilder.in("id", 5L, 2L);
+        Map<ShardTarget, Criteria> pruned = engine.pruneShards("user", one.or(two));
+
+        assertEquals(Arrays.asList(USER_1, USER_2), new ArrayList<>(pruned.keySet()));
+        // 分片1上同时命中两侧：id = 1 OR id IN (5)
+        assertTrue(pruned.get(USER_1).toSql().contains(" OR "));
+        assertEquals(Collections.singletonList(2L), inValues(pruned.get(USER_2)));
+
+        // OR的一侧不涉及分片键时无法裁剪
+        Criteria notPrunable = one.or(EnhancedCriteriaBuilder.eq("name", "x"));
+        Map<ShardTarget, Criteria> all = engine.pruneShards("user", notPrunable);
+        assertEquals(Arrays.asList(USER_0, USER_1, USER_2, USER_3), new ArrayList<>(all.keySet()));
+        assertTrue(all.values().stream().allMatch(criteria -> criteria == notPrunable));
+    }
+
+    @Test
+    void testBetweenOnModEnumeratesSmallIntervals() {
+        assertEquals(Arrays.asList(USER_1, USER_2),
+                new ArrayList<>(engine.pruneShards("user", EnhancedCriteriaBuilder.between("id", 5L, 6L)).keySet()));
+        assertEquals(4, engine.pruneShards("user", EnhancedCriteriaBuilder.between("id", 1L, 100L)).size());
+        assertEquals(4, engine.pruneShards("user", EnhancedCriteriaBuilder.gt("id", 10L)).size());
+    }
+
+    @Test
+    void testHashStrategyUsesStringHash() {
+        Map<ShardTarget, Criteria> pruned = engine.pruneShards("item", EnhancedCriteriaBuilder.eq("code", "A-100"));
+
+        int index = Math.abs("A-100".hashCode()) % 8;
+        assertEquals(Collections.singletonList(new ShardTarget("shard" + index, "item", "item_" + index)),
+                new ArrayList<>(pruned.keySet()));
+    }
+
+    @Test
+    void testRangeStrategyPrunesByOverlap() {
+        assertEquals(Collections.singletonList(ORDER_2024),
+                new ArrayList<>(engine.pruneShards("orders", EnhancedCriteriaBuilder.gt("order_id", 1500)).keySet()));
+        assertEquals(Collections.singletonList(ORDER_2023),
+                new ArrayList<>(engine.pruneShards("orders", EnhancedCriteriaBuilder.lte("order_id", 1000)).keySet()));
+        assertEquals(Arrays.asList(ORDER_2023, ORDER_2024),
+                new ArrayList<>(engine.pruneShards("orders", EnhancedCriteriaBuilder.between("order_id", 900, 1100)).keySet()));
+        assertTrue(engine.pruneShards("orders", EnhancedCriteriaBuilder.eq("order_id", 5000)).isEmpty());
+    }
+
+    @Test
+    void testUnprunableConditionsReturnAllShards() {
+        Criteria not = EnhancedCriteriaBuilder.not(EnhancedCriteriaBuilder.eq("id", 1L));
+
+        assertEquals(4, engine.pruneShards("user", not).size());
+        assertEquals(4, engine.pruneShards("user", EnhancedCriteriaBuilder.nativeSql("id = 1")).size());
+        assertEquals(4, engine.pruneShards("user", null).size());
+        assertNull(engine.pruneShards("unknown", EnhancedCriteriaBuilder.eq("id", 1L)));
+    }
+
+    private static List<?> inValues(Criteria criteria) {
+        return (List<?>) criteria.getParameters().values().iterator().next();
+    }
+
+    private static RoutingRuleConfig.RangeConfig range(String start, String end, String dataSource, String suffix) {
+        RoutingRuleConfig.RangeConfig range = new RoutingRuleConfig.RangeConfig();
+        range.setStart(start);
+        range.setEnd(end);
+        range.setDataSource(dataSource);
+        range.setTableSuffix(suffix);
+        return range;
+    }
+}
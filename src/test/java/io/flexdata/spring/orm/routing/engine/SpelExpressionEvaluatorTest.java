@@ -344,4 +344,54 @@ class SpelExpressionEvaluatorTest {
         // Then
         assertEquals("item2", result);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCompiledExpressionSurvivesTypeChanges() {
+        // Given - 超过编译阈值后参数类型发生变化，MIXED模式应退回解释执行
+        String expression = "#{parameters['userId'] > 10000 and #isRead}";
+        for (int i = 0; i < 200; i++) {
+            assertTrue(evaluator.evaluateCondition(expression, context));
+        }
+        
+        RoutingContext intContext = RoutingContext.builder()
+                .tableName("user")
+                .operationType(RoutingContext.OperationType.UPDATE)
+                .parameter("userId", 20000)
+                .build();
+        
+        // When & Then
+        assertFalse(evaluator.evaluateCondition(expression, intContext));
+        assertTrue(evaluator.evaluateCondition(expression, context));
+    }
+
+    @Test
+    void testVariablesFollowCurrentContext() {
+        // Given - 同一线程复用评估上下文时变量跟随当前路由上下文
+        String expression = "#{#tableName + ':' + #headers['tenant-id'] + ':' + #isWrite}";
+        RoutingContext other = RoutingContext.builder()
+                .tableName("order")
+                .operationType(RoutingContext.OperationType.INSERT)
+                .header("tenant-id", "tenant-b")
+                .build();
+        
+        // When & Then
+        assertEquals("user:tenant-a:false", evaluator.evaluateExpression(expression, context, String.class));
+        assertEquals("order:tenant-b:true", evaluator.evaluateExpression(expression, other, String.class));
+        assertEquals("user:tenant-a:false", evaluator.evaluateExpression(expression, context, String.class));
+        assertEquals(org.springframework.expression.spel.SpelCompilerMode.MIXED, evaluator.getCompilerMode());
+    }
+
+    @Test
+    void testAssignedVariablesDoNotLeakBetweenEvaluations() {
+        // Given - 表达式赋值的变量只在本次评估内可见
+        RoutingContext other = RoutingContext.builder()
+                .tableName("order")
+                .operationType(RoutingContext.OperationType.INSERT)
+                .build();
+        
+        // When & Then
+        assertEquals("user:user", evaluator.evaluateExpression("#{(#tmp = #tableName) + ':' + #tmp}", context, String.class));
+        assertTrue(evaluator.evaluateCondition("#{#tmp == null}", other));
+        assertTrue(evaluator.evaluateCondition("#{#tmp == null}", context));
+    }
+}
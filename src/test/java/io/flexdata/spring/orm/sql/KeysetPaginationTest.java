@@ -0,0 +1,134 @@
+package io.flexdata.spring.orm.sql;
+
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.KeysetPageRequest;
+import io.flexdata.spring.orm.core.sql.KeysetSlice;
+import io.flexdata.spring.orm.core.sql.KeysetToken;
+import io.flexdata.spring.orm.core.sql.OrderBy;
+import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.criteria.impl.SimpleCriteria;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.repository.impl.GenericRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 键集分页测试类
+ * 验证生成的SQL、续页令牌以及逐页遍历结果与一次性排序查询一致
+ */
+class KeysetPaginationTest {
+
+    private EmbeddedDatabase database;
+    private SqlGenerator sqlGenerator;
+    private GenericRepositoryImpl<User, Long> repository;
+    private List<User> users;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        EntityMetadataRegistry metadataRegistry = new EntityMetadataRegistry();
+        sqlGenerator = new SqlGenerator(metadataRegistry);
+        repository = new GenericRepositoryImpl<>(new NamedParameterJdbcTemplate(database), sqlGenerator,
+                metadataRegistry, new RowMapperFactory(metadataRegistry), User.class);
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            users.add(new User("user" + i, null, i % 10));
+        }
+        repository.saveAll(users);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void testKeysetSql() {
+        List<OrderBy> uniform = sqlGenerator.resolveKeysetOrder(User.class, Collections.singletonList(OrderBy.asc("age")));
+        assertEquals(Arrays.asList("age ASC", "id ASC"),
+                uniform.stream().map(OrderBy::toString).collect(Collectors.toList()));
+        assertEquals("SELECT * FROM users WHERE (age, id) > (:_keyset0, :_keyset1) ORDER BY age ASC, id ASC LIMIT 11",
+                sqlGenerator.generateKeysetSelect(User.class, null, uniform, true, 11));
+
+        List<OrderBy> mixed = sqlGenerator.resolveKeysetOrder(User.class, Collections.singletonList(OrderBy.desc("age")));
+        assertEquals("SELECT * FROM users WHERE (user_name = :userName) AND ((age < :_keyset0)"
+                        + " OR (age = :_keyset0 AND id > :_keyset1)) ORDER BY age DESC, id ASC LIMIT 5",
+                sqlGenerator.generateKeysetSelect(User.class, new SimpleCriteria("userName", "=", "x"), mixed, true, 5));
+    }
+
+    @Test
+    void testWalkAllPagesUniformOrder() {
+        List<Long> expected = users.stream()
+                .sorted(Comparator.comparing(User::getAge).thenComparing(User::getId))
+                .map(User::getId)
+                .collect(Collectors.toList());
+
+        assertEquals(expected, walk(KeysetPageRequest.of(10, OrderBy.asc("age"))));
+    }
+
+    @Test
+    void testWalkAllPagesMixedOrderWithCriteria() {
+        List<Long> expected = users.stream()
+                .filter(user -> user.getAge() >= 3)
+                .sorted(Comparator.comparing(User::getAge).reversed().thenComparing(User::getId))
+                .map(User::getId)
+                .collect(Collectors.toList());
+
+        List<Long> actual = new ArrayList<>();
+        KeysetPageRequest request = KeysetPageRequest.of(7, OrderBy.desc("age"));
+        KeysetSlice<User> slice;
+        do {
+            slice = repository.findByCriteria(new SimpleCriteria("age", ">=", 3), request);
+            slice.getContent().forEach(user -> actual.add(user.getId()));
+            request = request.next(slice.getNextToken());
+        } while (slice.hasNext());
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testTokenBoundToSort() {
+        KeysetSlice<User> first = repository.findByCriteria(null,
+                KeysetPageRequest.of(10, OrderBy.asc("age")));
+        assertTrue(first.hasNext());
+        assertEquals(10, first.getNumberOfElements());
+
+        String token = first.getNextToken();
+        List<OrderBy> otherSort = sqlGenerator.resolveKeysetOrder(User.class, Collections.singletonList(OrderBy.desc("age")));
+        assertThrows(IllegalArgumentException.class, () -> KeysetToken.decode(token, otherSort));
+        assertThrows(IllegalArgumentException.class, () -> KeysetToken.decode("not-a-token", otherSort));
+    }
+
+    private List<Long> walk(KeysetPageRequest request) {
+        List<Long> ids = new ArrayList<>();
+        while (true) {
+            KeysetSlice<User> slice = repository.findByCriteria(null, request);
+            slice.getContent().forEach(user -> ids.add(user.getId()));
+            if (!slice.hasNext()) {
+                assertNull(slice.getNextToken());
+                return ids;
+            }
+            request = request.next(slice.getNextToken());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.flexdata.spring.orm.sql;
+
+import io.flexdata.spring.orm.core.interfaces.Criteria;
+import io.flexdata.spring.orm.core.mapper.RowMapperFactory;
+import io.flexdata.spring.orm.core.metadata.EntityMetadataRegistry;
+import io.flexdata.spring.orm.core.sql.EntityStatements;
+import io.flexdata.spring.orm.core.sql.FieldNameRewriter;
+import io.flexdata.spring.orm.core.sql.SqlGenerator;
+import io.flexdata.spring.orm.criteria.impl.SimpleCriteria;
+import io.flexdata.spring.orm.example.entiry.User;
+import io.flexdata.spring.orm.repository.impl.GenericRepositoryImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SqlGenerator测试类
+ * 验证预生成的实体语句模板及其失效
+ */
+class SqlGeneratorTest {
+
+    private EntityMetadataRegistry metadataRegistry;
+    private SqlGenerator sqlGenerator;
+
+    @BeforeEach
+    void setUp() {
+        metadataRegistry = new EntityMetadataRegistry();
+        sqlGenerator = new SqlGenerator(metadataRegistry);
+    }
+
+    @Test
+    void testStatementTemplates() {
+        EntityStatements statements = sqlGenerator.getStatements(User.class);
+
+        assertEquals("SELECT * FROM users WHERE id = :id", statements.getSelectById());
+        assertEquals("DELETE FROM users WHERE id = :id", statements.getDeleteById());
+        assertEquals("SELECT COUNT(*) FROM users", statements.getCount());
+        assertTrue(statements.getInsertWithId().contains(":id"));
+        assertFalse(statements.getInsertWithoutId().contains(":id"));
+        assertTrue(statements.getInsertWithoutId().contains(":userName"));
+        assertTrue(statements.getUpdateById().startsWith("UPDATE users SET "));
+        assertTrue(statements.getUpdateById().endsWith(" WHERE id = :id"));
+        assertTrue(statements.getUpdateById().contains("user_name = :userName"));
+    }
+
+    @Test
+    void testInsertVariantByIdPresence() {
+        User user = new User("alice", null, 30);
+        EntityStatements statements = sqlGenerator.getStatements(User.class);
+
+        assertSame(statements.getInsertWithoutId(), sqlGenerator.generateInsert(User.class, user));
+        user.setId(10L);
+        assertSame(statements.getInsertWithId(), sqlGenerator.generateInsert(User.class, user));
+    }
+
+    @Test
+    void testStatementsReusedAndInvalidated() {
+        EntityStatements first = sqlGenerator.getStatements(User.class);
+        assertSame(first, sqlGenerator.getStatements(User.class));
+        assertSame(first.getCount(), sqlGenerator.generateCount(User.class, null));
+        assertEquals(1, sqlGenerator.getCacheSize());
+
+        // 元数据缓存清空后模板随元数据重建
+        metadataRegistry.clearCache();
+        EntityStatements rebuilt = sqlGenerator.getStatements(User.class);
+        assertNotSame(first, rebuilt);
+        assertSame(metadataRegistry.getMetadata(User.class), rebuilt.getMetadata());
+
+        sqlGenerator.clearCache();
+        assertEquals(0, sqlGenerator.getCacheSize());
+    }
+
+    @Test
+    void testFieldNameRewrite() {
+        FieldNameRewriter rewriter = sqlGenerator.getStatements(User.class).getFieldNameRewriter();
+
+        // 字段名改写为列名，命名参数保持与参数Map一致
+        assertEquals("user_name = :userName AND created_at > :createdAt",
+                rewriter.rewrite("userName = :userName AND createdAt > :createdAt"));
+        // 字符串字面量、引号标识符和类型转换不改写
+        assertEquals("user_name = 'userName' AND \"userName\" IS NULL AND x::userName",
+                rewriter.rewrite("userName = 'userName' AND \"userName\" IS NULL AND x::userName"));
+        // 只替换完整标识符
+        assertEquals("userNameX = :a AND u.user_name = :b",
+                rewriter.rewrite("userNameX = :a AND u.userName = :b"));
+
+        Criteria criteria = new SimpleCriteria("userName", "=", "alice");
+        assertEquals("SELECT COUNT(*) FROM users WHERE user_name = :userName",
+                sqlGenerator.generateCount(User.class, criteria));
+    }
+
+    @Test
+    void testCrudWithStatements() {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        try {
+            GenericRepositoryImpl<User, Long> repository = new GenericRepositoryImpl<>(
+                    new NamedParameterJdbcTemplate(database), sqlGenerator, metadataRegistry,
+                    new RowMapperFactory(metadataRegistry), User.class);
+
+            // email为null时也能使用包含全部列的INSERT语句
+            User user = repository.save(new User("alice", null, 30));
+            assertNotNull(user.getId());
+
+            user.setAge(31);
+            repository.save(user);
+
+            Optional<User> found = repository.findById(user.getId());
+            assertTrue(found.isPresent());
+            assertEquals(31, found.get().getAge());
+            assertNull(found.get().getEmail());
+            assertEquals(1, repository.count());
+
+            repository.deleteById(user.getId());
+            assertFalse(repository.existsById(user.getId()));
+        } finally {
+            database.shutdown();
+        }
+    }
+}